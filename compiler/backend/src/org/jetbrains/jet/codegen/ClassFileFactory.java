@@ -41,6 +41,9 @@ public final class ClassFileFactory extends GenerationStateAware {
     private final Map<String, ClassBuilder> generators = new LinkedHashMap<String, ClassBuilder>();
     private boolean isDone = false;
 
+    // Outputs of the namespace the current thread generates concurrently with others, see collectOutputs()
+    private final ThreadLocal<CollectedOutputs> collectedOutputs = new ThreadLocal<CollectedOutputs>();
+
     public ClassFileFactory(@NotNull GenerationState state) {
         super(state);
     }
@@ -56,13 +59,59 @@ public final class ClassFileFactory extends GenerationStateAware {
     }
     
     private ClassBuilder newVisitor(String outputFilePath, Collection<? extends PsiFile> sourceFiles) {
-        state.getProgress().reportOutput(toIoFilesIgnoringNonPhysical(sourceFiles), new File(outputFilePath));
         ClassBuilder answer = builderFactory.newClassBuilder();
-        generators.put(outputFilePath, answer);
+        CollectedOutputs outputs = collectedOutputs.get();
+        if (outputs != null) {
+            outputs.add(outputFilePath, sourceFiles, answer);
+        }
+        else {
+            registerOutput(outputFilePath, sourceFiles, answer);
+        }
         return answer;
     }
 
-    private void done() {
+    private synchronized void registerOutput(String outputFilePath, Collection<? extends PsiFile> sourceFiles, ClassBuilder builder) {
+        state.getProgress().reportOutput(toIoFilesIgnoringNonPhysical(sourceFiles), new File(outputFilePath));
+        generators.put(outputFilePath, builder);
+    }
+
+    /**
+     * Runs {@code generate} in the current thread, holding back the class builders it creates. Registering them later with
+     * {@link #registerCollectedOutputs} in a fixed order keeps the order of output files independent of thread scheduling.
+     */
+    @NotNull
+    /*package*/ CollectedOutputs collectOutputs(@NotNull Runnable generate) {
+        assert collectedOutputs.get() == null : "Outputs are already being collected in this thread";
+        CollectedOutputs outputs = new CollectedOutputs();
+        collectedOutputs.set(outputs);
+        try {
+            generate.run();
+        }
+        finally {
+            collectedOutputs.remove();
+        }
+        return outputs;
+    }
+
+    /*package*/ void registerCollectedOutputs(@NotNull CollectedOutputs outputs) {
+        for (int i = 0; i < outputs.paths.size(); i++) {
+            registerOutput(outputs.paths.get(i), outputs.sourceFiles.get(i), outputs.builders.get(i));
+        }
+    }
+
+    /*package*/ static class CollectedOutputs {
+        private final List<String> paths = Lists.newArrayList();
+        private final List<Collection<? extends PsiFile>> sourceFiles = Lists.newArrayList();
+        private final List<ClassBuilder> builders = Lists.newArrayList();
+
+        private void add(String path, Collection<? extends PsiFile> files, ClassBuilder builder) {
+            paths.add(path);
+            sourceFiles.add(files);
+            builders.add(builder);
+        }
+    }
+
+    private synchronized void done() {
         if (!isDone) {
             isDone = true;
             for (NamespaceCodegen codegen : ns2codegen.values()) {
@@ -100,7 +149,7 @@ public final class ClassFileFactory extends GenerationStateAware {
         return answer.toString();
     }
 
-    public NamespaceCodegen forNamespace(final FqName fqName, final Collection<JetFile> files) {
+    public synchronized NamespaceCodegen forNamespace(final FqName fqName, final Collection<JetFile> files) {
         assert !isDone : "Already done!";
         NamespaceCodegen codegen = ns2codegen.get(fqName);
         if (codegen == null) {
@@ -36,12 +36,15 @@ import org.jetbrains.jet.codegen.binding.CalculatedClosure;
 import org.jetbrains.jet.codegen.binding.CodegenBinding;
 import org.jetbrains.jet.codegen.binding.MutableClosure;
 import org.jetbrains.jet.codegen.context.*;
+import org.jetbrains.jet.codegen.intrinsics.Concat;
 import org.jetbrains.jet.codegen.intrinsics.IntrinsicMethod;
+import org.jetbrains.jet.codegen.intrinsics.StringPlus;
 import org.jetbrains.jet.codegen.signature.JvmPropertyAccessorSignature;
 import org.jetbrains.jet.codegen.state.GenerationState;
 import org.jetbrains.jet.codegen.state.JetTypeMapper;
 import org.jetbrains.jet.codegen.state.JetTypeMapperMode;
 import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.descriptors.impl.LocalVariableDescriptor;
 import org.jetbrains.jet.lang.diagnostics.DiagnosticUtils;
 import org.jetbrains.jet.lang.psi.*;
 import org.jetbrains.jet.lang.resolve.BindingContext;
@@ -51,7 +54,10 @@ import org.jetbrains.jet.lang.resolve.calls.autocasts.AutoCastReceiver;
 import org.jetbrains.jet.lang.resolve.calls.model.*;
 import org.jetbrains.jet.lang.resolve.calls.util.CallMaker;
 import org.jetbrains.jet.lang.resolve.calls.util.ExpressionAsFunctionDescriptor;
+import org.jetbrains.jet.lang.resolve.constants.CharValue;
 import org.jetbrains.jet.lang.resolve.constants.CompileTimeConstant;
+import org.jetbrains.jet.lang.resolve.constants.IntValue;
+import org.jetbrains.jet.lang.resolve.constants.StringValue;
 import org.jetbrains.jet.lang.resolve.java.AsmTypeConstants;
 import org.jetbrains.jet.lang.resolve.java.JvmAbi;
 import org.jetbrains.jet.lang.resolve.java.JvmClassName;
@@ -79,6 +85,9 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
 
     private static final String CLASS_NO_PATTERN_MATCHED_EXCEPTION = "jet/NoPatternMatchedException";
     private static final String CLASS_TYPE_CAST_EXCEPTION = "jet/TypeCastException";
+
+    // Room for the non-constant parts of a string concatenation, the same as the default capacity of a StringBuilder
+    private static final int STRING_BUILDER_DEFAULT_CAPACITY = 16;
     public static final Set<DeclarationDescriptor> INTEGRAL_RANGES = KotlinBuiltIns.getInstance().getIntegralRanges();
 
     private int myLastLineNumber = -1;
@@ -103,6 +112,19 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
      */
     private final Map<JetElement, StackValue.Local> tempVariables = Maps.newHashMap();
 
+    /*
+     * Calls of inline functions whose bodies are being generated in place of the calls, the innermost one on top.
+     * Parameters and receivers of these functions live in locals, function literals passed to them are generated
+     * in place of the calls of the corresponding parameters
+     */
+    private final Stack<InlineCallFrame> inlineCallFrames = new Stack<InlineCallFrame>();
+    private final Map<DeclarationDescriptor, JetFunctionLiteral> inlinedFunctionLiterals = Maps.newHashMap();
+    private final Map<DeclarationDescriptor, StackValue> inlinedReceivers = Maps.newHashMap();
+    /*
+     * Classes declaring the functions inlined into this method, each recorded with an InlinedFromAttribute once
+     */
+    private final Set<String> inlinedFromClasses = new HashSet<String>();
+
     public CalculatedClosure generateObjectLiteral(
             GenerationState state,
             JetObjectLiteralExpression literal
@@ -155,6 +177,19 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
         }
     }
 
+    static class InlineCallFrame {
+        final FunctionDescriptor function;
+        final Type returnType;
+        final JetElement callElement;
+        final Label end = new Label();
+
+        InlineCallFrame(FunctionDescriptor function, Type returnType, JetElement callElement) {
+            this.function = function;
+            this.returnType = returnType;
+            this.callElement = callElement;
+        }
+    }
+
 
     public ExpressionCodegen(
             MethodVisitor v,
@@ -1167,48 +1202,140 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
 
     @Override
     public StackValue visitStringTemplateExpression(JetStringTemplateExpression expression, StackValue receiver) {
-        StringBuilder constantValue = new StringBuilder("");
-        JetStringTemplateEntry[] entries = expression.getEntries();
+        return genStringConcatenation(Collections.<JetExpression>singletonList(expression));
+    }
+
+    /*
+     * Generates the concatenation of string representations of the given expressions. Nested templates and string concatenations
+     * are flattened into a single StringBuilder, and constants (including local vals initialized with constants) are merged
+     * with adjacent literals at compile time
+     */
+    @NotNull
+    public StackValue genStringConcatenation(@NotNull List<JetExpression> operands) {
+        List<Object> pieces = new ArrayList<Object>();
+        for (JetExpression operand : operands) {
+            collectStringPieces(operand, pieces);
+        }
 
-        if (entries.length == 1 && entries[0] instanceof JetStringTemplateEntryWithExpression) {
-            return genToString(v, gen(entries[0].getExpression()));
+        if (pieces.isEmpty()) {
+            return StackValue.constant("", JAVA_STRING_TYPE);
+        }
+        if (pieces.size() == 1) {
+            Object piece = pieces.get(0);
+            return piece instanceof String
+                   ? StackValue.constant(piece, JAVA_STRING_TYPE)
+                   : genToString(v, gen((JetExpression) piece));
         }
 
-        for (JetStringTemplateEntry entry : entries) {
-            if (entry instanceof JetLiteralStringTemplateEntry) {
-                constantValue.append(entry.getText());
+        int capacity = STRING_BUILDER_DEFAULT_CAPACITY;
+        for (Object piece : pieces) {
+            if (piece instanceof String) {
+                capacity += ((String) piece).length();
             }
-            else if (entry instanceof JetEscapeStringTemplateEntry) {
-                constantValue.append(((JetEscapeStringTemplateEntry) entry).getUnescapedValue());
+        }
+        genStringBuilderConstructor(v, capacity);
+        appendStringPieces(pieces);
+        v.invokevirtual("java/lang/StringBuilder", "toString", "()Ljava/lang/String;");
+        return StackValue.onStack(JAVA_STRING_TYPE);
+    }
+
+    public void invokeAppend(JetExpression expr) {
+        List<Object> pieces = new ArrayList<Object>();
+        collectStringPieces(expr, pieces);
+        appendStringPieces(pieces);
+    }
+
+    private void appendStringPieces(@NotNull List<Object> pieces) {
+        for (Object piece : pieces) {
+            if (piece instanceof String) {
+                v.aconst(piece);
+                genInvokeAppendMethod(v, JAVA_STRING_TYPE);
             }
             else {
-                constantValue = null;
-                break;
+                JetExpression expression = (JetExpression) piece;
+                Type type = expressionType(expression);
+                gen(expression, type);
+                genInvokeAppendMethod(v, type);
             }
         }
-        if (constantValue != null) {
-            Type type = expressionType(expression);
-            return StackValue.constant(constantValue.toString(), type);
+    }
+
+    // Pieces are constant Strings, adjacent ones merged, and expressions to be converted to strings at runtime
+    private void collectStringPieces(@NotNull JetExpression expression, @NotNull List<Object> pieces) {
+        String constant = getConstantString(expression);
+        if (constant != null) {
+            addConstantStringPiece(constant, pieces);
         }
-        else {
-            genStringBuilderConstructor(v);
-            for (JetStringTemplateEntry entry : entries) {
+        else if (expression instanceof JetParenthesizedExpression && ((JetParenthesizedExpression) expression).getExpression() != null) {
+            collectStringPieces(((JetParenthesizedExpression) expression).getExpression(), pieces);
+        }
+        else if (expression instanceof JetStringTemplateExpression) {
+            for (JetStringTemplateEntry entry : ((JetStringTemplateExpression) expression).getEntries()) {
                 if (entry instanceof JetStringTemplateEntryWithExpression) {
-                    invokeAppend(entry.getExpression());
+                    JetExpression entryExpression = entry.getExpression();
+                    assert entryExpression != null : "No expression in template entry: " + entry.getText();
+                    collectStringPieces(entryExpression, pieces);
+                }
+                else if (entry instanceof JetEscapeStringTemplateEntry) {
+                    addConstantStringPiece(((JetEscapeStringTemplateEntry) entry).getUnescapedValue(), pieces);
                 }
                 else {
-                    String text = entry instanceof JetEscapeStringTemplateEntry
-                                  ? ((JetEscapeStringTemplateEntry) entry).getUnescapedValue()
-                                  : entry.getText();
-                    v.aconst(text);
-                    genInvokeAppendMethod(v, JAVA_STRING_TYPE);
+                    addConstantStringPiece(entry.getText(), pieces);
                 }
             }
-            v.invokevirtual("java/lang/StringBuilder", "toString", "()Ljava/lang/String;");
-            return StackValue.onStack(AsmTypeConstants.JAVA_STRING_TYPE);
+        }
+        else if (isStringConcatenation(expression)) {
+            JetBinaryExpression binaryExpression = (JetBinaryExpression) expression;
+            //noinspection ConstantConditions
+            collectStringPieces(binaryExpression.getLeft(), pieces);
+            //noinspection ConstantConditions
+            collectStringPieces(binaryExpression.getRight(), pieces);
+        }
+        else {
+            pieces.add(expression);
         }
     }
 
+    private static void addConstantStringPiece(@NotNull String constant, @NotNull List<Object> pieces) {
+        if (constant.isEmpty()) return;
+        int last = pieces.size() - 1;
+        if (last >= 0 && pieces.get(last) instanceof String) {
+            pieces.set(last, pieces.get(last) + constant);
+        }
+        else {
+            pieces.add(constant);
+        }
+    }
+
+    @Nullable
+    private String getConstantString(@NotNull JetExpression expression) {
+        CompileTimeConstant<?> constant = bindingContext.get(BindingContext.COMPILE_TIME_VALUE, expression);
+        if (constant == null && expression instanceof JetSimpleNameExpression) {
+            DeclarationDescriptor descriptor = bindingContext.get(BindingContext.REFERENCE_TARGET, (JetSimpleNameExpression) expression);
+            if (descriptor instanceof LocalVariableDescriptor && !((LocalVariableDescriptor) descriptor).isVar()) {
+                PsiElement declaration = descriptorToDeclaration(bindingContext, descriptor);
+                JetExpression initializer = declaration instanceof JetProperty ? ((JetProperty) declaration).getInitializer() : null;
+                if (initializer != null) {
+                    constant = bindingContext.get(BindingContext.COMPILE_TIME_VALUE, initializer);
+                }
+            }
+        }
+        return constant != null && constant.getValue() != null ? String.valueOf(constant.getValue()) : null;
+    }
+
+    private boolean isStringConcatenation(@NotNull JetExpression expression) {
+        if (!(expression instanceof JetBinaryExpression)) return false;
+        JetBinaryExpression binaryExpression = (JetBinaryExpression) expression;
+        if (binaryExpression.getOperationToken() != JetTokens.PLUS ||
+            binaryExpression.getLeft() == null || binaryExpression.getRight() == null) {
+            return false;
+        }
+        DeclarationDescriptor op = bindingContext.get(BindingContext.REFERENCE_TARGET, binaryExpression.getOperationReference());
+        if (!(op instanceof FunctionDescriptor)) return false;
+        IntrinsicMethod intrinsic = state.getIntrinsics().getIntrinsic((FunctionDescriptor) op);
+        return intrinsic instanceof Concat || intrinsic instanceof StringPlus;
+    }
+
     @Override
     public StackValue visitBlockExpression(JetBlockExpression expression, StackValue receiver) {
         List<JetElement> statements = expression.getStatements();
@@ -1447,6 +1574,10 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
     }
 
     private void markLineNumber(@NotNull JetElement statement) {
+        // Lines of inline functions declared in other files would be attributed to the file of this method
+        if (!inlineCallFrames.isEmpty() && statement.getContainingFile() != inlineCallFrames.get(0).callElement.getContainingFile()) {
+            return;
+        }
         Document document = statement.getContainingFile().getViewProvider().getDocument();
         if (document != null) {
             int lineNumber = document.getLineNumber(statement.getTextRange().getStartOffset());  // 0-based
@@ -1481,7 +1612,15 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
     @Override
     public StackValue visitReturnExpression(JetReturnExpression expression, StackValue receiver) {
         JetExpression returnedExpression = expression.getReturnedExpression();
-        if (returnedExpression != null) {
+        if (!inlineCallFrames.isEmpty()) {
+            // Only inlined function bodies may return, and only where the stack is as at the beginning of the body
+            InlineCallFrame frame = inlineCallFrames.peek();
+            if (returnedExpression != null) {
+                gen(returnedExpression, frame.returnType);
+            }
+            v.goTo(frame.end);
+        }
+        else if (returnedExpression != null) {
             gen(returnedExpression, returnType);
             doFinallyOnReturn();
             v.areturn(returnType);
@@ -1878,6 +2017,11 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
             if (resolvedCall instanceof VariableAsFunctionResolvedCall) {
                 VariableAsFunctionResolvedCall variableAsFunctionResolvedCall = (VariableAsFunctionResolvedCall) resolvedCall;
                 ResolvedCallWithTrace<FunctionDescriptor> functionCall = variableAsFunctionResolvedCall.getFunctionCall();
+                JetFunctionLiteral literal =
+                        inlinedFunctionLiterals.get(variableAsFunctionResolvedCall.getVariableCall().getResultingDescriptor());
+                if (literal != null) {
+                    return generateInlinedFunctionLiteralCall(literal, functionCall);
+                }
                 return invokeFunction(call, receiver, functionCall);
             }
             else {
@@ -1986,6 +2130,13 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
             }
         }
 
+        if (!superCall && !isInlinedNow(fd)) {
+            JetNamedFunction inlinableFunction = InlineCodegenUtil.getInlinableFunction(resolvedCall, bindingContext);
+            if (inlinableFunction != null) {
+                return generateInlineCall(call, receiver, resolvedCall, inlinableFunction);
+            }
+        }
+
         fd = accessableFunctionDescriptor(fd);
 
         Callable callable = resolveToCallable(fd, superCall);
@@ -2055,6 +2206,119 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
         return StackValue.none();
     }
 
+    private boolean isInlinedNow(@NotNull FunctionDescriptor fd) {
+        for (InlineCallFrame frame : inlineCallFrames) {
+            if (frame.function == fd.getOriginal()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private StackValue generateInlineCall(
+            @NotNull Call call,
+            @NotNull StackValue receiver,
+            @NotNull ResolvedCall<? extends CallableDescriptor> resolvedCall,
+            @NotNull JetNamedFunction function
+    ) {
+        FunctionDescriptor fd = (FunctionDescriptor) resolvedCall.getResultingDescriptor();
+        FunctionDescriptor original = fd.getOriginal();
+        FrameMap.Mark mark = myFrameMap.mark();
+
+        String inlinedFromClass = InlineCodegenUtil.getInlinedFromClassName(function);
+        if (inlinedFromClasses.add(inlinedFromClass)) {
+            v.visitAttribute(new InlineCodegenUtil.InlinedFromAttribute(inlinedFromClass));
+        }
+
+        ReceiverParameterDescriptor receiverParameter = original.getReceiverParameter();
+        if (receiverParameter != null) {
+            Type receiverType = asmType(receiverParameter.getType());
+            StackValue.receiver(resolvedCall, receiver, this, null).put(receiverType, v);
+            int index = myFrameMap.enterTemp(receiverType);
+            v.store(index, receiverType);
+            inlinedReceivers.put(original, StackValue.local(index, receiverType));
+        }
+
+        List<ResolvedValueArgument> valueArguments = resolvedCall.getValueArgumentsByIndex();
+        for (ValueParameterDescriptor parameter : original.getValueParameters()) {
+            ResolvedValueArgument argument = valueArguments.get(parameter.getIndex());
+            JetFunctionLiteral literal = InlineCodegenUtil.getInlinableFunctionLiteral(argument, parameter, function, bindingContext);
+            if (literal != null) {
+                inlinedFunctionLiterals.put(parameter, literal);
+                continue;
+            }
+
+            Type type = asmType(parameter.getType());
+            if (argument instanceof VarargValueArgument) {
+                genVarargs(fd.getValueParameters().get(parameter.getIndex()), (VarargValueArgument) argument);
+            }
+            else {
+                ValueArgument valueArgument = ((ExpressionValueArgument) argument).getValueArgument();
+                assert valueArgument != null : "No argument for " + parameter + " in " + call.getCallElement().getText();
+                gen(valueArgument.getArgumentExpression(), type);
+            }
+            v.store(myFrameMap.enter(parameter, type), type);
+        }
+
+        JetType returnJetType = original.getReturnType();
+        assert returnJetType != null : "Inline function without return type: " + original;
+        InlineCallFrame frame = new InlineCallFrame(original, typeMapper.mapReturnType(returnJetType), call.getCallElement());
+        inlineCallFrames.push(frame);
+
+        JetExpression body = function.getBodyExpression();
+        assert body != null : "Inline function without body: " + original;
+        if (function.hasBlockBody()) {
+            StackValue lastValue = gen(body);
+            if (lastValue.type != Type.VOID_TYPE) {
+                lastValue.put(frame.returnType, v);
+            }
+            else if (!endsWithReturn(body) && frame.returnType != Type.VOID_TYPE) {
+                // Unreachable: a block body of a function returning a value can't complete normally
+                pushDefaultValueOnStack(frame.returnType, v);
+            }
+        }
+        else {
+            gen(body, frame.returnType);
+        }
+        v.mark(frame.end);
+
+        inlineCallFrames.pop();
+        inlinedReceivers.remove(original);
+        for (ValueParameterDescriptor parameter : original.getValueParameters()) {
+            inlinedFunctionLiterals.remove(parameter);
+        }
+        mark.dropTo();
+
+        return returnValueAsStackValue(fd, frame.returnType);
+    }
+
+    private StackValue generateInlinedFunctionLiteralCall(
+            @NotNull JetFunctionLiteral literal,
+            @NotNull ResolvedCall<FunctionDescriptor> invokeCall
+    ) {
+        FunctionDescriptor literalDescriptor = bindingContext.get(BindingContext.FUNCTION, literal);
+        assert literalDescriptor != null : "No descriptor for function literal " + literal.getText();
+        FrameMap.Mark mark = myFrameMap.mark();
+
+        List<ResolvedValueArgument> valueArguments = invokeCall.getValueArgumentsByIndex();
+        for (ValueParameterDescriptor parameter : literalDescriptor.getValueParameters()) {
+            ValueArgument valueArgument = ((ExpressionValueArgument) valueArguments.get(parameter.getIndex())).getValueArgument();
+            assert valueArgument != null : "No argument for " + parameter + " in a call of " + literal.getText();
+            Type type = asmType(parameter.getType());
+            gen(valueArgument.getArgumentExpression(), type);
+            v.store(myFrameMap.enter(parameter, type), type);
+        }
+
+        JetType returnJetType = literalDescriptor.getReturnType();
+        assert returnJetType != null : "Function literal without return type: " + literal.getText();
+        Type literalReturnType = typeMapper.mapReturnType(returnJetType);
+        //noinspection ConstantConditions
+        gen(literal.getBodyExpression()).put(literalReturnType, v);
+
+        mark.dropTo();
+        return literalReturnType != Type.VOID_TYPE ? StackValue.onStack(literalReturnType) : StackValue.none();
+    }
+
     Callable resolveToCallable(@NotNull FunctionDescriptor fd, boolean superCall) {
         IntrinsicMethod intrinsic = state.getIntrinsics().getIntrinsic(fd);
         if (intrinsic != null) {
@@ -2208,6 +2472,11 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
     }
 
     private StackValue generateReceiver(DeclarationDescriptor provided) {
+        StackValue inlinedReceiver = inlinedReceivers.get(provided);
+        if (inlinedReceiver != null) {
+            return inlinedReceiver;
+        }
+
         if (context.getCallableDescriptorWithReceiver() == provided) {
             StackValue result = context.getReceiverExpression(typeMapper);
             return castToRequiredTypeOfInterfaceIfNeeded(result, provided, null);
@@ -2235,12 +2504,8 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
                     result.put(currentScriptClassName.getAsmType(), v);
                 }
                 else {
-                    JvmClassName className =
-                            classNameForScriptDescriptor(bindingContext,
-                                                                        receiver.getDeclarationDescriptor());
-                    String fieldName = state.getScriptCodegen().getScriptFieldName(receiver.getDeclarationDescriptor());
                     result.put(currentScriptClassName.getAsmType(), v);
-                    StackValue.field(className.getAsmType(), currentScriptClassName, fieldName, false).put(className.getAsmType(), v);
+                    state.getScriptCodegen().putEarlierScript(receiver.getDeclarationDescriptor(), currentScriptClassName, v);
                 }
                 return;
             }
@@ -2365,28 +2630,7 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
                 gen(arguments.get(0).getArgumentExpression(), type);
             }
             else {
-                String owner = "jet/runtime/Intrinsics$SpreadBuilder";
-                v.anew(Type.getObjectType(owner));
-                v.dup();
-                v.invokespecial(owner, "<init>", "()V");
-                for (int i = 0; i != size; ++i) {
-                    v.dup();
-                    ValueArgument argument = arguments.get(i);
-                    if (argument.getSpreadElement() != null) {
-                        gen(argument.getArgumentExpression(), OBJECT_TYPE);
-                        v.invokevirtual(owner, "addSpread", "(Ljava/lang/Object;)V");
-                    }
-                    else {
-                        gen(argument.getArgumentExpression(), elementType);
-                        v.invokevirtual(owner, "add", "(Ljava/lang/Object;)Z");
-                        v.pop();
-                    }
-                }
-                v.dup();
-                v.invokevirtual(owner, "size", "()I");
-                v.newarray(elementType);
-                v.invokevirtual(owner, "toArray", "([Ljava/lang/Object;)[Ljava/lang/Object;");
-                v.checkcast(type);
+                genSpreadVarargs(arguments, type, elementType);
             }
         }
         else {
@@ -2401,6 +2645,71 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
         }
     }
 
+    /*
+     * Evaluates the arguments from left to right into temporary variables, then allocates the resulting array of the exact size
+     * and fills it, copying spread arrays with System.arraycopy()
+     */
+    private void genSpreadVarargs(@NotNull List<ValueArgument> arguments, @NotNull Type arrayType, @NotNull Type elementType) {
+        FrameMap.Mark mark = myFrameMap.mark();
+
+        int size = arguments.size();
+        StackValue[] values = new StackValue[size];
+        int nonSpreadCount = 0;
+        for (int i = 0; i != size; ++i) {
+            ValueArgument argument = arguments.get(i);
+            Type argumentType = argument.getSpreadElement() != null ? arrayType : elementType;
+            gen(argument.getArgumentExpression(), argumentType);
+            values[i] = StackValue.local(myFrameMap.enterTemp(argumentType), argumentType);
+            values[i].store(argumentType, v);
+            if (argument.getSpreadElement() == null) {
+                nonSpreadCount++;
+            }
+        }
+
+        v.iconst(nonSpreadCount);
+        for (int i = 0; i != size; ++i) {
+            if (arguments.get(i).getSpreadElement() != null) {
+                values[i].put(arrayType, v);
+                v.arraylength();
+                v.add(Type.INT_TYPE);
+            }
+        }
+        v.newarray(elementType);
+        StackValue result = StackValue.local(myFrameMap.enterTemp(arrayType), arrayType);
+        result.store(arrayType, v);
+
+        int index = myFrameMap.enterTemp(Type.INT_TYPE);
+        v.iconst(0);
+        v.store(index, Type.INT_TYPE);
+        for (int i = 0; i != size; ++i) {
+            if (arguments.get(i).getSpreadElement() != null) {
+                values[i].put(arrayType, v);
+                v.iconst(0);
+                result.put(arrayType, v);
+                v.load(index, Type.INT_TYPE);
+                values[i].put(arrayType, v);
+                v.arraylength();
+                v.invokestatic("java/lang/System", "arraycopy", "(Ljava/lang/Object;ILjava/lang/Object;II)V");
+
+                v.load(index, Type.INT_TYPE);
+                values[i].put(arrayType, v);
+                v.arraylength();
+                v.add(Type.INT_TYPE);
+                v.store(index, Type.INT_TYPE);
+            }
+            else {
+                result.put(arrayType, v);
+                v.load(index, Type.INT_TYPE);
+                values[i].put(elementType, v);
+                StackValue.arrayElement(elementType, false).store(elementType, v);
+                v.iinc(index, 1);
+            }
+        }
+        result.put(arrayType, v);
+
+        mark.dropTo();
+    }
+
     public int pushMethodArguments(JetCallElement expression, List<Type> valueParameterTypes) {
         ResolvedCall<? extends CallableDescriptor> resolvedCall =
                 bindingContext.get(BindingContext.RESOLVED_CALL, expression.getCalleeExpression());
@@ -2789,27 +3098,6 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
         }
     }
 
-    public void invokeAppend(JetExpression expr) {
-        if (expr instanceof JetBinaryExpression) {
-            JetBinaryExpression binaryExpression = (JetBinaryExpression) expr;
-            if (binaryExpression.getOperationToken() == JetTokens.PLUS) {
-                JetExpression left = binaryExpression.getLeft();
-                JetExpression right = binaryExpression.getRight();
-                Type leftType = expressionType(left);
-                Type rightType = expressionType(right);
-
-                if (leftType.equals(JAVA_STRING_TYPE) && rightType.equals(JAVA_STRING_TYPE)) {
-                    invokeAppend(left);
-                    invokeAppend(right);
-                    return;
-                }
-            }
-        }
-        Type exprType = expressionType(expr);
-        gen(expr, exprType);
-        genInvokeAppendMethod(v, exprType.getSort() == Type.ARRAY ? OBJECT_TYPE : exprType);
-    }
-
     @Nullable
     private static JetSimpleNameExpression targetLabel(JetExpression expression) {
         if (expression.getParent() instanceof JetPrefixExpression) {
@@ -3574,6 +3862,31 @@ The "returned" value of try expression with no finally is either the last expres
             }
         }
 
+        WhenSwitchKind switchKind = subjectLocal != -1 ? getWhenSwitchKind(subjectType, subjectJetType) : null;
+        Map<Object, Integer> switchKeys = switchKind != null ? getWhenSwitchKeys(expression, switchKind, subjectJetType) : null;
+        if (switchKeys != null) {
+            generateWhenSwitch(expression, switchKind, switchKeys, subjectType, subjectLocal, resultType, hasElse, end);
+        }
+        else {
+            generateWhenChain(expression, subjectType, subjectLocal, resultType, hasElse, end);
+        }
+
+        markLineNumber(expression);
+        v.mark(end);
+
+        myFrameMap.leaveTemp(subjectType);
+        tempVariables.remove(expr);
+        return StackValue.onStack(resultType);
+    }
+
+    private void generateWhenChain(
+            JetWhenExpression expression,
+            Type subjectType,
+            int subjectLocal,
+            Type resultType,
+            boolean hasElse,
+            Label end
+    ) {
         Label nextCondition = null;
         for (JetWhenEntry whenEntry : expression.getEntries()) {
             if (nextCondition != null) {
@@ -3606,13 +3919,234 @@ The "returned" value of try expression with no finally is either the last expres
             v.mark(nextCondition);
             throwNewException(CLASS_NO_PATTERN_MATCHED_EXCEPTION);
         }
+    }
 
-        markLineNumber(expression);
-        v.mark(end);
+    // Subjects a `when` with constant conditions only is compiled to a tableswitch or lookupswitch for
+    private enum WhenSwitchKind {
+        INT,
+        CHAR,
+        // Switch on the hash code, then compare with equals()
+        STRING,
+        // Switch on the ordinal, only for enums compiled together with the `when`, so that the ordinals can't change
+        ENUM
+    }
 
-        myFrameMap.leaveTemp(subjectType);
-        tempVariables.remove(expr);
-        return StackValue.onStack(resultType);
+    // With fewer keys a chain of comparisons is as fast as a switch
+    private static final int MIN_WHEN_SWITCH_SIZE = 3;
+
+    @Nullable
+    private WhenSwitchKind getWhenSwitchKind(@NotNull Type subjectType, @Nullable JetType subjectJetType) {
+        if (subjectType == Type.INT_TYPE) return WhenSwitchKind.INT;
+        if (subjectType == Type.CHAR_TYPE) return WhenSwitchKind.CHAR;
+        if (subjectType.equals(JAVA_STRING_TYPE)) return WhenSwitchKind.STRING;
+
+        ClassDescriptor enumClass = getSourceEnumClass(subjectJetType);
+        return enumClass != null ? WhenSwitchKind.ENUM : null;
+    }
+
+    @Nullable
+    private ClassDescriptor getSourceEnumClass(@Nullable JetType type) {
+        if (type == null) return null;
+        ClassifierDescriptor classifier = type.getConstructor().getDeclarationDescriptor();
+        if (!(classifier instanceof ClassDescriptor) || ((ClassDescriptor) classifier).getKind() != ClassKind.ENUM_CLASS) return null;
+        return descriptorToDeclaration(bindingContext, classifier) instanceof JetClass ? (ClassDescriptor) classifier : null;
+    }
+
+    /**
+     * @return indices of the entries to jump to by the switch keys, or null if a switch can't be used
+     */
+    @Nullable
+    private Map<Object, Integer> getWhenSwitchKeys(
+            @NotNull JetWhenExpression expression,
+            @NotNull WhenSwitchKind kind,
+            @Nullable JetType subjectJetType
+    ) {
+        Map<Object, Integer> keys = new LinkedHashMap<Object, Integer>();
+        List<JetWhenEntry> entries = expression.getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            JetWhenEntry entry = entries.get(i);
+            if (entry.isElse()) {
+                if (i != entries.size() - 1) return null;
+                continue;
+            }
+            for (JetWhenCondition condition : entry.getConditions()) {
+                if (!(condition instanceof JetWhenConditionWithExpression)) return null;
+                JetExpression conditionExpression = ((JetWhenConditionWithExpression) condition).getExpression();
+                Object key = conditionExpression != null ? getWhenSwitchKey(conditionExpression, kind, subjectJetType) : null;
+                if (key == null) return null;
+                // The first entry with the value is the one to be chosen
+                if (!keys.containsKey(key)) {
+                    keys.put(key, i);
+                }
+            }
+        }
+        return keys.size() >= MIN_WHEN_SWITCH_SIZE ? keys : null;
+    }
+
+    @Nullable
+    private Object getWhenSwitchKey(@NotNull JetExpression expression, @NotNull WhenSwitchKind kind, @Nullable JetType subjectJetType) {
+        if (kind == WhenSwitchKind.ENUM) {
+            ClassDescriptor enumClass = getSourceEnumClass(subjectJetType);
+            assert enumClass != null : "Not an enum: " + subjectJetType;
+            return getEnumEntryOrdinal(expression, enumClass);
+        }
+
+        CompileTimeConstant<?> constant = bindingContext.get(BindingContext.COMPILE_TIME_VALUE, expression);
+        switch (kind) {
+            case INT:
+                return constant instanceof IntValue ? constant.getValue() : null;
+            case CHAR:
+                return constant instanceof CharValue ? (int) ((CharValue) constant).getValue().charValue() : null;
+            case STRING:
+                return constant instanceof StringValue ? constant.getValue() : null;
+            default:
+                throw new IllegalStateException("Unknown kind of when switch: " + kind);
+        }
+    }
+
+    @Nullable
+    private Integer getEnumEntryOrdinal(@NotNull JetExpression expression, @NotNull ClassDescriptor enumClass) {
+        JetExpression reference = expression instanceof JetDotQualifiedExpression
+                                  ? ((JetDotQualifiedExpression) expression).getSelectorExpression()
+                                  : expression;
+        if (!(reference instanceof JetSimpleNameExpression)) return null;
+
+        DeclarationDescriptor entry = bindingContext.get(REFERENCE_TARGET, (JetSimpleNameExpression) reference);
+        if (!(entry instanceof PropertyDescriptor)) return null;
+        DeclarationDescriptor classObject = entry.getContainingDeclaration();
+        if (!DescriptorUtils.isEnumClassObject(classObject) || classObject.getContainingDeclaration() != enumClass) return null;
+
+        // Entries get their ordinals in the order of declaration, see ImplementationBodyCodegen.initializeEnumConstants()
+        JetClass enumDeclaration = (JetClass) descriptorToDeclaration(bindingContext, enumClass);
+        assert enumDeclaration != null : "Enum from sources expected: " + enumClass;
+        int ordinal = 0;
+        for (JetDeclaration declaration : enumDeclaration.getDeclarations()) {
+            if (declaration instanceof JetEnumEntry) {
+                if (entry.getName().getName().equals(((JetEnumEntry) declaration).getName())) {
+                    return ordinal;
+                }
+                ordinal++;
+            }
+        }
+        return null;
+    }
+
+    private void generateWhenSwitch(
+            JetWhenExpression expression,
+            WhenSwitchKind kind,
+            Map<Object, Integer> keys,
+            Type subjectType,
+            int subjectLocal,
+            Type resultType,
+            boolean hasElse,
+            Label end
+    ) {
+        List<JetWhenEntry> entries = expression.getEntries();
+        Label[] entryLabels = new Label[entries.size()];
+        for (int i = 0; i < entryLabels.length; i++) {
+            entryLabels[i] = new Label();
+        }
+        Label noMatch = hasElse ? entryLabels[entries.size() - 1] : new Label();
+
+        if (kind == WhenSwitchKind.STRING) {
+            generateStringSwitch(keys, subjectLocal, entryLabels, noMatch);
+        }
+        else {
+            Map<Integer, Label> labels = new HashMap<Integer, Label>();
+            for (Map.Entry<Object, Integer> key : keys.entrySet()) {
+                labels.put((Integer) key.getKey(), entryLabels[key.getValue()]);
+            }
+            v.load(subjectLocal, subjectType);
+            if (kind == WhenSwitchKind.ENUM) {
+                v.ifnull(noMatch);
+                v.load(subjectLocal, subjectType);
+                v.invokevirtual("java/lang/Enum", "ordinal", "()I");
+            }
+            generateIntSwitch(labels, noMatch);
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            JetWhenEntry whenEntry = entries.get(i);
+            FrameMap.Mark mark = myFrameMap.mark();
+            v.mark(entryLabels[i]);
+            gen(whenEntry.getExpression(), resultType);
+            mark.dropTo();
+            if (!whenEntry.isElse()) {
+                v.goTo(end);
+            }
+        }
+        if (!hasElse) {
+            v.mark(noMatch);
+            throwNewException(CLASS_NO_PATTERN_MATCHED_EXCEPTION);
+        }
+    }
+
+    private void generateStringSwitch(Map<Object, Integer> keys, int subjectLocal, Label[] entryLabels, Label noMatch) {
+        // Strings with the same hash code, in the order of the conditions
+        Map<Integer, List<String>> stringsByHashCode = new LinkedHashMap<Integer, List<String>>();
+        for (Object key : keys.keySet()) {
+            String string = (String) key;
+            List<String> strings = stringsByHashCode.get(string.hashCode());
+            if (strings == null) {
+                strings = new ArrayList<String>(1);
+                stringsByHashCode.put(string.hashCode(), strings);
+            }
+            strings.add(string);
+        }
+
+        Map<Integer, Label> hashCodeLabels = new HashMap<Integer, Label>();
+        for (Integer hashCode : stringsByHashCode.keySet()) {
+            hashCodeLabels.put(hashCode, new Label());
+        }
+
+        v.load(subjectLocal, JAVA_STRING_TYPE);
+        v.ifnull(noMatch);
+        v.load(subjectLocal, JAVA_STRING_TYPE);
+        v.invokevirtual("java/lang/String", "hashCode", "()I");
+        generateIntSwitch(hashCodeLabels, noMatch);
+
+        for (Map.Entry<Integer, List<String>> hashCode : stringsByHashCode.entrySet()) {
+            v.mark(hashCodeLabels.get(hashCode.getKey()));
+            for (String string : hashCode.getValue()) {
+                v.load(subjectLocal, JAVA_STRING_TYPE);
+                v.aconst(string);
+                v.invokevirtual("java/lang/String", "equals", "(Ljava/lang/Object;)Z");
+                v.ifne(entryLabels[keys.get(string)]);
+            }
+            v.goTo(noMatch);
+        }
+    }
+
+    private void generateIntSwitch(Map<Integer, Label> labels, Label defaultLabel) {
+        int[] keys = new int[labels.size()];
+        int index = 0;
+        for (Integer key : labels.keySet()) {
+            keys[index++] = key;
+        }
+        Arrays.sort(keys);
+
+        // The same estimate of code size and speed javac uses to choose between the instructions
+        long min = keys[0];
+        long max = keys[keys.length - 1];
+        long tableSpaceCost = 4 + (max - min + 1);
+        long tableTimeCost = 3;
+        long lookupSpaceCost = 3 + 2 * (long) keys.length;
+        long lookupTimeCost = keys.length;
+        if (tableSpaceCost + 3 * tableTimeCost <= lookupSpaceCost + 3 * lookupTimeCost) {
+            Label[] table = new Label[(int) (max - min + 1)];
+            Arrays.fill(table, defaultLabel);
+            for (int key : keys) {
+                table[(int) (key - min)] = labels.get(key);
+            }
+            v.tableswitch((int) min, (int) max, defaultLabel, table);
+        }
+        else {
+            Label[] lookup = new Label[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                lookup[i] = labels.get(keys[i]);
+            }
+            v.lookupswitch(defaultLabel, keys, lookup);
+        }
     }
 
     private StackValue generateWhenCondition(Type subjectType, int subjectLocal, JetWhenCondition condition) {
@@ -395,6 +395,9 @@ public class FunctionCodegen extends GenerationStateAware {
                                 : JvmStdlibNames.FLAG_FORCE_OPEN_BIT;
             }
             kotlinFlags |= DescriptorKindUtils.kindToFlags(functionDescriptor.getKind());
+            if (((SimpleFunctionDescriptor) functionDescriptor).isInline()) {
+                kotlinFlags |= JvmStdlibNames.FLAG_INLINE_BIT;
+            }
             //noinspection ConstantConditions
             aw.writeFlags(kotlinFlags);
             aw.writeTypeParameters(jvmSignature.getKotlinTypeParameter());
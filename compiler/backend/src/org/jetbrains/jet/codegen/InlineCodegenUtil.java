@@ -0,0 +1,307 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.Attribute;
+import org.jetbrains.asm4.ByteVector;
+import org.jetbrains.asm4.ClassWriter;
+import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.psi.*;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.calls.model.*;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+import org.jetbrains.jet.lexer.JetTokens;
+
+import static org.jetbrains.jet.lang.resolve.BindingContextUtils.descriptorToDeclaration;
+
+/**
+ * Decides which calls of inline functions can be replaced with the bodies of these functions, and which function literals
+ * passed to them can be generated in place of the calls of the corresponding parameters.
+ *
+ * Only top-level functions declared in the sources being compiled are inlined: inline functions of libraries, the standard
+ * library included, are called as usual, since their bodies are only available as bytecode and there is no bytecode
+ * inliner yet. The body may not declare classes or closures,
+ * catch exceptions or reference private declarations, and may return only from statement positions, where the stack
+ * is the same as at the beginning of the body. A function literal is inlined only if the parameter it is passed to is
+ * only ever called, and the literal itself doesn't return, catch exceptions or declare classes or closures.
+ */
+public class InlineCodegenUtil {
+    private InlineCodegenUtil() {
+    }
+
+    @Nullable
+    public static JetNamedFunction getInlinableFunction(
+            @NotNull ResolvedCall<? extends CallableDescriptor> resolvedCall,
+            @NotNull BindingContext bindingContext
+    ) {
+        CallableDescriptor descriptor = resolvedCall.getResultingDescriptor().getOriginal();
+        if (!(descriptor instanceof SimpleFunctionDescriptor) || !((SimpleFunctionDescriptor) descriptor).isInline()) {
+            return null;
+        }
+        if (!(descriptor.getContainingDeclaration() instanceof NamespaceDescriptor)) {
+            return null;
+        }
+        for (ResolvedValueArgument argument : resolvedCall.getValueArgumentsByIndex()) {
+            if (argument instanceof DefaultValueArgument) {
+                return null;
+            }
+        }
+
+        PsiElement declaration = descriptorToDeclaration(bindingContext, descriptor);
+        if (!(declaration instanceof JetNamedFunction)) {
+            return null;
+        }
+        JetNamedFunction function = (JetNamedFunction) declaration;
+        JetExpression body = function.getBodyExpression();
+        if (body == null) {
+            return null;
+        }
+
+        InlinabilityChecker checker = new InlinabilityChecker(body, bindingContext);
+        body.accept(checker);
+        return checker.inlinable ? function : null;
+    }
+
+    @Nullable
+    public static JetFunctionLiteral getInlinableFunctionLiteral(
+            @NotNull ResolvedValueArgument argument,
+            @NotNull ValueParameterDescriptor parameter,
+            @NotNull JetNamedFunction function,
+            @NotNull BindingContext bindingContext
+    ) {
+        if (!(argument instanceof ExpressionValueArgument)) {
+            return null;
+        }
+        ValueArgument valueArgument = ((ExpressionValueArgument) argument).getValueArgument();
+        JetExpression expression = valueArgument != null ? valueArgument.getArgumentExpression() : null;
+        if (!(expression instanceof JetFunctionLiteralExpression)) {
+            return null;
+        }
+        if (!KotlinBuiltIns.getInstance().isFunctionType(parameter.getType())) {
+            return null;
+        }
+
+        JetFunctionLiteral literal = ((JetFunctionLiteralExpression) expression).getFunctionLiteral();
+        JetExpression literalBody = literal.getBodyExpression();
+        if (literalBody == null) {
+            return null;
+        }
+        InlinabilityChecker checker = new InlinabilityChecker(null, bindingContext);
+        literalBody.accept(checker);
+        if (!checker.inlinable) {
+            return null;
+        }
+
+        ParameterUsageChecker usageChecker = new ParameterUsageChecker(parameter, bindingContext);
+        //noinspection ConstantConditions
+        function.getBodyExpression().accept(usageChecker);
+        return usageChecker.onlyCalled ? literal : null;
+    }
+
+    /**
+     * Class whose bodies of inline functions are generated in place of their calls: the namespace part of the file
+     * declaring the function
+     */
+    @NotNull
+    public static String getInlinedFromClassName(@NotNull JetNamedFunction function) {
+        return NamespaceCodegen.getNamespacePartInternalName((JetFile) function.getContainingFile());
+    }
+
+    /**
+     * Names a class some of whose inline functions have been inlined into the method. The name is written as a class
+     * constant, so that build tools looking for dependencies in the constant pool recompile the method when the bodies
+     * of these functions change. The JVM ignores attributes it doesn't know.
+     */
+    public static class InlinedFromAttribute extends Attribute {
+        public static final String NAME = "KotlinInlinedFrom";
+
+        private final String className;
+
+        public InlinedFromAttribute(@NotNull String className) {
+            super(NAME);
+            this.className = className;
+        }
+
+        @Override
+        protected ByteVector write(ClassWriter cw, byte[] code, int len, int maxStack, int maxLocals) {
+            return new ByteVector().putShort(cw.newClass(className));
+        }
+    }
+
+    @Nullable
+    private static DeclarationDescriptor getReferencedDescriptor(
+            @NotNull JetSimpleNameExpression expression,
+            @NotNull BindingContext bindingContext
+    ) {
+        ResolvedCall<? extends CallableDescriptor> resolvedCall = bindingContext.get(BindingContext.RESOLVED_CALL, expression);
+        if (resolvedCall instanceof VariableAsFunctionResolvedCall) {
+            return ((VariableAsFunctionResolvedCall) resolvedCall).getVariableCall().getResultingDescriptor();
+        }
+        if (resolvedCall != null) {
+            return resolvedCall.getResultingDescriptor();
+        }
+        return bindingContext.get(BindingContext.REFERENCE_TARGET, expression);
+    }
+
+    private static boolean isInStatementPosition(@NotNull JetReturnExpression expression, @NotNull JetExpression body) {
+        PsiElement element = expression;
+        while (element != body) {
+            PsiElement parent = element.getParent();
+            if (parent instanceof JetContainerNode) {
+                PsiElement container = parent.getParent();
+                if (container instanceof JetIfExpression) {
+                    JetIfExpression ifExpression = (JetIfExpression) container;
+                    if (element != ifExpression.getThen() && element != ifExpression.getElse()) {
+                        return false;
+                    }
+                }
+                else if (!(container instanceof JetLoopExpression) || element != ((JetLoopExpression) container).getBody()) {
+                    return false;
+                }
+                parent = container;
+            }
+            else if (parent instanceof JetWhenEntry) {
+                if (element != ((JetWhenEntry) parent).getExpression()) {
+                    return false;
+                }
+                parent = parent.getParent();
+            }
+            else if (parent instanceof JetProperty) {
+                if (element != ((JetProperty) parent).getInitializer()) {
+                    return false;
+                }
+            }
+            else if (parent instanceof JetBinaryExpression) {
+                JetBinaryExpression binaryExpression = (JetBinaryExpression) parent;
+                if (binaryExpression.getOperationToken() != JetTokens.ELVIS || element != binaryExpression.getRight()) {
+                    return false;
+                }
+            }
+            else if (!(parent instanceof JetBlockExpression)) {
+                return false;
+            }
+            element = parent;
+        }
+        return true;
+    }
+
+    private static class InlinabilityChecker extends JetTreeVisitorVoid {
+        @Nullable
+        private final JetExpression functionBody;
+        private final BindingContext bindingContext;
+        private boolean inlinable = true;
+
+        // functionBody is null for function literals, which may not return at all
+        private InlinabilityChecker(@Nullable JetExpression functionBody, @NotNull BindingContext bindingContext) {
+            this.functionBody = functionBody;
+            this.bindingContext = bindingContext;
+        }
+
+        @Override
+        public void visitElement(PsiElement element) {
+            if (inlinable) {
+                super.visitElement(element);
+            }
+        }
+
+        @Override
+        public void visitReturnExpression(JetReturnExpression expression) {
+            if (functionBody == null || !isInStatementPosition(expression, functionBody)) {
+                inlinable = false;
+                return;
+            }
+            super.visitReturnExpression(expression);
+        }
+
+        @Override
+        public void visitSimpleNameExpression(JetSimpleNameExpression expression) {
+            if (functionBody != null) {
+                DeclarationDescriptor descriptor = getReferencedDescriptor(expression, bindingContext);
+                if (descriptor instanceof DeclarationDescriptorWithVisibility &&
+                    ((DeclarationDescriptorWithVisibility) descriptor).getVisibility() == Visibilities.PRIVATE) {
+                    inlinable = false;
+                    return;
+                }
+            }
+            super.visitSimpleNameExpression(expression);
+        }
+
+        @Override
+        public void visitTryExpression(JetTryExpression expression) {
+            inlinable = false;
+        }
+
+        @Override
+        public void visitFunctionLiteralExpression(JetFunctionLiteralExpression expression) {
+            inlinable = false;
+        }
+
+        @Override
+        public void visitObjectLiteralExpression(JetObjectLiteralExpression expression) {
+            inlinable = false;
+        }
+
+        @Override
+        public void visitNamedFunction(JetNamedFunction function) {
+            inlinable = false;
+        }
+
+        @Override
+        public void visitClass(JetClass klass) {
+            inlinable = false;
+        }
+
+        @Override
+        public void visitObjectDeclaration(JetObjectDeclaration declaration) {
+            inlinable = false;
+        }
+    }
+
+    private static class ParameterUsageChecker extends JetTreeVisitorVoid {
+        private final ValueParameterDescriptor parameter;
+        private final BindingContext bindingContext;
+        private boolean onlyCalled = true;
+
+        private ParameterUsageChecker(@NotNull ValueParameterDescriptor parameter, @NotNull BindingContext bindingContext) {
+            this.parameter = parameter;
+            this.bindingContext = bindingContext;
+        }
+
+        @Override
+        public void visitElement(PsiElement element) {
+            if (onlyCalled) {
+                super.visitElement(element);
+            }
+        }
+
+        @Override
+        public void visitSimpleNameExpression(JetSimpleNameExpression expression) {
+            if (getReferencedDescriptor(expression, bindingContext) == parameter) {
+                PsiElement parent = expression.getParent();
+                boolean isCallee = parent instanceof JetCallExpression && ((JetCallExpression) parent).getCalleeExpression() == expression;
+                if (!isCallee || !(bindingContext.get(BindingContext.RESOLVED_CALL, expression) instanceof VariableAsFunctionResolvedCall)) {
+                    onlyCalled = false;
+                    return;
+                }
+            }
+            super.visitSimpleNameExpression(expression);
+        }
+    }
+}
@@ -16,21 +16,25 @@
 
 package org.jetbrains.jet.codegen;
 
-import com.intellij.openapi.util.Pair;
+import com.google.common.collect.Lists;
 import com.intellij.util.containers.MultiMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.codegen.state.GenerationState;
-import org.jetbrains.jet.lang.descriptors.ScriptDescriptor;
 import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.psi.JetPsiUtil;
 import org.jetbrains.jet.lang.psi.JetScript;
 import org.jetbrains.jet.lang.resolve.ScriptNameUtil;
 import org.jetbrains.jet.lang.resolve.java.JvmClassName;
 import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.utils.ExceptionUtils;
 
 import java.util.Collection;
-import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.jetbrains.jet.codegen.binding.CodegenBinding.registerClassNameForScript;
 
@@ -48,7 +52,7 @@ public class KotlinCodegenFacade {
             }
         }
 
-        state.getScriptCodegen().registerEarlierScripts(Collections.<Pair<ScriptDescriptor, JvmClassName>>emptyList());
+        state.getScriptCodegen().setEarlierScripts(null);
 
         state.beforeCompile();
 
@@ -58,11 +62,63 @@ public class KotlinCodegenFacade {
             namespaceGrouping.putValue(JetPsiUtil.getFQName(file), file);
         }
 
+        if (state.isParallelCodegen()) {
+            generateNamespacesInParallel(state, namespaceGrouping, errorHandler);
+            return;
+        }
+
         for (Map.Entry<FqName, Collection<JetFile>> entry : namespaceGrouping.entrySet()) {
             generateNamespace(state, entry.getKey(), entry.getValue(), errorHandler);
         }
     }
 
+    private static void generateNamespacesInParallel(
+            @NotNull GenerationState state,
+            @NotNull MultiMap<FqName, JetFile> namespaceGrouping,
+            @NotNull final CompilationErrorHandler errorHandler
+    ) {
+        final ClassFileFactory factory = state.getFactory();
+
+        List<NamespaceCodegen> codegens = Lists.newArrayList();
+        for (Map.Entry<FqName, Collection<JetFile>> entry : namespaceGrouping.entrySet()) {
+            codegens.add(factory.forNamespace(entry.getKey(), entry.getValue()));
+        }
+
+        int threadCount = Math.min(codegens.size(), Runtime.getRuntime().availableProcessors());
+        if (threadCount <= 1) {
+            for (NamespaceCodegen codegen : codegens) {
+                codegen.generate(errorHandler);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<ClassFileFactory.CollectedOutputs>> results = Lists.newArrayList();
+            for (final NamespaceCodegen codegen : codegens) {
+                results.add(executor.submit(new Callable<ClassFileFactory.CollectedOutputs>() {
+                    @Override
+                    public ClassFileFactory.CollectedOutputs call() {
+                        return factory.collectOutputs(new Runnable() {
+                            @Override
+                            public void run() {
+                                codegen.generate(errorHandler);
+                            }
+                        });
+                    }
+                }));
+            }
+
+            // Register outputs in the order of namespaces, as the sequential mode does
+            for (Future<ClassFileFactory.CollectedOutputs> result : results) {
+                factory.registerCollectedOutputs(ExceptionUtils.getResult(result));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     public static void generateNamespace(
             @NotNull GenerationState state,
             @NotNull FqName fqName,
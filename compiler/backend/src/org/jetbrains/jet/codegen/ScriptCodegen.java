@@ -16,9 +16,8 @@
 
 package org.jetbrains.jet.codegen;
 
-import com.google.common.collect.Lists;
-import com.intellij.openapi.util.Pair;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.asm4.MethodVisitor;
 import org.jetbrains.asm4.Type;
 import org.jetbrains.asm4.commons.InstructionAdapter;
@@ -37,18 +36,22 @@ import org.jetbrains.jet.lang.resolve.java.JvmClassName;
 
 import javax.inject.Inject;
 import java.util.Collections;
-import java.util.List;
+import java.util.Map;
 
 import static org.jetbrains.asm4.Opcodes.*;
 import static org.jetbrains.jet.codegen.binding.CodegenBinding.*;
-import static org.jetbrains.jet.lang.resolve.java.AsmTypeConstants.OBJECT_TYPE;
 
 public class ScriptCodegen extends MemberCodegen {
 
+    public static final String EARLIER_SCRIPTS_FIELD_NAME = "earlierScripts$";
+    public static final Type EARLIER_SCRIPTS_TYPE = Type.getObjectType("java/util/List");
+
     @NotNull
     private ClassFileFactory classFileFactory;
 
-    private List<ScriptDescriptor> earlierScripts;
+    // Positions of the earlier REPL lines in the list taken by the constructor, null if the script is not a REPL line
+    @Nullable
+    private Map<ScriptDescriptor, Integer> earlierScriptIndices;
     private Method scriptConstructorMethod;
 
     public ScriptCodegen(@NotNull GenerationState state) {
@@ -88,8 +91,7 @@ public class ScriptCodegen extends MemberCodegen {
         genMembers(scriptDeclaration, context, classBuilder);
         genFieldsForParameters(scriptDescriptor, classBuilder);
         genConstructor(scriptDeclaration, scriptDescriptor, classDescriptorForScript, classBuilder,
-                       context.intoFunction(scriptDescriptor.getScriptCodeDescriptor()),
-                       earlierScripts);
+                       context.intoFunction(scriptDescriptor.getScriptCodeDescriptor()));
 
         classBuilder.done();
     }
@@ -99,16 +101,16 @@ public class ScriptCodegen extends MemberCodegen {
             @NotNull ScriptDescriptor scriptDescriptor,
             @NotNull ClassDescriptor classDescriptorForScript,
             @NotNull ClassBuilder classBuilder,
-            @NotNull CodegenContext context,
-            @NotNull List<ScriptDescriptor> importedScripts
+            @NotNull CodegenContext context
     ) {
+        boolean isReplLine = earlierScriptIndices != null;
 
         Type blockType = typeMapper.mapType(scriptDescriptor.getReturnType());
 
         classBuilder.newField(null, ACC_PUBLIC | ACC_FINAL, ScriptNameUtil.LAST_EXPRESSION_VALUE_FIELD_NAME,
                               blockType.getDescriptor(), null, null);
 
-        JvmMethodSignature jvmSignature = typeMapper.mapScriptSignature(scriptDescriptor, importedScripts);
+        JvmMethodSignature jvmSignature = typeMapper.mapScriptSignature(scriptDescriptor, isReplLine);
 
         state.getScriptCodegen().setScriptConstructorMethod(jvmSignature.getAsmMethod());
 
@@ -130,34 +132,25 @@ public class ScriptCodegen extends MemberCodegen {
 
         FrameMap frameMap = context.prepareFrame(typeMapper);
 
-        for (ScriptDescriptor importedScript : importedScripts) {
-            frameMap.enter(importedScript, OBJECT_TYPE);
+        if (isReplLine) {
+            frameMap.enterTemp(EARLIER_SCRIPTS_TYPE);
         }
 
         Type[] argTypes = jvmSignature.getAsmMethod().getArgumentTypes();
-        int add = 0;
+        int add = isReplLine ? 1 : 0;
 
         for (int i = 0; i < scriptDescriptor.getValueParameters().size(); i++) {
             ValueParameterDescriptor parameter = scriptDescriptor.getValueParameters().get(i);
             frameMap.enter(parameter, argTypes[i + add]);
         }
 
-        ImplementationBodyCodegen.generateInitializers(
-                new ExpressionCodegen(instructionAdapter, frameMap, Type.VOID_TYPE, context, state),
-                instructionAdapter,
-                scriptDeclaration.getDeclarations(),
-                bindingContext,
-                state);
-
         int offset = 1;
 
-        for (ScriptDescriptor earlierScript : importedScripts) {
-            JvmClassName earlierClassName = classNameForScriptDescriptor(bindingContext, earlierScript);
+        if (isReplLine) {
             instructionAdapter.load(0, className.getAsmType());
-            instructionAdapter.load(offset, earlierClassName.getAsmType());
-            offset += earlierClassName.getAsmType().getSize();
-            instructionAdapter.putfield(className.getInternalName(), getScriptFieldName(earlierScript),
-                                        earlierClassName.getAsmType().getDescriptor());
+            instructionAdapter.load(offset, EARLIER_SCRIPTS_TYPE);
+            offset += EARLIER_SCRIPTS_TYPE.getSize();
+            instructionAdapter.putfield(className.getInternalName(), EARLIER_SCRIPTS_FIELD_NAME, EARLIER_SCRIPTS_TYPE.getDescriptor());
         }
 
         for (ValueParameterDescriptor parameter : scriptDescriptor.getValueParameters()) {
@@ -168,6 +161,14 @@ public class ScriptCodegen extends MemberCodegen {
             instructionAdapter.putfield(className.getInternalName(), parameter.getName().getIdentifier(), parameterType.getDescriptor());
         }
 
+        // Initializers may refer to earlier lines and parameters, so the fields are assigned first
+        ImplementationBodyCodegen.generateInitializers(
+                new ExpressionCodegen(instructionAdapter, frameMap, Type.VOID_TYPE, context, state),
+                instructionAdapter,
+                scriptDeclaration.getDeclarations(),
+                bindingContext,
+                state);
+
         StackValue stackValue =
                 new ExpressionCodegen(mv, frameMap, Type.VOID_TYPE, context, state).gen(scriptDeclaration.getBlockExpression());
         if (stackValue.type != Type.VOID_TYPE) {
@@ -182,11 +183,9 @@ public class ScriptCodegen extends MemberCodegen {
     }
 
     private void genFieldsForParameters(@NotNull ScriptDescriptor script, @NotNull ClassBuilder classBuilder) {
-        for (ScriptDescriptor earlierScript : earlierScripts) {
-            JvmClassName earlierClassName;
-            earlierClassName = classNameForScriptDescriptor(bindingContext, earlierScript);
+        if (earlierScriptIndices != null) {
             int access = ACC_PRIVATE | ACC_FINAL;
-            classBuilder.newField(null, access, getScriptFieldName(earlierScript), earlierClassName.getDescriptor(), null, null);
+            classBuilder.newField(null, access, EARLIER_SCRIPTS_FIELD_NAME, EARLIER_SCRIPTS_TYPE.getDescriptor(), null, null);
         }
 
         for (ValueParameterDescriptor parameter : script.getValueParameters()) {
@@ -202,32 +201,32 @@ public class ScriptCodegen extends MemberCodegen {
         }
     }
 
-    public void registerEarlierScripts(List<Pair<ScriptDescriptor, JvmClassName>> earlierScripts) {
-        for (Pair<ScriptDescriptor, JvmClassName> t : earlierScripts) {
-            ScriptDescriptor earlierDescriptor = t.first;
-            JvmClassName earlierClassName = t.second;
-
-            registerClassNameForScript(state.getBindingTrace(), earlierDescriptor, earlierClassName);
-        }
-
-        List<ScriptDescriptor> earlierScriptDescriptors = Lists.newArrayList();
-        for (Pair<ScriptDescriptor, JvmClassName> t : earlierScripts) {
-            ScriptDescriptor earlierDescriptor = t.first;
-            earlierScriptDescriptors.add(earlierDescriptor);
-        }
-        this.earlierScripts = earlierScriptDescriptors;
+    /**
+     * @param earlierScriptIndices positions of the instances of the earlier REPL lines in the list passed to the constructor
+     *                             of the line being compiled, or null if the script is not a REPL line.
+     *                             The class names of the earlier lines must already be recorded in the binding context.
+     */
+    public void setEarlierScripts(@Nullable Map<ScriptDescriptor, Integer> earlierScriptIndices) {
+        this.earlierScriptIndices = earlierScriptIndices;
     }
 
-    protected int getScriptIndex(@NotNull ScriptDescriptor scriptDescriptor) {
-        int index = earlierScripts.indexOf(scriptDescriptor);
-        if (index < 0) {
-            throw new IllegalStateException("Unregistered script: " + scriptDescriptor);
+    /**
+     * Replaces the instance of the current script on the stack with the instance of an earlier REPL line
+     */
+    public void putEarlierScript(
+            @NotNull ScriptDescriptor earlierScript,
+            @NotNull JvmClassName currentScriptClassName,
+            @NotNull InstructionAdapter v
+    ) {
+        Integer index = earlierScriptIndices != null ? earlierScriptIndices.get(earlierScript) : null;
+        if (index == null) {
+            throw new IllegalStateException("Unregistered script: " + earlierScript);
         }
-        return index + 1;
-    }
-
-    public String getScriptFieldName(@NotNull ScriptDescriptor scriptDescriptor) {
-        return "script$" + getScriptIndex(scriptDescriptor);
+        JvmClassName earlierClassName = classNameForScriptDescriptor(bindingContext, earlierScript);
+        v.getfield(currentScriptClassName.getInternalName(), EARLIER_SCRIPTS_FIELD_NAME, EARLIER_SCRIPTS_TYPE.getDescriptor());
+        v.iconst(index);
+        v.invokeinterface(EARLIER_SCRIPTS_TYPE.getInternalName(), "get", "(I)Ljava/lang/Object;");
+        v.checkcast(earlierClassName.getAsmType());
     }
 
     public void setScriptConstructorMethod(Method scriptConstructorMethod) {
@@ -241,10 +240,10 @@ public class ScriptCodegen extends MemberCodegen {
     public void compileScript(
             @NotNull JetScript script,
             @NotNull JvmClassName className,
-            @NotNull List<Pair<ScriptDescriptor, JvmClassName>> earlierScripts,
+            @NotNull Map<ScriptDescriptor, Integer> earlierScriptIndices,
             @NotNull CompilationErrorHandler errorHandler
     ) {
-        registerEarlierScripts(earlierScripts);
+        setEarlierScripts(earlierScriptIndices);
         registerClassNameForScript(state.getBindingTrace(), script, className);
 
         state.beforeCompile();
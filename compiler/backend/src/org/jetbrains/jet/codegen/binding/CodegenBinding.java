@@ -373,7 +373,8 @@ public class CodegenBinding {
         if (!(descriptor instanceof VariableDescriptor) || descriptor instanceof PropertyDescriptor) return false;
         VariableDescriptor variableDescriptor = (VariableDescriptor) descriptor;
         return Boolean.TRUE.equals(bindingContext.get(CAPTURED_IN_CLOSURE, variableDescriptor)) &&
-               variableDescriptor.isVar();
+               variableDescriptor.isVar() &&
+               !Boolean.TRUE.equals(bindingContext.get(NOT_MODIFIED_AFTER_CAPTURE, variableDescriptor));
     }
 
     public static boolean hasThis0(BindingContext bindingContext, ClassDescriptor classDescriptor) {
@@ -20,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.asm4.Type;
 import org.jetbrains.jet.codegen.*;
+import org.jetbrains.jet.codegen.binding.CalculatedClosure;
 import org.jetbrains.jet.codegen.binding.CodegenBinding;
 import org.jetbrains.jet.codegen.binding.MutableClosure;
 import org.jetbrains.jet.codegen.state.GenerationState;
@@ -27,6 +28,8 @@ import org.jetbrains.jet.codegen.state.JetTypeMapper;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
 import org.jetbrains.jet.lang.descriptors.impl.ConstructorDescriptorImpl;
+import org.jetbrains.jet.lang.resolve.java.JvmAbi;
+import org.jetbrains.jet.lang.resolve.java.JvmClassName;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -283,6 +286,13 @@ public abstract class CodegenContext {
                 return result == null ? innerValue : StackValue.composed(result, innerValue);
             }
 
+            if (isLocalNamedFun(d)) {
+                StackValue instance = getConstLocalFunctionInstance((FunctionDescriptor) d, state);
+                if (instance != null) {
+                    return instance;
+                }
+            }
+
             for (LocalLookup.LocalLookupCase aCase : LocalLookup.LocalLookupCase.values()) {
                 if (aCase.isCase(d, state)) {
                     StackValue innerValue = aCase.innerValue(d, enclosingLocalLookup, state, closure, state.getBindingContext().get(FQN, getThisDescriptor()));
@@ -302,6 +312,26 @@ public abstract class CodegenContext {
         return parentContext != null ? parentContext.lookupInContext(d, result, state, ignoreNoOuter) : null;
     }
 
+    /*
+     * A local function which captures nothing has a single instance, so closures using it don't need to capture it.
+     * While the function itself is being generated, it still may turn out to capture something
+     */
+    @Nullable
+    private StackValue getConstLocalFunctionInstance(@NotNull FunctionDescriptor d, @NotNull GenerationState state) {
+        ClassDescriptor classDescriptor = state.getBindingContext().get(CLASS_FOR_FUNCTION, d);
+        if (classDescriptor == null || findParentContextWithDescriptor(classDescriptor) != null) {
+            return null;
+        }
+
+        //noinspection SuspiciousMethodCalls
+        CalculatedClosure localFunctionClosure = state.getBindingContext().get(CLOSURE, classDescriptor);
+        JvmClassName className = state.getBindingContext().get(FQN, classDescriptor);
+        if (localFunctionClosure == null || className == null || !CodegenUtil.isConst(localFunctionClosure)) {
+            return null;
+        }
+        return StackValue.field(className.getAsmType(), className, JvmAbi.INSTANCE_FIELD, true);
+    }
+
     @NotNull
     public Map<DeclarationDescriptor, DeclarationDescriptor> getAccessors() {
         return accessors == null ? Collections.<DeclarationDescriptor, DeclarationDescriptor>emptyMap() : accessors;
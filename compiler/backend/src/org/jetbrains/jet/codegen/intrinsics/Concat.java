@@ -43,9 +43,7 @@ public class Concat implements IntrinsicMethod {
             @NotNull GenerationState state
     ) {
         if (receiver == null || receiver == StackValue.none()) {                                                     // LHS + RHS
-            genStringBuilderConstructor(v);
-            codegen.invokeAppend(arguments.get(0));                                // StringBuilder(LHS)
-            codegen.invokeAppend(arguments.get(1));
+            codegen.genStringConcatenation(arguments).put(expectedType, v);
         }
         else {                                    // LHS.plus(RHS)
             receiver.put(AsmTypeConstants.OBJECT_TYPE, v);
@@ -53,10 +51,9 @@ public class Concat implements IntrinsicMethod {
             v.swap();                                                              // StringBuilder LHS
             genInvokeAppendMethod(v, expectedType);  // StringBuilder(LHS)
             codegen.invokeAppend(arguments.get(0));
+            v.invokevirtual("java/lang/StringBuilder", "toString", "()Ljava/lang/String;");
+            StackValue.onStack(AsmTypeConstants.JAVA_STRING_TYPE).put(expectedType, v);
         }
-
-        v.invokevirtual("java/lang/StringBuilder", "toString", "()Ljava/lang/String;");
-        StackValue.onStack(AsmTypeConstants.JAVA_STRING_TYPE).put(expectedType, v);
         return StackValue.onStack(expectedType);
     }
 }
@@ -28,6 +28,9 @@ import org.jetbrains.jet.lang.psi.JetExpression;
 
 import java.util.List;
 
+import static org.jetbrains.jet.codegen.AsmUtil.genInvokeAppendMethod;
+import static org.jetbrains.jet.codegen.AsmUtil.genStringBuilderConstructor;
+
 public class StringPlus implements IntrinsicMethod {
     @Override
     public StackValue generate(
@@ -39,15 +42,16 @@ public class StringPlus implements IntrinsicMethod {
             StackValue receiver,
             @NotNull GenerationState state
     ) {
+        // StringBuilder appends "null" for null references, just like Intrinsics.stringPlus() does
         if (receiver == null || receiver == StackValue.none()) {
-            codegen.gen(arguments.get(0)).put(AsmTypeConstants.JAVA_STRING_TYPE, v);
-            codegen.gen(arguments.get(1)).put(AsmTypeConstants.OBJECT_TYPE, v);
-        }
-        else {
-            receiver.put(AsmTypeConstants.JAVA_STRING_TYPE, v);
-            codegen.gen(arguments.get(0)).put(AsmTypeConstants.OBJECT_TYPE, v);
+            return codegen.genStringConcatenation(arguments);
         }
-        v.invokestatic("jet/runtime/Intrinsics", "stringPlus", "(Ljava/lang/String;Ljava/lang/Object;)Ljava/lang/String;");
+        receiver.put(AsmTypeConstants.JAVA_STRING_TYPE, v);
+        genStringBuilderConstructor(v);
+        v.swap();
+        genInvokeAppendMethod(v, AsmTypeConstants.JAVA_STRING_TYPE);
+        codegen.invokeAppend(arguments.get(0));
+        v.invokevirtual("java/lang/StringBuilder", "toString", "()Ljava/lang/String;");
         return StackValue.onStack(AsmTypeConstants.JAVA_STRING_TYPE);
     }
 }
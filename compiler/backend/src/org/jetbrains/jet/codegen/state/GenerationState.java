@@ -26,6 +26,7 @@ import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.resolve.BindingContext;
 import org.jetbrains.jet.lang.resolve.BindingTrace;
 import org.jetbrains.jet.lang.resolve.DelegatingBindingTrace;
+import org.jetbrains.jet.lang.resolve.SynchronizedBindingTrace;
 
 import java.util.List;
 
@@ -68,6 +69,8 @@ public class GenerationState {
 
     private final boolean generateDeclaredClasses;
 
+    private final boolean parallelCodegen;
+
     public GenerationState(Project project, ClassBuilderFactory builderFactory, BindingContext bindingContext, List<JetFile> files) {
         this(project, builderFactory, Progress.DEAF, bindingContext, files, BuiltinToJavaTypesMapping.ENABLED, true, false, true);
     }
@@ -82,13 +85,31 @@ public class GenerationState {
             boolean generateNotNullAssertions,
             boolean generateNotNullParamAssertions,
             boolean generateDeclaredClasses
+    ) {
+        this(project, builderFactory, progress, bindingContext, files, builtinToJavaTypesMapping, generateNotNullAssertions,
+             generateNotNullParamAssertions, generateDeclaredClasses, false);
+    }
+
+    public GenerationState(
+            @NotNull Project project,
+            @NotNull ClassBuilderFactory builderFactory,
+            @NotNull Progress progress,
+            @NotNull BindingContext bindingContext,
+            @NotNull List<JetFile> files,
+            @NotNull BuiltinToJavaTypesMapping builtinToJavaTypesMapping,
+            boolean generateNotNullAssertions,
+            boolean generateNotNullParamAssertions,
+            boolean generateDeclaredClasses,
+            boolean parallelCodegen
     ) {
         this.project = project;
         this.progress = progress;
         this.files = files;
         this.classBuilderMode = builderFactory.getClassBuilderMode();
 
-        bindingTrace = new DelegatingBindingTrace(bindingContext, "trace in GenerationState");
+        DelegatingBindingTrace trace = new DelegatingBindingTrace(bindingContext, "trace in GenerationState");
+        // Codegen records names of classes and closures lazily, so namespaces generated concurrently share the trace
+        bindingTrace = parallelCodegen ? new SynchronizedBindingTrace(trace) : trace;
         this.bindingContext = bindingTrace.getBindingContext();
 
         this.typeMapper = new JetTypeMapper(bindingTrace, builtinToJavaTypesMapping == BuiltinToJavaTypesMapping.ENABLED, classBuilderMode);
@@ -104,6 +125,7 @@ public class GenerationState {
         this.generateNotNullAssertions = generateNotNullAssertions;
         this.generateNotNullParamAssertions = generateNotNullParamAssertions;
         this.generateDeclaredClasses = generateDeclaredClasses;
+        this.parallelCodegen = parallelCodegen;
     }
 
     @NotNull
@@ -168,6 +190,10 @@ public class GenerationState {
         return generateDeclaredClasses;
     }
 
+    public boolean isParallelCodegen() {
+        return parallelCodegen;
+    }
+
     public void beforeCompile() {
         markUsed();
 
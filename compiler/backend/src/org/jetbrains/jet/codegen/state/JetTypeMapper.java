@@ -866,18 +866,16 @@ public class JetTypeMapper extends BindingTraceAware {
     }
 
     @NotNull
-    public JvmMethodSignature mapScriptSignature(@NotNull ScriptDescriptor script, @NotNull List<ScriptDescriptor> importedScripts) {
+    public JvmMethodSignature mapScriptSignature(@NotNull ScriptDescriptor script, boolean isReplLine) {
         BothSignatureWriter signatureWriter = new BothSignatureWriter(BothSignatureWriter.Mode.METHOD, false);
 
         writeFormalTypeParameters(Collections.<TypeParameterDescriptor>emptyList(), signatureWriter);
 
         signatureWriter.writeParametersStart();
 
-        for (ScriptDescriptor importedScript : importedScripts) {
+        if (isReplLine) {
             signatureWriter.writeParameterType(JvmMethodParameterKind.VALUE);
-            ClassDescriptor descriptor = bindingContext.get(CLASS_FOR_FUNCTION, importedScript);
-            assert descriptor != null;
-            mapType(descriptor.getDefaultType(), signatureWriter, JetTypeMapperMode.VALUE);
+            signatureWriter.writeAsmType(ScriptCodegen.EARLIER_SCRIPTS_TYPE, false);
             signatureWriter.writeParameterTypeEnd();
         }
 
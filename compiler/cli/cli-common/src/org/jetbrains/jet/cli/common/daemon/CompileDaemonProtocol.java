@@ -0,0 +1,210 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.common.daemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.security.Principal;
+
+/**
+ * How the compile daemon and its clients talk to each other.
+ *
+ * The daemon listens on a loopback port and announces it in the daemon file, along with a secret token every request
+ * has to start with. Only the daemon file written by the current user is trusted, which needs Java 7 to check.
+ * A request is the compiler's command line; the response is the exit code followed by everything the compiler has printed.
+ */
+public class CompileDaemonProtocol {
+    public static final int VERSION = 1;
+
+    public static final int EXIT_CODE_BAD_REQUEST = -2;
+
+    public static class DaemonAddress {
+        public final int port;
+        public final String token;
+
+        public DaemonAddress(int port, @NotNull String token) {
+            this.port = port;
+            this.token = token;
+        }
+    }
+
+    public static class Response {
+        public final int exitCode;
+        public final String output;
+
+        public Response(int exitCode, @NotNull String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+    }
+
+    /**
+     * The daemon file of the compiler in the given jar: one daemon per compiler build and user.
+     *
+     * It lives in a directory of the user's own rather than in the shared temporary directory, where anybody could
+     * create it first and announce their own port.
+     */
+    @NotNull
+    public static File getDaemonFile(@NotNull File compilerJar) {
+        String key = compilerJar.getAbsolutePath() + "@" + compilerJar.lastModified();
+        File directory = new File(System.getProperty("user.home"), ".kotlin" + File.separator + "daemon");
+        return new File(directory, "kotlin-compile-daemon-" + Integer.toHexString(key.hashCode()));
+    }
+
+    /**
+     * Creates the directory of the daemon file, accessible to the current user only
+     */
+    public static void createDaemonDirectory(@NotNull File daemonFile) throws IOException {
+        File directory = daemonFile.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create " + directory);
+        }
+        if (!isOwnedByCurrentUser(directory)) {
+            throw new IOException(directory + " is owned by another user");
+        }
+        directory.setReadable(false, false);
+        directory.setWritable(false, false);
+        directory.setExecutable(false, false);
+        if (!directory.setReadable(true, true) || !directory.setWritable(true, true) || !directory.setExecutable(true, true)) {
+            throw new IOException("Couldn't restrict access to " + directory);
+        }
+    }
+
+    public static void writeDaemonFile(@NotNull File daemonFile, @NotNull DaemonAddress address) throws IOException {
+        // Written to a temporary file first, so that clients never see a half-written one
+        File tmpFile = new File(daemonFile.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new FileOutputStream(tmpFile));
+        try {
+            // Nobody else should be able to send requests to the daemon
+            tmpFile.setReadable(false, false);
+            tmpFile.setReadable(true, true);
+            output.writeInt(VERSION);
+            output.writeInt(address.port);
+            output.writeUTF(address.token);
+        }
+        finally {
+            output.close();
+        }
+        if (!tmpFile.renameTo(daemonFile)) {
+            daemonFile.delete();
+            if (!tmpFile.renameTo(daemonFile)) {
+                throw new IOException("Couldn't write " + daemonFile);
+            }
+        }
+    }
+
+    /**
+     * @return the address from the daemon file, or null if there is no valid one or it has been written by another user
+     */
+    @Nullable
+    public static DaemonAddress readDaemonFile(@NotNull File daemonFile) {
+        if (!daemonFile.isFile() || !isOwnedByCurrentUser(daemonFile)) return null;
+        try {
+            DataInputStream input = new DataInputStream(new FileInputStream(daemonFile));
+            try {
+                if (input.readInt() != VERSION) return null;
+                int port = input.readInt();
+                return new DaemonAddress(port, input.readUTF());
+            }
+            finally {
+                input.close();
+            }
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static void writeRequest(@NotNull DataOutputStream output, @NotNull String token, @NotNull String[] args)
+            throws IOException {
+        output.writeInt(VERSION);
+        output.writeUTF(token);
+        output.writeInt(args.length);
+        for (String arg : args) {
+            output.writeUTF(arg);
+        }
+        output.flush();
+    }
+
+    /**
+     * @return the arguments of the request, or null if it doesn't come from a client of this daemon
+     */
+    @Nullable
+    public static String[] readRequest(@NotNull DataInputStream input, @NotNull String token) throws IOException {
+        if (input.readInt() != VERSION || !token.equals(input.readUTF())) return null;
+        String[] args = new String[input.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = input.readUTF();
+        }
+        return args;
+    }
+
+    public static void writeResponse(@NotNull DataOutputStream output, @NotNull Response response) throws IOException {
+        byte[] bytes = response.output.getBytes("UTF-8");
+        output.writeInt(response.exitCode);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        output.flush();
+    }
+
+    @NotNull
+    public static Response readResponse(@NotNull DataInputStream input) throws IOException {
+        int exitCode = input.readInt();
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new Response(exitCode, new String(bytes, "UTF-8"));
+    }
+
+    /**
+     * File owners are only available via java.nio.file, which appeared in Java 7. Without them the daemon files can't be
+     * trusted, so the daemon is not used at all.
+     */
+    public static boolean canCheckFileOwners() {
+        try {
+            Class.forName("java.nio.file.Files");
+            return true;
+        }
+        catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static boolean isOwnedByCurrentUser(@NotNull File file) {
+        Object owner;
+        try {
+            Class<?> filesClass = Class.forName("java.nio.file.Files");
+            Class<?> pathClass = Class.forName("java.nio.file.Path");
+            Object linkOptions = Array.newInstance(Class.forName("java.nio.file.LinkOption"), 0);
+            Object path = File.class.getMethod("toPath").invoke(file);
+            owner = filesClass.getMethod("getOwner", pathClass, linkOptions.getClass()).invoke(null, path, linkOptions);
+        }
+        catch (Exception e) {
+            // Including the ClassNotFoundException on Java 6, see canCheckFileOwners()
+            return false;
+        }
+
+        String user = System.getProperty("user.name");
+        String ownerName = ((Principal) owner).getName();
+        // Windows reports owners as DOMAIN\user
+        return ownerName.equals(user) || ownerName.endsWith("\\" + user);
+    }
+
+    private CompileDaemonProtocol() {}
+}
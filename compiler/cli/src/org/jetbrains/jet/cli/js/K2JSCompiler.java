@@ -43,6 +43,7 @@ import org.jetbrains.k2js.analyze.AnalyzerFacadeForJS;
 import org.jetbrains.k2js.config.*;
 import org.jetbrains.k2js.facade.K2JSTranslator;
 import org.jetbrains.k2js.facade.MainCallParameters;
+import org.jetbrains.k2js.generate.UnusedDeclarationsRemover;
 
 import java.io.File;
 import java.util.Arrays;
@@ -51,6 +52,7 @@ import java.util.List;
 import static org.jetbrains.jet.cli.common.ExitCode.COMPILATION_ERROR;
 import static org.jetbrains.jet.cli.common.ExitCode.OK;
 import static org.jetbrains.jet.cli.common.messages.CompilerMessageLocation.NO_LOCATION;
+import static org.jetbrains.jet.plugin.JetMainDetector.getMainFunction;
 
 public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
 
@@ -88,7 +90,8 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         }
 
         Config config = getConfig(arguments, project);
-        if (analyzeAndReportErrors(messageCollector, environmentForJS.getSourceFiles(), config)) {
+        AnalyzeExhaust exhaust = analyzeAndReportErrors(messageCollector, environmentForJS.getSourceFiles(), config);
+        if (exhaust == null) {
             return COMPILATION_ERROR;
         }
 
@@ -99,7 +102,17 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         }
 
         MainCallParameters mainCallParameters = arguments.createMainCallParameters();
-        return translateAndGenerateOutputFile(mainCallParameters, environmentForJS, config, outputFile);
+        boolean removeUnusedDeclarations = arguments.removeUnusedDeclarations;
+        if (removeUnusedDeclarations &&
+            (!mainCallParameters.shouldBeGenerated() || getMainFunction(environmentForJS.getSourceFiles()) == null)) {
+            // Everything is reachable only from main and the tests, so a library would lose all its declarations
+            messageCollector.report(CompilerMessageSeverity.WARNING,
+                                    "Unused declarations are not removed: there is no call to main to find the used ones from",
+                                    NO_LOCATION);
+            removeUnusedDeclarations = false;
+        }
+        return translateAndGenerateOutputFile(mainCallParameters, environmentForJS, exhaust, config, outputFile,
+                                              removeUnusedDeclarations, messageCollector);
     }
 
     private static void reportCompiledSourcesList(@NotNull MessageCollector messageCollector,
@@ -124,19 +137,32 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
     private static ExitCode translateAndGenerateOutputFile(
             @NotNull MainCallParameters mainCall,
             @NotNull JetCoreEnvironment environmentForJS,
+            @NotNull AnalyzeExhaust exhaust,
             @NotNull Config config,
-            @NotNull String outputFile
+            @NotNull String outputFile,
+            boolean removeUnusedDeclarations,
+            @NotNull MessageCollector messageCollector
     ) {
+        UnusedDeclarationsRemover remover;
         try {
-            K2JSTranslator.translateWithMainCallParametersAndSaveToFile(mainCall, environmentForJS.getSourceFiles(), outputFile, config);
+            remover = K2JSTranslator.translateWithMainCallParametersAndSaveToFile(mainCall, environmentForJS.getSourceFiles(),
+                                                                                 exhaust.getBindingContext(), outputFile, config,
+                                                                                 removeUnusedDeclarations);
         }
         catch (Exception e) {
             throw new RuntimeException(e);
         }
+        if (remover != null) {
+            messageCollector.report(CompilerMessageSeverity.INFO,
+                                    "Removed " + remover.getRemovedCount() + " unused declarations, " + remover.getRemovedSize() + " characters",
+                                    NO_LOCATION);
+        }
         return OK;
     }
 
-    private static boolean analyzeAndReportErrors(@NotNull MessageCollector messageCollector,
+    // returns null if there are errors
+    @Nullable
+    private static AnalyzeExhaust analyzeAndReportErrors(@NotNull MessageCollector messageCollector,
             @NotNull final List<JetFile> sources, @NotNull final Config config) {
         AnalyzerWithCompilerReport analyzerWithCompilerReport = new AnalyzerWithCompilerReport(messageCollector);
         analyzerWithCompilerReport.analyzeAndReport(new Function0<AnalyzeExhaust>() {
@@ -145,7 +171,7 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
                 return AnalyzerFacadeForJS.analyzeFiles(sources, Predicates.<PsiFile>alwaysTrue(), config);
             }
         }, sources);
-        return analyzerWithCompilerReport.hasErrors();
+        return analyzerWithCompilerReport.hasErrors() ? null : analyzerWithCompilerReport.getAnalyzeExhaust();
     }
 
     @NotNull
@@ -53,6 +53,9 @@ public class K2JSCompilerArguments extends CompilerArguments {
     @Argument(value = "main", description = "Whether a main function should be called; either 'call' or 'noCall', default 'call' (main function will be auto detected)")
     public String main;
 
+    @Argument(value = "removeUnusedDeclarations", description = "Remove the declarations which are not reachable from the main function and tests, if there is a main function")
+    public boolean removeUnusedDeclarations;
+
     @Argument(value = "help", alias = "h", description = "Show help")
     public boolean help;
 
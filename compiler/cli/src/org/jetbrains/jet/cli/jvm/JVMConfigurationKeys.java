@@ -39,4 +39,10 @@ public class JVMConfigurationKeys {
             CompilerConfigurationKey.create("generate not-null assertions");
     public static final CompilerConfigurationKey<Boolean> GENERATE_NOT_NULL_PARAMETER_ASSERTIONS =
             CompilerConfigurationKey.create("generate not-null parameter assertions");
+
+    public static final CompilerConfigurationKey<Boolean> PARALLEL_CODEGEN =
+            CompilerConfigurationKey.create("generate namespaces in parallel");
+
+    public static final CompilerConfigurationKey<Boolean> REPRODUCIBLE_JAR =
+            CompilerConfigurationKey.create("write jar reproducibly");
 }
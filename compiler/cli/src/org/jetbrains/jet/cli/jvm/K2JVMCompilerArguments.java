@@ -70,6 +70,12 @@ public class K2JVMCompilerArguments extends CompilerArguments {
     @Argument(value = "notNullParamAssertions", description = "generate not-null assertions on parameters of methods accessible from Java")
     public boolean notNullParamAssertions;
 
+    @Argument(value = "parallelCodegen", description = "generate bytecode for different namespaces in parallel")
+    public boolean parallelCodegen;
+
+    @Argument(value = "reproducibleJar", description = "sort jar entries and give them all the same time, so that the jar only depends on its contents")
+    public boolean reproducibleJar;
+
     @Argument(value = "builtins", description = "compile builtin classes (internal)")
     public boolean builtins;
 
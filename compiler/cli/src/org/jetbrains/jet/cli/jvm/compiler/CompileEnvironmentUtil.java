@@ -17,6 +17,7 @@
 package org.jetbrains.jet.cli.jvm.compiler;
 
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.Processor;
@@ -38,8 +39,8 @@ import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.utils.KotlinPaths;
 import org.jetbrains.jet.utils.PathUtil;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
@@ -47,8 +48,12 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.jar.*;
+import java.util.concurrent.Callable;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 public class CompileEnvironmentUtil {
     public static Disposable createMockDisposable() {
@@ -162,7 +167,14 @@ public class CompileEnvironmentUtil {
     }
 
     // TODO: includeRuntime should be not a flag but a path to runtime
-    public static void writeToJar(ClassFileFactory factory, OutputStream fos, @Nullable FqName mainClass, boolean includeRuntime) {
+    public static void writeToJar(
+            final ClassFileFactory factory,
+            OutputStream fos,
+            @Nullable FqName mainClass,
+            boolean includeRuntime,
+            boolean reproducible
+    ) {
+        JarWriter writer = new JarWriter(fos, reproducible);
         try {
             Manifest manifest = new Manifest();
             Attributes mainAttributes = manifest.getMainAttributes();
@@ -171,65 +183,72 @@ public class CompileEnvironmentUtil {
             if (mainClass != null) {
                 mainAttributes.putValue("Main-Class", mainClass.getFqName());
             }
-            JarOutputStream stream = new JarOutputStream(fos, manifest);
-            for (String file : factory.files()) {
-                stream.putNextEntry(new JarEntry(file));
-                stream.write(factory.asBytes(file));
+            ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+            manifest.write(manifestBytes);
+            writer.addEntry(JarFile.MANIFEST_NAME, constant(manifestBytes.toByteArray()));
+
+            List<String> files = factory.files();
+            if (reproducible) {
+                Collections.sort(files);
+            }
+            for (final String file : files) {
+                // Class files are serialized by the threads deflating them
+                writer.addEntry(file, new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() {
+                        return factory.asBytes(file);
+                    }
+                });
             }
             if (includeRuntime) {
-                writeRuntimeToJar(stream);
+                writeRuntimeToJar(writer, reproducible);
             }
-            stream.finish();
+            writer.finish();
         }
         catch (IOException e) {
             throw new CompileEnvironmentException("Failed to generate jar file", e);
         }
+        finally {
+            writer.dispose();
+        }
     }
 
-    private static void writeRuntimeToJar(final JarOutputStream stream) throws IOException {
+    private static void writeRuntimeToJar(JarWriter writer, boolean reproducible) throws IOException {
         final File unpackedRuntimePath = getUnpackedRuntimePath();
         if (unpackedRuntimePath != null) {
+            final List<File> files = new ArrayList<File>();
             FileUtil.processFilesRecursively(unpackedRuntimePath, new Processor<File>() {
                 @Override
                 public boolean process(File file) {
-                    if (file.isDirectory()) return true;
-                    String relativePath = FileUtil.getRelativePath(unpackedRuntimePath, file);
-                    try {
-                        stream.putNextEntry(new JarEntry(FileUtil.toSystemIndependentName(relativePath)));
-                        FileInputStream fis = new FileInputStream(file);
-                        try {
-                            FileUtil.copy(fis, stream);
-                        }
-                        finally {
-                            fis.close();
-                        }
-                    }
-                    catch (IOException e) {
-                        throw new RuntimeException(e);
+                    if (!file.isDirectory()) {
+                        files.add(file);
                     }
                     return true;
                 }
             });
+            if (reproducible) {
+                Collections.sort(files);
+            }
+            for (final File file : files) {
+                String relativePath = FileUtil.getRelativePath(unpackedRuntimePath, file);
+                writer.addEntry(FileUtil.toSystemIndependentName(relativePath), new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return FileUtil.loadFileBytes(file);
+                    }
+                });
+            }
         }
         else {
             File runtimeJarPath = getRuntimeJarPath();
             if (runtimeJarPath != null) {
-                JarInputStream jis = new JarInputStream(new FileInputStream(runtimeJarPath));
-                try {
-                    while (true) {
-                        JarEntry e = jis.getNextJarEntry();
-                        if (e == null) {
-                            break;
-                        }
-                        if (FileUtil.getExtension(e.getName()).equals("class")) {
-                            stream.putNextEntry(e);
-                            FileUtil.copy(jis, stream);
-                        }
+                // Runtime entries are already compressed, there's no need to inflate and deflate them again
+                writer.copyEntries(runtimeJarPath, new Condition<String>() {
+                    @Override
+                    public boolean value(String name) {
+                        return FileUtil.getExtension(name).equals("class");
                     }
-                }
-                finally {
-                    jis.close();
-                }
+                });
             }
             else {
                 throw new CompileEnvironmentException("Couldn't find runtime library");
@@ -237,6 +256,16 @@ public class CompileEnvironmentUtil {
         }
     }
 
+    @NotNull
+    private static Callable<byte[]> constant(@NotNull final byte[] bytes) {
+        return new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return bytes;
+            }
+        };
+    }
+
     public static void writeToOutputDirectory(ClassFileFactory factory, @NotNull File outputDir) {
         List<String> files = factory.files();
         for (String file : files) {
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.Condition;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a jar, deflating entries in a thread pool while the entries before them are being written. Entries are written
+ * in the order they are added. Entries of another jar can be copied compressed as they are.
+ *
+ * JarOutputStream can do neither, so the zip format is written here directly (no zip64, so at most 65535 entries).
+ */
+/*package*/ class JarWriter {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    private static final int VERSION = 20;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    // 1980-01-01 00:00:00, the earliest time the format can store
+    private static final int REPRODUCIBLE_DOS_TIME = (1 << 21) | (1 << 16);
+
+    // Number of entries being deflated at once, bounds the memory taken by the entries not written yet
+    private static final int MAX_PENDING_ENTRIES = 256;
+
+    private final OutputStream out;
+    private final boolean reproducible;
+    private final int dosTime;
+    private final ExecutorService executor;
+
+    private final Queue<Future<Entry>> pending = new ArrayDeque<Future<Entry>>();
+    private final List<Entry> written = new ArrayList<Entry>();
+    private final Set<String> names = new HashSet<String>();
+    private long offset = 0;
+
+    /**
+     * @param reproducible if true, all the entries are written with the same fixed time, so that a jar only depends on its contents
+     */
+    public JarWriter(@NotNull OutputStream out, boolean reproducible) {
+        this.out = new BufferedOutputStream(out);
+        this.reproducible = reproducible;
+        this.dosTime = reproducible ? REPRODUCIBLE_DOS_TIME : toDosTime(System.currentTimeMillis());
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "Jar writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void addEntry(@NotNull final String name, @NotNull final Callable<byte[]> content) throws IOException {
+        checkNotDuplicate(name);
+        if (pending.size() >= MAX_PENDING_ENTRIES) {
+            writePending(1);
+        }
+        pending.add(executor.submit(new Callable<Entry>() {
+            @Override
+            public Entry call() throws Exception {
+                return deflate(name, content.call());
+            }
+        }));
+    }
+
+    /**
+     * Copies the entries of the given jar, whose names satisfy the filter, without decompressing them
+     */
+    public void copyEntries(@NotNull File jar, @NotNull Condition<String> filter) throws IOException {
+        writePending(pending.size());
+
+        RandomAccessFile file = new RandomAccessFile(jar, "r");
+        try {
+            for (Entry entry : readCentralDirectory(file)) {
+                if (!filter.value(entry.name)) continue;
+                checkNotDuplicate(entry.name);
+
+                file.seek(entry.offset + 26);
+                long dataOffset = entry.offset + LOCAL_HEADER_SIZE + readShort(file) + readShort(file);
+                byte[] data = new byte[entry.compressedSize];
+                file.seek(dataOffset);
+                file.readFully(data);
+
+                int entryDosTime = reproducible ? dosTime : entry.dosTime;
+                write(new Entry(entry.name, entry.method, entryDosTime, entry.crc, entry.compressedSize, entry.size, data));
+            }
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes the remaining entries and the central directory, and flushes the output stream without closing it
+     */
+    public void finish() throws IOException {
+        try {
+            writePending(pending.size());
+            writeCentralDirectory();
+            out.flush();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops deflating the entries not written yet, if {@link #finish()} has not been called because of an error
+     */
+    public void dispose() {
+        executor.shutdownNow();
+    }
+
+    private void checkNotDuplicate(@NotNull String name) throws ZipException {
+        if (!names.add(name)) {
+            throw new ZipException("duplicate entry: " + name);
+        }
+    }
+
+    private void writePending(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            Future<Entry> future = pending.remove();
+            try {
+                write(future.get());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    @NotNull
+    private Entry deflate(@NotNull String name, @NotNull byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        // No zlib header and checksum, these are not a part of a zip entry
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+            byte[] data = compressed.toByteArray();
+            return new Entry(name, DEFLATED, dosTime, (int) crc.getValue(), data.length, bytes.length, data);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private void write(@NotNull Entry entry) throws IOException {
+        byte[] name = entry.name.getBytes("UTF-8");
+        ByteArrayOutputStream header = new ByteArrayOutputStream(LOCAL_HEADER_SIZE + name.length);
+        writeInt(header, LOCAL_HEADER_SIGNATURE);
+        writeShort(header, VERSION);
+        writeShort(header, FLAG_UTF8);
+        writeShort(header, entry.method);
+        writeInt(header, entry.dosTime);
+        writeInt(header, entry.crc);
+        writeInt(header, entry.compressedSize);
+        writeInt(header, entry.size);
+        writeShort(header, name.length);
+        writeShort(header, 0);
+        header.write(name);
+
+        long entryOffset = offset;
+        header.writeTo(out);
+        out.write(entry.data);
+        offset += header.size() + entry.data.length;
+
+        // The data is not needed any more, only the header is
+        written.add(new Entry(entry.name, entry.method, entry.dosTime, entry.crc, entry.compressedSize, entry.size, entryOffset));
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        if (written.size() > 0xFFFF) {
+            throw new ZipException("Too many entries: " + written.size());
+        }
+
+        long directoryOffset = offset;
+        ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        for (Entry entry : written) {
+            byte[] name = entry.name.getBytes("UTF-8");
+            writeInt(directory, CENTRAL_HEADER_SIGNATURE);
+            writeShort(directory, VERSION);
+            writeShort(directory, VERSION);
+            writeShort(directory, FLAG_UTF8);
+            writeShort(directory, entry.method);
+            writeInt(directory, entry.dosTime);
+            writeInt(directory, entry.crc);
+            writeInt(directory, entry.compressedSize);
+            writeInt(directory, entry.size);
+            writeShort(directory, name.length);
+            writeShort(directory, 0); // extra field length
+            writeShort(directory, 0); // comment length
+            writeShort(directory, 0); // disk number
+            writeShort(directory, 0); // internal attributes
+            writeInt(directory, 0);   // external attributes
+            writeInt(directory, (int) entry.offset);
+            directory.write(name);
+        }
+        int directorySize = directory.size();
+
+        writeInt(directory, END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        writeShort(directory, 0);
+        writeShort(directory, 0);
+        writeShort(directory, written.size());
+        writeShort(directory, written.size());
+        writeInt(directory, directorySize);
+        writeInt(directory, (int) directoryOffset);
+        writeShort(directory, 0);
+
+        directory.writeTo(out);
+        offset += directory.size();
+    }
+
+    @NotNull
+    private static List<Entry> readCentralDirectory(@NotNull RandomAccessFile file) throws IOException {
+        long endOffset = findEndOfCentralDirectory(file);
+        file.seek(endOffset + 10);
+        int count = readShort(file);
+        file.seek(endOffset + 16);
+        long directoryOffset = readInt(file) & 0xFFFFFFFFL;
+
+        List<Entry> entries = new ArrayList<Entry>(count);
+        file.seek(directoryOffset);
+        for (int i = 0; i < count; i++) {
+            if (readInt(file) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header");
+            }
+            file.skipBytes(4);
+            int flags = readShort(file);
+            int method = readShort(file);
+            int dosTime = readInt(file);
+            int crc = readInt(file);
+            int compressedSize = readInt(file);
+            int size = readInt(file);
+            int nameLength = readShort(file);
+            int extraLength = readShort(file);
+            int commentLength = readShort(file);
+            file.skipBytes(8);
+            long entryOffset = readInt(file) & 0xFFFFFFFFL;
+            byte[] name = new byte[nameLength];
+            file.readFully(name);
+            file.skipBytes(extraLength + commentLength);
+
+            if ((flags & ~(FLAG_DATA_DESCRIPTOR | FLAG_UTF8)) != 0 || (method != STORED && method != DEFLATED)) {
+                throw new ZipException("Unsupported zip entry: " + new String(name, "UTF-8"));
+            }
+            entries.add(new Entry(new String(name, "UTF-8"), method, dosTime, crc, compressedSize, size, entryOffset));
+        }
+        return entries;
+    }
+
+    private static long findEndOfCentralDirectory(@NotNull RandomAccessFile file) throws IOException {
+        // The record is followed by a comment of at most 65535 bytes
+        long minOffset = Math.max(0, file.length() - END_OF_CENTRAL_DIRECTORY_SIZE - 0xFFFF);
+        for (long offset = file.length() - END_OF_CENTRAL_DIRECTORY_SIZE; offset >= minOffset; offset--) {
+            file.seek(offset);
+            if (readInt(file) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return offset;
+            }
+        }
+        throw new ZipException("End of central directory not found");
+    }
+
+    private static int toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return REPRODUCIBLE_DOS_TIME;
+        }
+        return (year - 1980) << 25
+               | (calendar.get(Calendar.MONTH) + 1) << 21
+               | calendar.get(Calendar.DAY_OF_MONTH) << 16
+               | calendar.get(Calendar.HOUR_OF_DAY) << 11
+               | calendar.get(Calendar.MINUTE) << 5
+               | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    private static void writeShort(@NotNull ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private static void writeInt(@NotNull ByteArrayOutputStream out, int value) {
+        writeShort(out, value & 0xFFFF);
+        writeShort(out, (value >>> 16) & 0xFFFF);
+    }
+
+    private static int readShort(@NotNull RandomAccessFile file) throws IOException {
+        int low = file.readUnsignedByte();
+        int high = file.readUnsignedByte();
+        return low | high << 8;
+    }
+
+    private static int readInt(@NotNull RandomAccessFile file) throws IOException {
+        int low = readShort(file);
+        int high = readShort(file);
+        return low | high << 16;
+    }
+
+    private static class Entry {
+        private final String name;
+        private final int method;
+        private final int dosTime;
+        private final int crc;
+        private final int compressedSize;
+        private final int size;
+        // Compressed data of an entry to be written, null for an entry already written or read from the central directory
+        private final byte[] data;
+        // Offset of the local header in the jar, for an entry already written or read from the central directory
+        private final long offset;
+
+        private Entry(String name, int method, int dosTime, int crc, int compressedSize, int size, byte[] data) {
+            this(name, method, dosTime, crc, compressedSize, size, data, -1);
+        }
+
+        private Entry(String name, int method, int dosTime, int crc, int compressedSize, int size, long offset) {
+            this(name, method, dosTime, crc, compressedSize, size, null, offset);
+        }
+
+        private Entry(String name, int method, int dosTime, int crc, int compressedSize, int size, byte[] data, long offset) {
+            this.name = name;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.data = data;
+            this.offset = offset;
+        }
+    }
+}
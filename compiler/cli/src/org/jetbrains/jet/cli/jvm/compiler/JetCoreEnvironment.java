@@ -36,6 +36,7 @@ import com.intellij.psi.PsiManager;
 import com.intellij.psi.impl.compiled.ClsCustomNavigationPolicy;
 import com.intellij.psi.impl.file.impl.JavaFileManager;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.CompilerModeProvider;
 import org.jetbrains.jet.OperationModeProvider;
 import org.jetbrains.jet.asJava.JavaElementFinder;
@@ -51,6 +52,7 @@ import org.jetbrains.jet.lang.parsing.JetParserDefinition;
 import org.jetbrains.jet.lang.parsing.JetScriptDefinitionProvider;
 import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.resolve.java.JetFilesProvider;
+import org.jetbrains.jet.lang.resolve.java.classpath.ClassPathIndex;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 import org.jetbrains.jet.plugin.JetFileType;
 import org.jetbrains.jet.utils.PathUtil;
@@ -65,8 +67,11 @@ import static org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity.WARN
 public class JetCoreEnvironment {
 
     private final JavaCoreApplicationEnvironment applicationEnvironment;
+    @Nullable
+    private final SharedApplicationEnvironment sharedEnvironment;
     private final JavaCoreProjectEnvironment projectEnvironment;
     private final List<JetFile> sourceFiles = new ArrayList<JetFile>();
+    private final ClassPathIndex classPathIndex = new ClassPathIndex();
 
     private final CoreExternalAnnotationsManager annotationsManager;
 
@@ -76,20 +81,10 @@ public class JetCoreEnvironment {
         this.configuration = configuration.copy();
         this.configuration.setReadOnly(true);
 
-        this.applicationEnvironment = new JavaCoreApplicationEnvironment(parentDisposable);
-
-        // ability to get text from annotations xml files
-        applicationEnvironment.registerFileType(PlainTextFileType.INSTANCE, "xml");
-
-        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "kt");
-        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "kts");
-        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "ktm");
-        applicationEnvironment.registerFileType(JetFileType.INSTANCE, JetParserDefinition.KTSCRIPT_FILE_SUFFIX); // should be renamed to kts
-        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "jet");
-        applicationEnvironment.registerParserDefinition(new JavaParserDefinition());
-        applicationEnvironment.registerParserDefinition(new JetParserDefinition());
-
-        applicationEnvironment.getApplication().registerService(OperationModeProvider.class, new CompilerModeProvider());
+        this.sharedEnvironment = SharedApplicationEnvironment.getInstance();
+        this.applicationEnvironment = sharedEnvironment != null
+                                      ? sharedEnvironment.getApplicationEnvironment()
+                                      : createApplicationEnvironment(parentDisposable);
 
         projectEnvironment = new JavaCoreProjectEnvironment(parentDisposable, applicationEnvironment);
 
@@ -113,6 +108,7 @@ public class JetCoreEnvironment {
         annotationsManager = new CoreExternalAnnotationsManager(project.getComponent(PsiManager.class));
         project.registerService(ExternalAnnotationsManager.class, annotationsManager);
 
+        project.registerService(ClassPathIndex.class, classPathIndex);
         for (File path : configuration.getList(JVMConfigurationKeys.CLASSPATH_KEY)) {
             addToClasspath(path);
         }
@@ -125,7 +121,27 @@ public class JetCoreEnvironment {
 
         JetScriptDefinitionProvider.getInstance(project).addScriptDefinitions(configuration.getList(CommonConfigurationKeys.SCRIPT_DEFINITIONS_KEY));
 
-        KotlinBuiltIns.initialize(project);
+        // the environment is disposed when the compilation is over, the built-ins stay
+        KotlinBuiltIns.initialize(project, true);
+    }
+
+    @NotNull
+    /*package*/ static JavaCoreApplicationEnvironment createApplicationEnvironment(@NotNull Disposable parentDisposable) {
+        JavaCoreApplicationEnvironment applicationEnvironment = new JavaCoreApplicationEnvironment(parentDisposable);
+
+        // ability to get text from annotations xml files
+        applicationEnvironment.registerFileType(PlainTextFileType.INSTANCE, "xml");
+
+        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "kt");
+        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "kts");
+        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "ktm");
+        applicationEnvironment.registerFileType(JetFileType.INSTANCE, JetParserDefinition.KTSCRIPT_FILE_SUFFIX); // should be renamed to kts
+        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "jet");
+        applicationEnvironment.registerParserDefinition(new JavaParserDefinition());
+        applicationEnvironment.registerParserDefinition(new JetParserDefinition());
+
+        applicationEnvironment.getApplication().registerService(OperationModeProvider.class, new CompilerModeProvider());
+        return applicationEnvironment;
     }
 
     public CompilerConfiguration getConfiguration() {
@@ -147,6 +163,9 @@ public class JetCoreEnvironment {
             report(WARNING, "Annotations path entry points to a non-existent location: " + path);
             return;
         }
+        if (path.isFile() && sharedEnvironment != null) {
+            sharedEnvironment.jarOpened(path);
+        }
         annotationsManager.addExternalAnnotationsRoot(PathUtil.jarFileOrDirectoryToVirtualFile(path));
     }
 
@@ -190,12 +209,16 @@ public class JetCoreEnvironment {
 
     private void addToClasspath(File path) {
         if (path.isFile()) {
+            if (sharedEnvironment != null) {
+                sharedEnvironment.jarOpened(path);
+            }
             VirtualFile jarFile = applicationEnvironment.getJarFileSystem().findFileByPath(path + "!/");
             if (jarFile == null) {
                 report(WARNING, "Classpath entry points to a file that is not a JAR archive: " + path);
                 return;
             }
             projectEnvironment.addJarToClassPath(path);
+            classPathIndex.addRoot(path);
         }
         else {
             VirtualFile root = applicationEnvironment.getLocalFileSystem().findFileByPath(path.getAbsolutePath());
@@ -204,6 +227,7 @@ public class JetCoreEnvironment {
                 return;
             }
             projectEnvironment.addSourcesToClasspath(root);
+            classPathIndex.addRoot(path);
         }
     }
 
@@ -137,7 +137,8 @@ public class KotlinToJVMBytecodeCompiler {
                 FileOutputStream outputStream = null;
                 try {
                     outputStream = new FileOutputStream(path);
-                    CompileEnvironmentUtil.writeToJar(moduleFactory, outputStream, null, jarRuntime);
+                    CompileEnvironmentUtil.writeToJar(moduleFactory, outputStream, null, jarRuntime,
+                                                      configuration.get(JVMConfigurationKeys.REPRODUCIBLE_JAR, false));
                     outputStream.close();
                 }
                 catch (FileNotFoundException e) {
@@ -190,7 +191,8 @@ public class KotlinToJVMBytecodeCompiler {
                 FileOutputStream os = null;
                 try {
                     os = new FileOutputStream(jar);
-                    CompileEnvironmentUtil.writeToJar(factory, new FileOutputStream(jar), mainClass, includeRuntime);
+                    CompileEnvironmentUtil.writeToJar(factory, os, mainClass, includeRuntime,
+                                                      environment.getConfiguration().get(JVMConfigurationKeys.REPRODUCIBLE_JAR, false));
                     os.close();
                 }
                 catch (FileNotFoundException e) {
@@ -356,7 +358,8 @@ public class KotlinToJVMBytecodeCompiler {
                 configuration.get(JVMConfigurationKeys.BUILTIN_TO_JAVA_TYPES_MAPPING_KEY, BuiltinToJavaTypesMapping.ENABLED),
                 configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_ASSERTIONS, false),
                 configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_PARAMETER_ASSERTIONS, false),
-                /*generateDeclaredClasses = */true
+                /*generateDeclaredClasses = */true,
+                configuration.get(JVMConfigurationKeys.PARALLEL_CODEGEN, false)
         );
         KotlinCodegenFacade.compileCorrectFiles(generationState, CompilationErrorHandler.THROW_EXCEPTION);
 
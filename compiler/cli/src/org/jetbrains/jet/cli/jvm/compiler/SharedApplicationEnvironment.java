@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.core.JavaCoreApplicationEnvironment;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An application environment that outlives a single {@link JetCoreEnvironment}, so that the jar file system
+ * (with the parsed directories of all the jars on the classpath), file types and parser definitions are reused
+ * by the following compilations in the same process. Only enabled by long-living processes like the compile daemon.
+ *
+ * The jar file system never notices changes in the jars it has opened, so the environment is dropped as soon as any
+ * of them changes on disk, see {@link #dropIfJarsChanged()}.
+ */
+public class SharedApplicationEnvironment {
+    private static boolean enabled = false;
+    private static SharedApplicationEnvironment instance = null;
+
+    public static synchronized void setEnabled(boolean enabled) {
+        SharedApplicationEnvironment.enabled = enabled;
+        if (!enabled) {
+            drop();
+        }
+    }
+
+    /**
+     * @return the shared environment, creating it if needed, or null if sharing is not enabled
+     */
+    @Nullable
+    public static synchronized SharedApplicationEnvironment getInstance() {
+        if (enabled && instance == null) {
+            instance = new SharedApplicationEnvironment();
+        }
+        return instance;
+    }
+
+    public static synchronized void drop() {
+        if (instance != null) {
+            Disposer.dispose(instance.disposable);
+            instance = null;
+        }
+    }
+
+    public static synchronized void dropIfJarsChanged() {
+        if (instance != null && !instance.areJarsUpToDate()) {
+            drop();
+        }
+    }
+
+    private final Disposable disposable = CompileEnvironmentUtil.createMockDisposable();
+    private final JavaCoreApplicationEnvironment applicationEnvironment;
+    // Jar path -> its last modification time when it was first opened
+    private final Map<File, Long> jarStamps = new HashMap<File, Long>();
+
+    private SharedApplicationEnvironment() {
+        applicationEnvironment = JetCoreEnvironment.createApplicationEnvironment(disposable);
+    }
+
+    @NotNull
+    public JavaCoreApplicationEnvironment getApplicationEnvironment() {
+        return applicationEnvironment;
+    }
+
+    /*package*/ void jarOpened(@NotNull File jar) {
+        synchronized (jarStamps) {
+            File file = jar.getAbsoluteFile();
+            if (!jarStamps.containsKey(file)) {
+                jarStamps.put(file, file.lastModified());
+            }
+        }
+    }
+
+    private boolean areJarsUpToDate() {
+        synchronized (jarStamps) {
+            for (Map.Entry<File, Long> entry : jarStamps.entrySet()) {
+                if (entry.getKey().lastModified() != entry.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.daemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.cli.common.daemon.CompileDaemonProtocol;
+import org.jetbrains.jet.cli.jvm.K2JVMCompiler;
+import org.jetbrains.jet.cli.jvm.compiler.SharedApplicationEnvironment;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileLock;
+import java.security.SecureRandom;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A long-living process compiling on behalf of its clients, so that the JIT-compiled code, the built-ins and
+ * the application environment with the opened classpath jars (see {@link SharedApplicationEnvironment}) survive
+ * between compilations.
+ *
+ * Clients connect concurrently, but the compilations themselves are run one at a time: the application and
+ * the built-ins are global to the process. The shared environment is dropped when the daemon has been idle for a while
+ * or the heap is almost full after a collection, and the daemon exits after a long period of inactivity.
+ *
+ * Usage: KotlinCompileDaemon &lt;daemon file&gt;, see {@link CompileDaemonProtocol}
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public class KotlinCompileDaemon {
+    private static final long IDLE_EVICTION_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long IDLE_SHUTDOWN_MS = TimeUnit.HOURS.toMillis(2);
+    private static final long HOUSEKEEPING_PERIOD_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final int REQUEST_READ_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(30);
+    private static final double LOW_MEMORY_THRESHOLD = 0.8;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length != 1) {
+            System.err.println("Usage: KotlinCompileDaemon <daemon file>");
+            System.exit(ExitCode.INTERNAL_ERROR.getCode());
+            return;
+        }
+
+        File daemonFile = new File(args[0]);
+        CompileDaemonProtocol.createDaemonDirectory(daemonFile);
+        // At most one daemon per daemon file: the losers of a startup race just exit
+        FileLock lock = new RandomAccessFile(daemonFile.getPath() + ".lock", "rw").getChannel().tryLock();
+        if (lock == null) {
+            System.exit(0);
+            return;
+        }
+
+        PrintStream log = new PrintStream(new FileOutputStream(daemonFile.getPath() + ".log"), true);
+        System.setOut(log);
+        System.setErr(log);
+
+        try {
+            new KotlinCompileDaemon(daemonFile).run();
+        }
+        finally {
+            lock.release();
+        }
+        System.exit(0);
+    }
+
+    private final File daemonFile;
+    private final ServerSocket serverSocket;
+    private final String token = new BigInteger(130, new SecureRandom()).toString(32);
+
+    private final ExecutorService requestExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("request"));
+    private final ScheduledExecutorService housekeepingExecutor =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("housekeeping"));
+
+    private final ReentrantLock compilationLock = new ReentrantLock();
+    private volatile long lastActivityTime = System.currentTimeMillis();
+    private volatile boolean lowMemory = false;
+
+    public KotlinCompileDaemon(@NotNull File daemonFile) throws IOException {
+        this.daemonFile = daemonFile;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    }
+
+    public void run() throws IOException {
+        SharedApplicationEnvironment.setEnabled(true);
+        listenToLowMemory();
+        CompileDaemonProtocol.writeDaemonFile(daemonFile, new CompileDaemonProtocol.DaemonAddress(serverSocket.getLocalPort(), token));
+        housekeepingExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                doHousekeeping();
+            }
+        }, HOUSEKEEPING_PERIOD_MS, HOUSEKEEPING_PERIOD_MS, TimeUnit.MILLISECONDS);
+
+        try {
+            while (!serverSocket.isClosed()) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                }
+                catch (IOException e) {
+                    // Closed by shutdown()
+                    break;
+                }
+                requestExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleRequest(socket);
+                    }
+                });
+            }
+        }
+        finally {
+            daemonFile.delete();
+            housekeepingExecutor.shutdownNow();
+            requestExecutor.shutdown();
+            SharedApplicationEnvironment.setEnabled(false);
+        }
+    }
+
+    public void shutdown() {
+        try {
+            serverSocket.close();
+        }
+        catch (IOException e) {
+            // Nothing to do
+        }
+    }
+
+    private void handleRequest(@NotNull Socket socket) {
+        try {
+            try {
+                socket.setSoTimeout(REQUEST_READ_TIMEOUT_MS);
+                DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+                String[] args = CompileDaemonProtocol.readRequest(input, token);
+                CompileDaemonProtocol.Response response = args != null
+                        ? compile(args)
+                        : new CompileDaemonProtocol.Response(CompileDaemonProtocol.EXIT_CODE_BAD_REQUEST, "");
+                CompileDaemonProtocol.writeResponse(output, response);
+            }
+            finally {
+                socket.close();
+            }
+        }
+        catch (IOException e) {
+            // Most likely the client has gone away, so the log is the only place to report to
+            e.printStackTrace();
+        }
+    }
+
+    @NotNull
+    private CompileDaemonProtocol.Response compile(@NotNull String[] args) throws UnsupportedEncodingException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, "UTF-8");
+
+        compilationLock.lock();
+        try {
+            lastActivityTime = System.currentTimeMillis();
+            SharedApplicationEnvironment.dropIfJarsChanged();
+
+            ExitCode exitCode = new K2JVMCompiler().exec(out, args);
+
+            if (lowMemory) {
+                lowMemory = false;
+                SharedApplicationEnvironment.drop();
+            }
+            out.flush();
+            return new CompileDaemonProtocol.Response(exitCode.getCode(), bytes.toString("UTF-8"));
+        }
+        finally {
+            lastActivityTime = System.currentTimeMillis();
+            compilationLock.unlock();
+        }
+    }
+
+    private void doHousekeeping() {
+        // Never wait for a compilation: if one is running, the daemon is not idle anyway
+        if (!compilationLock.tryLock()) return;
+        try {
+            long idleTime = System.currentTimeMillis() - lastActivityTime;
+            if (idleTime > IDLE_SHUTDOWN_MS) {
+                shutdown();
+            }
+            else if (idleTime > IDLE_EVICTION_MS || lowMemory) {
+                lowMemory = false;
+                SharedApplicationEnvironment.drop();
+            }
+        }
+        finally {
+            compilationLock.unlock();
+        }
+    }
+
+    // Sets the lowMemory flag when a heap pool is still almost full after a garbage collection
+    private void listenToLowMemory() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold((long) (max * LOW_MEMORY_THRESHOLD));
+            }
+        }
+        NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        emitter.addNotificationListener(new NotificationListener() {
+            @Override
+            public void handleNotification(Notification notification, Object handback) {
+                if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                    lowMemory = true;
+                }
+            }
+        }, null, null);
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+
+        private DaemonThreadFactory(@NotNull String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "Kotlin compile daemon " + name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
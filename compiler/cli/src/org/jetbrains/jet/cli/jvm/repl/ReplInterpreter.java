@@ -19,9 +19,9 @@ package org.jetbrains.jet.cli.jvm.repl;
 import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.CharsetToolkit;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiFileFactory;
@@ -65,6 +65,9 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+
+import static org.jetbrains.jet.codegen.binding.CodegenBinding.registerClassNameForScript;
 
 public class ReplInterpreter {
 
@@ -72,6 +75,10 @@ public class ReplInterpreter {
     @Nullable
     private JetScope lastLineScope;
     private List<EarlierLine> earlierLines = Lists.newArrayList();
+    // Passed to the constructor of every line and extended after each successful one: lines refer to the earlier ones
+    // by their positions in this list, so neither the constructor nor the fields of a line depend on the number of lines
+    private final List<Object> earlierScriptInstances = Lists.newArrayList();
+    private final Map<ScriptDescriptor, Integer> earlierScriptIndices = Maps.newHashMap();
     private List<String> previousIncompleteLines = Lists.newArrayList();
     private final ReplClassLoader classLoader;
 
@@ -218,16 +225,10 @@ public class ReplInterpreter {
             return LineResult.error(errorCollector.getString());
         }
 
-        List<Pair<ScriptDescriptor, JvmClassName>> earierScripts = Lists.newArrayList();
-
-        for (EarlierLine earlierLine : earlierLines) {
-            earierScripts.add(Pair.create(earlierLine.getScriptDescriptor(), earlierLine.getClassName()));
-        }
-
         BindingContext bindingContext = AnalyzeExhaust.success(trace.getBindingContext(), injector.getModuleConfiguration()).getBindingContext();
         GenerationState generationState = new GenerationState(psiFile.getProject(), ClassBuilderFactories.binaries(false),
                                                               bindingContext, Collections.singletonList(psiFile));
-        generationState.getScriptCodegen().compileScript(psiFile.getScript(), scriptClassName, earierScripts,
+        generationState.getScriptCodegen().compileScript(psiFile.getScript(), scriptClassName, earlierScriptIndices,
                                                          CompilationErrorHandler.THROW_EXCEPTION);
 
         for (String file : generationState.getFactory().files()) {
@@ -237,18 +238,10 @@ public class ReplInterpreter {
         try {
             Class<?> scriptClass = classLoader.loadClass(scriptClassName.getFqName().getFqName());
 
-            Class<?>[] constructorParams = new Class<?>[earlierLines.size()];
-            Object[] constructorArgs = new Object[earlierLines.size()];
-
-            for (int i = 0; i < earlierLines.size(); ++i) {
-                constructorParams[i] = earlierLines.get(i).getScriptClass();
-                constructorArgs[i] = earlierLines.get(i).getScriptInstance();
-            }
-
-            Constructor<?> scriptInstanceConstructor = scriptClass.getConstructor(constructorParams);
+            Constructor<?> scriptInstanceConstructor = scriptClass.getConstructor(List.class);
             Object scriptInstance;
             try {
-                scriptInstance = scriptInstanceConstructor.newInstance(constructorArgs);
+                scriptInstance = scriptInstanceConstructor.newInstance(earlierScriptInstances);
             } catch (Throwable e) {
                 return LineResult.error(Throwables.getStackTraceAsString(e));
             }
@@ -257,6 +250,10 @@ public class ReplInterpreter {
             Object rv = rvField.get(scriptInstance);
 
             earlierLines.add(new EarlierLine(line, scriptDescriptor, scriptClass, scriptInstance, scriptClassName));
+            earlierScriptIndices.put(scriptDescriptor, earlierScriptInstances.size());
+            earlierScriptInstances.add(scriptInstance);
+            // Later lines find the class name in the persistent trace, so it's recorded only once per line
+            registerClassNameForScript(trace, scriptDescriptor, scriptClassName);
 
             return LineResult.successful(rv, scriptDescriptor.getReturnType().equals(KotlinBuiltIns.getInstance().getUnitType()));
         } catch (Throwable e) {
@@ -37,6 +37,8 @@ import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.resolve.*;
 import org.jetbrains.jet.lang.resolve.lazy.declarations.FileBasedDeclarationProviderFactory;
 import org.jetbrains.jet.lang.resolve.lazy.storage.LockBasedStorageManager;
+import org.jetbrains.jet.lang.resolve.lazy.storage.StorageManager;
+import org.jetbrains.jet.lang.resolve.lazy.storage.StripedLockStorageManager;
 import org.jetbrains.jet.lang.resolve.lazy.ResolveSession;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
@@ -53,6 +55,11 @@ public enum AnalyzerFacadeForJVM implements AnalyzerFacade {
 
     INSTANCE;
 
+    // Opt-in: resolve function bodies of different files concurrently, see TopDownAnalysisParameters.isParallelBodyResolve()
+    public static final String PARALLEL_BODY_RESOLVE_PROPERTY = "kotlin.parallel.body.resolve";
+    // Opt-in: let lazy resolve sessions compute independent descriptors in parallel, see StripedLockStorageManager
+    public static final String STRIPED_LOCK_LAZY_RESOLVE_PROPERTY = "kotlin.lazy.resolve.striped.locks";
+
     private AnalyzerFacadeForJVM() {
     }
 
@@ -90,7 +97,9 @@ public enum AnalyzerFacadeForJVM implements AnalyzerFacade {
         final PsiClassFinder psiClassFinder = injector.getPsiClassFinder();
 
         // TODO: Replace with stub declaration provider
-        LockBasedStorageManager storageManager = new LockBasedStorageManager();
+        StorageManager storageManager = Boolean.getBoolean(STRIPED_LOCK_LAZY_RESOLVE_PROPERTY)
+                                        ? new StripedLockStorageManager()
+                                        : new LockBasedStorageManager();
         FileBasedDeclarationProviderFactory declarationProviderFactory = new FileBasedDeclarationProviderFactory(storageManager, files, new Predicate<FqName>() {
             @Override
             public boolean apply(FqName fqName) {
@@ -202,7 +211,7 @@ public enum AnalyzerFacadeForJVM implements AnalyzerFacade {
         ModuleDescriptor owner = new ModuleDescriptor(Name.special("<module>"));
 
         TopDownAnalysisParameters topDownAnalysisParameters = new TopDownAnalysisParameters(
-                filesToAnalyzeCompletely, false, false, scriptParameters);
+                filesToAnalyzeCompletely, false, false, scriptParameters, Boolean.getBoolean(PARALLEL_BODY_RESOLVE_PROPERTY));
 
         InjectorForTopDownAnalyzerForJvm injector = new InjectorForTopDownAnalyzerForJvm(
                 project, topDownAnalysisParameters,
@@ -20,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.resolve.DescriptorUtils;
+import org.jetbrains.jet.lang.resolve.SharedResolveLock;
 import org.jetbrains.jet.lang.resolve.java.provider.ClassPsiDeclarationProvider;
 import org.jetbrains.jet.lang.resolve.java.provider.PackagePsiDeclarationProvider;
 import org.jetbrains.jet.lang.resolve.java.provider.PsiDeclarationProvider;
@@ -35,6 +36,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * Java descriptors are resolved lazily, and record into the trace of the analysis, so they are resolved under SharedResolveLock.
+ */
 public class JavaDescriptorResolver implements DependencyClassByQualifiedNameResolver {
 
     public static final Name JAVA_ROOT = Name.special("<java_root>");
@@ -182,34 +186,46 @@ public class JavaDescriptorResolver implements DependencyClassByQualifiedNameRes
 
     @Nullable
     public ClassDescriptor resolveClass(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
-        return classResolver.resolveClass(qualifiedName, searchRule);
+        synchronized (SharedResolveLock.get()) {
+            return classResolver.resolveClass(qualifiedName, searchRule);
+        }
     }
 
     @Override
     public ClassDescriptor resolveClass(@NotNull FqName qualifiedName) {
-        return classResolver.resolveClass(qualifiedName);
+        synchronized (SharedResolveLock.get()) {
+            return classResolver.resolveClass(qualifiedName);
+        }
     }
 
     @NotNull
     public Collection<ConstructorDescriptor> resolveConstructors(
             @NotNull ClassPsiDeclarationProvider classData, @NotNull ClassDescriptor classDescriptor
     ) {
-        return constructorResolver.resolveConstructors(classData, classDescriptor);
+        synchronized (SharedResolveLock.get()) {
+            return constructorResolver.resolveConstructors(classData, classDescriptor);
+        }
     }
 
     @Nullable
     public NamespaceDescriptor resolveNamespace(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
-        return namespaceResolver.resolveNamespace(qualifiedName, searchRule);
+        synchronized (SharedResolveLock.get()) {
+            return namespaceResolver.resolveNamespace(qualifiedName, searchRule);
+        }
     }
 
     @Override
     public NamespaceDescriptor resolveNamespace(@NotNull FqName qualifiedName) {
-        return namespaceResolver.resolveNamespace(qualifiedName);
+        synchronized (SharedResolveLock.get()) {
+            return namespaceResolver.resolveNamespace(qualifiedName);
+        }
     }
 
     @Nullable
     public JetScope getJavaPackageScope(@NotNull NamespaceDescriptor namespaceDescriptor) {
-        return namespaceResolver.getJavaPackageScopeForExistingNamespaceDescriptor(namespaceDescriptor);
+        synchronized (SharedResolveLock.get()) {
+            return namespaceResolver.getJavaPackageScopeForExistingNamespaceDescriptor(namespaceDescriptor);
+        }
     }
 
     @NotNull
@@ -218,12 +234,16 @@ public class JavaDescriptorResolver implements DependencyClassByQualifiedNameRes
             @NotNull PsiDeclarationProvider data,
             @NotNull ClassOrNamespaceDescriptor ownerDescriptor
     ) {
-        return propertiesResolver.resolveFieldGroupByName(name, data, ownerDescriptor);
+        synchronized (SharedResolveLock.get()) {
+            return propertiesResolver.resolveFieldGroupByName(name, data, ownerDescriptor);
+        }
     }
 
     @Nullable
     public ClassDescriptor resolveClass(@NotNull FqName name, @NotNull DescriptorSearchRule searchRule, @NotNull PostponedTasks tasks) {
-        return classResolver.resolveClass(name, searchRule, tasks);
+        synchronized (SharedResolveLock.get()) {
+            return classResolver.resolveClass(name, searchRule, tasks);
+        }
     }
 
     public static class ValueParameterDescriptors {
@@ -252,7 +272,9 @@ public class JavaDescriptorResolver implements DependencyClassByQualifiedNameRes
             @NotNull ClassPsiDeclarationProvider scopeData,
             @NotNull ClassOrNamespaceDescriptor ownerDescriptor
     ) {
-        return functionResolver.resolveFunctionGroup(methodName, scopeData, ownerDescriptor);
+        synchronized (SharedResolveLock.get()) {
+            return functionResolver.resolveFunctionGroup(methodName, scopeData, ownerDescriptor);
+        }
     }
 
     @NotNull
@@ -261,11 +283,15 @@ public class JavaDescriptorResolver implements DependencyClassByQualifiedNameRes
             @NotNull PackagePsiDeclarationProvider scopeData,
             @NotNull NamespaceDescriptor ownerDescriptor
     ) {
-        return functionResolver.resolveFunctionGroup(methodName, scopeData, ownerDescriptor);
+        synchronized (SharedResolveLock.get()) {
+            return functionResolver.resolveFunctionGroup(methodName, scopeData, ownerDescriptor);
+        }
     }
 
     @NotNull
     public List<ClassDescriptor> resolveInnerClasses(@NotNull ClassPsiDeclarationProvider declarationProvider) {
-        return innerClassResolver.resolveInnerClasses(declarationProvider);
+        synchronized (SharedResolveLock.get()) {
+            return innerClassResolver.resolveInnerClasses(declarationProvider);
+        }
     }
 }
@@ -56,6 +56,9 @@ public class JvmStdlibNames {
     public static final int FLAG_METHOD_KIND_DELEGATION =    2 << 6;
     public static final int FLAG_METHOD_KIND_SYNTHESIZED =   3 << 6;
 
+    // for method, the body is generated in place of the calls in the same module, so the callers depend on it
+    public static final int FLAG_INLINE_BIT = 1 << 9;
+
     public static final int FLAG_CLASS_KIND_MASK = 7 << 6;
     public static final int FLAG_CLASS_KIND_DEFAULT = 0 << 6;
     public static final int FLAG_CLASS_KIND_OBJECT = 1 << 6;
@@ -30,6 +30,7 @@ import com.intellij.psi.search.DelegatingGlobalSearchScope;
 import com.intellij.psi.search.GlobalSearchScope;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.classpath.ClassPathIndex;
 import org.jetbrains.jet.lang.resolve.java.resolver.JavaAnnotationResolver;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
@@ -48,6 +49,8 @@ public class PsiClassFinderImpl implements PsiClassFinder {
 
     private GlobalSearchScope javaSearchScope;
     private JavaPsiFacadeKotlinHacks javaFacade;
+    @Nullable
+    private ClassPathIndex classPathIndex;
 
     @Inject
     public void setProject(@NotNull Project project) {
@@ -80,12 +83,17 @@ public class PsiClassFinderImpl implements PsiClassFinder {
             }
         };
         javaFacade = new JavaPsiFacadeKotlinHacks(project);
+        classPathIndex = ClassPathIndex.getInstance(project);
     }
 
 
     @Override
     @Nullable
     public PsiClass findPsiClass(@NotNull FqName qualifiedName, @NotNull RuntimeClassesHandleMode runtimeClassesHandleMode) {
+        if (classPathIndex != null && !classPathIndex.mayContainClass(qualifiedName)) {
+            return null;
+        }
+
         PsiClass original = javaFacade.findClass(qualifiedName.getFqName(), javaSearchScope);
 
         if (original != null) {
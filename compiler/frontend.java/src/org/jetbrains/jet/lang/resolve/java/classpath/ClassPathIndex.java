@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.classpath;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answers whether a Java class can possibly be found on the classpath of a project, much faster than a PSI lookup,
+ * which matters because most of the class lookups made by the resolver fail.
+ *
+ * Jars are looked up in their shared indices. Directories may change at any time, so they are checked for
+ * the files the class could be declared in, the same way the Java file manager of the compiler does it:
+ * a compiled class has a file of its own, but a Java source may declare classes with any name, so a package
+ * directory with Java sources in it may contain any class. A jar which can't be indexed may contain any class too.
+ *
+ * Only registered by the command line compiler, which adds every classpath root to it.
+ */
+public class ClassPathIndex {
+    private final List<ClassRootIndex> jarIndices = new ArrayList<ClassRootIndex>();
+    private final List<File> directories = new ArrayList<File>();
+    private boolean hasUnindexedRoots = false;
+
+    @Nullable
+    public static ClassPathIndex getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, ClassPathIndex.class);
+    }
+
+    public ClassPathIndex() {
+    }
+
+    public ClassPathIndex(@NotNull List<File> roots) {
+        for (File root : roots) {
+            addRoot(root);
+        }
+    }
+
+    public void addRoot(@NotNull File root) {
+        if (root.isDirectory()) {
+            directories.add(root);
+        }
+        else if (root.isFile()) {
+            ClassRootIndex index = ClassRootIndexCache.getIndex(root);
+            if (index != null) {
+                jarIndices.add(index);
+            }
+            else {
+                hasUnindexedRoots = true;
+            }
+        }
+    }
+
+    public boolean mayContainClass(@NotNull FqName fqName) {
+        if (hasUnindexedRoots) return true;
+
+        // Any prefix of the name can be the package, the first segment after it is then the top-level class
+        List<Name> segments = fqName.pathSegments();
+        StringBuilder packagePath = new StringBuilder();
+        for (Name segment : segments) {
+            String topLevelClass = packagePath.length() == 0 ? segment.getName() : packagePath + "/" + segment.getName();
+            if (containsTopLevelClass(topLevelClass)) {
+                return true;
+            }
+
+            if (packagePath.length() > 0) {
+                packagePath.append('/');
+            }
+            packagePath.append(segment.getName());
+        }
+        return false;
+    }
+
+    private boolean containsTopLevelClass(@NotNull String internalName) {
+        for (ClassRootIndex index : jarIndices) {
+            if (index.containsClass(internalName)) {
+                return true;
+            }
+        }
+        int lastSlash = internalName.lastIndexOf('/');
+        String packagePath = lastSlash < 0 ? "" : internalName.substring(0, lastSlash);
+        for (File directory : directories) {
+            if (new File(directory, internalName + ".class").isFile() || containsJavaSources(new File(directory, packagePath))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsJavaSources(@NotNull File packageDirectory) {
+        String[] names = packageDirectory.list();
+        if (names == null) return false;
+        for (String name : names) {
+            if (name.endsWith(".java")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.classpath;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Internal names of the classes in a jar, telling for sure that a class is not there without looking for it in PSI.
+ *
+ * Immutable, so one index is shared by all the projects having the jar on their classpath, see {@link ClassRootIndexCache}.
+ */
+public final class ClassRootIndex {
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    // Both the names of the class files ("java/util/Map$Entry") and the top-level classes they belong to ("java/util/Map")
+    private final Set<String> classNames;
+
+    private ClassRootIndex(@NotNull Set<String> classNames) {
+        this.classNames = classNames;
+    }
+
+    public boolean containsClass(@NotNull String internalName) {
+        return classNames.contains(internalName);
+    }
+
+    @NotNull
+    public static ClassRootIndex build(@NotNull File jar) throws IOException {
+        Set<String> classNames = new HashSet<String>();
+        ZipFile zipFile = new ZipFile(jar);
+        try {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                String entryName = entries.nextElement().getName();
+                if (!entryName.endsWith(CLASS_FILE_SUFFIX)) continue;
+
+                String className = entryName.substring(0, entryName.length() - CLASS_FILE_SUFFIX.length());
+                classNames.add(className);
+
+                int simpleNameStart = className.lastIndexOf('/') + 1;
+                int dollar = className.indexOf('$', simpleNameStart + 1);
+                if (dollar > 0) {
+                    classNames.add(className.substring(0, dollar));
+                }
+            }
+        }
+        finally {
+            zipFile.close();
+        }
+        return new ClassRootIndex(classNames);
+    }
+
+    @NotNull
+    public static ClassRootIndex read(@NotNull DataInput input) throws IOException {
+        int size = input.readInt();
+        Set<String> classNames = new HashSet<String>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            classNames.add(input.readUTF());
+        }
+        return new ClassRootIndex(classNames);
+    }
+
+    public void write(@NotNull DataOutput output) throws IOException {
+        output.writeInt(classNames.size());
+        for (String className : classNames) {
+            output.writeUTF(className);
+        }
+    }
+}
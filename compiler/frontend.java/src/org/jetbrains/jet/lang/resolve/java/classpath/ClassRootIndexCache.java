@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.classpath;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Indices of the jars on the classpath, shared by all the environments in the process (compile daemon, REPL, tests).
+ *
+ * A jar is identified by its path, size and modification time, so a rebuilt jar gets a new index. At most
+ * {@link #MAX_CACHED_JARS} indices are kept, least recently used ones are evicted first, and all of them are softly
+ * reachable. If the {@link #CACHE_DIR_PROPERTY} system property is set, indices are also stored in that directory
+ * and survive between processes.
+ */
+public class ClassRootIndexCache {
+    private static final Logger LOG = Logger.getInstance(ClassRootIndexCache.class);
+
+    public static final String CACHE_DIR_PROPERTY = "kotlin.classpath.index.dir";
+
+    private static final int MAX_CACHED_JARS = 256;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Map<String, SoftReference<ClassRootIndex>> cache =
+            new LinkedHashMap<String, SoftReference<ClassRootIndex>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SoftReference<ClassRootIndex>> eldest) {
+                    return size() > MAX_CACHED_JARS;
+                }
+            };
+
+    /**
+     * @return the index of the jar, or null if it can't be read
+     */
+    @Nullable
+    public static ClassRootIndex getIndex(@NotNull File jar) {
+        String key = getKey(jar);
+        synchronized (cache) {
+            SoftReference<ClassRootIndex> reference = cache.get(key);
+            ClassRootIndex index = reference != null ? reference.get() : null;
+            if (index != null) return index;
+        }
+
+        ClassRootIndex index = loadOrBuild(jar, key);
+        if (index != null) {
+            synchronized (cache) {
+                cache.put(key, new SoftReference<ClassRootIndex>(index));
+            }
+        }
+        return index;
+    }
+
+    @NotNull
+    private static String getKey(@NotNull File jar) {
+        return jar.getAbsolutePath() + ":" + jar.length() + ":" + jar.lastModified();
+    }
+
+    @Nullable
+    private static ClassRootIndex loadOrBuild(@NotNull File jar, @NotNull String key) {
+        File cacheFile = getCacheFile(key);
+        if (cacheFile != null && cacheFile.isFile()) {
+            ClassRootIndex index = load(cacheFile, key);
+            if (index != null) return index;
+        }
+
+        ClassRootIndex index;
+        try {
+            index = ClassRootIndex.build(jar);
+        }
+        catch (IOException e) {
+            return null;
+        }
+
+        if (cacheFile != null) {
+            save(cacheFile, key, index);
+        }
+        return index;
+    }
+
+    @Nullable
+    private static File getCacheFile(@NotNull String key) {
+        String cacheDir = System.getProperty(CACHE_DIR_PROPERTY);
+        if (cacheDir == null) return null;
+        return new File(cacheDir, Integer.toHexString(key.hashCode()) + ".index");
+    }
+
+    @Nullable
+    private static ClassRootIndex load(@NotNull File cacheFile, @NotNull String key) {
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            try {
+                // Different jars may have the same hash code of the key
+                if (input.readInt() != FORMAT_VERSION || !key.equals(input.readUTF())) return null;
+                return ClassRootIndex.read(input);
+            }
+            finally {
+                input.close();
+            }
+        }
+        catch (IOException e) {
+            LOG.warn("Couldn't read classpath index " + cacheFile, e);
+            return null;
+        }
+    }
+
+    private static void save(@NotNull File cacheFile, @NotNull String key, @NotNull ClassRootIndex index) {
+        // Written to a temporary file first, so that other processes never see a half-written index
+        File tmpFile = new File(cacheFile.getPath() + "." + System.nanoTime() + ".tmp");
+        try {
+            cacheFile.getParentFile().mkdirs();
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                output.writeInt(FORMAT_VERSION);
+                output.writeUTF(key);
+                index.write(output);
+            }
+            finally {
+                output.close();
+            }
+            cacheFile.delete();
+            if (!tmpFile.renameTo(cacheFile)) {
+                tmpFile.delete();
+            }
+        }
+        catch (IOException e) {
+            tmpFile.delete();
+            LOG.warn("Couldn't write classpath index " + cacheFile, e);
+        }
+    }
+
+    private ClassRootIndexCache() {}
+}
@@ -24,6 +24,7 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.resolve.SharedResolveLock;
 import org.jetbrains.jet.lang.resolve.java.JavaDescriptorResolver;
 import org.jetbrains.jet.lang.resolve.java.JavaSemanticServices;
 import org.jetbrains.jet.lang.resolve.java.provider.ClassPsiDeclarationProvider;
@@ -38,6 +39,9 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * The members are resolved lazily and cached, under SharedResolveLock (see JavaDescriptorResolver).
+ */
 public abstract class JavaBaseScope extends JetScopeImpl {
 
     @NotNull
@@ -75,16 +79,18 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     @Override
     public Collection<VariableDescriptor> getProperties(@NotNull Name name) {
-        Set<VariableDescriptor> cached = propertyDescriptors.get(name);
-        if (cached != null) return cached;
+        synchronized (SharedResolveLock.get()) {
+            Set<VariableDescriptor> cached = propertyDescriptors.get(name);
+            if (cached != null) return cached;
 
-        if (allDescriptorsComputed()) {
-            return Collections.emptySet();
-        }
+            if (allDescriptorsComputed()) {
+                return Collections.emptySet();
+            }
 
-        Set<VariableDescriptor> computedDescriptors = computePropertyDescriptors(name);
-        propertyDescriptors.put(name, computedDescriptors);
-        return computedDescriptors;
+            Set<VariableDescriptor> computedDescriptors = computePropertyDescriptors(name);
+            propertyDescriptors.put(name, computedDescriptors);
+            return computedDescriptors;
+        }
     }
 
     @NotNull
@@ -95,16 +101,18 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     @Override
     public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
-        Set<FunctionDescriptor> cached = functionDescriptors.get(name);
-        if (cached != null) return cached;
+        synchronized (SharedResolveLock.get()) {
+            Set<FunctionDescriptor> cached = functionDescriptors.get(name);
+            if (cached != null) return cached;
 
-        if (allDescriptorsComputed()) {
-            return Collections.emptySet();
-        }
+            if (allDescriptorsComputed()) {
+                return Collections.emptySet();
+            }
 
-        Set<FunctionDescriptor> computedDescriptors = computeFunctionDescriptor(name);
-        functionDescriptors.put(name, computedDescriptors);
-        return computedDescriptors;
+            Set<FunctionDescriptor> computedDescriptors = computeFunctionDescriptor(name);
+            functionDescriptors.put(name, computedDescriptors);
+            return computedDescriptors;
+        }
     }
 
     @NotNull
@@ -113,13 +121,15 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     @Override
     public Collection<DeclarationDescriptor> getAllDescriptors() {
-        if (allDescriptorsComputed()) {
-            return allDescriptors;
-        }
+        synchronized (SharedResolveLock.get()) {
+            if (allDescriptorsComputed()) {
+                return allDescriptors;
+            }
 
-        allDescriptors = computeAllDescriptors();
+            allDescriptors = computeAllDescriptors();
 
-        return allDescriptors;
+            return allDescriptors;
+        }
     }
 
     private boolean allDescriptorsComputed() {
@@ -169,9 +179,11 @@ public abstract class JavaBaseScope extends JetScopeImpl {
 
     @NotNull
     protected Collection<ClassDescriptor> getInnerClasses() {
-        if (innerClasses == null) {
-            innerClasses = computeInnerClasses();
+        synchronized (SharedResolveLock.get()) {
+            if (innerClasses == null) {
+                innerClasses = computeInnerClasses();
+            }
+            return innerClasses;
         }
-        return innerClasses;
     }
 }
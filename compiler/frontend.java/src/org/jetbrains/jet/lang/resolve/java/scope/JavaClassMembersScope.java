@@ -18,6 +18,7 @@ package org.jetbrains.jet.lang.resolve.java.scope;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.resolve.SharedResolveLock;
 import org.jetbrains.jet.lang.resolve.java.JavaSemanticServices;
 import org.jetbrains.jet.lang.resolve.java.provider.ClassPsiDeclarationProvider;
 import org.jetbrains.jet.lang.resolve.name.LabelName;
@@ -58,14 +59,16 @@ public abstract class JavaClassMembersScope extends JavaBaseScope {
 
     @NotNull
     private Map<Name, ClassDescriptor> getInnerClassesMap() {
-        if (innerClassesMap == null) {
-            Collection<ClassDescriptor> innerClasses = getInnerClasses();
-            innerClassesMap = new HashMap<Name, ClassDescriptor>();
-            for (ClassDescriptor innerClass : innerClasses) {
-                innerClassesMap.put(innerClass.getName(), innerClass);
+        synchronized (SharedResolveLock.get()) {
+            if (innerClassesMap == null) {
+                Collection<ClassDescriptor> innerClasses = getInnerClasses();
+                innerClassesMap = new HashMap<Name, ClassDescriptor>();
+                for (ClassDescriptor innerClass : innerClasses) {
+                    innerClassesMap.put(innerClass.getName(), innerClass);
+                }
             }
+            return innerClassesMap;
         }
-        return innerClassesMap;
     }
 
     @NotNull
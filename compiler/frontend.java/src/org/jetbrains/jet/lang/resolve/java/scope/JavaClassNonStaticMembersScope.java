@@ -20,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
 import org.jetbrains.jet.lang.descriptors.ConstructorDescriptor;
+import org.jetbrains.jet.lang.resolve.SharedResolveLock;
 import org.jetbrains.jet.lang.resolve.java.JavaSemanticServices;
 import org.jetbrains.jet.lang.resolve.java.provider.ClassPsiDeclarationProvider;
 
@@ -55,17 +56,20 @@ public final class JavaClassNonStaticMembersScope extends JavaClassMembersScope
     }
 
     private void initConstructorsIfNeeded() {
-        if (constructors == null) {
-            constructors = getResolver().resolveConstructors(declarationProvider, descriptor);
+        synchronized (SharedResolveLock.get()) {
+            if (constructors == null) {
+                Collection<ConstructorDescriptor> resolvedConstructors = getResolver().resolveConstructors(declarationProvider, descriptor);
 
-            for (ConstructorDescriptor constructor : constructors) {
-                if (constructor.isPrimary()) {
-                    if (primaryConstructor != null) {
-                        throw new IllegalStateException(
-                                "Class has more than one primary constructor: " + primaryConstructor + "\n" + constructor);
+                for (ConstructorDescriptor constructor : resolvedConstructors) {
+                    if (constructor.isPrimary()) {
+                        if (primaryConstructor != null) {
+                            throw new IllegalStateException(
+                                    "Class has more than one primary constructor: " + primaryConstructor + "\n" + constructor);
+                        }
+                        primaryConstructor = constructor;
                     }
-                    primaryConstructor = constructor;
                 }
+                constructors = resolvedConstructors;
             }
         }
     }
@@ -440,6 +440,112 @@ public class JetFlowInformationProvider {
         }
     }
 
+////////////////////////////////////////////////////////////////////////////////
+//  Captured variables which are not modified after capture
+
+    public void recordVariablesNotModifiedAfterCapture() {
+        recordVariablesNotModifiedAfterCapture(pseudocode);
+        for (LocalDeclarationInstruction instruction : pseudocode.getLocalDeclarations()) {
+            recordVariablesNotModifiedAfterCapture(instruction.getBody());
+        }
+    }
+
+    private void recordVariablesNotModifiedAfterCapture(@NotNull Pseudocode pseudocode) {
+        for (Instruction instruction : pseudocode.getInstructions()) {
+            if (!(instruction instanceof VariableDeclarationInstruction)) continue;
+            VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, trace.getBindingContext());
+            if (variable == null || !variable.isVar() || !trace.get(CAPTURED_IN_CLOSURE, variable)) continue;
+            if (isNotModifiedAfterCapture(variable, pseudocode)) {
+                trace.record(BindingContext.NOT_MODIFIED_AFTER_CAPTURE, variable);
+            }
+        }
+    }
+
+    /*
+     * A variable is not modified after capture if it's captured only by local functions and function literals (which copy
+     * the values of captured variables when they are created), none of them writes to it, and no write to it in the declaring
+     * pseudocode is reachable from their declarations without passing through a declaration of this variable
+     */
+    private boolean isNotModifiedAfterCapture(@NotNull final VariableDescriptor variable, @NotNull Pseudocode pseudocode) {
+        final JetElement scope = pseudocode.getCorrespondingElement();
+        final Set<JetDeclaration> capturingDeclarations = Sets.newHashSet();
+        final boolean[] modifiedInClosure = new boolean[1];
+        scope.accept(new JetTreeVisitorVoid() {
+            @Override
+            public void visitSimpleNameExpression(JetSimpleNameExpression expression) {
+                if (trace.get(BindingContext.REFERENCE_TARGET, expression) != variable) return;
+                JetDeclaration capturingDeclaration = getOutermostLocalDeclaration(expression, scope);
+                if (capturingDeclaration == null) return;
+                if (capturingDeclaration instanceof JetClassOrObject || isAssigned(expression)) {
+                    modifiedInClosure[0] = true;
+                }
+                else {
+                    capturingDeclarations.add(capturingDeclaration);
+                }
+            }
+        });
+        if (modifiedInClosure[0] || capturingDeclarations.isEmpty()) return false;
+
+        Set<JetDeclaration> foundDeclarations = Sets.newHashSet();
+        Queue<Instruction> queue = new LinkedList<Instruction>();
+        for (Instruction instruction : pseudocode.getInstructions()) {
+            if (instruction instanceof LocalDeclarationInstruction) {
+                JetElement element = ((LocalDeclarationInstruction) instruction).getElement();
+                if (capturingDeclarations.contains(element)) {
+                    foundDeclarations.add((JetDeclaration) element);
+                    queue.addAll(instruction.getNextInstructions());
+                }
+            }
+        }
+        if (foundDeclarations.size() != capturingDeclarations.size()) return false;
+
+        Set<Instruction> visited = Sets.newHashSet();
+        while (!queue.isEmpty()) {
+            Instruction instruction = queue.poll();
+            if (!visited.add(instruction)) continue;
+            if (instruction instanceof WriteValueInstruction || instruction instanceof VariableDeclarationInstruction) {
+                if (PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, trace.getBindingContext()) == variable) {
+                    if (instruction instanceof WriteValueInstruction) return false;
+                    // A new instance of the variable is declared, previously created closures don't see it
+                    continue;
+                }
+            }
+            queue.addAll(instruction.getNextInstructions());
+        }
+        return true;
+    }
+
+    @Nullable
+    private static JetDeclaration getOutermostLocalDeclaration(@NotNull PsiElement element, @NotNull JetElement scope) {
+        JetDeclaration outermost = null;
+        for (PsiElement current = element; current != null && current != scope; current = current.getParent()) {
+            if (current instanceof JetDeclarationWithBody || current instanceof JetClassOrObject) {
+                outermost = (JetDeclaration) current;
+            }
+        }
+        return outermost;
+    }
+
+    private static boolean isAssigned(@NotNull JetSimpleNameExpression expression) {
+        PsiElement element = expression;
+        PsiElement parent = element.getParent();
+        while (parent instanceof JetParenthesizedExpression) {
+            element = parent;
+            parent = parent.getParent();
+        }
+        if (parent instanceof JetBinaryExpression) {
+            JetBinaryExpression binaryExpression = (JetBinaryExpression) parent;
+            IElementType operationToken = binaryExpression.getOperationToken();
+            return binaryExpression.getLeft() == element &&
+                   (operationToken == JetTokens.EQ || JetTokens.AUGMENTED_ASSIGNMENTS.contains(operationToken));
+        }
+        if (parent instanceof JetUnaryExpression) {
+            IElementType operationToken = ((JetUnaryExpression) parent).getOperationReference().getReferencedNameElementType();
+            return operationToken == JetTokens.PLUSPLUS || operationToken == JetTokens.MINUSMINUS;
+        }
+        return false;
+    }
+
 ////////////////////////////////////////////////////////////////////////////////
 //  "Unused variable" & "unused value" analyses
 
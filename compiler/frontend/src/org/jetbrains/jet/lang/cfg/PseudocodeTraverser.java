@@ -18,15 +18,12 @@ package org.jetbrains.jet.lang.cfg;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.intellij.util.ArrayUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.cfg.pseudocode.*;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder.FORWARD;
 
@@ -71,6 +68,12 @@ public class PseudocodeTraverser {
         return lookInside == LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS && instruction instanceof LocalDeclarationInstruction;
     }
 
+    /**
+     * Computes the data flow fixpoint with a worklist: an instruction is merged again only if the data of some of its previous
+     * instructions has changed since it was merged last time. The instructions are processed in the order of the pseudocode
+     * (reversed for the backward traversal), where the previous instructions usually come first, so that most of them
+     * are merged once per pass over the pseudocode, and a new pass is needed only to propagate the data along back edges.
+     */
     public static <D> Map<Instruction, Edges<D>> collectData(
             @NotNull Pseudocode pseudocode, TraversalOrder traversalOrder, LookInsideStrategy lookInside,
             @NotNull D initialDataValue, @NotNull D initialDataValueForEnterInstruction,
@@ -80,12 +83,40 @@ public class PseudocodeTraverser {
         initializeEdgesMap(pseudocode, lookInside, edgesMap, initialDataValue);
         edgesMap.put(getStartInstruction(pseudocode, traversalOrder), Edges.create(initialDataValueForEnterInstruction, initialDataValueForEnterInstruction));
 
-        boolean[] changed = new boolean[1];
-        changed[0] = true;
-        while (changed[0]) {
-            changed[0] = false;
-            collectDataFromSubgraph(pseudocode, traversalOrder, lookInside, edgesMap, instructionDataMergeStrategy,
-                                    Collections.<Instruction>emptyList(), changed, false);
+        List<DataFlowNode> nodes = Lists.newArrayList();
+        collectNodes(pseudocode, traversalOrder, lookInside, Collections.<Instruction>emptyList(), false, nodes);
+        linkDependentNodes(nodes);
+
+        BitSet changedNodes = new BitSet(nodes.size());
+        changedNodes.set(0, nodes.size());
+        List<D> incomingEdgesData = Lists.newArrayList();
+        while (!changedNodes.isEmpty()) {
+            for (int i = changedNodes.nextSetBit(0); i >= 0; i = changedNodes.nextSetBit(i + 1)) {
+                changedNodes.clear(i);
+                DataFlowNode node = nodes.get(i);
+
+                Edges<D> newValue;
+                if (node.isLocalDeclaration) {
+                    newValue = edgesMap.get(node.previousInstructions.iterator().next());
+                }
+                else {
+                    incomingEdgesData.clear();
+                    for (Instruction previousInstruction : node.previousInstructions) {
+                        Edges<D> previousData = edgesMap.get(previousInstruction);
+                        if (previousData != null) {
+                            incomingEdgesData.add(previousData.out);
+                        }
+                    }
+                    newValue = instructionDataMergeStrategy.execute(node.instruction, incomingEdgesData);
+                }
+
+                if (!newValue.equals(edgesMap.get(node.instruction))) {
+                    edgesMap.put(node.instruction, newValue);
+                    for (int dependent : node.dependentNodes) {
+                        changedNodes.set(dependent);
+                    }
+                }
+            }
         }
         return edgesMap;
     }
@@ -104,13 +135,27 @@ public class PseudocodeTraverser {
         }
     }
 
-    private static <D> void collectDataFromSubgraph(
+    // The data of an instruction is merged from its previous instructions, except for a local declaration which is looked inside:
+    // its data is copied from the last instruction of its body, and the body is entered from the previous instructions of the declaration
+    private static class DataFlowNode {
+        private final Instruction instruction;
+        private final Collection<Instruction> previousInstructions;
+        private final boolean isLocalDeclaration;
+        private int[] dependentNodes = ArrayUtil.EMPTY_INT_ARRAY;
+
+        private DataFlowNode(@NotNull Instruction instruction, @NotNull Collection<Instruction> previousInstructions, boolean isLocalDeclaration) {
+            this.instruction = instruction;
+            this.previousInstructions = previousInstructions;
+            this.isLocalDeclaration = isLocalDeclaration;
+        }
+    }
+
+    private static void collectNodes(
             @NotNull Pseudocode pseudocode, TraversalOrder traversalOrder,
             LookInsideStrategy lookInside,
-            @NotNull Map<Instruction, Edges<D>> edgesMap,
-            @NotNull InstructionDataMergeStrategy<D> instructionDataMergeStrategy,
             @NotNull Collection<Instruction> previousSubGraphInstructions,
-            boolean[] changed, boolean isLocal) {
+            boolean isLocal,
+            @NotNull List<DataFlowNode> nodes) {
 
         List<Instruction> instructions = getInstructions(pseudocode, traversalOrder);
         Instruction startInstruction = getStartInstruction(pseudocode, traversalOrder);
@@ -119,9 +164,17 @@ public class PseudocodeTraverser {
             boolean isStart = isStartInstruction(instruction, traversalOrder);
             if (!isLocal && isStart) continue;
 
-            Collection<Instruction> allPreviousInstructions;
             Collection<Instruction> previousInstructions = getPreviousInstruction(instruction, traversalOrder);
 
+            if (shouldLookInside(instruction, lookInside)) {
+                Pseudocode subroutinePseudocode = ((LocalDeclarationInstruction) instruction).getBody();
+                collectNodes(subroutinePseudocode, traversalOrder, lookInside, previousInstructions, true, nodes);
+                Instruction lastInstruction = getLastInstruction(subroutinePseudocode, traversalOrder);
+                nodes.add(new DataFlowNode(instruction, Collections.singletonList(lastInstruction), true));
+                continue;
+            }
+
+            Collection<Instruction> allPreviousInstructions;
             if (instruction == startInstruction && !previousSubGraphInstructions.isEmpty()) {
                 allPreviousInstructions = Lists.newArrayList(previousInstructions);
                 allPreviousInstructions.addAll(previousSubGraphInstructions);
@@ -129,36 +182,23 @@ public class PseudocodeTraverser {
             else {
                 allPreviousInstructions = previousInstructions;
             }
+            nodes.add(new DataFlowNode(instruction, allPreviousInstructions, false));
+        }
+    }
 
-            if (shouldLookInside(instruction, lookInside)) {
-                Pseudocode subroutinePseudocode = ((LocalDeclarationInstruction) instruction).getBody();
-                collectDataFromSubgraph(subroutinePseudocode, traversalOrder, lookInside, edgesMap, instructionDataMergeStrategy,
-                                        previousInstructions,
-                                        changed, true);
-                Instruction lastInstruction = getLastInstruction(subroutinePseudocode, traversalOrder);
-                Edges<D> previousValue = edgesMap.get(instruction);
-                Edges<D> newValue = edgesMap.get(lastInstruction);
-                if (!previousValue.equals(newValue)) {
-                    changed[0] = true;
-                    edgesMap.put(instruction, newValue);
-                }
-                continue;
-            }
-            Edges<D> previousDataValue = edgesMap.get(instruction);
-
-            Collection<D> incomingEdgesData = Sets.newHashSet();
-
-            for (Instruction previousInstruction : allPreviousInstructions) {
-                Edges<D> previousData = edgesMap.get(previousInstruction);
-                if (previousData != null) {
-                    incomingEdgesData.add(previousData.out);
+    private static void linkDependentNodes(@NotNull List<DataFlowNode> nodes) {
+        Map<Instruction, Integer> nodeIndices = Maps.newHashMap();
+        for (int i = 0; i < nodes.size(); i++) {
+            nodeIndices.put(nodes.get(i).instruction, i);
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            for (Instruction previousInstruction : nodes.get(i).previousInstructions) {
+                Integer previousIndex = nodeIndices.get(previousInstruction);
+                if (previousIndex != null) {
+                    DataFlowNode previousNode = nodes.get(previousIndex);
+                    previousNode.dependentNodes = ArrayUtil.append(previousNode.dependentNodes, i);
                 }
             }
-            Edges<D> mergedData = instructionDataMergeStrategy.execute(instruction, incomingEdgesData);
-            if (!mergedData.equals(previousDataValue)) {
-                changed[0] = true;
-                edgesMap.put(instruction, mergedData);
-            }
         }
     }
 
@@ -28,10 +28,7 @@ import org.jetbrains.jet.lang.psi.JetDeclaration;
 import org.jetbrains.jet.lang.psi.JetProperty;
 import org.jetbrains.jet.lang.resolve.BindingContext;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS;
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.SKIP_LOCAL_DECLARATIONS;
@@ -45,6 +42,13 @@ public class PseudocodeVariablesData {
     private final Map<Pseudocode, Set<VariableDescriptor>> declaredVariablesForDeclaration = Maps.newHashMap();
     private final Map<Pseudocode, Set<VariableDescriptor>> usedVariablesForDeclaration = Maps.newHashMap();
 
+    // the data flow states of all the variables are packed into bit sets by the indices of the variables
+    private final VariableStatesMap.VariableIndex variableIndex = new VariableStatesMap.VariableIndex();
+    private final VariableStatesMap<VariableInitState> noInitStates =
+            new VariableStatesMap<VariableInitState>(variableIndex, VariableInitState.STATES_BY_CODE);
+    private final VariableStatesMap<VariableUseState> noUseStates =
+            new VariableStatesMap<VariableUseState>(variableIndex, VariableUseState.STATES_BY_CODE);
+
     public PseudocodeVariablesData(@NotNull Pseudocode pseudocode, @NotNull BindingContext bindingContext) {
         this.pseudocode = pseudocode;
         this.bindingContext = bindingContext;
@@ -129,7 +133,7 @@ public class PseudocodeVariablesData {
 
         Set<VariableDescriptor> usedVariables = getUsedVariables(pseudocode);
         Set<VariableDescriptor> declaredVariables = getDeclaredVariables(pseudocode, false);
-        Map<VariableDescriptor, VariableInitState> initialMap = Collections.emptyMap();
+        Map<VariableDescriptor, VariableInitState> initialMap = noInitStates;
         Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = prepareInitializersMapForStartInstruction(
                 usedVariables, declaredVariables);
 
@@ -168,42 +172,32 @@ public class PseudocodeVariablesData {
             @NotNull Collection<VariableDescriptor> usedVariables,
             @NotNull Collection<VariableDescriptor> declaredVariables) {
 
-        Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = Maps.newHashMap();
+        VariableStatesMap<VariableInitState> initialMapForStartInstruction = noInitStates;
         VariableInitState initializedForExternalVariable = VariableInitState.create(true);
         VariableInitState notInitializedForDeclaredVariable = VariableInitState.create(false);
 
         for (VariableDescriptor variable : usedVariables) {
             if (declaredVariables.contains(variable)) {
-                initialMapForStartInstruction.put(variable, notInitializedForDeclaredVariable);
+                initialMapForStartInstruction = initialMapForStartInstruction.withState(variable, notInitializedForDeclaredVariable);
             }
             else {
-                initialMapForStartInstruction.put(variable, initializedForExternalVariable);
+                initialMapForStartInstruction = initialMapForStartInstruction.withState(variable, initializedForExternalVariable);
             }
         }
         return initialMapForStartInstruction;
     }
 
+    // a variable is initialized (declared) if it is initialized (declared) on all the incoming edges where it is present
     @NotNull
     private Map<VariableDescriptor, VariableInitState> mergeIncomingEdgesDataForInitializers(
             @NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData) {
+        return noInitStates.mergeWithCodesConjunction(asStatesMaps(incomingEdgesData));
+    }
 
-        Set<VariableDescriptor> variablesInScope = Sets.newHashSet();
-        for (Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData) {
-            variablesInScope.addAll(edgeData.keySet());
-        }
-
-        Map<VariableDescriptor, VariableInitState> enterInstructionData = Maps.newHashMap();
-        for (VariableDescriptor variable : variablesInScope) {
-            Set<VariableInitState> edgesDataForVariable = Sets.newHashSet();
-            for (Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData) {
-                VariableInitState initState = edgeData.get(variable);
-                if (initState != null) {
-                    edgesDataForVariable.add(initState);
-                }
-            }
-            enterInstructionData.put(variable, VariableInitState.create(edgesDataForVariable));
-        }
-        return enterInstructionData;
+    @SuppressWarnings("unchecked")
+    @NotNull
+    private static <S> Collection<VariableStatesMap<S>> asStatesMaps(@NotNull Collection<Map<VariableDescriptor, S>> edgesData) {
+        return (Collection) edgesData;
     }
 
     @NotNull
@@ -217,19 +211,19 @@ public class PseudocodeVariablesData {
         if (variable == null) {
             return enterInstructionData;
         }
-        Map<VariableDescriptor, VariableInitState> exitInstructionData = Maps.newHashMap(enterInstructionData);
+        VariableStatesMap<VariableInitState> exitInstructionData = (VariableStatesMap<VariableInitState>) enterInstructionData;
         if (instruction instanceof WriteValueInstruction) {
             VariableInitState enterInitState = enterInstructionData.get(variable);
             VariableInitState initializationAtThisElement =
                     VariableInitState.create(((WriteValueInstruction) instruction).getElement() instanceof JetProperty, enterInitState);
-            exitInstructionData.put(variable, initializationAtThisElement);
+            exitInstructionData = exitInstructionData.withState(variable, initializationAtThisElement);
         }
         else { // instruction instanceof VariableDeclarationInstruction
             VariableInitState enterInitState = enterInstructionData.get(variable);
             if (enterInitState == null || !enterInitState.isInitialized || !enterInitState.isDeclared) {
                 boolean isInitialized = enterInitState != null && enterInitState.isInitialized;
                 VariableInitState variableDeclarationInfo = VariableInitState.create(isInitialized, true);
-                exitInstructionData.put(variable, variableDeclarationInfo);
+                exitInstructionData = exitInstructionData.withState(variable, variableDeclarationInfo);
             }
         }
         return exitInstructionData;
@@ -239,9 +233,9 @@ public class PseudocodeVariablesData {
 
     @NotNull
     public Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> getVariableUseStatusData() {
-        Map<VariableDescriptor, VariableUseState> sinkInstructionData = Maps.newHashMap();
+        VariableStatesMap<VariableUseState> sinkInstructionData = noUseStates;
         for (VariableDescriptor usedVariable : getUsedVariables(pseudocode)) {
-            sinkInstructionData.put(usedVariable, VariableUseState.UNUSED);
+            sinkInstructionData = sinkInstructionData.withState(usedVariable, VariableUseState.UNUSED);
         }
         InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>> collectVariableUseStatusStrategy =
                 new InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>>() {
@@ -251,23 +245,16 @@ public class PseudocodeVariablesData {
                             @NotNull Collection<Map<VariableDescriptor, VariableUseState>> incomingEdgesData
                     ) {
 
-                        Map<VariableDescriptor, VariableUseState> enterResult = Maps.newHashMap();
-                        for (Map<VariableDescriptor, VariableUseState> edgeData : incomingEdgesData) {
-                            for (Map.Entry<VariableDescriptor, VariableUseState> entry : edgeData.entrySet()) {
-                                VariableDescriptor variableDescriptor = entry.getKey();
-                                VariableUseState variableUseState = entry.getValue();
-                                enterResult.put(variableDescriptor, variableUseState.merge(enterResult.get(variableDescriptor)));
-                            }
-                        }
+                        VariableStatesMap<VariableUseState> enterResult = noUseStates.mergeWithMaximalCodes(asStatesMaps(incomingEdgesData));
                         VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true,
                                                                                                               bindingContext);
                         if (variableDescriptor == null ||
                             (!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))) {
-                            return Edges.create(enterResult, enterResult);
+                            return Edges.<Map<VariableDescriptor, VariableUseState>>create(enterResult, enterResult);
                         }
-                        Map<VariableDescriptor, VariableUseState> exitResult = Maps.newHashMap(enterResult);
+                        VariableStatesMap<VariableUseState> exitResult;
                         if (instruction instanceof ReadValueInstruction) {
-                            exitResult.put(variableDescriptor, VariableUseState.LAST_READ);
+                            exitResult = enterResult.withState(variableDescriptor, VariableUseState.LAST_READ);
                         }
                         else { //instruction instanceof WriteValueInstruction
                             VariableUseState variableUseState = enterResult.get(variableDescriptor);
@@ -277,19 +264,17 @@ public class PseudocodeVariablesData {
                             switch (variableUseState) {
                                 case UNUSED:
                                 case ONLY_WRITTEN_NEVER_READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.ONLY_WRITTEN_NEVER_READ);
+                                    exitResult = enterResult.withState(variableDescriptor, VariableUseState.ONLY_WRITTEN_NEVER_READ);
                                     break;
-                                case LAST_WRITTEN:
-                                case LAST_READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.LAST_WRITTEN);
+                                default: // LAST_WRITTEN, LAST_READ
+                                    exitResult = enterResult.withState(variableDescriptor, VariableUseState.LAST_WRITTEN);
                             }
                         }
-                        return Edges.create(enterResult, exitResult);
+                        return Edges.<Map<VariableDescriptor, VariableUseState>>create(enterResult, exitResult);
                     }
                 };
-        return PseudocodeTraverser.collectData(pseudocode, BACKWARD, ANALYSE_LOCAL_DECLARATIONS,
-                                               Collections.<VariableDescriptor, VariableUseState>emptyMap(),
-                                               sinkInstructionData, collectVariableUseStatusStrategy);
+        return PseudocodeTraverser.<Map<VariableDescriptor, VariableUseState>>collectData(
+                pseudocode, BACKWARD, ANALYSE_LOCAL_DECLARATIONS, noUseStates, sinkInstructionData, collectVariableUseStatusStrategy);
     }
 
     public static class VariableInitState {
@@ -306,6 +291,9 @@ public class PseudocodeVariablesData {
         private static final VariableInitState VS_FT = new VariableInitState(false, true);
         private static final VariableInitState VS_FF = new VariableInitState(false, false);
 
+        // the code of a state is (isInitialized ? 2 : 0) + (isDeclared ? 1 : 0)
+        private static final List<VariableInitState> STATES_BY_CODE = Arrays.asList(VS_FF, VS_FT, VS_TF, VS_TT);
+
 
         private static VariableInitState create(boolean isInitialized, boolean isDeclared) {
             if (isInitialized) {
@@ -323,20 +311,6 @@ public class PseudocodeVariablesData {
         private static VariableInitState create(boolean isDeclaredHere, @Nullable VariableInitState mergedEdgesData) {
             return create(true, isDeclaredHere || (mergedEdgesData != null && mergedEdgesData.isDeclared));
         }
-
-        private static VariableInitState create(@NotNull Set<VariableInitState> edgesData) {
-            boolean isInitialized = true;
-            boolean isDeclared = true;
-            for (VariableInitState edgeData : edgesData) {
-                if (!edgeData.isInitialized) {
-                    isInitialized = false;
-                }
-                if (!edgeData.isDeclared) {
-                    isDeclared = false;
-                }
-            }
-            return create(isInitialized, isDeclared);
-        }
     }
 
     public static enum VariableUseState {
@@ -351,9 +325,15 @@ public class PseudocodeVariablesData {
             this.importance = importance;
         }
 
-        private VariableUseState merge(@Nullable VariableUseState variableUseState) {
-            if (variableUseState == null || importance > variableUseState.importance) return this;
-            return variableUseState;
+        // the code of a state is its importance, so that the states are merged by choosing the maximal code
+        private static final List<VariableUseState> STATES_BY_CODE;
+
+        static {
+            VariableUseState[] statesByImportance = new VariableUseState[values().length];
+            for (VariableUseState state : values()) {
+                statesByImportance[state.importance] = state;
+            }
+            STATES_BY_CODE = Arrays.asList(statesByImportance);
         }
 
         public static boolean isUsed(@Nullable VariableUseState variableUseState) {
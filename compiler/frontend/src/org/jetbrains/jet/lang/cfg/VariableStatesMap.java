@@ -0,0 +1,224 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.cfg;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.descriptors.VariableDescriptor;
+
+import java.util.*;
+
+/**
+ * An immutable map from variables to states, one of four per variable, packed into bit sets: a variable has a dense index,
+ * and the code of its state (0..3) is stored in the bits of this index in high and low. All the maps which are compared
+ * or merged with each other must share the same index and list of states.
+ */
+final class VariableStatesMap<S> extends AbstractMap<VariableDescriptor, S> {
+    public static final class VariableIndex {
+        private final Map<VariableDescriptor, Integer> indices = Maps.newHashMap();
+        private final List<VariableDescriptor> variables = Lists.newArrayList();
+
+        private int getIndex(@NotNull VariableDescriptor variable) {
+            Integer index = indices.get(variable);
+            if (index == null) {
+                index = variables.size();
+                indices.put(variable, index);
+                variables.add(variable);
+            }
+            return index;
+        }
+
+        private int findIndex(@Nullable Object variable) {
+            Integer index = indices.get(variable);
+            return index != null ? index : -1;
+        }
+    }
+
+    @NotNull
+    private final VariableIndex index;
+    // states by their codes
+    @NotNull
+    private final List<S> states;
+
+    @NotNull
+    private final BitSet present;
+    @NotNull
+    private final BitSet high;
+    @NotNull
+    private final BitSet low;
+
+    VariableStatesMap(@NotNull VariableIndex index, @NotNull List<S> states) {
+        this(index, states, new BitSet(), new BitSet(), new BitSet());
+    }
+
+    // the bit sets are owned by the map, high and low must be subsets of present
+    private VariableStatesMap(@NotNull VariableIndex index, @NotNull List<S> states,
+            @NotNull BitSet present, @NotNull BitSet high, @NotNull BitSet low) {
+        assert states.size() == 4 : "Four states are expected: " + states;
+        this.index = index;
+        this.states = states;
+        this.present = present;
+        this.high = high;
+        this.low = low;
+    }
+
+    // the code of the state, or -1 if the variable is absent
+    private int getCode(int variable) {
+        if (!present.get(variable)) return -1;
+        return (high.get(variable) ? 2 : 0) + (low.get(variable) ? 1 : 0);
+    }
+
+    @NotNull
+    public VariableStatesMap<S> withState(@NotNull VariableDescriptor variable, @NotNull S state) {
+        int code = states.indexOf(state);
+        assert code >= 0 : "Unknown state " + state;
+        return withCode(index.getIndex(variable), code);
+    }
+
+    @NotNull
+    private VariableStatesMap<S> withCode(int variable, int code) {
+        if (getCode(variable) == code) return this;
+
+        BitSet newPresent = (BitSet) present.clone();
+        BitSet newHigh = (BitSet) high.clone();
+        BitSet newLow = (BitSet) low.clone();
+        newPresent.set(variable);
+        newHigh.set(variable, (code & 2) != 0);
+        newLow.set(variable, (code & 1) != 0);
+        return new VariableStatesMap<S>(index, states, newPresent, newHigh, newLow);
+    }
+
+    /**
+     * Merges this map with the others so that every variable present in some of them has the bitwise conjunction of the codes
+     * of its states in these maps.
+     */
+    @NotNull
+    public VariableStatesMap<S> mergeWithCodesConjunction(@NotNull Collection<VariableStatesMap<S>> maps) {
+        BitSet newPresent = (BitSet) present.clone();
+        BitSet notHigh = withoutBits(present, high);
+        BitSet notLow = withoutBits(present, low);
+        for (VariableStatesMap<S> map : maps) {
+            newPresent.or(map.present);
+            notHigh.or(withoutBits(map.present, map.high));
+            notLow.or(withoutBits(map.present, map.low));
+        }
+        return new VariableStatesMap<S>(index, states, newPresent, withoutBits(newPresent, notHigh), withoutBits(newPresent, notLow));
+    }
+
+    /**
+     * Merges this map with the others so that every variable present in some of them has the maximal code of its states
+     * in these maps.
+     */
+    @NotNull
+    public VariableStatesMap<S> mergeWithMaximalCodes(@NotNull Collection<VariableStatesMap<S>> maps) {
+        BitSet newPresent = (BitSet) present.clone();
+        BitSet newHigh = (BitSet) high.clone();
+        for (VariableStatesMap<S> map : maps) {
+            newPresent.or(map.present);
+            newHigh.or(map.high);
+        }
+
+        // a variable has the low bit if it is set in some map where the high bit is the same as the merged one
+        BitSet newLow = withoutBits(low, withoutBits(newHigh, high));
+        for (VariableStatesMap<S> map : maps) {
+            newLow.or(withoutBits(map.low, withoutBits(newHigh, map.high)));
+        }
+        return new VariableStatesMap<S>(index, states, newPresent, newHigh, newLow);
+    }
+
+    @NotNull
+    private static BitSet withoutBits(@NotNull BitSet bits, @NotNull BitSet bitsToRemove) {
+        BitSet result = (BitSet) bits.clone();
+        result.andNot(bitsToRemove);
+        return result;
+    }
+
+    @Override
+    public S get(Object key) {
+        int variable = index.findIndex(key);
+        if (variable < 0) return null;
+        int code = getCode(variable);
+        return code < 0 ? null : states.get(code);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int variable = index.findIndex(key);
+        return variable >= 0 && present.get(variable);
+    }
+
+    @Override
+    public int size() {
+        return present.cardinality();
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<VariableDescriptor, S>> entrySet() {
+        return new AbstractSet<Entry<VariableDescriptor, S>>() {
+            @NotNull
+            @Override
+            public Iterator<Entry<VariableDescriptor, S>> iterator() {
+                return new Iterator<Entry<VariableDescriptor, S>>() {
+                    private int next = present.nextSetBit(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override
+                    public Entry<VariableDescriptor, S> next() {
+                        if (next < 0) throw new NoSuchElementException();
+                        int variable = next;
+                        next = present.nextSetBit(next + 1);
+                        return new SimpleImmutableEntry<VariableDescriptor, S>(index.variables.get(variable), states.get(getCode(variable)));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return present.cardinality();
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o instanceof VariableStatesMap) {
+            VariableStatesMap other = (VariableStatesMap) o;
+            if (other.index == index && other.states.equals(states)) {
+                return present.equals(other.present) && high.equals(other.high) && low.equals(other.low);
+            }
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
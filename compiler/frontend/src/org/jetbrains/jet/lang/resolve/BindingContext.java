@@ -127,6 +127,10 @@ public interface BindingContext {
     WritableSlice<JetElement, Boolean> STATEMENT = Slices.createRemovableSetSlice();
 
     WritableSlice<VariableDescriptor, Boolean> CAPTURED_IN_CLOSURE = Slices.createSimpleSetSlice();
+    /**
+     * Vars captured in closures which are never modified after any of them is created, so closures may keep copies of their values
+     */
+    WritableSlice<VariableDescriptor, Boolean> NOT_MODIFIED_AFTER_CAPTURE = Slices.createSimpleSetSlice();
 
     //    enum DeferredTypeKey {DEFERRED_TYPE_KEY}
     //    WritableSlice<DeferredTypeKey, Collection<DeferredType>> DEFERRED_TYPES = Slices.createSimpleSlice();
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Counts the delegating traces created and committed in a thread while the statistics are installed,
+ * see BodyResolver.getTraceStatistics()
+ */
+public final class BindingTraceStatistics {
+    private static final ThreadLocal<BindingTraceStatistics> CURRENT = new ThreadLocal<BindingTraceStatistics>();
+
+    private int createdCount;
+    private int committedCount;
+
+    /**
+     * Makes the traces created and committed in the current thread count in the given statistics, or nowhere if it is null.
+     * @return the statistics installed before
+     */
+    @Nullable
+    public static BindingTraceStatistics install(@Nullable BindingTraceStatistics statistics) {
+        BindingTraceStatistics previous = CURRENT.get();
+        CURRENT.set(statistics);
+        return previous;
+    }
+
+    /*package*/ static void traceCreated() {
+        BindingTraceStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.createdCount++;
+        }
+    }
+
+    /*package*/ static void traceCommitted() {
+        BindingTraceStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.committedCount++;
+        }
+    }
+
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    public int getCommittedCount() {
+        return committedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "traces created: " + createdCount + ", committed: " + committedCount;
+    }
+}
@@ -16,15 +16,21 @@
 
 package org.jetbrains.jet.lang.resolve;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
 import com.intellij.util.containers.Queue;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.descriptors.impl.FunctionDescriptorUtil;
 import org.jetbrains.jet.lang.descriptors.impl.MutableClassDescriptor;
+import org.jetbrains.jet.lang.diagnostics.Diagnostic;
 import org.jetbrains.jet.lang.psi.*;
 import org.jetbrains.jet.lang.resolve.calls.util.CallMaker;
 import org.jetbrains.jet.lang.resolve.calls.CallResolver;
@@ -37,14 +43,21 @@ import org.jetbrains.jet.lang.resolve.scopes.WritableScopeImpl;
 import org.jetbrains.jet.lang.resolve.scopes.receivers.ReceiverValue;
 import org.jetbrains.jet.lang.types.*;
 import org.jetbrains.jet.lang.types.checker.JetTypeChecker;
+import org.jetbrains.jet.lang.types.checker.SubtypingCache;
 import org.jetbrains.jet.lang.types.expressions.ExpressionTypingServices;
 import org.jetbrains.jet.lexer.JetTokens;
 import org.jetbrains.jet.util.Box;
 import org.jetbrains.jet.util.lazy.ReenteringLazyValueComputationException;
+import org.jetbrains.jet.util.slicedmap.ReadOnlySlice;
 import org.jetbrains.jet.util.slicedmap.WritableSlice;
+import org.jetbrains.jet.utils.ExceptionUtils;
 
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.jetbrains.jet.lang.descriptors.ReceiverParameterDescriptor.NO_RECEIVER_PARAMETER;
 import static org.jetbrains.jet.lang.diagnostics.Errors.*;
@@ -52,6 +65,8 @@ import static org.jetbrains.jet.lang.resolve.BindingContext.DEFERRED_TYPE;
 import static org.jetbrains.jet.lang.types.TypeUtils.NO_EXPECTED_TYPE;
 
 public class BodyResolver {
+    private static final Logger LOG = Logger.getInstance(BodyResolver.class);
+
     @NotNull
     private BodiesResolveContext context;
     @NotNull
@@ -70,6 +85,10 @@ public class BodyResolver {
     private ControlFlowAnalyzer controlFlowAnalyzer;
     @NotNull
     private DeclarationsChecker declarationsChecker;
+    @NotNull
+    private final SubtypingCache subtypingCache = new SubtypingCache();
+    @NotNull
+    private final Map<PsiFile, BindingTraceStatistics> traceStatistics = Maps.newLinkedHashMap();
 
     @Inject
     public void setTopDownAnalysisParameters(@NotNull TopDownAnalysisParameters topDownAnalysisParameters) {
@@ -137,9 +156,46 @@ public class BodyResolver {
     }
 
     public void resolveBodies() {
-        resolveBehaviorDeclarationBodies(context);
-        controlFlowAnalyzer.process(context);
-        declarationsChecker.process(context);
+        // all the supertypes and upper bounds are resolved by now, so subtyping results can be cached until the end of analysis
+        // local declarations are resolved within the body of the enclosing declaration, its cache is restored afterwards
+        SubtypingCache outerCache = JetTypeChecker.INSTANCE.setSubtypingCache(subtypingCache);
+        try {
+            resolveBehaviorDeclarationBodies(context);
+            controlFlowAnalyzer.process(context);
+            declarationsChecker.process(context);
+        }
+        finally {
+            JetTypeChecker.INSTANCE.setSubtypingCache(outerCache);
+        }
+        if (LOG.isDebugEnabled() && !topDownAnalysisParameters.isDeclaredLocally()) {
+            LOG.debug("Bodies resolved: " + subtypingCache);
+        }
+    }
+
+    /**
+     * The cache of subtyping checks made while resolving bodies, its hit and miss counts show how well it works
+     */
+    @NotNull
+    public SubtypingCache getSubtypingCache() {
+        return subtypingCache;
+    }
+
+    /**
+     * The numbers of traces created and committed while resolving function bodies, by file
+     */
+    @NotNull
+    public Map<PsiFile, BindingTraceStatistics> getTraceStatistics() {
+        return traceStatistics;
+    }
+
+    @NotNull
+    private BindingTraceStatistics getTraceStatistics(@NotNull PsiFile file) {
+        BindingTraceStatistics statistics = traceStatistics.get(file);
+        if (statistics == null) {
+            statistics = new BindingTraceStatistics();
+            traceStatistics.put(file, statistics);
+        }
+        return statistics;
     }
 
     private void resolveDelegationSpecifierLists() {
@@ -363,7 +419,7 @@ public class BodyResolver {
                     parameterScope.addVariableDescriptor(valueParameterDescriptor);
                 }
                 parameterScope.changeLockLevel(WritableScope.LockLevel.READING);
-                checkDefaultParameterValues(klass.getPrimaryConstructorParameters(), unsubstitutedPrimaryConstructor.getValueParameters(), parameterScope);
+                checkDefaultParameterValues(klass.getPrimaryConstructorParameters(), unsubstitutedPrimaryConstructor.getValueParameters(), parameterScope, trace);
             }
         }
     }
@@ -473,6 +529,11 @@ public class BodyResolver {
     }
 
     private void resolveFunctionBodies() {
+        if (topDownAnalysisParameters.isParallelBodyResolve()) {
+            resolveFunctionBodiesInParallel();
+            return;
+        }
+
         for (Map.Entry<JetNamedFunction, SimpleFunctionDescriptor> entry : this.context.getFunctions().entrySet()) {
             JetNamedFunction declaration = entry.getKey();
             SimpleFunctionDescriptor descriptor = entry.getValue();
@@ -482,12 +543,158 @@ public class BodyResolver {
             JetScope declaringScope = this.context.getDeclaringScopes().apply(declaration);
             assert declaringScope != null;
 
-            resolveFunctionBody(trace, declaration, descriptor, declaringScope);
+            if (topDownAnalysisParameters.isDeclaredLocally()) {
+                // counted in the statistics of the enclosing file
+                resolveFunctionBody(trace, declaration, descriptor, declaringScope);
+            }
+            else {
+                BindingTraceStatistics outerStatistics = BindingTraceStatistics.install(getTraceStatistics(declaration.getContainingFile()));
+                try {
+                    resolveFunctionBody(trace, declaration, descriptor, declaringScope);
+                }
+                finally {
+                    BindingTraceStatistics.install(outerStatistics);
+                }
+            }
 
             assert descriptor.getReturnType() != null;
         }
     }
 
+    /**
+     * Resolves function bodies file by file on a thread pool. Every file is resolved into its own trace, and the traces
+     * are merged into the shared one in the order of files, so the resulting bindings and diagnostics do not depend
+     * on the scheduling.
+     *
+     * Bodies may only be resolved concurrently once all the return types are known: computing a deferred return type
+     * resolves the body of another function, so it is done beforehand in the current thread. Descriptors which are still
+     * resolved lazily (e.g. Java classes) record into the shared trace, so the workers read it and resolve them
+     * under one SharedResolveLock.
+     */
+    private void resolveFunctionBodiesInParallel() {
+        final Map<PsiFile, List<JetNamedFunction>> functionsByFile = Maps.newLinkedHashMap();
+        for (Map.Entry<JetNamedFunction, SimpleFunctionDescriptor> entry : this.context.getFunctions().entrySet()) {
+            JetNamedFunction declaration = entry.getKey();
+            computeDeferredType(entry.getValue().getReturnType());
+
+            PsiFile file = declaration.getContainingFile();
+            List<JetNamedFunction> functions = functionsByFile.get(file);
+            if (functions == null) {
+                functions = Lists.newArrayList();
+                functionsByFile.put(file, functions);
+            }
+            functions.add(declaration);
+        }
+
+        int threadCount = Math.min(functionsByFile.size(), Runtime.getRuntime().availableProcessors());
+        if (threadCount <= 1) {
+            for (Map.Entry<PsiFile, List<JetNamedFunction>> entry : functionsByFile.entrySet()) {
+                resolveFunctionBodies(trace, entry.getValue(), getTraceStatistics(entry.getKey()));
+            }
+            return;
+        }
+
+        // Lazily resolved descriptors (e.g. Java classes) record into the shared trace while the workers read it
+        final Object sharedLock = new Object();
+        final BindingContext sharedContext = createLockProtectedContext(trace.getBindingContext(), sharedLock);
+
+        List<DelegatingBindingTrace> fileTraces = Lists.newArrayList();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<DelegatingBindingTrace>> results = Lists.newArrayList();
+            for (final Map.Entry<PsiFile, List<JetNamedFunction>> entry : functionsByFile.entrySet()) {
+                final BindingTraceStatistics statistics = getTraceStatistics(entry.getKey());
+                results.add(executor.submit(new Callable<DelegatingBindingTrace>() {
+                    @Override
+                    public DelegatingBindingTrace call() {
+                        JetTypeChecker.INSTANCE.setSubtypingCache(subtypingCache);
+                        Object outerLock = SharedResolveLock.install(sharedLock);
+                        try {
+                            DelegatingBindingTrace fileTrace = new DelegatingBindingTrace(
+                                    sharedContext, "trace to resolve function bodies in parallel", entry.getKey());
+                            resolveFunctionBodies(fileTrace, entry.getValue(), statistics);
+                            return fileTrace;
+                        }
+                        finally {
+                            SharedResolveLock.install(outerLock);
+                        }
+                    }
+                }));
+            }
+
+            for (Future<DelegatingBindingTrace> result : results) {
+                fileTraces.add(ExceptionUtils.getResult(result));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        // The shared trace is only written to when no worker can read it
+        for (DelegatingBindingTrace fileTrace : fileTraces) {
+            fileTrace.addAllMyDataTo(trace);
+        }
+    }
+
+    @NotNull
+    private static BindingContext createLockProtectedContext(@NotNull final BindingContext context, @NotNull final Object lock) {
+        return new BindingContext() {
+            @Override
+            public Collection<Diagnostic> getDiagnostics() {
+                synchronized (lock) {
+                    return Lists.newArrayList(context.getDiagnostics());
+                }
+            }
+
+            @Override
+            public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+                synchronized (lock) {
+                    return context.get(slice, key);
+                }
+            }
+
+            @NotNull
+            @Override
+            public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+                synchronized (lock) {
+                    return Lists.newArrayList(context.getKeys(slice));
+                }
+            }
+
+            @NotNull
+            @TestOnly
+            @Override
+            public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+                synchronized (lock) {
+                    return context.getSliceContents(slice);
+                }
+            }
+        };
+    }
+
+    private void resolveFunctionBodies(
+            @NotNull BindingTrace trace,
+            @NotNull List<JetNamedFunction> functions,
+            @NotNull BindingTraceStatistics statistics
+    ) {
+        BindingTraceStatistics outerStatistics = BindingTraceStatistics.install(statistics);
+        try {
+            for (JetNamedFunction declaration : functions) {
+                SimpleFunctionDescriptor descriptor = this.context.getFunctions().get(declaration);
+
+                JetScope declaringScope = this.context.getDeclaringScopes().apply(declaration);
+                assert declaringScope != null;
+
+                resolveFunctionBody(trace, declaration, descriptor, declaringScope);
+
+                assert descriptor.getReturnType() != null;
+            }
+        }
+        finally {
+            BindingTraceStatistics.install(outerStatistics);
+        }
+    }
+
     public void resolveFunctionBody(
             @NotNull BindingTrace trace,
             @NotNull JetDeclarationWithBody function,
@@ -504,12 +711,17 @@ public class BodyResolver {
         List<JetParameter> valueParameters = function.getValueParameters();
         List<ValueParameterDescriptor> valueParameterDescriptors = functionDescriptor.getValueParameters();
 
-        checkDefaultParameterValues(valueParameters, valueParameterDescriptors, functionInnerScope);
+        checkDefaultParameterValues(valueParameters, valueParameterDescriptors, functionInnerScope, trace);
 
         assert functionDescriptor.getReturnType() != null;
     }
 
-    private void checkDefaultParameterValues(List<JetParameter> valueParameters, List<ValueParameterDescriptor> valueParameterDescriptors, JetScope declaringScope) {
+    private void checkDefaultParameterValues(
+            List<JetParameter> valueParameters,
+            List<ValueParameterDescriptor> valueParameterDescriptors,
+            JetScope declaringScope,
+            BindingTrace trace
+    ) {
         for (int i = 0; i < valueParameters.size(); i++) {
             ValueParameterDescriptor valueParameterDescriptor = valueParameterDescriptors.get(i);
             if (valueParameterDescriptor.hasDefaultValue()) {
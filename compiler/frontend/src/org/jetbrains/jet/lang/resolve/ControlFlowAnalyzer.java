@@ -78,6 +78,7 @@ public class ControlFlowAnalyzer {
         // or initialization of properties corresponds to a package declared in a file
         JetFlowInformationProvider flowInformationProvider = new JetFlowInformationProvider((JetElement) declarationContainer, trace);
         flowInformationProvider.recordInitializedVariables();
+        flowInformationProvider.recordVariablesNotModifiedAfterCapture();
 
         if (topDownAnalysisParameters.isDeclaredLocally()) return;
 
@@ -105,6 +106,7 @@ public class ControlFlowAnalyzer {
         if (!isPropertyAccessor) {
             flowInformationProvider.recordInitializedVariables();
         }
+        flowInformationProvider.recordVariablesNotModifiedAfterCapture();
 
         if (topDownAnalysisParameters.isDeclaredLocally()) return;
 
@@ -24,21 +24,45 @@ import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.jet.lang.diagnostics.Diagnostic;
 import org.jetbrains.jet.util.slicedmap.*;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
+/**
+ * A trace layered over a parent context, used to resolve something speculatively and then either commit the results
+ * to another trace or throw them away.
+ *
+ * Traces created to be committed, such as {@link TemporaryBindingTrace}, also keep an append-only log of all the records
+ * made to them besides the map which serves lookups, and commit by replaying the log rather than by copying the map entry
+ * by entry. The records are replayed in their original order, so rewrite policies and afterPut() of the slices act
+ * the same way in the target trace as they did here. When the target is itself a logging trace, whose record() is never
+ * overridden, the log is spliced onto the target's map and log without going through record() for each entry; the target
+ * needs the records in its log to commit them in turn. Any other target gets the records through its record().
+ * Other traces, which may live as long as the analysis, don't keep a second copy of their records, and commit the map
+ * entry by entry.
+ *
+ * Nothing is allocated before the first record or report, so creating a trace and discarding it is cheap.
+ */
 public class DelegatingBindingTrace implements BindingTrace {
+    // used for lookups before anything is recorded, never written to
+    private static final MutableSlicedMap EMPTY_MAP = IndexedSlicedMap.create();
+
     private final BindingContext parentContext;
-    private final MutableSlicedMap map = SlicedMapImpl.create();
-    private final List<Diagnostic> diagnostics = Lists.newArrayList();
     private final String name;
+    // only set for TemporaryBindingTrace, which keeps the base record(): commits are spliced into such traces
+    private final boolean logRecords;
+    // created on the first record
+    private MutableSlicedMap map;
+    // slice, key and value of every record in order, created on the first record if logRecords is set
+    private Object[] log;
+    private int logSize;
+    // created on the first report
+    private List<Diagnostic> diagnostics;
 
     private final BindingContext bindingContext = new BindingContext() {
         @Override
         public Collection<Diagnostic> getDiagnostics() {
-            ArrayList<Diagnostic> mergedDiagnostics = new ArrayList<Diagnostic>(diagnostics);
+            ArrayList<Diagnostic> mergedDiagnostics = diagnostics != null
+                                                      ? new ArrayList<Diagnostic>(diagnostics)
+                                                      : new ArrayList<Diagnostic>();
             mergedDiagnostics.addAll(parentContext.getDiagnostics());
             return mergedDiagnostics;
         }
@@ -60,14 +84,20 @@ public class DelegatingBindingTrace implements BindingTrace {
         @Override
         public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
             ImmutableMap<K, V> parentContents = parentContext.getSliceContents(slice);
-            ImmutableMap<K, V> currentContents = map.getSliceContents(slice);
+            ImmutableMap<K, V> currentContents = getMap().getSliceContents(slice);
             return ImmutableMap.<K, V>builder().putAll(parentContents).putAll(currentContents).build();
         }
     };
 
     public DelegatingBindingTrace(BindingContext parentContext, String debugName) {
+        this(parentContext, debugName, false);
+    }
+
+    protected DelegatingBindingTrace(BindingContext parentContext, String debugName, boolean logRecords) {
         this.parentContext = parentContext;
         this.name = debugName;
+        this.logRecords = logRecords;
+        BindingTraceStatistics.traceCreated();
     }
 
     public DelegatingBindingTrace(BindingContext parentContext, String debugName, @Nullable Object resolutionSubjectForMessage) {
@@ -80,9 +110,36 @@ public class DelegatingBindingTrace implements BindingTrace {
         return bindingContext;
     }
 
+    @NotNull
+    private MutableSlicedMap getMap() {
+        return map != null ? map : EMPTY_MAP;
+    }
+
     @Override
     public <K, V> void record(WritableSlice<K, V> slice, K key, V value) {
+        if (map == null) {
+            map = IndexedSlicedMap.create();
+        }
         map.put(slice, key, value);
+        if (logRecords) {
+            appendToLog(slice, key, value);
+        }
+    }
+
+    private void appendToLog(@NotNull WritableSlice<?, ?> slice, Object key, Object value) {
+        ensureLogCapacity(logSize + 3);
+        log[logSize++] = slice;
+        log[logSize++] = key;
+        log[logSize++] = value;
+    }
+
+    private void ensureLogCapacity(int capacity) {
+        if (log == null) {
+            log = new Object[Math.max(capacity, 3 * 4)];
+        }
+        else if (capacity > log.length) {
+            log = Arrays.copyOf(log, Math.max(capacity, 2 * log.length));
+        }
     }
 
     @Override
@@ -92,7 +149,7 @@ public class DelegatingBindingTrace implements BindingTrace {
 
     @Override
     public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
-        V value = map.get(slice, key);
+        V value = getMap().get(slice, key);
         if (slice instanceof Slices.SetSlice) {
             assert value != null;
             if (value.equals(true)) return value;
@@ -107,7 +164,7 @@ public class DelegatingBindingTrace implements BindingTrace {
     @NotNull
     @Override
     public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
-        Collection<K> keys = map.getKeys(slice);
+        Collection<K> keys = getMap().getKeys(slice);
         Collection<K> fromParent = parentContext.getKeys(slice);
         if (keys.isEmpty()) return fromParent;
         if (fromParent.isEmpty()) return keys;
@@ -126,21 +183,46 @@ public class DelegatingBindingTrace implements BindingTrace {
         clear();
     }
 
+    @SuppressWarnings("unchecked")
     public void addAllMyDataTo(@NotNull BindingTrace trace, @Nullable TraceEntryFilter filter, boolean commitDiagnostics) {
-        for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
-            SlicedMapKey slicedMapKey = entry.getKey();
-
-            WritableSlice slice = slicedMapKey.getSlice();
-            Object key = slicedMapKey.getKey();
-            Object value = entry.getValue();
-
-            if (filter == null || filter.accept(slice, key)) {
-                //noinspection unchecked
-                trace.record(slice, key, value);
+        BindingTraceStatistics.traceCommitted();
+
+        if (!logRecords) {
+            for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : getMap()) {
+                SlicedMapKey slicedMapKey = entry.getKey();
+                WritableSlice slice = slicedMapKey.getSlice();
+                Object key = slicedMapKey.getKey();
+                if (filter == null || filter.accept(slice, key)) {
+                    trace.record(slice, key, entry.getValue());
+                }
+            }
+        }
+        else if (filter == null && trace instanceof DelegatingBindingTrace && ((DelegatingBindingTrace) trace).logRecords) {
+            DelegatingBindingTrace target = (DelegatingBindingTrace) trace;
+            if (logSize > 0) {
+                if (target.map == null) {
+                    target.map = IndexedSlicedMap.create();
+                }
+                for (int i = 0; i < logSize; i += 3) {
+                    target.map.put((WritableSlice) log[i], log[i + 1], log[i + 2]);
+                }
+                // the target replays its log when it is committed in turn
+                target.ensureLogCapacity(target.logSize + logSize);
+                System.arraycopy(log, 0, target.log, target.logSize, logSize);
+                target.logSize += logSize;
+            }
+        }
+        else {
+            for (int i = 0; i < logSize; i += 3) {
+                WritableSlice slice = (WritableSlice) log[i];
+                Object key = log[i + 1];
+                if (filter == null || filter.accept(slice, key)) {
+                    trace.record(slice, key, log[i + 2]);
+                }
             }
         }
 
-        if (!commitDiagnostics) return;
+        if (!commitDiagnostics || diagnostics == null) return;
 
         for (Diagnostic diagnostic : diagnostics) {
             trace.report(diagnostic);
@@ -148,12 +230,17 @@ public class DelegatingBindingTrace implements BindingTrace {
     }
 
     public void clear() {
-        map.clear();
-        diagnostics.clear();
+        map = null;
+        log = null;
+        logSize = 0;
+        diagnostics = null;
     }
 
     @Override
     public void report(@NotNull Diagnostic diagnostic) {
+        if (diagnostics == null) {
+            diagnostics = Lists.newArrayList();
+        }
         diagnostics.add(diagnostic);
     }
 
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
@@ -38,6 +39,7 @@ import org.jetbrains.jet.lang.resolve.scopes.WritableScopeImpl;
 import javax.inject.Inject;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import static org.jetbrains.jet.lang.resolve.BindingContext.*;
 
@@ -46,6 +48,8 @@ public class NamespaceFactoryImpl implements NamespaceFactory {
     private ModuleDescriptor moduleDescriptor;
     private BindingTrace trace;
     private ModuleConfiguration configuration;
+    // member scopes of these namespaces are locked for reading by TopDownAnalyzer once all the declarations are added
+    private final List<NamespaceDescriptorImpl> createdNamespaces = Lists.newArrayList();
 
     @Inject
     public void setModuleDescriptor(ModuleDescriptor moduleDescriptor) {
@@ -62,6 +66,11 @@ public class NamespaceFactoryImpl implements NamespaceFactory {
         this.configuration = configuration;
     }
 
+    @NotNull
+    public List<NamespaceDescriptorImpl> getCreatedNamespaces() {
+        return createdNamespaces;
+    }
+
     @NotNull
     public NamespaceDescriptorImpl createNamespaceDescriptorPathIfNeeded(@NotNull JetFile file,
                                                                          @NotNull JetScope outerScope,
@@ -189,6 +198,7 @@ public class NamespaceFactoryImpl implements NamespaceFactory {
 
         namespaceDescriptor.initialize(scope);
         scope.changeLockLevel(WritableScope.LockLevel.BOTH);
+        createdNamespaces.add(namespaceDescriptor);
         //
         configuration.extendNamespaceScope(trace, namespaceDescriptor, scope);
         owner.addNamespace(namespaceDescriptor);
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The monitor guarding the state which is shared by the threads resolving function bodies in parallel (see BodyResolver):
+ * the trace of the analysis, and the descriptors which are resolved lazily and record into it, e.g. Java classes.
+ *
+ * Outside of parallel resolution every thread gets a monitor of its own, so synchronizing on it is cheap and can't deadlock.
+ */
+public final class SharedResolveLock {
+    private static final ThreadLocal<Object> CURRENT = new ThreadLocal<Object>() {
+        @Override
+        protected Object initialValue() {
+            return new Object();
+        }
+    };
+
+    private SharedResolveLock() {
+    }
+
+    @NotNull
+    public static Object get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes the current thread use the given monitor.
+     * @return the monitor used before
+     */
+    @NotNull
+    /*package*/ static Object install(@NotNull Object lock) {
+        Object previous = CURRENT.get();
+        CURRENT.set(lock);
+        return previous;
+    }
+}
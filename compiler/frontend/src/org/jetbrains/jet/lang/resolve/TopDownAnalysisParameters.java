@@ -32,16 +32,27 @@ public class TopDownAnalysisParameters {
     private final boolean declaredLocally;
     @NotNull
     private final List<AnalyzerScriptParameter> scriptParameters;
+    private final boolean parallelBodyResolve;
 
     public TopDownAnalysisParameters(
             @NotNull Predicate<PsiFile> analyzeCompletely,
             boolean analyzingBootstrapLibrary,
             boolean declaredLocally,
             @NotNull List<AnalyzerScriptParameter> scriptParameters) {
+        this(analyzeCompletely, analyzingBootstrapLibrary, declaredLocally, scriptParameters, false);
+    }
+
+    public TopDownAnalysisParameters(
+            @NotNull Predicate<PsiFile> analyzeCompletely,
+            boolean analyzingBootstrapLibrary,
+            boolean declaredLocally,
+            @NotNull List<AnalyzerScriptParameter> scriptParameters,
+            boolean parallelBodyResolve) {
         this.analyzeCompletely = analyzeCompletely;
         this.analyzingBootstrapLibrary = analyzingBootstrapLibrary;
         this.declaredLocally = declaredLocally;
         this.scriptParameters = scriptParameters;
+        this.parallelBodyResolve = parallelBodyResolve;
     }
 
     @NotNull
@@ -61,4 +72,12 @@ public class TopDownAnalysisParameters {
     public List<AnalyzerScriptParameter> getScriptParameters() {
         return scriptParameters;
     }
+
+    /**
+     * Function bodies of different files are resolved concurrently, each file into its own trace
+     * @see BodyResolver
+     */
+    public boolean isParallelBodyResolve() {
+        return parallelBodyResolve;
+    }
 }
@@ -148,6 +148,14 @@ public class TopDownAnalyzer {
             if(!namespaceScope.getKey().isScript())
                 namespaceScope.getValue().changeLockLevel(WritableScope.LockLevel.READING);
         }
+        // Nothing is added to the namespaces after this point, unless the REPL analyzes its next line into them.
+        // Star imports of these namespaces import their member scopes, which have to be locked for reading
+        // for the lookups in the imported scopes of the file scopes to be memoized
+        if (context.getScripts().isEmpty()) {
+            for (NamespaceDescriptorImpl namespaceDescriptor : namespaceFactory.getCreatedNamespaces()) {
+                namespaceDescriptor.getMemberScope().changeLockLevel(WritableScope.LockLevel.READING);
+            }
+        }
     }
 
     public static void processStandardLibraryNamespace(
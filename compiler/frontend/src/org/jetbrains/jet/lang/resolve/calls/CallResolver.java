@@ -394,10 +394,21 @@ public class CallResolver {
 
         TemporaryBindingTrace traceForFirstNonemptyCandidateSet = null;
         OverloadResolutionResultsImpl<F> resultsForFirstNonemptyCandidateSet = null;
+        // The first non-empty task, if some of its candidates were filtered out: it is resolved with all of them to report errors
+        ResolutionTask<D, F> firstNonemptyFilteredTask = null;
+        ExtensionReceiverFilter receiverFilter = new ExtensionReceiverFilter();
         for (ResolutionTask<D, F> task : prioritizedTasks) {
+            // Candidates with inapplicable receivers can't succeed, they are only resolved to report errors
+            // if the task is the first non-empty one and nothing else succeeds
+            List<ResolutionCandidate<D>> plausibleCandidates = receiverFilter.filterPlausible(task.getCandidates());
+            boolean allPlausible = plausibleCandidates.size() == task.getCandidates().size();
+
             TemporaryBindingTrace taskTrace = TemporaryBindingTrace.create(context.trace, "trace to resolve a task for", task.reference);
-            OverloadResolutionResultsImpl<F> results = performResolutionGuardedForExtraFunctionLiteralArguments(
-                    task.replaceBindingTrace(taskTrace), callTransformer, context.trace);
+            OverloadResolutionResultsImpl<F> results = plausibleCandidates.isEmpty()
+                    ? OverloadResolutionResultsImpl.<F>nameNotFound()
+                    : performResolutionGuardedForExtraFunctionLiteralArguments(
+                            (allPlausible ? task : task.replaceCandidates(plausibleCandidates)).replaceBindingTrace(taskTrace),
+                            callTransformer, context.trace);
             if (results.isSuccess() || results.isAmbiguity()) {
                 taskTrace.commit();
 
@@ -412,11 +423,23 @@ public class CallResolver {
                 results.setTrace(taskTrace);
                 return results;
             }
-            if (traceForFirstNonemptyCandidateSet == null && !task.getCandidates().isEmpty() && !results.isNothing()) {
-                traceForFirstNonemptyCandidateSet = taskTrace;
-                resultsForFirstNonemptyCandidateSet = results;
+            if (traceForFirstNonemptyCandidateSet == null && firstNonemptyFilteredTask == null && !task.getCandidates().isEmpty()) {
+                if (!allPlausible) {
+                    // a task with candidates is never resolved to nothing, so this one is the first non-empty one
+                    firstNonemptyFilteredTask = task;
+                }
+                else if (!results.isNothing()) {
+                    traceForFirstNonemptyCandidateSet = taskTrace;
+                    resultsForFirstNonemptyCandidateSet = results;
+                }
             }
         }
+        if (firstNonemptyFilteredTask != null) {
+            traceForFirstNonemptyCandidateSet = TemporaryBindingTrace.create(
+                    context.trace, "trace to resolve a task for", firstNonemptyFilteredTask.reference);
+            resultsForFirstNonemptyCandidateSet = performResolutionGuardedForExtraFunctionLiteralArguments(
+                    firstNonemptyFilteredTask.replaceBindingTrace(traceForFirstNonemptyCandidateSet), callTransformer, context.trace);
+        }
         if (traceForFirstNonemptyCandidateSet != null) {
             traceForFirstNonemptyCandidateSet.commit();
             if (resultsForFirstNonemptyCandidateSet.isSingleResult()) {
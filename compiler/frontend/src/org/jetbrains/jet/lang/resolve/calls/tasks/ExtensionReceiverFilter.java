@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.calls.tasks;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.descriptors.CallableDescriptor;
+import org.jetbrains.jet.lang.descriptors.ReceiverParameterDescriptor;
+import org.jetbrains.jet.lang.descriptors.TypeParameterDescriptor;
+import org.jetbrains.jet.lang.resolve.scopes.receivers.ReceiverValue;
+import org.jetbrains.jet.lang.types.ErrorUtils;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeConstructor;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Separates the candidates which can't be applicable because of the receiver argument: a receiver argument may only be
+ * a subtype of the receiver parameter if the constructor of the parameter type is the constructor of the argument type
+ * or of one of its supertypes (see TypeCheckingProcedure.findCorrespondingSupertype()). Such candidates would fail
+ * the receiver check anyway, so resolving them is only needed to report errors.
+ *
+ * The constructors of the supertypes are collected once per receiver value.
+ */
+public class ExtensionReceiverFilter {
+    // receiver value -> constructors of its type and all its supertypes, or null if it may be a subtype of anything
+    private final Map<ReceiverValue, Set<TypeConstructor>> supertypeConstructors = Maps.newHashMap();
+
+    @NotNull
+    public <D extends CallableDescriptor> List<ResolutionCandidate<D>> filterPlausible(@NotNull Collection<ResolutionCandidate<D>> candidates) {
+        List<ResolutionCandidate<D>> result = Lists.newArrayListWithCapacity(candidates.size());
+        for (ResolutionCandidate<D> candidate : candidates) {
+            if (isPlausible(candidate)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    public boolean isPlausible(@NotNull ResolutionCandidate<?> candidate) {
+        ReceiverParameterDescriptor receiverParameter = candidate.getDescriptor().getReceiverParameter();
+        ReceiverValue receiverArgument = candidate.getReceiverArgument();
+        if (receiverParameter == null || !receiverArgument.exists()) return true;
+
+        JetType parameterType = receiverParameter.getType();
+        if (ErrorUtils.isErrorType(parameterType)) return true;
+        TypeConstructor parameterConstructor = parameterType.getConstructor();
+        // checked by type inference, against the bounds
+        if (parameterConstructor.getDeclarationDescriptor() instanceof TypeParameterDescriptor) return true;
+
+        Set<TypeConstructor> constructors = getSupertypeConstructors(receiverArgument);
+        return constructors == null || constructors.contains(parameterConstructor);
+    }
+
+    @Nullable
+    private Set<TypeConstructor> getSupertypeConstructors(@NotNull ReceiverValue receiver) {
+        if (supertypeConstructors.containsKey(receiver)) {
+            return supertypeConstructors.get(receiver);
+        }
+
+        JetType type = receiver.getType();
+        Set<TypeConstructor> constructors = null;
+        if (!ErrorUtils.isErrorType(type) && !KotlinBuiltIns.getInstance().isNothingOrNullableNothing(type)) {
+            constructors = Sets.newHashSet();
+            collectSupertypeConstructors(type.getConstructor(), constructors);
+        }
+        supertypeConstructors.put(receiver, constructors);
+        return constructors;
+    }
+
+    private static void collectSupertypeConstructors(@NotNull TypeConstructor constructor, @NotNull Set<TypeConstructor> result) {
+        if (!result.add(constructor)) return;
+        for (JetType supertype : constructor.getSupertypes()) {
+            collectSupertypeConstructors(supertype.getConstructor(), result);
+        }
+    }
+}
@@ -78,6 +78,15 @@ public class ResolutionTask<D extends CallableDescriptor, F extends D> extends C
         return true;
     }
 
+    @NotNull
+    public ResolutionTask<D, F> replaceCandidates(@NotNull Collection<ResolutionCandidate<D>> newCandidates) {
+        ResolutionTask<D, F> newTask = new ResolutionTask<D, F>(
+                newCandidates, reference, tracing, trace, scope, call, expectedType, dataFlowInfo, resolveMode, expressionPosition,
+                resolutionResultsCache);
+        newTask.setCheckingStrategy(checkingStrategy);
+        return newTask;
+    }
+
     @Override
     protected ResolutionTask<D, F> create(
             @NotNull BindingTrace trace,
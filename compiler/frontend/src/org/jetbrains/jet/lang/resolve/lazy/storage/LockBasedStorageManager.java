@@ -224,7 +224,7 @@ public class LockBasedStorageManager implements StorageManager {
         }
     }
 
-    private static class LockProtectedTrace implements BindingTrace {
+    /*package*/ static class LockProtectedTrace implements BindingTrace {
         private final Object lock;
         private final BindingTrace trace;
 
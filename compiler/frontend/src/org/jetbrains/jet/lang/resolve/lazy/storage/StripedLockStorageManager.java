@@ -0,0 +1,401 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.lazy.storage;
+
+import com.intellij.openapi.util.Computable;
+import com.intellij.util.Consumer;
+import com.intellij.util.Function;
+import com.intellij.util.containers.ConcurrentWeakValueHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.BindingTrace;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A storage manager that lets independent lazy values and memoized function entries be computed in parallel.
+ *
+ * Instead of one centralized lock, every lazy value and every key of a memoized function is guarded by one of a fixed
+ * number of lock stripes. Computations nest freely: a thread may hold several stripes at once, so two threads can end
+ * up waiting for each other. Such wait cycles are detected, and the thread that detects the cycle computes the value
+ * without the lock. The first published value always wins, so every caller observes the same result, but in this
+ * (rare) case the computation itself may run twice, and {@code postCompute} of the winner may run after other threads
+ * have seen the value.
+ *
+ * Reentering a computation of the same lazy value (or the same key) on the same thread is reported as an error.
+ */
+public class StripedLockStorageManager implements StorageManager {
+    private static final int DEFAULT_STRIPE_COUNT = 64;
+    private static final long WAIT_SLICE_MS = 10;
+
+    private final LockStripes stripes;
+
+    private final Object traceLock = new Object() {
+        @Override
+        public String toString() {
+            return "StripedLockStorageManager trace lock";
+        }
+    };
+
+    public StripedLockStorageManager() {
+        this(DEFAULT_STRIPE_COUNT);
+    }
+
+    public StripedLockStorageManager(int stripeCount) {
+        this.stripes = new LockStripes(stripeCount);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(
+            @NotNull Function<K, V> compute, @NotNull ReferenceKind valuesReferenceKind
+    ) {
+        ConcurrentMap<K, Object> map = createConcurrentMap(valuesReferenceKind);
+        return new StripedMemoizedFunctionToNotNull<K, V>(stripes, map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(
+            @NotNull Function<K, V> compute, @NotNull ReferenceKind valuesReferenceKind
+    ) {
+        ConcurrentMap<K, Object> map = createConcurrentMap(valuesReferenceKind);
+        return new StripedMemoizedFunction<K, V>(stripes, map, compute);
+    }
+
+    private static <K, V> ConcurrentMap<K, V> createConcurrentMap(ReferenceKind referenceKind) {
+        return (referenceKind == ReferenceKind.WEAK) ? new ConcurrentWeakValueHashMap<K, V>() : new ConcurrentHashMap<K, V>();
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValue(@NotNull Computable<T> computable) {
+        return new StripedNotNullLazyValue<T>(stripes, computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValueWithPostCompute(@NotNull Computable<T> computable, @NotNull final Consumer<T> postCompute) {
+        return new StripedNotNullLazyValue<T>(stripes, computable) {
+            @Override
+            protected void postCompute(@NotNull T value) {
+                postCompute.consume(value);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValue(@NotNull Computable<T> computable) {
+        return new StripedLazyValue<T>(stripes, computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValueWithPostCompute(
+            @NotNull Computable<T> computable, @NotNull final Consumer<T> postCompute
+    ) {
+        return new StripedLazyValue<T>(stripes, computable) {
+            @Override
+            protected void postCompute(@Nullable T value) {
+                postCompute.consume(value);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public BindingTrace createSafeTrace(@NotNull BindingTrace originalTrace) {
+        // Trace operations never acquire other locks, so a single dedicated lock can not take part in a deadlock
+        return new LockBasedStorageManager.LockProtectedTrace(traceLock, originalTrace);
+    }
+
+    private static class Nulls {
+        private static final Object NULL_VALUE = new Object();
+
+        @Nullable
+        @SuppressWarnings("unchecked")
+        private static <V> V unescape(@NotNull Object value) {
+            if (value == NULL_VALUE) return null;
+            return (V) value;
+        }
+
+        @NotNull
+        private static <V> Object escape(@Nullable V value) {
+            if (value == null) return NULL_VALUE;
+            return value;
+        }
+    }
+
+    private static class OwnedLock extends ReentrantLock {
+        @Nullable
+        public Thread getOwnerThread() {
+            return getOwner();
+        }
+    }
+
+    private static class LockStripes {
+        private final OwnedLock[] locks;
+        private final ConcurrentMap<Thread, OwnedLock> waitingFor = new ConcurrentHashMap<Thread, OwnedLock>();
+
+        // Lazy values and keys being computed by the current thread, used for recursion detection
+        private final ThreadLocal<Set<Object>> computing = new ThreadLocal<Set<Object>>() {
+            @Override
+            protected Set<Object> initialValue() {
+                return new HashSet<Object>();
+            }
+        };
+
+        public LockStripes(int count) {
+            assert count > 0 : "Stripe count must be positive: " + count;
+            locks = new OwnedLock[count];
+            for (int i = 0; i < count; i++) {
+                locks[i] = new OwnedLock();
+            }
+        }
+
+        @NotNull
+        public OwnedLock forHash(int hash) {
+            // Spread the bits: identity and String hash codes are often poor in the low bits
+            int h = hash ^ (hash >>> 16);
+            return locks[(h & 0x7fffffff) % locks.length];
+        }
+
+        /**
+         * @return true if the lock was acquired, false if waiting for it would deadlock
+         */
+        public boolean lock(@NotNull OwnedLock lock) {
+            if (lock.tryLock()) return true;
+
+            Thread current = Thread.currentThread();
+            waitingFor.put(current, lock);
+            try {
+                while (true) {
+                    if (lock.tryLock(WAIT_SLICE_MS, TimeUnit.MILLISECONDS)) return true;
+                    if (isWaitCycle(current, lock)) return false;
+                }
+            }
+            catch (InterruptedException e) {
+                current.interrupt();
+                return false;
+            }
+            finally {
+                waitingFor.remove(current);
+            }
+        }
+
+        private boolean isWaitCycle(@NotNull Thread current, @NotNull OwnedLock lock) {
+            OwnedLock next = lock;
+            // A cycle not involving the current thread must not make us loop forever
+            for (int steps = waitingFor.size() + 1; steps > 0 && next != null; steps--) {
+                Thread owner = next.getOwnerThread();
+                if (owner == null) return false;
+                if (owner == current) return true;
+                next = waitingFor.get(owner);
+            }
+            return false;
+        }
+
+        public void startComputing(@NotNull Object computation) {
+            if (!computing.get().add(computation)) {
+                throw new IllegalStateException("Recursion detected while computing " + computation);
+            }
+        }
+
+        public void finishComputing(@NotNull Object computation) {
+            computing.get().remove(computation);
+        }
+    }
+
+    private static class StripedLazyValue<T> implements NullableLazyValue<T> {
+        private final LockStripes stripes;
+        private final Computable<T> computable;
+
+        @Nullable
+        private volatile Object value = null;
+
+        // The first computed result, set before postCompute() runs
+        private final AtomicReference<Object> claimed = new AtomicReference<Object>();
+
+        public StripedLazyValue(@NotNull LockStripes stripes, @NotNull Computable<T> computable) {
+            this.stripes = stripes;
+            this.computable = computable;
+        }
+
+        @Override
+        public T compute() {
+            Object _value = value;
+            if (_value != null) return Nulls.unescape(_value);
+
+            OwnedLock lock = stripes.forHash(System.identityHashCode(this));
+            boolean locked = stripes.lock(lock);
+            try {
+                _value = value;
+                if (_value != null) return Nulls.unescape(_value);
+
+                // Only possible if a deadlock was resolved by computing without the lock
+                Object alreadyClaimed = claimed.get();
+                if (alreadyClaimed != null) return Nulls.unescape(alreadyClaimed);
+
+                stripes.startComputing(this);
+                try {
+                    T typedValue = computable.compute();
+                    if (!claimed.compareAndSet(null, Nulls.escape(typedValue))) {
+                        return Nulls.unescape(claimed.get());
+                    }
+
+                    postCompute(typedValue);
+                    value = Nulls.escape(typedValue);
+
+                    return typedValue;
+                }
+                finally {
+                    stripes.finishComputing(this);
+                }
+            }
+            finally {
+                if (locked) {
+                    lock.unlock();
+                }
+            }
+        }
+
+        protected void postCompute(T value) {
+            // Doing something in post-compute helps prevent infinite recursion
+        }
+
+        @Override
+        public String toString() {
+            return "lazy value of " + computable;
+        }
+    }
+
+    private static class StripedNotNullLazyValue<T> extends StripedLazyValue<T> implements NotNullLazyValue<T> {
+
+        public StripedNotNullLazyValue(@NotNull LockStripes stripes, @NotNull Computable<T> computable) {
+            super(stripes, computable);
+        }
+
+        @Override
+        @NotNull
+        public T compute() {
+            T result = super.compute();
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+
+    private static class StripedMemoizedFunction<K, V> implements MemoizedFunctionToNullable<K, V> {
+        private final LockStripes stripes;
+        private final ConcurrentMap<K, Object> cache;
+        private final Function<K, V> compute;
+
+        public StripedMemoizedFunction(@NotNull LockStripes stripes, @NotNull ConcurrentMap<K, Object> map, @NotNull Function<K, V> compute) {
+            this.stripes = stripes;
+            this.cache = map;
+            this.compute = compute;
+        }
+
+        @Override
+        @Nullable
+        public V fun(@NotNull K input) {
+            Object value = cache.get(input);
+            if (value != null) return Nulls.unescape(value);
+
+            OwnedLock lock = stripes.forHash(input.hashCode());
+            boolean locked = stripes.lock(lock);
+            try {
+                value = cache.get(input);
+                if (value != null) return Nulls.unescape(value);
+
+                Computation<K> computation = new Computation<K>(this, input);
+                stripes.startComputing(computation);
+                try {
+                    V typedValue = compute.fun(input);
+
+                    // Another thread may have published a value first if it broke a wait cycle by computing without the lock
+                    Object oldValue = cache.putIfAbsent(input, Nulls.escape(typedValue));
+                    if (oldValue != null) return Nulls.unescape(oldValue);
+
+                    return typedValue;
+                }
+                finally {
+                    stripes.finishComputing(computation);
+                }
+            }
+            finally {
+                if (locked) {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private static class StripedMemoizedFunctionToNotNull<K, V> extends StripedMemoizedFunction<K, V> implements MemoizedFunctionToNotNull<K, V> {
+
+        public StripedMemoizedFunctionToNotNull(
+                @NotNull LockStripes stripes,
+                @NotNull ConcurrentMap<K, Object> map,
+                @NotNull Function<K, V> compute
+        ) {
+            super(stripes, map, compute);
+        }
+
+        @NotNull
+        @Override
+        public V fun(@NotNull K input) {
+            V result = super.fun(input);
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+
+    private static class Computation<K> {
+        private final Object function;
+        private final K key;
+
+        private Computation(@NotNull Object function, @NotNull K key) {
+            this.function = function;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Computation)) return false;
+
+            Computation other = (Computation) o;
+            return function == other.function && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(function) + key.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "memoized function for " + key;
+        }
+    }
+}
@@ -108,14 +108,10 @@ public class ChainedScope implements JetScope {
 
     @NotNull
     @Override
-    public Set<FunctionDescriptor> getFunctions(@NotNull Name name) {
-        if (scopeChain.length == 0) {
-            return Collections.emptySet();
-        }
-
-        Set<FunctionDescriptor> result = Sets.newLinkedHashSet();
+    public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
+        Collection<FunctionDescriptor> result = Collections.emptySet();
         for (JetScope jetScope : scopeChain) {
-            result.addAll(jetScope.getFunctions(name));
+            result = JetScopeUtils.union(result, jetScope.getFunctions(name));
         }
         return result;
     }
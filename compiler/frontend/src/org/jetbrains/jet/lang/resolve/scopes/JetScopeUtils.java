@@ -47,6 +47,20 @@ public final class JetScopeUtils {
         );
     }
 
+    /**
+     * Merges the results of lookups in two scopes, keeping their order and dropping duplicates. Most names are found in
+     * at most one of the scopes looked up, so a new set is only created when both results are non-empty.
+     */
+    @NotNull
+    public static <D extends DeclarationDescriptor> Collection<D> union(@NotNull Collection<D> first, @NotNull Collection<D> second) {
+        if (second.isEmpty()) return first;
+        if (first.isEmpty()) return second;
+
+        Set<D> result = Sets.newLinkedHashSet(first);
+        result.addAll(second);
+        return result;
+    }
+
     /**
      * Get all extension descriptors among visible descriptors for current scope.
      *
@@ -128,7 +128,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
             allDescriptorsDone = true;
 
             // make sure no descriptors added to allDescriptors collection
-            changeLockLevel(LockLevel.READING);
+            lockForReadingWithoutMemoizing();
 
             allDescriptors.addAll(getWorkerScope().getAllDescriptors());
             for (JetScope imported : getImports()) {
@@ -288,13 +288,13 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
         checkMayRead();
 
-        Set<FunctionDescriptor> result = Sets.newLinkedHashSet(getFunctionGroups().get(name));
+        Collection<FunctionDescriptor> result = functionGroups != null && functionGroups.containsKey(name)
+                                                ? Collections.unmodifiableSet(functionGroups.get(name))
+                                                : Collections.<FunctionDescriptor>emptySet();
 
-        result.addAll(getWorkerScope().getFunctions(name));
+        result = JetScopeUtils.union(result, getWorkerScope().getFunctions(name));
 
-        result.addAll(super.getFunctions(name));
-
-        return result;
+        return JetScopeUtils.union(result, super.getFunctions(name));
     }
 
     @Override
@@ -20,10 +20,13 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.resolve.name.Name;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public abstract class WritableScopeWithImports extends JetScopeAdapter implements WritableScope {
 
@@ -33,8 +36,14 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
     @Nullable
     private List<JetScope> imports;
     private WritableScope currentIndividualImportScope;
+    // written only through this scope, so they get locked for reading with it
+    @Nullable
+    private List<WritableScope> individualImportScopes;
     protected final RedeclarationHandler redeclarationHandler;
     private List<ReceiverParameterDescriptor> implicitReceiverHierarchy;
+    // lookups in the imported scopes by name, created when they are first made in a scope locked for reading
+    @Nullable
+    private volatile ImportedDescriptorsCache importedDescriptorsCache;
 
     public WritableScopeWithImports(@NotNull JetScope scope, @NotNull RedeclarationHandler redeclarationHandler, @NotNull String debugName) {
         super(scope);
@@ -45,6 +54,8 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
 
 
     private LockLevel lockLevel = LockLevel.WRITING;
+    // false when the scope was only locked for reading as a side effect of computing all its descriptors
+    private boolean importedLookupsMemoizable = false;
 
     @Override
     public WritableScope changeLockLevel(LockLevel lockLevel) {
@@ -52,9 +63,31 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
             throw new IllegalStateException("cannot lower lock level from " + this.lockLevel + " to " + lockLevel + " at " + toString());
         }
         this.lockLevel = lockLevel;
+        importedLookupsMemoizable = lockLevel == LockLevel.READING;
+        importedDescriptorsCache = null;
+        if (lockLevel == LockLevel.READING) {
+            lockIndividualImportScopes();
+        }
         return this;
     }
 
+    /**
+     * Forbids writing to this scope, but unlike {@link #changeLockLevel} does not make the lookups in its imported scopes memoizable
+     */
+    protected void lockForReadingWithoutMemoizing() {
+        if (lockLevel == LockLevel.READING) return;
+        lockLevel = LockLevel.READING;
+        importedDescriptorsCache = null;
+        lockIndividualImportScopes();
+    }
+
+    private void lockIndividualImportScopes() {
+        if (individualImportScopes == null) return;
+        for (WritableScope individualImportScope : individualImportScopes) {
+            individualImportScope.changeLockLevel(LockLevel.READING);
+        }
+    }
+
     protected void checkMayRead() {
         if (lockLevel != LockLevel.READING && lockLevel != LockLevel.BOTH) {
             throw new IllegalStateException("cannot read with lock level " + lockLevel + " at " + toString());
@@ -94,6 +127,44 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
 
         getImports().add(0, imported);
         currentIndividualImportScope = null;
+        importedDescriptorsCache = null;
+    }
+
+    /**
+     * Nothing can be imported into a scope locked for reading, so the results of the lookups in the imported scopes
+     * are memoized by name: a name is looked up in all of them only once, and then every lookup is a single hash probe.
+     * This is only done once every imported writable scope (and every scope imported into it) is locked for reading too,
+     * until then the imported scopes are looked up on every call.
+     *
+     * The cache may be shared between threads resolving bodies in parallel.
+     */
+    @Nullable
+    private ImportedDescriptorsCache getImportedDescriptorsCache() {
+        if (!importedLookupsMemoizable || imports == null || imports.isEmpty()) return null;
+
+        ImportedDescriptorsCache cache = importedDescriptorsCache;
+        if (cache == null) {
+            if (!importsLockedForReading()) return null;
+
+            cache = new ImportedDescriptorsCache();
+            importedDescriptorsCache = cache;
+        }
+        // a lock level can't be lowered, and nothing can be imported into a scope locked for reading
+        assert importsLockedForReading() : "imported scopes were unlocked after their lookups were memoized at " + toString();
+        return cache;
+    }
+
+    private boolean importsLockedForReading() {
+        for (JetScope imported : getImports()) {
+            if (!(imported instanceof WritableScope)) continue;
+            if (!(imported instanceof WritableScopeWithImports)) return false;
+
+            WritableScopeWithImports importedWritableScope = (WritableScopeWithImports) imported;
+            if (importedWritableScope.lockLevel != LockLevel.READING || !importedWritableScope.importsLockedForReading()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @NotNull
@@ -124,6 +195,19 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
     public Set<VariableDescriptor> getProperties(@NotNull Name name) {
         checkMayRead();
 
+        ImportedDescriptorsCache cache = getImportedDescriptorsCache();
+        if (cache == null) return getImportedProperties(name);
+
+        Set<VariableDescriptor> properties = cache.properties.get(name);
+        if (properties == null) {
+            properties = Collections.unmodifiableSet(getImportedProperties(name));
+            cache.properties.put(name, properties);
+        }
+        return properties;
+    }
+
+    @NotNull
+    private Set<VariableDescriptor> getImportedProperties(@NotNull Name name) {
         Set<VariableDescriptor> properties = Sets.newLinkedHashSet();
         for (JetScope imported : getImports()) {
             properties.addAll(imported.getProperties(name));
@@ -135,6 +219,19 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
     public VariableDescriptor getLocalVariable(@NotNull Name name) {
         checkMayRead();
 
+        ImportedDescriptorsCache cache = getImportedDescriptorsCache();
+        if (cache == null) return getImportedLocalVariable(name);
+
+        Object cached = cache.localVariables.get(name);
+        if (cached == null) {
+            cached = ImportedDescriptorsCache.toCached(getImportedLocalVariable(name));
+            cache.localVariables.put(name, cached);
+        }
+        return ImportedDescriptorsCache.<VariableDescriptor>fromCached(cached);
+    }
+
+    @Nullable
+    private VariableDescriptor getImportedLocalVariable(@NotNull Name name) {
         // Meaningful lookup goes here
         for (JetScope imported : getImports()) {
             VariableDescriptor importedDescriptor = imported.getLocalVariable(name);
@@ -153,17 +250,54 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
         if (getImports().isEmpty()) {
             return Collections.emptySet();
         }
-        Set<FunctionDescriptor> result = Sets.newLinkedHashSet();
+
+        ImportedDescriptorsCache cache = getImportedDescriptorsCache();
+        if (cache == null) return getImportedFunctions(name);
+
+        Collection<FunctionDescriptor> functions = cache.functions.get(name);
+        if (functions == null) {
+            functions = Collections.unmodifiableCollection(getImportedFunctions(name));
+            cache.functions.put(name, functions);
+        }
+        return functions;
+    }
+
+    @NotNull
+    private Collection<FunctionDescriptor> getImportedFunctions(@NotNull Name name) {
+        Collection<FunctionDescriptor> result = Collections.emptySet();
         for (JetScope imported : getImports()) {
-            result.addAll(imported.getFunctions(name));
+            result = JetScopeUtils.union(result, imported.getFunctions(name));
         }
         return result;
     }
 
+    /**
+     * @return the memoized result of the lookup of functions with this name in the imported scopes, or null if there is none
+     */
+    @TestOnly
+    @Nullable
+    public Collection<FunctionDescriptor> getMemoizedImportedFunctions(@NotNull Name name) {
+        ImportedDescriptorsCache cache = importedDescriptorsCache;
+        return cache != null ? cache.functions.get(name) : null;
+    }
+
     @Override
     public ClassifierDescriptor getClassifier(@NotNull Name name) {
         checkMayRead();
 
+        ImportedDescriptorsCache cache = getImportedDescriptorsCache();
+        if (cache == null) return getImportedClassifier(name);
+
+        Object cached = cache.classifiers.get(name);
+        if (cached == null) {
+            cached = ImportedDescriptorsCache.toCached(getImportedClassifier(name));
+            cache.classifiers.put(name, cached);
+        }
+        return ImportedDescriptorsCache.<ClassifierDescriptor>fromCached(cached);
+    }
+
+    @Nullable
+    private ClassifierDescriptor getImportedClassifier(@NotNull Name name) {
         for (JetScope imported : getImports()) {
             ClassifierDescriptor importedClassifier = imported.getClassifier(name);
             if (importedClassifier != null) {
@@ -177,6 +311,19 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
     public ClassDescriptor getObjectDescriptor(@NotNull Name name) {
         checkMayRead();
 
+        ImportedDescriptorsCache cache = getImportedDescriptorsCache();
+        if (cache == null) return getImportedObjectDescriptor(name);
+
+        Object cached = cache.objectDescriptors.get(name);
+        if (cached == null) {
+            cached = ImportedDescriptorsCache.toCached(getImportedObjectDescriptor(name));
+            cache.objectDescriptors.put(name, cached);
+        }
+        return ImportedDescriptorsCache.<ClassDescriptor>fromCached(cached);
+    }
+
+    @Nullable
+    private ClassDescriptor getImportedObjectDescriptor(@NotNull Name name) {
         for (JetScope imported : getImports()) {
             ClassDescriptor objectDescriptor = imported.getObjectDescriptor(name);
             if (objectDescriptor != null) {
@@ -190,6 +337,19 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
     public NamespaceDescriptor getNamespace(@NotNull Name name) {
         checkMayRead();
 
+        ImportedDescriptorsCache cache = getImportedDescriptorsCache();
+        if (cache == null) return getImportedNamespace(name);
+
+        Object cached = cache.namespaces.get(name);
+        if (cached == null) {
+            cached = ImportedDescriptorsCache.toCached(getImportedNamespace(name));
+            cache.namespaces.put(name, cached);
+        }
+        return ImportedDescriptorsCache.<NamespaceDescriptor>fromCached(cached);
+    }
+
+    @Nullable
+    private NamespaceDescriptor getImportedNamespace(@NotNull Name name) {
         for (JetScope imported : getImports()) {
             NamespaceDescriptor importedDescriptor = imported.getNamespace(name);
             if (importedDescriptor != null) {
@@ -205,6 +365,10 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
             writableScope.changeLockLevel(LockLevel.BOTH);
             importScope(writableScope);
             currentIndividualImportScope = writableScope;
+            if (individualImportScopes == null) {
+                individualImportScopes = new ArrayList<WritableScope>();
+            }
+            individualImportScopes.add(writableScope);
         }
         return currentIndividualImportScope;
     }
@@ -241,6 +405,8 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
     @Override
     public void clearImports() {
         currentIndividualImportScope = null;
+        individualImportScopes = null;
+        importedDescriptorsCache = null;
         getImports().clear();
     }
 
@@ -249,4 +415,26 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
         return getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(this)) + " " + debugName + " for " + getContainingDeclaration();
     }
 
+    private static final class ImportedDescriptorsCache {
+        // stands for null, which concurrent maps can't hold
+        private static final Object NOT_FOUND = new Object();
+
+        private final ConcurrentMap<Name, Collection<FunctionDescriptor>> functions = new ConcurrentHashMap<Name, Collection<FunctionDescriptor>>();
+        private final ConcurrentMap<Name, Set<VariableDescriptor>> properties = new ConcurrentHashMap<Name, Set<VariableDescriptor>>();
+        private final ConcurrentMap<Name, Object> localVariables = new ConcurrentHashMap<Name, Object>();
+        private final ConcurrentMap<Name, Object> classifiers = new ConcurrentHashMap<Name, Object>();
+        private final ConcurrentMap<Name, Object> objectDescriptors = new ConcurrentHashMap<Name, Object>();
+        private final ConcurrentMap<Name, Object> namespaces = new ConcurrentHashMap<Name, Object>();
+
+        @NotNull
+        private static Object toCached(@Nullable DeclarationDescriptor descriptor) {
+            return descriptor != null ? descriptor : NOT_FOUND;
+        }
+
+        @Nullable
+        @SuppressWarnings("unchecked")
+        private static <D extends DeclarationDescriptor> D fromCached(@NotNull Object cached) {
+            return cached != NOT_FOUND ? (D) cached : null;
+        }
+    }
 }
@@ -67,15 +67,11 @@ public class WriteThroughScope extends WritableScopeWithImports {
     public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
         checkMayRead();
 
-        Set<FunctionDescriptor> result = Sets.newLinkedHashSet();
+        Collection<FunctionDescriptor> result = writableWorker.getFunctions(name);
 
-        result.addAll(writableWorker.getFunctions(name));
+        result = JetScopeUtils.union(result, getWorkerScope().getFunctions(name));
 
-        result.addAll(getWorkerScope().getFunctions(name));
-
-        result.addAll(super.getFunctions(name)); // Imports
-
-        return result;
+        return JetScopeUtils.union(result, super.getFunctions(name)); // Imports
     }
 
     @Override
@@ -33,6 +33,8 @@ public final class JetTypeImpl extends AnnotatedImpl implements JetType {
     private final List<TypeProjection> arguments;
     private final boolean nullable;
     private final JetScope memberScope;
+    // computed lazily: the arguments may be deferred types, 0 means not computed yet
+    private int hashCode;
 
     public JetTypeImpl(List<AnnotationDescriptor> annotations, TypeConstructor constructor, boolean nullable, @NotNull List<TypeProjection> arguments, JetScope memberScope) {
         super(annotations);
@@ -111,9 +113,13 @@ public final class JetTypeImpl extends AnnotatedImpl implements JetType {
 
     @Override
     public int hashCode() {
-        int result = constructor != null ? constructor.hashCode() : 0;
-        result = 31 * result + arguments.hashCode();
-        result = 31 * result + (nullable ? 1 : 0);
+        int result = hashCode;
+        if (result == 0) {
+            result = constructor != null ? constructor.hashCode() : 0;
+            result = 31 * result + arguments.hashCode();
+            result = 31 * result + (nullable ? 1 : 0);
+            hashCode = result;
+        }
         return result;
     }
 }
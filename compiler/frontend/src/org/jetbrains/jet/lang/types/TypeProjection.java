@@ -21,6 +21,8 @@ import org.jetbrains.annotations.NotNull;
 public class TypeProjection {
     private final Variance projection;
     private final JetType type;
+    // computed lazily: the type may be deferred, 0 means not computed yet
+    private int hashCode;
 
     public TypeProjection(@NotNull Variance projection, @NotNull JetType type) {
         this.projection = projection;
@@ -64,8 +66,12 @@ public class TypeProjection {
 
     @Override
     public int hashCode() {
-        int result = projection != null ? projection.hashCode() : 0;
-        result = 31 * result + (type != null ? type.hashCode() : 0);
+        int result = hashCode;
+        if (result == 0) {
+            result = projection != null ? projection.hashCode() : 0;
+            result = 31 * result + (type != null ? type.hashCode() : 0);
+            hashCode = result;
+        }
         return result;
     }
 }
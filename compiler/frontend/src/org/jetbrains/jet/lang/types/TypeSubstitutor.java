@@ -162,6 +162,10 @@ public class TypeSubstitutor {
                     JetType substitutedType = TypeUtils.makeNullableAsSpecified(replacement.getType(), resultingIsNullable);
                     Variance resultingProjectionKind = combine(originalProjection.getProjectionKind(), replacement.getProjectionKind());
 
+                    if (substitutedType == replacement.getType() && resultingProjectionKind == replacement.getProjectionKind()) {
+                        // projections are immutable, reuse the replacement along with its computed hash code
+                        return replacement;
+                    }
                     return new TypeProjection(resultingProjectionKind, substitutedType);
                 default:
                     throw new IllegalStateException();
@@ -193,7 +197,7 @@ public class TypeSubstitutor {
             switch (conflictType(typeParameter.getVariance(), substitutedTypeArgument.getProjectionKind())) {
                 case NO_CONFLICT:
                     // if the corresponding type parameter is already co/contra-variant, there's not need for an explicit projection
-                    if (typeParameter.getVariance() != Variance.INVARIANT) {
+                    if (typeParameter.getVariance() != Variance.INVARIANT && substitutedTypeArgument.getProjectionKind() != Variance.INVARIANT) {
                         substitutedTypeArgument = new TypeProjection(Variance.INVARIANT, substitutedTypeArgument.getType());
                     }
                     break;
@@ -19,6 +19,7 @@ package org.jetbrains.jet.lang.types.checker;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.jet.lang.types.TypeConstructor;
 
@@ -30,9 +31,33 @@ public class JetTypeChecker {
     private JetTypeChecker() {
     }
 
+    private static final ThreadLocal<SubtypingCache> SUBTYPING_CACHE = new ThreadLocal<SubtypingCache>();
+
     public boolean isSubtypeOf(@NotNull JetType subtype, @NotNull JetType supertype) {
 //        return new TypeCheckingProcedure().run(subtype, supertype);
-        return TYPE_CHECKER.isSubtypeOf(subtype, supertype);
+        SubtypingCache cache = SUBTYPING_CACHE.get();
+        if (cache == null) {
+            return TYPE_CHECKER.isSubtypeOf(subtype, supertype);
+        }
+
+        Boolean cachedResult = cache.get(subtype, supertype);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+        boolean result = TYPE_CHECKER.isSubtypeOf(subtype, supertype);
+        cache.put(subtype, supertype, result);
+        return result;
+    }
+
+    /**
+     * Makes isSubtypeOf() in the current thread use the given cache, or no cache if it is null.
+     * @return the cache used before, to be restored when the analysis is done
+     */
+    @Nullable
+    public SubtypingCache setSubtypingCache(@Nullable SubtypingCache cache) {
+        SubtypingCache previous = SUBTYPING_CACHE.get();
+        SUBTYPING_CACHE.set(cache);
+        return previous;
     }
 
     public boolean equalTypes(@NotNull JetType a, @NotNull JetType b) {
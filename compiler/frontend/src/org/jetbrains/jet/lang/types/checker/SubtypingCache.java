@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.types.checker;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.types.DeferredType;
+import org.jetbrains.jet.lang.types.JetType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of JetTypeChecker.isSubtypeOf() for pairs of equal types. The cache is only valid while the supertypes
+ * and upper bounds of the types involved do not change, so it is installed for a single analysis by
+ * JetTypeChecker.setSubtypingCache().
+ *
+ * The cache may be shared between threads: the pairs are spread over stripes by their hash codes, each stripe has its own lock
+ * and evicts its least recently used results when it is full, so the eviction order is only approximately LRU.
+ */
+public final class SubtypingCache {
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final int DEFAULT_STRIPE_COUNT = 16;
+
+    private final Stripe[] stripes;
+
+    public SubtypingCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_STRIPE_COUNT);
+    }
+
+    public SubtypingCache(int maxSize, int stripeCount) {
+        assert maxSize >= stripeCount : "Every stripe must be able to hold a result: " + maxSize + " < " + stripeCount;
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            // the stripes hold maxSize results together, the first ones take the remainder
+            stripes[i] = new Stripe(maxSize / stripeCount + (i < maxSize % stripeCount ? 1 : 0));
+        }
+    }
+
+    @Nullable
+    Boolean get(@NotNull JetType subtype, @NotNull JetType supertype) {
+        TypePair pair = new TypePair(subtype, supertype);
+        return getStripe(pair).get(pair);
+    }
+
+    void put(@NotNull JetType subtype, @NotNull JetType supertype, boolean result) {
+        TypePair pair = new TypePair(subtype, supertype);
+        getStripe(pair).put(pair, result);
+    }
+
+    @NotNull
+    private Stripe getStripe(@NotNull TypePair pair) {
+        // the high bits of the hash code take part too, since the stripe count is small
+        int hash = pair.hashCode ^ (pair.hashCode >>> 16);
+        return stripes[(hash & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    public long getHitCount() {
+        long hitCount = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                hitCount += stripe.hitCount;
+            }
+        }
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        long missCount = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                missCount += stripe.missCount;
+            }
+        }
+        return missCount;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.results.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "SubtypingCache{size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "}";
+    }
+
+    private static final class Stripe {
+        private final Map<TypePair, Boolean> results;
+        private long hitCount;
+        private long missCount;
+
+        private Stripe(final int maxSize) {
+            this.results = new LinkedHashMap<TypePair, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<TypePair, Boolean> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        @Nullable
+        private synchronized Boolean get(@NotNull TypePair pair) {
+            Boolean result = results.get(pair);
+            if (result != null) {
+                hitCount++;
+            }
+            else {
+                missCount++;
+            }
+            return result;
+        }
+
+        private synchronized void put(@NotNull TypePair pair, boolean result) {
+            results.put(pair, result);
+        }
+    }
+
+    private static final class TypePair {
+        private final JetType subtype;
+        private final JetType supertype;
+        private final int hashCode;
+
+        private TypePair(@NotNull JetType subtype, @NotNull JetType supertype) {
+            // DeferredType delegates equals() to the actual type, but the actual type is never equal to a DeferredType
+            this.subtype = unwrap(subtype);
+            this.supertype = unwrap(supertype);
+            this.hashCode = 31 * this.subtype.hashCode() + this.supertype.hashCode();
+        }
+
+        @NotNull
+        private static JetType unwrap(@NotNull JetType type) {
+            return type instanceof DeferredType ? ((DeferredType) type).getActualType() : type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TypePair)) return false;
+
+            TypePair pair = (TypePair) o;
+            return hashCode == pair.hashCode && subtype.equals(pair.subtype) && supertype.equals(pair.supertype);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
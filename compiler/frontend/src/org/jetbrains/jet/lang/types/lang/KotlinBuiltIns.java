@@ -80,6 +80,13 @@ public class KotlinBuiltIns {
 
     private static final int FUNCTION_TRAIT_COUNT = 23;
 
+    /**
+     * Overrides whether all the built-in declarations are resolved and checked for errors during initialization ("true"),
+     * or resolved lazily, on first access ("false"). By default they are resolved lazily only when the project they are
+     * created from is never disposed, see {@link #initialize(Project, boolean)}
+     */
+    public static final String EAGER_RESOLVE_PROPERTY = "kotlin.builtins.eager.resolve";
+
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     private static volatile KotlinBuiltIns instance = null;
@@ -90,6 +97,15 @@ public class KotlinBuiltIns {
     // This method must be called at least once per application run, on any project
     // before any type checking is run
     public static synchronized void initialize(@NotNull Project project) {
+        initialize(project, false);
+    }
+
+    /**
+     * The built-ins outlive the project they are created from, while lazy resolution reads the PSI of that project.
+     * So when the project or its application may be disposed before the process ends (as in the command line compiler
+     * and the compile daemon), the built-ins are resolved eagerly, even if they were created lazily before.
+     */
+    public static synchronized void initialize(@NotNull Project project, boolean projectMayBeDisposed) {
         if (instance == null) {
             if (initializationFailed != null) {
                 throw new RuntimeException(
@@ -111,6 +127,11 @@ public class KotlinBuiltIns {
                 initializing = false;
             }
         }
+
+        String eagerResolve = System.getProperty(EAGER_RESOLVE_PROPERTY);
+        if (eagerResolve != null ? Boolean.parseBoolean(eagerResolve) : projectMayBeDisposed) {
+            instance.resolveEagerly();
+        }
     }
 
     @NotNull // This asserts that initialize() is called before any resolution happens
@@ -134,6 +155,9 @@ public class KotlinBuiltIns {
 
     private volatile ImmutableSet<ClassDescriptor> nonPhysicalClasses;
 
+    // guarded by KotlinBuiltIns.class
+    private boolean resolvedEagerly = false;
+
     private final ImmutableSet<ClassDescriptor> functionClassesSet;
 
     private final ImmutableSet<ClassDescriptor> extensionFunctionClassesSet;
@@ -204,7 +228,17 @@ public class KotlinBuiltIns {
         }
 
         nonPhysicalClasses = computeNonPhysicalClasses();
+    }
+
+    private void resolveEagerly() {
+        if (!resolvedEagerly) {
+            forceResolveAllAndCheckErrors();
+            resolvedEagerly = true;
+        }
+    }
 
+    // Resolves all the built-in declarations, which otherwise are only resolved when they are first needed
+    public void forceResolveAllAndCheckErrors() {
         analyzer.forceResolveAll();
 
         AnalyzingUtils.throwExceptionOnErrors(analyzer.getBindingContext());
@@ -20,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BasicWritableSlice<K, V> implements WritableSlice<K, V> {
 
@@ -39,7 +40,10 @@ public class BasicWritableSlice<K, V> implements WritableSlice<K, V> {
         return null;
     }
     
+    private static final AtomicInteger sliceCount = new AtomicInteger();
+
     private String debugName;
+    private final int index = sliceCount.getAndIncrement();
     private final RewritePolicy rewritePolicy;
     private final boolean isCollective;
 
@@ -54,7 +58,17 @@ public class BasicWritableSlice<K, V> implements WritableSlice<K, V> {
 
     @Override
     public SlicedMapKey<K, V> makeKey(K key) {
-        return new SlicedMapKey<K, V>(this, key);
+        return new SlicedMapKey<K, V>(this, normalizeKey(key));
+    }
+
+    // The key under which the value is actually stored
+    protected K normalizeKey(K key) {
+        return key;
+    }
+
+    // A small number unique to this slice, used by sliced maps to index their storage
+    /*package*/ final int getIndex() {
+        return index;
     }
 
     // True to put, false to skip
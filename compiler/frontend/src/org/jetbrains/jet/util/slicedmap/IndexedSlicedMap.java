@@ -0,0 +1,358 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.util.slicedmap;
+
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * A sliced map that keeps a separate open-addressing table for every slice. Tables of the slices created through
+ * {@link BasicWritableSlice} are found by the slice's index, so neither {@link #get} nor {@link #put} allocate
+ * a {@link SlicedMapKey}, and {@link #getSliceContents} only visits the entries of the requested slice.
+ *
+ * Iteration order is: slices in the order they were first written to, entries of each slice in insertion order.
+ *
+ * {@link #getKeys} differs from {@link SlicedMapImpl}, which lists a key once per put and keeps removed keys: it returns
+ * the keys currently present in the slice, each once, in the order they were first put (as normalized by the slice).
+ */
+public class IndexedSlicedMap implements MutableSlicedMap {
+
+    public static IndexedSlicedMap create() {
+        return new IndexedSlicedMap();
+    }
+
+    // Indexed by BasicWritableSlice.getIndex(), allocated on the first put
+    private SliceTable[] tables;
+    // Slices not extending BasicWritableSlice, which are very rare
+    private Map<WritableSlice<?, ?>, SliceTable> otherTables;
+    private List<SliceTable> tablesInOrder;
+
+    private IndexedSlicedMap() {
+    }
+
+    @Override
+    public <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
+        if (!slice.check(key, value)) {
+            return;
+        }
+
+        WritableSlice<K, V> storageSlice = getStorageSlice(slice, key);
+        Object storageKey = getStorageKey(slice, key);
+        SliceTable table = getOrCreateTable(storageSlice);
+
+        RewritePolicy rewritePolicy = slice.getRewritePolicy();
+        if (rewritePolicy.rewriteProcessingNeeded(key)) {
+            int slot = table.findSlot(storageKey);
+            if (slot >= 0) {
+                //noinspection unchecked
+                if (!rewritePolicy.processRewrite(slice, key, (V) table.valueAt(slot), value)) {
+                    return;
+                }
+            }
+        }
+
+        table.put(storageKey, value);
+        slice.afterPut(this, key, value);
+    }
+
+    @Override
+    public void clear() {
+        tables = null;
+        otherTables = null;
+        tablesInOrder = null;
+    }
+
+    @Override
+    public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        SliceTable table = getTable(getStorageSlice(slice, key));
+        int slot = table == null ? -1 : table.findSlot(getStorageKey(slice, key));
+        //noinspection unchecked
+        V value = slot >= 0 ? (V) table.valueAt(slot) : null;
+        return slice.computeValue(this, key, value, slot < 0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+        assert slice.isCollective() : "Keys are not collected for slice " + slice;
+        SliceTable table = getTable(slice);
+        if (table == null) return Collections.emptyList();
+        List<K> keys = new ArrayList<K>(table.size());
+        for (int i = 0; i < table.used; i++) {
+            if (table.keys[i] != SliceTable.REMOVED) {
+                keys.add((K) SliceTable.unmaskNull(table.keys[i]));
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public <K, V> V remove(RemovableSlice<K, V> slice, K key) {
+        SliceTable table = getTable(getStorageSlice(slice, key));
+        //noinspection unchecked
+        return table == null ? null : (V) table.remove(getStorageKey(slice, key));
+    }
+
+    @Override
+    public Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>> iterator() {
+        List<Map.Entry<SlicedMapKey<?, ?>, ?>> entries = new ArrayList<Map.Entry<SlicedMapKey<?, ?>, ?>>();
+        if (tablesInOrder != null) {
+            for (SliceTable table : tablesInOrder) {
+                for (int i = 0; i < table.used; i++) {
+                    if (table.keys[i] == SliceTable.REMOVED) continue;
+                    //noinspection unchecked
+                    SlicedMapKey<?, ?> key = new SlicedMapKey(table.slice, SliceTable.unmaskNull(table.keys[i]));
+                    entries.add(new AbstractMap.SimpleImmutableEntry<SlicedMapKey<?, ?>, Object>(key, table.values[i]));
+                }
+            }
+        }
+        return entries.iterator();
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        SliceTable table = slice instanceof WritableSlice ? getTable((WritableSlice<?, ?>) slice) : null;
+        if (table == null) return ImmutableMap.of();
+        ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+        for (int i = 0; i < table.used; i++) {
+            if (table.keys[i] != SliceTable.REMOVED) {
+                builder.put((K) SliceTable.unmaskNull(table.keys[i]), (V) table.values[i]);
+            }
+        }
+        return builder.build();
+    }
+
+    // The slice under which the values are stored, as SlicedMapImpl would find it in the key made by the given slice
+    @NotNull
+    @SuppressWarnings("unchecked")
+    private static <K, V> WritableSlice<K, V> getStorageSlice(@NotNull ReadOnlySlice<K, V> slice, K key) {
+        if (slice instanceof BasicWritableSlice) {
+            return (BasicWritableSlice<K, V>) slice;
+        }
+        return slice.makeKey(key).getSlice();
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static <K, V> Object getStorageKey(@NotNull ReadOnlySlice<K, V> slice, K key) {
+        if (slice instanceof BasicWritableSlice) {
+            return SliceTable.maskNull(((BasicWritableSlice<K, V>) slice).normalizeKey(key));
+        }
+        return SliceTable.maskNull(slice.makeKey(key).getKey());
+    }
+
+    @Nullable
+    private SliceTable getTable(@NotNull WritableSlice<?, ?> slice) {
+        if (slice instanceof BasicWritableSlice) {
+            int index = ((BasicWritableSlice) slice).getIndex();
+            return tables != null && index < tables.length ? tables[index] : null;
+        }
+        return otherTables != null ? otherTables.get(slice) : null;
+    }
+
+    @NotNull
+    private SliceTable getOrCreateTable(@NotNull WritableSlice<?, ?> slice) {
+        SliceTable table = getTable(slice);
+        if (table != null) return table;
+
+        table = new SliceTable(slice);
+        if (slice instanceof BasicWritableSlice) {
+            int index = ((BasicWritableSlice) slice).getIndex();
+            if (tables == null || index >= tables.length) {
+                tables = Arrays.copyOf(tables == null ? new SliceTable[0] : tables, Math.max(index + 1, 2 * index));
+            }
+            tables[index] = table;
+        }
+        else {
+            if (otherTables == null) {
+                otherTables = new IdentityHashMap<WritableSlice<?, ?>, SliceTable>();
+            }
+            otherTables.put(slice, table);
+        }
+        if (tablesInOrder == null) {
+            tablesInOrder = new ArrayList<SliceTable>();
+        }
+        tablesInOrder.add(table);
+        return table;
+    }
+
+    /**
+     * Entries are kept in dense arrays in insertion order, removed entries are marked with {@link #REMOVED}.
+     * The hash index is an open-addressing (linear probing) table of positions in the dense arrays.
+     */
+    private static final class SliceTable {
+        private static final Object NULL_KEY = new Object();
+        private static final Object REMOVED = new Object();
+
+        private static final int FREE = 0;
+        private static final int DELETED = -1;
+
+        private static final int INITIAL_CAPACITY = 4;
+
+        private final WritableSlice<?, ?> slice;
+
+        private Object[] keys = new Object[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        // Number of positions used in the dense arrays, including removed entries
+        private int used;
+        private int removed;
+
+        // 1 + position in the dense arrays, or FREE, or DELETED
+        private int[] index = new int[2 * INITIAL_CAPACITY];
+        private int deletedInIndex;
+
+        private SliceTable(@NotNull WritableSlice<?, ?> slice) {
+            this.slice = slice;
+        }
+
+        public int size() {
+            return used - removed;
+        }
+
+        @NotNull
+        public static Object maskNull(@Nullable Object key) {
+            return key == null ? NULL_KEY : key;
+        }
+
+        @Nullable
+        public static Object unmaskNull(@NotNull Object key) {
+            return key == NULL_KEY ? null : key;
+        }
+
+        // Position of the key in the dense arrays or -1
+        public int findSlot(@NotNull Object key) {
+            int indexPosition = findIndexPosition(key);
+            return indexPosition < 0 ? -1 : index[indexPosition] - 1;
+        }
+
+        public Object valueAt(int slot) {
+            return values[slot];
+        }
+
+        public void put(@NotNull Object key, Object value) {
+            int slot = findSlot(key);
+            if (slot >= 0) {
+                values[slot] = value;
+                return;
+            }
+
+            if (used == keys.length) {
+                growDenseArrays();
+            }
+            // the index holds the live entries and the deleted markers
+            if (2 * (size() + 1 + deletedInIndex) > index.length) {
+                rehash();
+            }
+            keys[used] = key;
+            values[used] = value;
+            used++;
+            insertIntoIndex(key, used);
+        }
+
+        @Nullable
+        public Object remove(@NotNull Object key) {
+            int indexPosition = findIndexPosition(key);
+            if (indexPosition < 0) return null;
+
+            int slot = index[indexPosition] - 1;
+            Object oldValue = values[slot];
+            index[indexPosition] = DELETED;
+            deletedInIndex++;
+            keys[slot] = REMOVED;
+            values[slot] = null;
+            removed++;
+
+            // Reclaim the dense arrays and the index once most of the entries are removed, amortized by the removals
+            if (removed > used / 2) {
+                compact();
+            }
+            return oldValue;
+        }
+
+        private int findIndexPosition(@NotNull Object key) {
+            int mask = index.length - 1;
+            int position = hash(key) & mask;
+            while (true) {
+                int entry = index[position];
+                if (entry == FREE) return -1;
+                if (entry != DELETED) {
+                    Object candidate = keys[entry - 1];
+                    if (candidate == key || candidate.equals(key)) return position;
+                }
+                position = (position + 1) & mask;
+            }
+        }
+
+        private void insertIntoIndex(@NotNull Object key, int entry) {
+            int mask = index.length - 1;
+            int position = hash(key) & mask;
+            while (index[position] != FREE) {
+                position = (position + 1) & mask;
+            }
+            index[position] = entry;
+        }
+
+        private void growDenseArrays() {
+            keys = Arrays.copyOf(keys, 2 * keys.length);
+            values = Arrays.copyOf(values, 2 * values.length);
+        }
+
+        // Drops the removed entries from the dense arrays, keeping the order of the rest, and shrinks the arrays
+        private void compact() {
+            int capacity = Math.max(INITIAL_CAPACITY, 2 * size());
+            Object[] newKeys = new Object[capacity];
+            Object[] newValues = new Object[capacity];
+            int live = 0;
+            for (int i = 0; i < used; i++) {
+                if (keys[i] == REMOVED) continue;
+                newKeys[live] = keys[i];
+                newValues[live] = values[i];
+                live++;
+            }
+            keys = newKeys;
+            values = newValues;
+            used = live;
+            removed = 0;
+            rehash();
+        }
+
+        // Rebuilds the index without the deleted markers, its size only depends on the number of live entries
+        private void rehash() {
+            int capacity = 2 * INITIAL_CAPACITY;
+            while (2 * (size() + 1) > capacity) {
+                capacity *= 2;
+            }
+            index = new int[capacity];
+            deletedInIndex = 0;
+            for (int i = 0; i < used; i++) {
+                if (keys[i] != REMOVED) {
+                    insertIntoIndex(keys[i], i + 1);
+                }
+            }
+        }
+
+        private static int hash(@NotNull Object key) {
+            int h = key.hashCode();
+            return h ^ (h >>> 16);
+        }
+    }
+}
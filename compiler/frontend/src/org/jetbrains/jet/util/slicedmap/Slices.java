@@ -189,11 +189,11 @@ public class Slices {
             }
         }
         @Override
-        public SlicedMapKey<K, V> makeKey(K key) {
+        protected K normalizeKey(K key) {
             if (keyNormalizer == null) {
-                return super.makeKey(key);
+                return key;
             }
-            return super.makeKey(keyNormalizer.normalize(key));
+            return keyNormalizer.normalize(key);
         }
 
     }
@@ -0,0 +1,63 @@
+fun notModified(): Int {
+    var x = 1
+    x += 1
+    val f = { x * 10 }
+    return f()
+}
+
+fun modifiedAfterCapture(): Int {
+    var x = 1
+    val f = { x }
+    x = 2
+    return f()
+}
+
+fun modifiedInLoop(): Int {
+    var x = 0
+    var result = 0
+    for (i in 1..3) {
+        val f = { x }
+        x = i
+        result += f()
+    }
+    return result
+}
+
+fun redeclaredInLoop(): Int {
+    val functions = java.util.ArrayList<() -> Int>()
+    for (i in 1..3) {
+        var x = i
+        x *= 10
+        functions.add({ x })
+    }
+    var result = 0
+    for (f in functions) {
+        result += f()
+    }
+    return result
+}
+
+fun modifiedInClosure(): Int {
+    var x = 1
+    val inc = { x++ }
+    inc()
+    inc()
+    return x
+}
+
+fun capturedByLocalFunction(p: Int): Int {
+    var x = p
+    if (x < 0) x = -x
+    fun abs() = x
+    return abs()
+}
+
+fun box(): String {
+    if (notModified() != 20) return "fail 1"
+    if (modifiedAfterCapture() != 2) return "fail 2"
+    if (modifiedInLoop() != 3) return "fail 3"
+    if (redeclaredInLoop() != 60) return "fail 4"
+    if (modifiedInClosure() != 3) return "fail 5"
+    if (capturedByLocalFunction(-5) != 5) return "fail 6"
+    return "OK"
+}
@@ -0,0 +1,13 @@
+fun foo(): Int {
+    fun twice(x: Int) = x * 2
+    fun fact(n: Int): Int = if (n <= 1) 1 else n * fact(n - 1)
+
+    val f = { (x: Int) -> twice(x) + fact(3) }
+    val g = { { f(1) + twice(2) } }
+    return g()()
+}
+
+fun box(): String {
+    val result = foo()
+    return if (result == 12) "OK" else "Fail: $result"
+}
@@ -0,0 +1,40 @@
+inline fun <T> Iterable<T>.forEachElement(operation: (T) -> Unit) {
+    for (element in this) operation(element)
+}
+
+inline fun <T, R> Iterable<T>.mapElements(transform: (T) -> R): List<R> {
+    val result = java.util.ArrayList<R>()
+    for (element in this) {
+        result.add(transform(element))
+    }
+    return result
+}
+
+inline fun Int.repeat(body: (Int) -> Unit) {
+    var i = 0
+    while (i < this) {
+        body(i)
+        i++
+    }
+}
+
+inline fun <T> withPrefix(prefix: String, block: () -> T): String = prefix + block()
+
+fun box(): String {
+    val list = java.util.Arrays.asList("a", "b", "c")
+
+    var result = ""
+    list.forEachElement { result += it }
+    if (result != "abc") return "Fail forEach: $result"
+
+    val lengths = list.mapElements { it.length * 2 }
+    if (lengths.get(0) != 2 || lengths.size() != 3) return "Fail map: $lengths"
+
+    var sum = 0
+    3.repeat { i -> sum += i }
+    if (sum != 3) return "Fail repeat: $sum"
+
+    if (withPrefix("x") { 42 } != "x42") return "Fail prefix"
+
+    return "OK"
+}
@@ -0,0 +1,30 @@
+inline fun <T> runTwice(block: () -> T): T {
+    block()
+    return block()
+}
+
+inline fun <T> store(block: () -> T): () -> T = block
+
+inline fun suffix() = "K"
+
+inline fun factorial(n: Int): Int = if (n <= 1) 1 else n * factorial(n - 1)
+
+fun box(): String {
+    var counter = 0
+    // The literal declares a closure of its own and is passed as an object
+    val closures = java.util.ArrayList<() -> Int>()
+    runTwice {
+        counter++
+        closures.add({ counter })
+    }
+    if (closures.size() != 2 || closures.get(0)() != 2) return "Fail closure"
+
+    // The parameter is not only called, so the literal is passed as an object
+    if (store { "stored" }() != "stored") return "Fail store"
+
+    // Recursive calls are not inlined
+    if (factorial(5) != 120) return "Fail factorial"
+
+    // Calls inside inlined literals are inlined as well
+    return runTwice { "O" } + runTwice { suffix() }
+}
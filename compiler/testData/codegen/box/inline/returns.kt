@@ -0,0 +1,45 @@
+inline fun <T> Iterable<T>.firstMatching(predicate: (T) -> Boolean): T? {
+    for (element in this) {
+        if (predicate(element)) return element
+    }
+    return null
+}
+
+inline fun sign(x: Int): String {
+    when {
+        x > 0 -> return "+"
+        x < 0 -> return "-"
+    }
+    return "0"
+}
+
+inline fun orDefault(s: String?): String {
+    val result = s ?: return "default"
+    return result + "!"
+}
+
+inline fun assertThat(condition: Boolean, message: String) {
+    if (condition) return
+    throw AssertionError(message)
+}
+
+fun box(): String {
+    val list = java.util.Arrays.asList(1, 5, 10)
+    if (list.firstMatching { it > 3 } != 5) return "Fail first"
+    if (list.firstMatching { it > 30 } != null) return "Fail null"
+
+    // Inlined returns must not break the evaluation of the enclosing expression
+    val signs = sign(1) + sign(-1) + sign(0)
+    if (signs != "+-0") return "Fail sign: $signs"
+
+    if (orDefault(null) + orDefault("a") != "defaulta!") return "Fail elvis"
+
+    assertThat(true, "Fail check")
+    try {
+        assertThat(false, "OK")
+    }
+    catch (e: AssertionError) {
+        return e.getMessage()!!
+    }
+    return "Fail: no exception"
+}
@@ -0,0 +1,29 @@
+fun template(i: Int, l: Long, c: Char, b: Boolean, d: Double, s: String?, a: Any?): String {
+    val prefix = "<"
+    return "$prefix$i,$l,$c,$b,$d,$s,$a${'>'}"
+}
+
+fun box(): String {
+    val t = template(1, 2.toLong(), 'c', true, 0.5, null, null)
+    if (t != "<1,2,c,true,0.5,null,null>") return "fail 1: $t"
+
+    val n: String? = null
+    if (n + "!" != "null!") return "fail 2"
+    if (n + 1 + 'c' != "null1c") return "fail 3"
+    if ("a" + (1 + 2) + "b" != "a3b") return "fail 4"
+    if ("x" + 1.5 + true != "x1.5true") return "fail 5"
+    if ("a".plus(2) != "a2") return "fail 6"
+
+    var s = "a"
+    s += 1
+    s += 'b'
+    if (s != "a1b") return "fail 7: $s"
+
+    val five = 5
+    val byte: Byte = 7
+    val long = 10000000000
+    if ("$five$five,$byte,$long" != "55,7,10000000000") return "fail 8"
+    if ("a${"b$five"}c\n" != "ab5c\n") return "fail 9"
+
+    return "OK"
+}
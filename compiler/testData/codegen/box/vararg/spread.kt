@@ -0,0 +1,46 @@
+fun ints(vararg a: Int) = a
+
+fun strings(vararg a: String) = a
+
+fun IntArray.join(): String {
+    var result = ""
+    for (i in this) result += "$i,"
+    return result
+}
+
+fun Array<out String>.join(): String {
+    var result = ""
+    for (s in this) result += "$s,"
+    return result
+}
+
+var log = ""
+
+fun <T> logged(name: String, value: T): T {
+    log += name
+    return value
+}
+
+fun box(): String {
+    val a = ints(1, 2)
+    val empty = IntArray(0)
+    val r1 = ints(*a, 3, *empty, *a).join()
+    if (r1 != "1,2,3,1,2,") return "fail 1: $r1"
+
+    val s = strings("a", "b")
+    val r2 = strings("x", *s, "y").join()
+    if (r2 != "x,a,b,y,") return "fail 2: $r2"
+
+    val copy = strings(*s, *strings())
+    if (copy identityEquals s || copy.join() != "a,b,") return "fail 3"
+
+    val r4 = strings(logged("1", "x"), *logged("2", s), logged("3", "y")).join()
+    if (r4 != "x,a,b,y," || log != "123") return "fail 4: $r4 $log"
+
+    val big = IntArray(10000)
+    big[9999] = 5
+    val r5 = ints(*big, 6)
+    if (r5.size != 10001 || r5[9999] != 5 || r5[10000] != 6) return "fail 5"
+
+    return "OK"
+}
@@ -0,0 +1,22 @@
+enum class Color {
+    RED
+    GREEN
+    BLUE
+    BLACK
+}
+
+fun f(c: Color?) = when (c) {
+    Color.BLUE -> "blue"
+    Color.RED, Color.GREEN -> "warm"
+    Color.BLACK -> "black"
+    else -> "none"
+}
+
+fun box(): String {
+    if (f(Color.RED) != "warm") return "fail 1"
+    if (f(Color.GREEN) != "warm") return "fail 2"
+    if (f(Color.BLUE) != "blue") return "fail 3"
+    if (f(Color.BLACK) != "black") return "fail 4"
+    if (f(null) != "none") return "fail 5"
+    return "OK"
+}
@@ -0,0 +1,49 @@
+fun dense(x: Int) = when (x) {
+    1 -> "one"
+    2, 3 -> "two or three"
+    4 -> "four"
+    2 -> "unreachable"
+    else -> "other"
+}
+
+fun sparse(x: Int) = when (x) {
+    1 -> "one"
+    1000 -> "thousand"
+    1000000 -> "million"
+    else -> "other"
+}
+
+fun char(c: Char): Int = when (c) {
+    'a' -> 1
+    'b' -> 2
+    'z' -> 26
+    else -> 0
+}
+
+fun noElse(x: Int): String {
+    when (x) {
+        1 -> return "one"
+        2 -> return "two"
+        3 -> return "three"
+    }
+    return "other"
+}
+
+fun box(): String {
+    if (dense(1) != "one") return "fail 1"
+    if (dense(2) != "two or three") return "fail 2"
+    if (dense(3) != "two or three") return "fail 3"
+    if (dense(4) != "four") return "fail 4"
+    if (dense(5) != "other") return "fail 5"
+    if (dense(-1) != "other") return "fail 6"
+
+    if (sparse(1) != "one") return "fail 7"
+    if (sparse(1000) != "thousand") return "fail 8"
+    if (sparse(1000000) != "million") return "fail 9"
+    if (sparse(2) != "other") return "fail 10"
+
+    if (char('a') != 1 || char('b') != 2 || char('z') != 26 || char('c') != 0) return "fail 11"
+
+    if (noElse(3) != "three" || noElse(4) != "other") return "fail 12"
+    return "OK"
+}
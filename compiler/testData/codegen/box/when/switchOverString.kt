@@ -0,0 +1,19 @@
+fun f(s: String?) = when (s) {
+    "Aa" -> 1
+    "BB" -> 2 // The same hash code as "Aa"
+    "" -> 3
+    "abc", "def" -> 4
+    "abc" -> 5
+    else -> 0
+}
+
+fun box(): String {
+    if (f("Aa") != 1) return "fail 1"
+    if (f("BB") != 2) return "fail 2"
+    if (f("") != 3) return "fail 3"
+    if (f("abc") != 4) return "fail 4"
+    if (f("def") != 4) return "fail 5"
+    if (f("C#") != 0) return "fail 6"
+    if (f(null) != 0) return "fail 7"
+    return "OK"
+}
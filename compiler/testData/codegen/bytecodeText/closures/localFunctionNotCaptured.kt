@@ -0,0 +1,9 @@
+fun foo(): Int {
+    fun local() = 42
+    val f = { local() + 1 }
+    return f()
+}
+
+// The closures are only created by their static initializers
+// 2 NEW
+// 0 PUTFIELD
@@ -0,0 +1,25 @@
+fun notModified(): Int {
+    var x = 1
+    x += 2
+    val f = { x * 2 }
+    return f()
+}
+
+fun redeclaredInLoop(): Int {
+    var sum = 0
+    for (i in 0..2) {
+        var z = i
+        z *= 2
+        sum += { z }()
+    }
+    return sum
+}
+
+fun capturedByLocalFunction(p: Int): Int {
+    var x = p
+    if (x < 0) x = -x
+    fun abs() = x
+    return abs()
+}
+
+// 0 SharedVar
@@ -0,0 +1,13 @@
+inline fun <T> Iterable<T>.forEachElement(operation: (T) -> Unit) {
+    for (element in this) operation(element)
+}
+
+fun sum(list: List<Int>): Int {
+    var sum = 0
+    list.forEachElement { sum += it }
+    list.forEachElement { sum += it * 2 }
+    return sum
+}
+
+// 1 Function1.invoke
+// 0 sum\$1
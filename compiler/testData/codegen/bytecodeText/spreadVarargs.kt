@@ -0,0 +1,7 @@
+fun ints(vararg a: Int) = a
+
+fun foo(a: IntArray, b: IntArray) = ints(*a, 1, *b)
+
+// 0 SpreadBuilder
+// 2 System.arraycopy
+// 1 NEWARRAY T_INT
@@ -0,0 +1,14 @@
+fun foo(i: Int, c: Char, s: String?): String {
+    val prefix = "id"
+    return "$prefix-\t${i}:$c" + "/" + s + 1
+}
+
+fun bar(s: String?) = s + "!"
+
+// 2 NEW java/lang/StringBuilder
+// 2 StringBuilder.<init> \(I\)V
+// 1 StringBuilder.append \(I\)
+// 1 StringBuilder.append \(C\)
+// 7 StringBuilder.append \(Ljava/lang/String;\)
+// 0 stringPlus
+// 0 String.valueOf
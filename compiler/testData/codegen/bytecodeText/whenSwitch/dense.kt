@@ -0,0 +1,10 @@
+fun foo(x: Int) = when (x) {
+    1 -> "a"
+    2 -> "b"
+    3 -> "c"
+    5 -> "d"
+    else -> "e"
+}
+
+// 1 TABLESWITCH
+// 0 LOOKUPSWITCH
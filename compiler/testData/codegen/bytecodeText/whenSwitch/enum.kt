@@ -0,0 +1,15 @@
+enum class E {
+    A
+    B
+    C
+}
+
+fun foo(e: E) = when (e) {
+    E.A -> 1
+    E.B -> 2
+    E.C -> 3
+    else -> 4
+}
+
+// 1 Enum.ordinal
+// 1 TABLESWITCH
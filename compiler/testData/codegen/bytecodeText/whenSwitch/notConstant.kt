@@ -0,0 +1,9 @@
+fun foo(x: Int, y: Int) = when (x) {
+    1 -> "a"
+    2 -> "b"
+    y -> "c"
+    else -> "d"
+}
+
+// 0 TABLESWITCH
+// 0 LOOKUPSWITCH
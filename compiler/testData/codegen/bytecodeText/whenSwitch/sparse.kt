@@ -0,0 +1,9 @@
+fun foo(x: Int) = when (x) {
+    1 -> "a"
+    1000 -> "b"
+    1000000 -> "c"
+    else -> "d"
+}
+
+// 0 TABLESWITCH
+// 1 LOOKUPSWITCH
@@ -0,0 +1,9 @@
+fun foo(s: String) = when (s) {
+    "a" -> 1
+    "b" -> 2
+    "c" -> 3
+    else -> 4
+}
+
+// 1 String.hashCode
+// 3 String.equals
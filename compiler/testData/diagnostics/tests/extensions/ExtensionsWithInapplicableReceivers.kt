@@ -0,0 +1,20 @@
+package extensionsWithInapplicableReceivers
+
+trait Json
+class Node : Json
+class Other
+
+fun String.toJson(): String = this
+fun Int.toJson(): Int = this
+fun Json.toJson(): Json = this
+fun <T> List<T>.toJson(): List<T> = this
+fun <T : Json> T.firstJson(): T = this
+
+fun Other.onlyForOther() {}
+
+fun testTrait(node: Node): Json = node.toJson()
+fun testGeneric(list: List<Int>): List<Int> = list.toJson()
+fun testString(): String = "".toJson()
+fun testBound(node: Node): Node = node.firstJson()
+
+fun testMismatch(node: Node) = <!TYPE_MISMATCH!>node<!>.onlyForOther()
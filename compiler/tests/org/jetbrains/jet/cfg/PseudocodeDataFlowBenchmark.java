@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cfg;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.cli.jvm.compiler.CompileEnvironmentUtil;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData;
+import org.jetbrains.jet.lang.cfg.pseudocode.Pseudocode;
+import org.jetbrains.jet.lang.cfg.pseudocode.PseudocodeUtil;
+import org.jetbrains.jet.lang.psi.JetDeclaration;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+
+/**
+ * Measures the variable initialization and usage data flow analysis on a synthetic function with many local variables,
+ * branches and loops.
+ *
+ * Run with: java org.jetbrains.jet.cfg.PseudocodeDataFlowBenchmark [variables]
+ */
+public class PseudocodeDataFlowBenchmark {
+    private static final int ITERATIONS = 20;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int variables = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        Disposable disposable = CompileEnvironmentUtil.createMockDisposable();
+        try {
+            JetCoreEnvironment environment = JetTestUtils.createEnvironmentWithMockJdkAndIdeaAnnotations(
+                    disposable, ConfigurationKind.JDK_ONLY);
+            JetFile file = JetTestUtils.createFile("benchmark.kt", generateSource(variables), environment.getProject());
+            BindingContext bindingContext = JetTestUtils.analyzeFile(file).getBindingContext();
+            JetDeclaration function = file.getDeclarations().get(0);
+            Pseudocode pseudocode = PseudocodeUtil.generatePseudocode(function, bindingContext);
+
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    PseudocodeVariablesData data = new PseudocodeVariablesData(pseudocode, bindingContext);
+                    data.getVariableInitializers();
+                    data.getVariableUseStatusData();
+                }
+                long time = (System.nanoTime() - start) / 1000000;
+                System.out.println(variables + " variables, " + pseudocode.getInstructions().size() + " instructions: " +
+                                   time / ITERATIONS + "ms per analysis");
+            }
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+
+    private static String generateSource(int variables) {
+        StringBuilder source = new StringBuilder();
+        source.append("fun test(n: Int, flag: Boolean): Int {\n");
+        source.append("    var sum = 0\n");
+        for (int i = 0; i < variables; i++) {
+            source.append("    var v").append(i).append(": Int\n");
+            source.append("    if (flag) {\n");
+            source.append("        v").append(i).append(" = ").append(i).append("\n");
+            source.append("    }\n");
+            source.append("    else {\n");
+            source.append("        v").append(i).append(" = n\n");
+            source.append("    }\n");
+            if (i % 10 == 9) {
+                source.append("    for (i in 0..n) {\n");
+                source.append("        while (sum < i) {\n");
+                for (int j = i - 9; j <= i; j++) {
+                    source.append("            sum += v").append(j).append("\n");
+                }
+                source.append("        }\n");
+                source.append("    }\n");
+            }
+        }
+        source.append("    return sum\n");
+        source.append("}\n");
+        return source.toString();
+    }
+}
@@ -1811,6 +1811,11 @@ public class JetDiagnosticsTestGenerated extends AbstractDiagnosticsTestWithEage
                 doTest("compiler/testData/diagnostics/tests/extensions/ExtensionsCalledOnSuper.kt");
             }
             
+            @TestMetadata("ExtensionsWithInapplicableReceivers.kt")
+            public void testExtensionsWithInapplicableReceivers() throws Exception {
+                doTest("compiler/testData/diagnostics/tests/extensions/ExtensionsWithInapplicableReceivers.kt");
+            }
+            
             @TestMetadata("GenericIterator.kt")
             public void testGenericIterator() throws Exception {
                 doTest("compiler/testData/diagnostics/tests/extensions/GenericIterator.kt");
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.Condition;
+import junit.framework.Assert;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.test.Tmpdir;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+public class JarWriterTest {
+
+    @Rule
+    public final Tmpdir tmpdir = new Tmpdir();
+
+    @Test
+    public void entriesAreReadable() throws IOException {
+        Map<String, byte[]> entries = createEntries();
+        File jar = writeJar(entries, false);
+
+        Assert.assertEquals(new ArrayList<String>(entries.keySet()), readNames(jar));
+        assertContents(jar, entries);
+    }
+
+    @Test
+    public void copyEntries() throws IOException {
+        Map<String, byte[]> entries = createEntries();
+        File source = writeJar(entries, false);
+
+        File target = new File(tmpdir.getTmpDir(), "target.jar");
+        OutputStream out = new FileOutputStream(target);
+        try {
+            JarWriter writer = new JarWriter(out, true);
+            writer.addEntry("own.txt", content("own".getBytes()));
+            writer.copyEntries(source, new Condition<String>() {
+                @Override
+                public boolean value(String name) {
+                    return name.endsWith(".class");
+                }
+            });
+            writer.finish();
+        }
+        finally {
+            out.close();
+        }
+
+        Map<String, byte[]> expected = new LinkedHashMap<String, byte[]>();
+        expected.put("own.txt", "own".getBytes());
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            if (entry.getKey().endsWith(".class")) {
+                expected.put(entry.getKey(), entry.getValue());
+            }
+        }
+        Assert.assertEquals(new ArrayList<String>(expected.keySet()), readNames(target));
+        assertContents(target, expected);
+
+        // Copied entries get the fixed time too, not the time they had in the source jar
+        long reproducibleTime = new GregorianCalendar(1980, Calendar.JANUARY, 1).getTimeInMillis();
+        ZipFile zipFile = new ZipFile(target);
+        try {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry zipEntry = zipEntries.nextElement();
+                Assert.assertEquals(zipEntry.getName(), reproducibleTime, zipEntry.getTime());
+            }
+        }
+        finally {
+            zipFile.close();
+        }
+    }
+
+    @Test
+    public void reproducible() throws IOException {
+        File first = writeJar(createEntries(), true);
+        File second = writeJar(createEntries(), true);
+        Assert.assertTrue(Arrays.equals(readAll(new FileInputStream(first)), readAll(new FileInputStream(second))));
+    }
+
+    @NotNull
+    private static Map<String, byte[]> createEntries() {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            byte[] bytes = new byte[random.nextInt(10000)];
+            // Compressible, but not trivially
+            for (int j = 0; j < bytes.length; j++) {
+                bytes[j] = (byte) random.nextInt(16);
+            }
+            entries.put("pkg" + i % 10 + "/Class" + i + ".class", bytes);
+        }
+        entries.put("META-INF/data.txt", new byte[0]);
+        return entries;
+    }
+
+    @NotNull
+    private File writeJar(@NotNull Map<String, byte[]> entries, boolean reproducible) throws IOException {
+        File jar = File.createTempFile("test", ".jar", tmpdir.getTmpDir());
+        OutputStream out = new FileOutputStream(jar);
+        try {
+            JarWriter writer = new JarWriter(out, reproducible);
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                writer.addEntry(entry.getKey(), content(entry.getValue()));
+            }
+            writer.finish();
+        }
+        finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    private static void assertContents(@NotNull File jar, @NotNull Map<String, byte[]> entries) throws IOException {
+        ZipFile zipFile = new ZipFile(jar);
+        try {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                ZipEntry zipEntry = zipFile.getEntry(entry.getKey());
+                Assert.assertNotNull(entry.getKey(), zipEntry);
+                Assert.assertTrue(entry.getKey(), Arrays.equals(entry.getValue(), readAll(zipFile.getInputStream(zipEntry))));
+            }
+        }
+        finally {
+            zipFile.close();
+        }
+    }
+
+    @NotNull
+    private static List<String> readNames(@NotNull File jar) throws IOException {
+        List<String> names = new ArrayList<String>();
+        ZipInputStream input = new ZipInputStream(new FileInputStream(jar));
+        try {
+            ZipEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        finally {
+            input.close();
+        }
+        return names;
+    }
+
+    @NotNull
+    private static Callable<byte[]> content(@NotNull final byte[] bytes) {
+        return new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return bytes;
+            }
+        };
+    }
+
+    @NotNull
+    private static byte[] readAll(@NotNull InputStream input) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = input.read(buffer)) > 0) {
+                bytes.write(buffer, 0, length);
+            }
+            return bytes.toByteArray();
+        }
+        finally {
+            input.close();
+        }
+    }
+}
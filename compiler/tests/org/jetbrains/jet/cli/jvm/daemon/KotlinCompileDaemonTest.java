@@ -0,0 +1,115 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.daemon;
+
+import junit.framework.Assert;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.cli.common.daemon.CompileDaemonProtocol;
+import org.jetbrains.jet.lang.resolve.java.PackageClassUtils;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.test.Tmpdir;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+
+public class KotlinCompileDaemonTest {
+
+    @Rule
+    public final Tmpdir tmpdir = new Tmpdir();
+
+    @Test
+    public void compileTwice() throws Exception {
+        File daemonFile = new File(tmpdir.getTmpDir(), "daemon");
+        final KotlinCompileDaemon daemon = new KotlinCompileDaemon(daemonFile);
+        Thread daemonThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    daemon.run();
+                }
+                catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        daemonThread.start();
+
+        try {
+            CompileDaemonProtocol.DaemonAddress address = waitForAddress(daemonFile);
+
+            for (int i = 0; i < 2; i++) {
+                File output = new File(tmpdir.getTmpDir(), "out" + i);
+                CompileDaemonProtocol.Response response = compile(address, address.token,
+                        "-src", new File("compiler/testData/cli/simple.kt").getAbsolutePath(),
+                        "-output", output.getAbsolutePath());
+                Assert.assertEquals(response.output, ExitCode.OK.getCode(), response.exitCode);
+                Assert.assertTrue(new File(output, PackageClassUtils.getPackageClassName(FqName.ROOT) + ".class").isFile());
+            }
+
+            CompileDaemonProtocol.Response rejected = compile(address, "wrong token", "-help");
+            Assert.assertEquals(CompileDaemonProtocol.EXIT_CODE_BAD_REQUEST, rejected.exitCode);
+        }
+        finally {
+            daemon.shutdown();
+            daemonThread.join();
+        }
+        Assert.assertFalse(daemonFile.exists());
+    }
+
+    @Test
+    public void daemonFileInPrivateDirectory() throws Exception {
+        File daemonFile = new File(tmpdir.getTmpDir(), "daemon" + File.separator + "daemon");
+        CompileDaemonProtocol.createDaemonDirectory(daemonFile);
+        Assert.assertTrue(daemonFile.getParentFile().isDirectory());
+
+        CompileDaemonProtocol.writeDaemonFile(daemonFile, new CompileDaemonProtocol.DaemonAddress(1234, "token"));
+        CompileDaemonProtocol.DaemonAddress address = CompileDaemonProtocol.readDaemonFile(daemonFile);
+        Assert.assertNotNull(address);
+        Assert.assertEquals(1234, address.port);
+        Assert.assertEquals("token", address.token);
+    }
+
+    @NotNull
+    private static CompileDaemonProtocol.DaemonAddress waitForAddress(@NotNull File daemonFile) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            CompileDaemonProtocol.DaemonAddress address = CompileDaemonProtocol.readDaemonFile(daemonFile);
+            if (address != null) return address;
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Daemon has not started");
+    }
+
+    @NotNull
+    private static CompileDaemonProtocol.Response compile(
+            @NotNull CompileDaemonProtocol.DaemonAddress address,
+            @NotNull String token,
+            @NotNull String... args
+    ) throws IOException {
+        Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), address.port);
+        try {
+            CompileDaemonProtocol.writeRequest(new DataOutputStream(socket.getOutputStream()), token, args);
+            return CompileDaemonProtocol.readResponse(new DataInputStream(socket.getInputStream()));
+        }
+        finally {
+            socket.close();
+        }
+    }
+}
@@ -31,7 +31,7 @@ import org.jetbrains.jet.codegen.AbstractBytecodeTextTest;
 /** This class is generated by {@link org.jetbrains.jet.generators.tests.GenerateTests}. DO NOT MODIFY MANUALLY */
 @SuppressWarnings("all")
 @TestMetadata("compiler/testData/codegen/bytecodeText")
-@InnerTestClasses({BytecodeTextTestGenerated.Statements.class})
+@InnerTestClasses({BytecodeTextTestGenerated.Closures.class, BytecodeTextTestGenerated.Inline.class, BytecodeTextTestGenerated.Statements.class, BytecodeTextTestGenerated.WhenSwitch.class})
 public class BytecodeTextTestGenerated extends AbstractBytecodeTextTest {
     public void testAllFilesPresentInBytecodeText() throws Exception {
         JetTestUtils.assertAllTestsPresentByMetadata(this.getClass(), "org.jetbrains.jet.generators.tests.GenerateTests", new File("compiler/testData/codegen/bytecodeText"), Pattern.compile("^(.+)\\.kt$"), true);
@@ -77,6 +77,47 @@ public class BytecodeTextTestGenerated extends AbstractBytecodeTextTest {
         doTest("compiler/testData/codegen/bytecodeText/privateDefaultArgs.kt");
     }
     
+    @TestMetadata("spreadVarargs.kt")
+    public void testSpreadVarargs() throws Exception {
+        doTest("compiler/testData/codegen/bytecodeText/spreadVarargs.kt");
+    }
+    
+    @TestMetadata("stringConcatenation.kt")
+    public void testStringConcatenation() throws Exception {
+        doTest("compiler/testData/codegen/bytecodeText/stringConcatenation.kt");
+    }
+    
+    @TestMetadata("compiler/testData/codegen/bytecodeText/closures")
+    public static class Closures extends AbstractBytecodeTextTest {
+        public void testAllFilesPresentInClosures() throws Exception {
+            JetTestUtils.assertAllTestsPresentByMetadata(this.getClass(), "org.jetbrains.jet.generators.tests.GenerateTests", new File("compiler/testData/codegen/bytecodeText/closures"), Pattern.compile("^(.+)\\.kt$"), true);
+        }
+        
+        @TestMetadata("localFunctionNotCaptured.kt")
+        public void testLocalFunctionNotCaptured() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/closures/localFunctionNotCaptured.kt");
+        }
+        
+        @TestMetadata("varNotModifiedAfterCapture.kt")
+        public void testVarNotModifiedAfterCapture() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/closures/varNotModifiedAfterCapture.kt");
+        }
+        
+    }
+    
+    @TestMetadata("compiler/testData/codegen/bytecodeText/inline")
+    public static class Inline extends AbstractBytecodeTextTest {
+        public void testAllFilesPresentInInline() throws Exception {
+            JetTestUtils.assertAllTestsPresentByMetadata(this.getClass(), "org.jetbrains.jet.generators.tests.GenerateTests", new File("compiler/testData/codegen/bytecodeText/inline"), Pattern.compile("^(.+)\\.kt$"), true);
+        }
+        
+        @TestMetadata("noClosures.kt")
+        public void testNoClosures() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/inline/noClosures.kt");
+        }
+        
+    }
+    
     @TestMetadata("compiler/testData/codegen/bytecodeText/statements")
     public static class Statements extends AbstractBytecodeTextTest {
         public void testAllFilesPresentInStatements() throws Exception {
@@ -115,10 +156,46 @@ public class BytecodeTextTestGenerated extends AbstractBytecodeTextTest {
         
     }
     
+    @TestMetadata("compiler/testData/codegen/bytecodeText/whenSwitch")
+    public static class WhenSwitch extends AbstractBytecodeTextTest {
+        public void testAllFilesPresentInWhenSwitch() throws Exception {
+            JetTestUtils.assertAllTestsPresentByMetadata(this.getClass(), "org.jetbrains.jet.generators.tests.GenerateTests", new File("compiler/testData/codegen/bytecodeText/whenSwitch"), Pattern.compile("^(.+)\\.kt$"), true);
+        }
+        
+        @TestMetadata("dense.kt")
+        public void testDense() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/whenSwitch/dense.kt");
+        }
+        
+        @TestMetadata("enum.kt")
+        public void testEnum() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/whenSwitch/enum.kt");
+        }
+        
+        @TestMetadata("notConstant.kt")
+        public void testNotConstant() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/whenSwitch/notConstant.kt");
+        }
+        
+        @TestMetadata("sparse.kt")
+        public void testSparse() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/whenSwitch/sparse.kt");
+        }
+        
+        @TestMetadata("string.kt")
+        public void testString() throws Exception {
+            doTest("compiler/testData/codegen/bytecodeText/whenSwitch/string.kt");
+        }
+        
+    }
+    
     public static Test suite() {
         TestSuite suite = new TestSuite("BytecodeTextTestGenerated");
         suite.addTestSuite(BytecodeTextTestGenerated.class);
+        suite.addTestSuite(Closures.class);
+        suite.addTestSuite(Inline.class);
         suite.addTestSuite(Statements.class);
+        suite.addTestSuite(WhenSwitch.class);
         return suite;
     }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.asm4.AnnotationVisitor;
+import org.jetbrains.asm4.ClassReader;
+import org.jetbrains.asm4.ClassVisitor;
+import org.jetbrains.asm4.FieldVisitor;
+import org.jetbrains.asm4.MethodVisitor;
+import org.jetbrains.asm4.Opcodes;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Finds allocations of closures which have no state: such closures must only be created once, by their static initializers.
+ *
+ * Closures extend jet.FunctionN or jet.ExtensionFunctionN, or, if converted to a SAM interface, extend Object and implement
+ * that interface only. Unlike the classes and objects declared in Kotlin, closures have no JetClass annotation.
+ */
+public class ClosureAllocationChecker {
+    private static final Pattern FUNCTION_CLASS = Pattern.compile("jet/(Extension)?Function\\d+");
+    private static final String OBJECT_CLASS = "java/lang/Object";
+    private static final String JET_CLASS_DESCRIPTOR = "Ljet/runtime/typeinfo/JetClass;";
+
+    private ClosureAllocationChecker() {
+    }
+
+    @NotNull
+    public static List<String> findStatelessClosureAllocations(@NotNull ClassFileFactory factory) {
+        final Set<String> statelessClosures = new HashSet<String>();
+        for (String file : factory.files()) {
+            new ClassReader(factory.asBytes(file)).accept(new ClassVisitor(Opcodes.ASM4) {
+                private String className;
+                private boolean isClosure;
+                private boolean isSamClosure;
+                private boolean hasState;
+
+                @Override
+                public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                    className = name;
+                    isClosure = superName != null && FUNCTION_CLASS.matcher(superName).matches();
+                    isSamClosure = OBJECT_CLASS.equals(superName) && interfaces != null && interfaces.length == 1;
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                    if (JET_CLASS_DESCRIPTOR.equals(desc)) {
+                        isSamClosure = false;
+                    }
+                    return null;
+                }
+
+                @Override
+                public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+                    if ((access & Opcodes.ACC_STATIC) == 0) {
+                        hasState = true;
+                    }
+                    return null;
+                }
+
+                @Override
+                public void visitEnd() {
+                    if ((isClosure || isSamClosure) && !hasState) {
+                        statelessClosures.add(className);
+                    }
+                }
+            }, ClassReader.SKIP_CODE);
+        }
+
+        final List<String> allocations = new ArrayList<String>();
+        for (String file : factory.files()) {
+            new ClassReader(factory.asBytes(file)).accept(new ClassVisitor(Opcodes.ASM4) {
+                private String className;
+
+                @Override
+                public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                    className = name;
+                }
+
+                @Override
+                public MethodVisitor visitMethod(int access, final String methodName, String desc, String signature, String[] exceptions) {
+                    return new MethodVisitor(Opcodes.ASM4) {
+                        @Override
+                        public void visitTypeInsn(int opcode, String type) {
+                            if (opcode == Opcodes.NEW && statelessClosures.contains(type) &&
+                                !(type.equals(className) && methodName.equals("<clinit>"))) {
+                                allocations.add(className + "." + methodName + " creates " + type);
+                            }
+                        }
+                    };
+                }
+            }, 0);
+        }
+        return allocations;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.codegen.state.Progress;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+
+import java.util.Collections;
+import java.util.List;
+
+public class ParallelCodegenTest extends KotlinTestWithEnvironment {
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testOutputIsTheSameAsInSequentialMode() {
+        List<JetFile> files = Lists.newArrayList();
+        for (int i = 0; i < 12; i++) {
+            files.add(JetPsiFactory.createFile(getProject(), "file" + i + ".kt",
+                    "package p" + i + "\n" +
+                    "class A" + i + "(val x: Int) { fun f() = { x + " + i + " } }\n" +
+                    "trait T" + i + " { fun g() = " + i + " }\n" +
+                    "object O" + i + " : T" + i + "\n" +
+                    "fun top" + i + "(a: A" + i + ") = a.f()()\n"));
+        }
+
+        AnalyzeExhaust exhaust = AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationAndCheckForErrors(
+                getProject(), files, Collections.<AnalyzerScriptParameter>emptyList(), Predicates.<PsiFile>alwaysTrue());
+        exhaust.throwIfError();
+
+        ClassFileFactory sequential = generate(exhaust, files, false);
+        ClassFileFactory parallel = generate(exhaust, files, true);
+
+        assertEquals(sequential.files(), parallel.files());
+        assertEquals(sequential.createText(), parallel.createText());
+    }
+
+    @NotNull
+    private ClassFileFactory generate(@NotNull AnalyzeExhaust exhaust, @NotNull List<JetFile> files, boolean parallel) {
+        GenerationState state = new GenerationState(
+                getProject(), ClassBuilderFactories.TEST, Progress.DEAF, exhaust.getBindingContext(), files,
+                BuiltinToJavaTypesMapping.ENABLED, true, true, true, parallel);
+        KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION);
+        return state.getFactory();
+    }
+}
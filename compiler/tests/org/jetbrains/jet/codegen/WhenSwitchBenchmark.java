@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.TestJdkKind;
+import org.jetbrains.jet.cli.jvm.compiler.CompileEnvironmentUtil;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.java.PackageClassUtils;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+import java.lang.reflect.Method;
+
+/**
+ * Compares a `when` with many constant branches, compiled to a switch, with the same `when` compiled to a chain of
+ * comparisons (a non-constant condition in the first branch prevents the switch).
+ *
+ * Run with: java org.jetbrains.jet.codegen.WhenSwitchBenchmark [branches]
+ */
+public class WhenSwitchBenchmark {
+    private static final int ITERATIONS = 10000000;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int branches = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+
+        Disposable disposable = CompileEnvironmentUtil.createMockDisposable();
+        try {
+            JetCoreEnvironment environment = JetTestUtils.createEnvironmentWithJdkAndNullabilityAnnotationsFromIdea(
+                    disposable, ConfigurationKind.JDK_ONLY, TestJdkKind.FULL_JDK);
+            JetFile file = JetTestUtils.createFile("benchmark.kt", generateSource(branches), environment.getProject());
+            ClassFileFactory factory = GenerationUtils.compileFileGetClassFileFactoryForTest(file);
+
+            GeneratedClassLoader loader = new GeneratedClassLoader(factory, WhenSwitchBenchmark.class.getClassLoader());
+            try {
+                Class<?> namespace = loader.loadClass(PackageClassUtils.getPackageClassName(FqName.ROOT));
+                for (String kind : new String[] {"Int", "String"}) {
+                    Method chain = namespace.getMethod("chain" + kind, int.class);
+                    Method switchMethod = namespace.getMethod("switch" + kind, int.class);
+                    for (int run = 0; run < RUNS; run++) {
+                        long chainTime = measure(chain);
+                        long switchTime = measure(switchMethod);
+                        System.out.println(kind + ", " + branches + " branches: chain " + chainTime + "ms, switch " + switchTime + "ms");
+                    }
+                }
+            }
+            finally {
+                loader.dispose();
+            }
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+
+    private static long measure(Method method) throws Exception {
+        long start = System.nanoTime();
+        method.invoke(null, ITERATIONS);
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    private static String generateSource(int branches) {
+        StringBuilder source = new StringBuilder();
+        source.append("val strings = Array<String>(").append(branches).append(", { \"op\" + it })\n");
+        source.append("var never = -1\n\n");
+
+        for (String kind : new String[] {"Int", "String"}) {
+            for (boolean isSwitch : new boolean[] {false, true}) {
+                String name = (isSwitch ? "switch" : "chain") + kind;
+                source.append("fun ").append(name).append("(iterations: Int): Int {\n");
+                source.append("    var sum = 0\n");
+                source.append("    for (i in 0..iterations - 1) {\n");
+                source.append("        sum += when (").append(kind.equals("Int") ? "i % " + branches : "strings[i % " + branches + "]").append(") {\n");
+                if (!isSwitch) {
+                    source.append("            ").append(kind.equals("Int") ? "never" : "\"\" + never").append(" -> -1\n");
+                }
+                for (int i = 0; i < branches; i++) {
+                    String constant = kind.equals("Int") ? String.valueOf(i) : "\"op" + i + "\"";
+                    source.append("            ").append(constant).append(" -> ").append(i * 7 % 13).append("\n");
+                }
+                source.append("            else -> 0\n");
+                source.append("        }\n");
+                source.append("    }\n");
+                source.append("    return sum\n");
+                source.append("}\n\n");
+            }
+        }
+        return source.toString();
+    }
+}
@@ -17,6 +17,7 @@
 package org.jetbrains.jet.codegen.generated;
 
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.Processor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.ConfigurationKind;
@@ -24,6 +25,7 @@ import org.jetbrains.jet.JetTestUtils;
 import org.jetbrains.jet.TestJdkKind;
 import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
 import org.jetbrains.jet.codegen.ClassFileFactory;
+import org.jetbrains.jet.codegen.ClosureAllocationChecker;
 import org.jetbrains.jet.codegen.CodegenTestCase;
 import org.jetbrains.jet.codegen.GeneratedClassLoader;
 import org.jetbrains.jet.codegen.NamespaceCodegen;
@@ -94,6 +96,10 @@ public abstract class AbstractBlackBoxCodegenTest extends CodegenTestCase {
 
     private void blackBox() {
         ClassFileFactory factory = generateClassesInFile();
+
+        List<String> allocations = ClosureAllocationChecker.findStatelessClosureAllocations(factory);
+        assertTrue("Closures without state are created more than once:\n" + StringUtil.join(allocations, "\n"), allocations.isEmpty());
+
         GeneratedClassLoader loader = createClassLoader(factory);
 
         // If there are many files, the first of them should contain the 'box(): String' function
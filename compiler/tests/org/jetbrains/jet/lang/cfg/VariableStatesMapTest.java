@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.cfg;
+
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.descriptors.ModuleDescriptor;
+import org.jetbrains.jet.lang.descriptors.VariableDescriptor;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+import org.jetbrains.jet.lang.descriptors.impl.LocalVariableDescriptor;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.*;
+
+public class VariableStatesMapTest extends TestCase {
+    private static final List<String> STATES = Arrays.asList("code 0", "code 1", "code 2", "code 3");
+    private static final int MAP_COUNT = 3;
+
+    private final ModuleDescriptor module = new ModuleDescriptor(Name.special("<test module>"));
+
+    public void testMergeWithCodesConjunction() {
+        doTest(false);
+    }
+
+    public void testMergeWithMaximalCodes() {
+        doTest(true);
+    }
+
+    // Every variable has its own combination of states in the merged maps, each state being absent or one of the four codes
+    private void doTest(boolean maximal) {
+        VariableStatesMap.VariableIndex index = new VariableStatesMap.VariableIndex();
+        VariableStatesMap<String> empty = new VariableStatesMap<String>(index, STATES);
+
+        List<Map<VariableDescriptor, String>> hashMaps = new ArrayList<Map<VariableDescriptor, String>>();
+        List<VariableStatesMap<String>> maps = new ArrayList<VariableStatesMap<String>>();
+        for (int i = 0; i < MAP_COUNT; i++) {
+            hashMaps.add(new HashMap<VariableDescriptor, String>());
+            maps.add(empty);
+        }
+
+        int combinationCount = (int) Math.pow(STATES.size() + 1, MAP_COUNT);
+        for (int combination = 0; combination < combinationCount; combination++) {
+            VariableDescriptor variable = new LocalVariableDescriptor(
+                    module, Collections.<AnnotationDescriptor>emptyList(), Name.identifier("v" + combination), null, true);
+            int rest = combination;
+            for (int i = 0; i < MAP_COUNT; i++) {
+                int code = rest % (STATES.size() + 1) - 1;
+                rest /= STATES.size() + 1;
+                if (code >= 0) {
+                    hashMaps.get(i).put(variable, STATES.get(code));
+                    maps.set(i, maps.get(i).withState(variable, STATES.get(code)));
+                }
+            }
+        }
+        for (int i = 0; i < MAP_COUNT; i++) {
+            assertEquals(hashMaps.get(i), maps.get(i));
+        }
+
+        Map<VariableDescriptor, String> expected = maximal ? mergeWithMaximalCodes(hashMaps) : mergeWithCodesConjunction(hashMaps);
+        assertEquals(expected, merge(empty, maps, maximal));
+        assertEquals(expected, merge(maps.get(0), maps.subList(1, MAP_COUNT), maximal));
+        assertEquals(hashMaps.get(0), merge(maps.get(0), Collections.<VariableStatesMap<String>>emptyList(), maximal));
+        assertTrue(merge(empty, Collections.<VariableStatesMap<String>>emptyList(), maximal).isEmpty());
+    }
+
+    @NotNull
+    private static Map<VariableDescriptor, String> merge(
+            @NotNull VariableStatesMap<String> map,
+            @NotNull Collection<VariableStatesMap<String>> maps,
+            boolean maximal
+    ) {
+        return maximal ? map.mergeWithMaximalCodes(maps) : map.mergeWithCodesConjunction(maps);
+    }
+
+    // The merge of init states PseudocodeVariablesData did with hash maps: initialized and declared if so on every edge
+    @NotNull
+    private static Map<VariableDescriptor, String> mergeWithCodesConjunction(@NotNull List<Map<VariableDescriptor, String>> maps) {
+        Set<VariableDescriptor> variables = new HashSet<VariableDescriptor>();
+        for (Map<VariableDescriptor, String> map : maps) {
+            variables.addAll(map.keySet());
+        }
+        Map<VariableDescriptor, String> result = new HashMap<VariableDescriptor, String>();
+        for (VariableDescriptor variable : variables) {
+            boolean high = true;
+            boolean low = true;
+            for (Map<VariableDescriptor, String> map : maps) {
+                String state = map.get(variable);
+                if (state != null) {
+                    int code = STATES.indexOf(state);
+                    high &= (code & 2) != 0;
+                    low &= (code & 1) != 0;
+                }
+            }
+            result.put(variable, STATES.get((high ? 2 : 0) + (low ? 1 : 0)));
+        }
+        return result;
+    }
+
+    // The merge of use states PseudocodeVariablesData did with hash maps: the most important state of all the edges
+    @NotNull
+    private static Map<VariableDescriptor, String> mergeWithMaximalCodes(@NotNull List<Map<VariableDescriptor, String>> maps) {
+        Map<VariableDescriptor, String> result = new HashMap<VariableDescriptor, String>();
+        for (Map<VariableDescriptor, String> map : maps) {
+            for (Map.Entry<VariableDescriptor, String> entry : map.entrySet()) {
+                String state = result.get(entry.getKey());
+                if (state == null || STATES.indexOf(entry.getValue()) > STATES.indexOf(state)) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+}
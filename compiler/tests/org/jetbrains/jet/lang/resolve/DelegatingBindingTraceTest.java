@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve;
+
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.util.slicedmap.Slices;
+import org.jetbrains.jet.util.slicedmap.WritableSlice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DelegatingBindingTraceTest extends TestCase {
+    private static final WritableSlice<String, Integer> VALUES = Slices.createSimpleSlice();
+    private static final WritableSlice<String, Integer> OPPOSITE = Slices.createSimpleSlice();
+    private static final WritableSlice<Integer, String> WITH_OPPOSITE = Slices.<Integer, String>sliceBuilder()
+            .setOpposite((WritableSlice) OPPOSITE).build();
+
+    public void testReadsFallBackToParent() {
+        BindingTraceContext parent = new BindingTraceContext();
+        parent.record(VALUES, "a", 1);
+        parent.record(VALUES, "b", 2);
+
+        DelegatingBindingTrace trace = new DelegatingBindingTrace(parent.getBindingContext(), "test");
+        assertEquals(Integer.valueOf(1), trace.get(VALUES, "a"));
+        assertEquals(Arrays.asList("a", "b"), trace.getKeys(VALUES));
+
+        trace.record(VALUES, "c", 3);
+        assertEquals(Integer.valueOf(3), trace.get(VALUES, "c"));
+        assertEquals(Integer.valueOf(2), trace.getBindingContext().get(VALUES, "b"));
+        assertNull(parent.get(VALUES, "c"));
+        assertEquals(3, trace.getKeys(VALUES).size());
+    }
+
+    public void testCommitReplaysRecordsInOrder() {
+        BindingTraceContext target = new BindingTraceContext();
+        TemporaryBindingTrace trace = TemporaryBindingTrace.create(target, "test");
+        for (int i = 0; i < 100; i++) {
+            trace.record(WITH_OPPOSITE, i, "v" + i);
+        }
+        trace.commit();
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v" + i, target.get(WITH_OPPOSITE, i));
+            assertEquals(Integer.valueOf(i), target.get(OPPOSITE, "v" + i));
+        }
+        assertEquals(100, target.getKeys(WITH_OPPOSITE).size());
+        assertEquals(Integer.valueOf(0), target.getKeys(WITH_OPPOSITE).iterator().next());
+    }
+
+    public void testCommitWithoutLog() {
+        BindingTraceContext target = new BindingTraceContext();
+        DelegatingBindingTrace trace = new DelegatingBindingTrace(target.getBindingContext(), "test");
+        for (int i = 0; i < 100; i++) {
+            trace.record(WITH_OPPOSITE, i, "v" + i);
+        }
+        trace.record(VALUES, "a", 1);
+
+        // Committed into a logging trace, the records are logged there
+        TemporaryBindingTrace temporary = TemporaryBindingTrace.create(target, "temporary");
+        trace.addAllMyDataTo(temporary);
+        temporary.commit();
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v" + i, target.get(WITH_OPPOSITE, i));
+            assertEquals(Integer.valueOf(i), target.get(OPPOSITE, "v" + i));
+        }
+        assertEquals(Integer.valueOf(1), target.get(VALUES, "a"));
+    }
+
+    public void testCommitIntoDelegatingTraceSplicesLog() {
+        BindingTraceContext root = new BindingTraceContext();
+        TemporaryBindingTrace outer = TemporaryBindingTrace.create(root, "outer");
+        outer.record(VALUES, "outer", 0);
+
+        TemporaryBindingTrace inner = TemporaryBindingTrace.create(outer, "inner");
+        for (int i = 0; i < 50; i++) {
+            inner.record(VALUES, "k" + i, i);
+        }
+        inner.commit();
+        assertEquals(Integer.valueOf(49), outer.get(VALUES, "k49"));
+
+        outer.commit();
+        assertEquals(Integer.valueOf(0), root.get(VALUES, "outer"));
+        assertEquals(Integer.valueOf(49), root.get(VALUES, "k49"));
+        assertEquals(51, root.getKeys(VALUES).size());
+    }
+
+    public void testCommitIntoTraceWithOverriddenRecordReplaysLog() {
+        final List<String> recordedKeys = new ArrayList<String>();
+        DelegatingBindingTrace target = new DelegatingBindingTrace(BindingContext.EMPTY, "target") {
+            @Override
+            public <K, V> void record(WritableSlice<K, V> slice, K key, V value) {
+                recordedKeys.add((String) key);
+                super.record(slice, key, value);
+            }
+        };
+
+        TemporaryBindingTrace trace = TemporaryBindingTrace.create(target, "test");
+        trace.record(VALUES, "a", 1);
+        trace.record(VALUES, "b", 2);
+        trace.commit();
+
+        assertEquals(Arrays.asList("a", "b"), recordedKeys);
+        assertEquals(Integer.valueOf(2), target.get(VALUES, "b"));
+    }
+
+    public void testFilterIsApplied() {
+        BindingTraceContext target = new BindingTraceContext();
+        DelegatingBindingTrace trace = new DelegatingBindingTrace(BindingContext.EMPTY, "test");
+        trace.record(VALUES, "a", 1);
+        trace.record(VALUES, "b", 2);
+        trace.addAllMyDataTo(target, new TraceEntryFilter() {
+            @Override
+            public boolean accept(@NotNull WritableSlice<?, ?> slice, Object key) {
+                return !"b".equals(key);
+            }
+        }, true);
+
+        assertEquals(Integer.valueOf(1), target.get(VALUES, "a"));
+        assertNull(target.get(VALUES, "b"));
+    }
+
+    public void testClearDiscardsRecords() {
+        BindingTraceContext target = new BindingTraceContext();
+        DelegatingBindingTrace trace = new DelegatingBindingTrace(BindingContext.EMPTY, "test");
+        trace.record(VALUES, "a", 1);
+        trace.clear();
+        assertNull(trace.get(VALUES, "a"));
+
+        trace.record(VALUES, "b", 2);
+        trace.moveAllMyDataTo(target);
+        assertNull(target.get(VALUES, "a"));
+        assertEquals(Integer.valueOf(2), target.get(VALUES, "b"));
+        assertNull(trace.get(VALUES, "b"));
+    }
+
+    public void testStatistics() {
+        BindingTraceStatistics statistics = new BindingTraceStatistics();
+        BindingTraceStatistics previous = BindingTraceStatistics.install(statistics);
+        try {
+            DelegatingBindingTrace committed = new DelegatingBindingTrace(BindingContext.EMPTY, "committed");
+            new DelegatingBindingTrace(BindingContext.EMPTY, "discarded");
+            committed.addAllMyDataTo(new BindingTraceContext());
+        }
+        finally {
+            BindingTraceStatistics.install(previous);
+        }
+        new DelegatingBindingTrace(BindingContext.EMPTY, "not counted");
+
+        assertEquals(2, statistics.getCreatedCount());
+        assertEquals(1, statistics.getCommittedCount());
+    }
+}
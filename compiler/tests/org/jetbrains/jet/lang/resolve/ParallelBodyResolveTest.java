@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.di.InjectorForTopDownAnalyzerForJvm;
+import org.jetbrains.jet.lang.descriptors.ModuleDescriptor;
+import org.jetbrains.jet.lang.diagnostics.Diagnostic;
+import org.jetbrains.jet.lang.diagnostics.rendering.DefaultErrorMessages;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.Collections;
+import java.util.List;
+
+public class ParallelBodyResolveTest extends KotlinTestWithEnvironment {
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testDiagnosticsAreTheSameAsInSequentialMode() {
+        List<JetFile> files = Lists.newArrayList();
+        for (int i = 0; i < 16; i++) {
+            files.add(JetPsiFactory.createFile(getProject(), "file" + i + ".kt",
+                    "package p" + i + "\n" +
+                    "fun ok" + i + "(x: Int): Int = x + " + i + "\n" +
+                    "fun inferred" + i + "() = ok" + i + "(1)\n" +
+                    "fun mismatch" + i + "(): String = " + i + "\n" +
+                    "fun unresolved" + i + "() { foo" + i + "() }\n" +
+                    "fun default" + i + "(s: String = 1) = s\n"));
+        }
+
+        List<String> sequential = analyzeAndRenderDiagnostics(files, false);
+        List<String> parallel = analyzeAndRenderDiagnostics(files, true);
+
+        assertFalse(sequential.isEmpty());
+        assertEquals(sequential, parallel);
+    }
+
+    public void testJavaClassesResolvedFromBodies() {
+        String[] constructorCalls = {
+                "ArrayList<String>()", "HashSet<String>()", "HashMap<String, Int>()", "TreeMap<String, Int>()",
+                "IdentityHashMap<String, Int>()", "Random()", "Date()", "GregorianCalendar()"
+        };
+        List<JetFile> files = Lists.newArrayList();
+        for (int i = 0; i < 16; i++) {
+            // the classes are only referenced from bodies of functions with declared return types, so they are resolved by the workers
+            files.add(JetPsiFactory.createFile(getProject(), "java" + i + ".kt",
+                    "package j" + i + "\n" +
+                    "fun use" + i + "(): String {\n" +
+                    "    val x = java.util." + constructorCalls[i % constructorCalls.length] + "\n" +
+                    "    x.missing" + i + "()\n" +
+                    "    val sb = java.lang.StringBuilder()\n" +
+                    "    sb.append(x.hashCode())\n" +
+                    "    return sb\n" +
+                    "}\n" +
+                    "fun collections" + i + "() = java.util.Collections.emptyList<String>().size() + \"\"\n"));
+        }
+
+        List<String> sequential = analyzeAndRenderDiagnostics(files, false);
+        List<String> parallel = analyzeAndRenderDiagnostics(files, true);
+
+        assertFalse(sequential.isEmpty());
+        assertEquals(sequential, parallel);
+    }
+
+    @NotNull
+    private List<String> analyzeAndRenderDiagnostics(@NotNull List<JetFile> files, boolean parallel) {
+        TopDownAnalysisParameters parameters = new TopDownAnalysisParameters(
+                Predicates.<PsiFile>alwaysTrue(), false, false, Collections.<AnalyzerScriptParameter>emptyList(), parallel);
+        BindingTraceContext trace = new BindingTraceContext();
+        InjectorForTopDownAnalyzerForJvm injector = new InjectorForTopDownAnalyzerForJvm(
+                getProject(), parameters, trace, new ModuleDescriptor(Name.special("<test module>")));
+        try {
+            injector.getTopDownAnalyzer().analyzeFiles(files, Collections.<AnalyzerScriptParameter>emptyList());
+        }
+        finally {
+            injector.destroy();
+        }
+
+        List<String> rendered = Lists.newArrayList();
+        for (Diagnostic diagnostic : trace.getBindingContext().getDiagnostics()) {
+            rendered.add(diagnostic.getPsiFile().getName() + " " + diagnostic.getTextRanges() + ": " +
+                         DefaultErrorMessages.RENDERER.render(diagnostic));
+        }
+        return rendered;
+    }
+}
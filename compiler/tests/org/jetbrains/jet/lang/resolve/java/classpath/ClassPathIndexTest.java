@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.classpath;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.Assert;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.test.Tmpdir;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ClassPathIndexTest {
+
+    @Rule
+    public final Tmpdir tmpdir = new Tmpdir();
+
+    @Test
+    public void jar() throws IOException {
+        File jar = createJar("a/b/C.class", "a/b/C$Nested.class", "a/b/C$Nested$Deeper.class", "a/D.txt");
+        ClassPathIndex index = new ClassPathIndex(Collections.singletonList(jar));
+
+        Assert.assertTrue(index.mayContainClass(new FqName("a.b.C")));
+        Assert.assertTrue(index.mayContainClass(new FqName("a.b.C.Nested")));
+        Assert.assertTrue(index.mayContainClass(new FqName("a.b.C.Nested.Deeper")));
+        Assert.assertTrue(index.mayContainClass(new FqName("a.b.C$Nested")));
+
+        Assert.assertFalse(index.mayContainClass(new FqName("a.b.D")));
+        Assert.assertFalse(index.mayContainClass(new FqName("a.D")));
+        Assert.assertFalse(index.mayContainClass(new FqName("b.C")));
+    }
+
+    @Test
+    public void directory() throws IOException {
+        File root = new File(tmpdir.getTmpDir(), "root");
+        Assert.assertTrue(new File(root, "a/b").mkdirs());
+        Assert.assertTrue(new File(root, "a/b/C.class").createNewFile());
+        ClassPathIndex index = new ClassPathIndex(Arrays.asList(root, new File(tmpdir.getTmpDir(), "nonExistent")));
+
+        Assert.assertTrue(index.mayContainClass(new FqName("a.b.C")));
+        Assert.assertTrue(index.mayContainClass(new FqName("a.b.C.Nested")));
+
+        // Files added after the index has been created must be seen
+        Assert.assertFalse(index.mayContainClass(new FqName("a.K")));
+        Assert.assertTrue(new File(root, "a/K.class").createNewFile());
+        Assert.assertTrue(index.mayContainClass(new FqName("a.K")));
+    }
+
+    @Test
+    public void javaSources() throws IOException {
+        File root = new File(tmpdir.getTmpDir(), "root");
+        Assert.assertTrue(new File(root, "a/b").mkdirs());
+        FileUtil.writeToFile(new File(root, "a/Foo.java"), "package a;\npublic class Foo {}\nclass Bar {}\n");
+        ClassPathIndex index = new ClassPathIndex(Collections.singletonList(root));
+
+        Assert.assertTrue(index.mayContainClass(new FqName("a.Foo")));
+        Assert.assertTrue(index.mayContainClass(new FqName("a.Bar")));
+        Assert.assertTrue(index.mayContainClass(new FqName("a.Bar.Nested")));
+        Assert.assertFalse(index.mayContainClass(new FqName("a.b.Bar")));
+        Assert.assertFalse(index.mayContainClass(new FqName("Bar")));
+    }
+
+    @Test
+    public void rootsAddedLater() throws IOException {
+        File jar = createJar("a/C.class");
+        ClassPathIndex index = new ClassPathIndex();
+        Assert.assertFalse(index.mayContainClass(new FqName("a.C")));
+
+        index.addRoot(jar);
+        Assert.assertTrue(index.mayContainClass(new FqName("a.C")));
+    }
+
+    @Test
+    public void persistedIndex() throws IOException {
+        File jar = createJar("a/C.class");
+        File cacheDir = new File(tmpdir.getTmpDir(), "cache");
+        String oldCacheDir = System.getProperty(ClassRootIndexCache.CACHE_DIR_PROPERTY);
+        System.setProperty(ClassRootIndexCache.CACHE_DIR_PROPERTY, cacheDir.getPath());
+        try {
+            Assert.assertNotNull(ClassRootIndexCache.getIndex(jar));
+            File[] files = cacheDir.listFiles();
+            Assert.assertNotNull(files);
+            Assert.assertEquals(1, files.length);
+        }
+        finally {
+            if (oldCacheDir == null) {
+                System.clearProperty(ClassRootIndexCache.CACHE_DIR_PROPERTY);
+            }
+            else {
+                System.setProperty(ClassRootIndexCache.CACHE_DIR_PROPERTY, oldCacheDir);
+            }
+        }
+    }
+
+    @NotNull
+    private File createJar(@NotNull String... entries) throws IOException {
+        File jar = File.createTempFile("classpath", ".jar", tmpdir.getTmpDir());
+        ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            for (String entry : entries) {
+                output.putNextEntry(new ZipEntry(entry));
+                output.closeEntry();
+            }
+        }
+        finally {
+            output.close();
+        }
+        return jar;
+    }
+}
@@ -38,4 +38,9 @@ public class LazyResolveBuiltinClassesTest extends KotlinTestWithEnvironment {
         NamespaceDescriptor builtInsPackage = KotlinBuiltIns.getInstance().getBuiltInsPackage();
         compareNamespaceWithFile(builtInsPackage, RECURSIVE, new File("compiler/testData/builtin-classes.txt"));
     }
+
+    @Test
+    public void testBuiltInsHaveNoErrors() throws Exception {
+        KotlinBuiltIns.getInstance().forceResolveAllAndCheckErrors();
+    }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.lazy;
+
+import com.google.common.collect.Lists;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.TimeUtils;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.descriptors.NamespaceDescriptor;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.lazy.storage.LockBasedStorageManager;
+import org.jetbrains.jet.lang.resolve.lazy.storage.StorageManager;
+import org.jetbrains.jet.lang.resolve.lazy.storage.StripedLockStorageManager;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Resolves a generated multi-package module lazily from 1, 4 and 16 threads with both storage managers.
+ *
+ * Run with: java org.jetbrains.jet.lang.resolve.lazy.LazyResolveScalingBenchmark [packages] [classesPerPackage]
+ */
+public class LazyResolveScalingBenchmark {
+    private static final int[] THREAD_COUNTS = {1, 4, 16};
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int packages = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int classesPerPackage = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        Disposable disposable = Disposer.newDisposable();
+        try {
+            JetCoreEnvironment environment =
+                    JetTestUtils.createEnvironmentWithMockJdkAndIdeaAnnotations(disposable, ConfigurationKind.JDK_ONLY);
+            List<JetFile> files = generateModule(environment, packages, classesPerPackage);
+
+            for (int threads : THREAD_COUNTS) {
+                long global = measure(environment, files, packages, threads, false);
+                long striped = measure(environment, files, packages, threads, true);
+                System.out.println(threads + " thread(s): centralized lock " + TimeUtils.millisecondsToSecondsString(global) +
+                                   "s, striped locks " + TimeUtils.millisecondsToSecondsString(striped) + "s");
+            }
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+
+    private static long measure(
+            @NotNull JetCoreEnvironment environment,
+            @NotNull List<JetFile> files,
+            int packages,
+            int threads,
+            boolean striped
+    ) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            resolveInParallel(environment, files, packages, threads, striped);
+        }
+        long total = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            total += resolveInParallel(environment, files, packages, threads, striped);
+        }
+        return total / MEASURED_ITERATIONS;
+    }
+
+    private static long resolveInParallel(
+            @NotNull JetCoreEnvironment environment,
+            @NotNull List<JetFile> files,
+            int packages,
+            int threads,
+            boolean striped
+    ) throws Exception {
+        StorageManager storageManager = striped ? new StripedLockStorageManager() : new LockBasedStorageManager();
+        final KotlinCodeAnalyzer analyzer = LazyResolveTestUtil.resolveLazilyWithSession(files, environment, storageManager);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.currentTimeMillis();
+
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int i = 0; i < packages; i++) {
+                final Name packageName = Name.identifier(packageName(i));
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        NamespaceDescriptor descriptor = analyzer.getPackageDescriptor(packageName);
+                        assert descriptor != null : "Package not found: " + packageName;
+                        ForceResolveUtil.forceResolveAllContents(descriptor);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            return System.currentTimeMillis() - start;
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @NotNull
+    private static List<JetFile> generateModule(@NotNull JetCoreEnvironment environment, int packages, int classesPerPackage) {
+        List<JetFile> files = Lists.newArrayList();
+        for (int p = 0; p < packages; p++) {
+            StringBuilder text = new StringBuilder();
+            text.append("package ").append(packageName(p)).append("\n\n");
+            // Every package depends on the previous one, so lazy computations cross package boundaries
+            if (p > 0) {
+                text.append("import ").append(packageName(p - 1)).append(".*\n\n");
+            }
+            for (int c = 0; c < classesPerPackage; c++) {
+                boolean root = p == 0 && c == 0;
+                String superClass = c > 0 ? "C" + (c - 1) + "_" + p : "C" + (classesPerPackage - 1) + "_" + (p - 1);
+                text.append("open class C").append(c).append("_").append(p);
+                text.append(root ? "<T>(val t: T)" : "<T>(t: T) : " + superClass + "<T>(t)").append(" {\n");
+                text.append("    fun f").append(c).append("(x: List<T>): Map<String, T>? = null\n");
+                text.append("    val p").append(c).append(": Int = ").append(c).append("\n");
+                text.append("}\n\n");
+                text.append("fun top").append(c).append("_").append(p).append("(c: C").append(c).append("_").append(p)
+                        .append("<String>): String = c.t\n\n");
+            }
+            files.add(JetPsiFactory.createFile(environment.getProject(), packageName(p) + ".kt", text.toString()));
+        }
+        return files;
+    }
+
+    @NotNull
+    private static String packageName(int index) {
+        return "pkg" + index;
+    }
+}
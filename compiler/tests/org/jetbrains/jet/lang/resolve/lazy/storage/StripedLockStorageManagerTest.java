@@ -0,0 +1,221 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.lazy.storage;
+
+import com.intellij.openapi.util.Computable;
+import com.intellij.util.Function;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StripedLockStorageManagerTest extends TestCase {
+
+    public void testMemoizedFunctionComputesOncePerKey() throws Exception {
+        StripedLockStorageManager storageManager = new StripedLockStorageManager();
+        final AtomicInteger computations = new AtomicInteger();
+        final MemoizedFunctionToNotNull<Integer, String> function = storageManager.createMemoizedFunction(
+                new Function<Integer, String>() {
+                    @Override
+                    public String fun(Integer key) {
+                        computations.incrementAndGet();
+                        return "v" + key;
+                    }
+                }, StorageManager.ReferenceKind.STRONG);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int key = 0; key < 1000; key++) {
+                            assertEquals("v" + key, function.fun(key));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1000, computations.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCrossThreadCycleDoesNotDeadlock() throws Exception {
+        // With two stripes, even keys share one lock and odd keys share the other
+        StripedLockStorageManager storageManager = new StripedLockStorageManager(2);
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final MemoizedFunctionToNotNull<Integer, String>[] function = new MemoizedFunctionToNotNull[1];
+        function[0] = storageManager.createMemoizedFunction(new Function<Integer, String>() {
+            @Override
+            public String fun(Integer key) {
+                if (key >= 2) return "leaf" + key;
+                awaitQuietly(bothStarted);
+                // 0 holds the even stripe and needs the odd one, 1 holds the odd stripe and needs the even one
+                return "node" + key + "(" + function[0].fun(3 - key) + ")";
+            }
+        }, StorageManager.ReferenceKind.STRONG);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(computeTask(function[0], 0));
+            Future<String> second = executor.submit(computeTask(function[0], 1));
+            assertEquals("node0(leaf3)", first.get(10, TimeUnit.SECONDS));
+            assertEquals("node1(leaf2)", second.get(10, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testSameKeyRequestedFromTwoThreads() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            // With two stripes, even keys share one lock and odd keys share the other
+            StripedLockStorageManager storageManager = new StripedLockStorageManager(2);
+            final CountDownLatch bothStarted = new CountDownLatch(2);
+            final MemoizedFunctionToNotNull<Integer, String>[] function = new MemoizedFunctionToNotNull[1];
+            function[0] = storageManager.createMemoizedFunction(new Function<Integer, String>() {
+                @Override
+                public String fun(Integer key) {
+                    if (key == 1) return "leaf1";
+                    awaitQuietly(bothStarted);
+                    // 0 holds the even stripe and needs the odd one, 3 holds the odd stripe and needs 0 itself:
+                    // if the cycle is broken in the thread computing 3, both threads publish a value for 0
+                    return "node" + key + "(" + function[0].fun(key == 0 ? 1 : 0) + ")";
+                }
+            }, StorageManager.ReferenceKind.STRONG);
+
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                Future<String> first = executor.submit(computeTask(function[0], 0));
+                Future<String> second = executor.submit(computeTask(function[0], 3));
+                assertEquals("node0(leaf1)", first.get(10, TimeUnit.SECONDS));
+                assertEquals("node3(node0(leaf1))", second.get(10, TimeUnit.SECONDS));
+                assertEquals("node0(leaf1)", function[0].fun(0));
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testValueComputedTwiceIsPublishedOnce() throws Exception {
+        int duplicateComputations = 0;
+        for (int i = 0; i < 20; i++) {
+            // With two stripes, even keys share one lock and odd keys share the other
+            StripedLockStorageManager storageManager = new StripedLockStorageManager(2);
+            final CountDownLatch bothStarted = new CountDownLatch(2);
+            final AtomicInteger computationsOfZero = new AtomicInteger();
+            final MemoizedFunctionToNotNull<Integer, String>[] function = new MemoizedFunctionToNotNull[1];
+            function[0] = storageManager.createMemoizedFunction(new Function<Integer, String>() {
+                @Override
+                public String fun(Integer key) {
+                    if (key == 1) return "leaf1";
+                    if (key == 0) {
+                        // every computation of 0 gives a distinct value, so a published duplicate would be seen
+                        int computation = computationsOfZero.incrementAndGet();
+                        awaitQuietly(bothStarted);
+                        // start waiting after the thread computing 3, so that it is the one to detect the cycle
+                        // and compute 0 once more without the lock
+                        sleepQuietly(5);
+                        return "node0#" + computation + "(" + function[0].fun(1) + ")";
+                    }
+                    awaitQuietly(bothStarted);
+                    return "node3(" + function[0].fun(0) + ")";
+                }
+            }, StorageManager.ReferenceKind.STRONG);
+
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                Future<String> first = executor.submit(computeTask(function[0], 0));
+                Future<String> second = executor.submit(computeTask(function[0], 3));
+                String firstResult = first.get(10, TimeUnit.SECONDS);
+                String secondResult = second.get(10, TimeUnit.SECONDS);
+                String published = function[0].fun(0);
+                assertSame(published, firstResult);
+                assertEquals("node3(" + published + ")", secondResult);
+            }
+            finally {
+                executor.shutdown();
+            }
+
+            if (computationsOfZero.get() > 1) {
+                duplicateComputations++;
+            }
+        }
+        assertTrue("The wait cycle was never broken by computing the value a second time", duplicateComputations > 0);
+    }
+
+    public void testRecursionIsDetected() {
+        StripedLockStorageManager storageManager = new StripedLockStorageManager();
+        final NotNullLazyValue<?>[] self = new NotNullLazyValue<?>[1];
+        self[0] = storageManager.createLazyValue(new Computable<Object>() {
+            @Override
+            public Object compute() {
+                return self[0].compute();
+            }
+        });
+
+        try {
+            self[0].compute();
+            fail("Recursion should have been detected");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private static Callable<String> computeTask(final MemoizedFunctionToNotNull<Integer, String> function, final int key) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return function.fun(key);
+            }
+        };
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
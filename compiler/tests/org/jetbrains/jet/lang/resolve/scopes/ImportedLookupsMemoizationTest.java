@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.scopes;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.di.InjectorForTopDownAnalyzerForJvm;
+import org.jetbrains.jet.lang.descriptors.FunctionDescriptor;
+import org.jetbrains.jet.lang.descriptors.ModuleDescriptor;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.BindingTraceContext;
+import org.jetbrains.jet.lang.resolve.TopDownAnalysisParameters;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+public class ImportedLookupsMemoizationTest extends KotlinTestWithEnvironment {
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testStarImportOfModulePackageIsMemoized() {
+        JetFile library = JetPsiFactory.createFile(getProject(), "library.kt",
+                "package a\n" +
+                "fun f(x: Int) = x\n" +
+                "fun f(s: String) = s\n" +
+                "fun g() = 1\n");
+        JetFile user = JetPsiFactory.createFile(getProject(), "user.kt",
+                "package b\n" +
+                "import a.*\n" +
+                "fun h(): Int = f(1) + f(2) + g()\n" +
+                "fun i(): String = f(\"\")\n");
+
+        BindingTraceContext trace = new BindingTraceContext();
+        InjectorForTopDownAnalyzerForJvm injector = new InjectorForTopDownAnalyzerForJvm(
+                getProject(),
+                new TopDownAnalysisParameters(Predicates.<PsiFile>alwaysTrue(), false, false,
+                                              Collections.<AnalyzerScriptParameter>emptyList()),
+                trace, new ModuleDescriptor(Name.special("<test module>")));
+        WritableScopeWithImports fileScope;
+        try {
+            injector.getTopDownAnalyzer().analyzeFiles(Arrays.asList(library, user), Collections.<AnalyzerScriptParameter>emptyList());
+            fileScope = (WritableScopeWithImports) injector.getTopDownAnalysisContext().getNamespaceScopes().get(user);
+        }
+        finally {
+            injector.destroy();
+        }
+        assertTrue(trace.getBindingContext().getDiagnostics().isEmpty());
+
+        // The bodies were resolved once the namespace member scope imported by "a.*" was locked for reading
+        Collection<FunctionDescriptor> memoized = fileScope.getMemoizedImportedFunctions(Name.identifier("f"));
+        assertNotNull(memoized);
+        assertEquals(2, memoized.size());
+        assertNotNull(fileScope.getMemoizedImportedFunctions(Name.identifier("g")));
+
+        // Nothing else declares "f", so a lookup hits the memoized result and returns it as is
+        assertSame(memoized, fileScope.getFunctions(Name.identifier("f")));
+    }
+}
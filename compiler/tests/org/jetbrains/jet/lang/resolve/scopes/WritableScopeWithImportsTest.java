@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.scopes;
+
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.descriptors.DeclarationDescriptor;
+import org.jetbrains.jet.lang.descriptors.ModuleDescriptor;
+import org.jetbrains.jet.lang.descriptors.NamespaceDescriptor;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+import org.jetbrains.jet.lang.descriptors.impl.NamespaceDescriptorImpl;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.Collections;
+
+public class WritableScopeWithImportsTest extends TestCase {
+    private static final Name A = Name.identifier("a");
+    private static final Name B = Name.identifier("b");
+    private static final Name MISSING = Name.identifier("missing");
+
+    private final ModuleDescriptor module = new ModuleDescriptor(Name.special("<test module>"));
+
+    public void testImportedLookupsMemoizedWhenLockedForReading() {
+        CountingScope imported = new CountingScope(namespace(A));
+        WritableScopeImpl scope = createScope();
+        scope.importScope(imported);
+        scope.changeLockLevel(WritableScope.LockLevel.READING);
+
+        NamespaceDescriptor namespace = scope.getNamespace(A);
+        assertSame(imported.namespace, namespace);
+        assertSame(namespace, scope.getNamespace(A));
+        assertEquals(1, imported.lookups);
+
+        assertNull(scope.getNamespace(MISSING));
+        assertNull(scope.getNamespace(MISSING));
+        assertEquals(2, imported.lookups);
+    }
+
+    public void testImportedLookupsNotMemoizedBeforeLockedForReading() {
+        CountingScope imported = new CountingScope(namespace(A));
+        WritableScopeImpl scope = createScope();
+        scope.importScope(imported);
+
+        scope.getNamespace(A);
+        scope.getNamespace(A);
+        assertEquals(2, imported.lookups);
+
+        CountingScope importedLater = new CountingScope(namespace(B));
+        scope.importScope(importedLater);
+        assertSame(importedLater.namespace, scope.getNamespace(B));
+    }
+
+    public void testImportedLookupsNotMemoizedWhileImportedWritableScopeIsWritable() {
+        CountingScope imported = new CountingScope(namespace(A));
+        WritableScopeImpl importedWritable = createScope();
+        WritableScopeImpl scope = createScope();
+        scope.importScope(imported);
+        scope.importScope(importedWritable);
+        scope.changeLockLevel(WritableScope.LockLevel.READING);
+
+        scope.getNamespace(A);
+        scope.getNamespace(A);
+        assertEquals(2, imported.lookups);
+
+        assertNull(scope.getNamespace(B));
+        NamespaceDescriptor addedLater = namespace(B);
+        importedWritable.addNamespace(addedLater);
+        assertSame(addedLater, scope.getNamespace(B));
+
+        importedWritable.changeLockLevel(WritableScope.LockLevel.READING);
+        int lookupsBeforeLocking = imported.lookups;
+        scope.getNamespace(A);
+        scope.getNamespace(A);
+        assertEquals(lookupsBeforeLocking + 1, imported.lookups);
+    }
+
+    public void testImportedLookupsNotMemoizedWhenLockedByGettingAllDescriptors() {
+        CountingScope imported = new CountingScope(namespace(A));
+        WritableScopeImpl scope = createScope();
+        scope.importScope(imported);
+        scope.getAllDescriptors();
+
+        scope.getNamespace(A);
+        scope.getNamespace(A);
+        assertEquals(2, imported.lookups);
+
+        scope.changeLockLevel(WritableScope.LockLevel.READING);
+        scope.getNamespace(A);
+        scope.getNamespace(A);
+        assertEquals(3, imported.lookups);
+    }
+
+    public void testAliasImportsDoNotPreventMemoizing() {
+        CountingScope imported = new CountingScope(namespace(A));
+        WritableScopeImpl scope = createScope();
+        scope.importScope(imported);
+        NamespaceDescriptor aliased = namespace(B);
+        scope.importNamespaceAlias(Name.identifier("alias"), aliased);
+        scope.changeLockLevel(WritableScope.LockLevel.READING);
+
+        assertSame(aliased, scope.getNamespace(Name.identifier("alias")));
+        scope.getNamespace(A);
+        scope.getNamespace(A);
+        assertEquals(1, imported.lookups);
+    }
+
+    @NotNull
+    private WritableScopeImpl createScope() {
+        WritableScopeImpl scope = new WritableScopeImpl(JetScope.EMPTY, module, RedeclarationHandler.THROW_EXCEPTION, "Test scope");
+        scope.changeLockLevel(WritableScope.LockLevel.BOTH);
+        return scope;
+    }
+
+    @NotNull
+    private NamespaceDescriptor namespace(@NotNull Name name) {
+        return new NamespaceDescriptorImpl(module, Collections.<AnnotationDescriptor>emptyList(), name);
+    }
+
+    private class CountingScope extends JetScopeImpl {
+        private final NamespaceDescriptor namespace;
+        private int lookups;
+
+        private CountingScope(@NotNull NamespaceDescriptor namespace) {
+            this.namespace = namespace;
+        }
+
+        @Override
+        public NamespaceDescriptor getNamespace(@NotNull Name name) {
+            lookups++;
+            return name.equals(namespace.getName()) ? namespace : null;
+        }
+
+        @NotNull
+        @Override
+        public DeclarationDescriptor getContainingDeclaration() {
+            return module;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.repl;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.TestJdkKind;
+import org.jetbrains.jet.cli.jvm.JVMConfigurationKeys;
+import org.jetbrains.jet.cli.jvm.compiler.CompileEnvironmentUtil;
+import org.jetbrains.jet.cli.jvm.repl.ReplInterpreter;
+import org.jetbrains.jet.config.CompilerConfiguration;
+
+import java.io.File;
+
+/**
+ * Evaluates a long REPL session, every line referring to the one before it, and prints how long each block of lines
+ * took: the time per line should not grow with the number of earlier lines.
+ *
+ * Run with: java org.jetbrains.jet.repl.ReplBenchmark [lines]
+ */
+public class ReplBenchmark {
+    private static final int BLOCK = 1000;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+
+        Disposable disposable = CompileEnvironmentUtil.createMockDisposable();
+        try {
+            CompilerConfiguration configuration =
+                    JetTestUtils.compilerConfigurationForTests(ConfigurationKind.JDK_ONLY, TestJdkKind.FULL_JDK);
+            configuration.add(JVMConfigurationKeys.CLASSPATH_KEY, new File("out/production/runtime"));
+            ReplInterpreter repl = new ReplInterpreter(disposable, configuration);
+
+            eval(repl, "val x0 = 0");
+            long blockStart = System.nanoTime();
+            for (int i = 1; i <= lines; i++) {
+                eval(repl, "val x" + i + " = x" + (i - 1) + " + 1");
+                if (i % BLOCK == 0) {
+                    long now = System.nanoTime();
+                    System.out.println("lines " + (i - BLOCK + 1) + ".." + i + ": " + (now - blockStart) / 1000 / BLOCK + "us per line");
+                    blockStart = now;
+                }
+            }
+
+            Object last = eval(repl, "x" + lines);
+            if (!Integer.valueOf(lines).equals(last)) {
+                throw new IllegalStateException("Wrong result: " + last);
+            }
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+
+    private static Object eval(ReplInterpreter repl, String line) {
+        ReplInterpreter.LineResult result = repl.eval(line);
+        if (result.getType() != ReplInterpreter.LineResultType.SUCCESS) {
+            throw new IllegalStateException("Failed to evaluate " + line + ": " + result.getErrorText());
+        }
+        return result.getValue();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.types;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.TimeUtils;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures the cold start of a small compilation with the built-ins resolved from their sources eagerly and lazily.
+ * There is no binary form of the built-ins to load them from, so that is not measured. The compiler resolves
+ * the built-ins eagerly by default, the lazy runs override this with {@link KotlinBuiltIns#EAGER_RESOLVE_PROPERTY}.
+ * Every measurement runs in a fresh JVM, since the built-ins are initialized once per process.
+ *
+ * Run with: java org.jetbrains.jet.types.BuiltInsStartupBenchmark [runs]
+ */
+public class BuiltInsStartupBenchmark {
+    private static final String CHILD_ARGUMENT = "-child";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(CHILD_ARGUMENT)) {
+            System.out.println(compileSmallFile());
+            return;
+        }
+
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long eager = 0;
+        long lazy = 0;
+        for (int i = 0; i < runs; i++) {
+            eager += runChild(true);
+            lazy += runChild(false);
+        }
+        System.out.println("eager built-ins " + TimeUtils.millisecondsToSecondsString(eager / runs) +
+                           "s, lazy built-ins " + TimeUtils.millisecondsToSecondsString(lazy / runs) + "s");
+    }
+
+    private static long compileSmallFile() {
+        long start = System.currentTimeMillis();
+        Disposable disposable = Disposer.newDisposable();
+        try {
+            JetCoreEnvironment environment =
+                    JetTestUtils.createEnvironmentWithMockJdkAndIdeaAnnotations(disposable, ConfigurationKind.JDK_ONLY);
+            JetFile file = JetPsiFactory.createFile(environment.getProject(), "hello.kt",
+                    "package hello\n" +
+                    "fun main(args: Array<String>) { for (i in 1..args.size) println(\"Hello, ${args[i - 1]}\") }\n");
+            AnalyzerFacadeForJVM.analyzeOneFileWithJavaIntegrationAndCheckForErrors(
+                    file, Collections.<AnalyzerScriptParameter>emptyList());
+            return System.currentTimeMillis() - start;
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+
+    private static long runChild(boolean eagerBuiltIns) throws Exception {
+        List<String> command = Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-D" + KotlinBuiltIns.EAGER_RESOLVE_PROPERTY + "=" + eagerBuiltIns,
+                "-cp", System.getProperty("java.class.path"),
+                BuiltInsStartupBenchmark.class.getName(),
+                CHILD_ARGUMENT);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = FileUtil.loadTextAndClose(new InputStreamReader(process.getInputStream()));
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Child process exited with code " + exitCode + ":\n" + output);
+        }
+        String[] lines = output.trim().split("\n");
+        return Long.parseLong(lines[lines.length - 1].trim());
+    }
+}
@@ -48,6 +48,7 @@ import org.jetbrains.jet.lang.types.ErrorUtils;
 import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.jet.lang.types.TypeUtils;
 import org.jetbrains.jet.lang.types.checker.JetTypeChecker;
+import org.jetbrains.jet.lang.types.checker.SubtypingCache;
 import org.jetbrains.jet.lang.types.expressions.ExpressionTypingServices;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 
@@ -483,6 +484,51 @@ public class JetTypeCheckerTest extends JetLiteFixture {
         assertSubtype("Base_inT<out Any?>", "Base_inT<out Int>");
     }
 
+    public void testSubtypingCache() throws Exception {
+        // a single stripe evicts the least recently used results exactly
+        SubtypingCache cache = new SubtypingCache(2, 1);
+        SubtypingCache previousCache = JetTypeChecker.INSTANCE.setSubtypingCache(cache);
+        try {
+            assertSubtype("Derived_T<Int>", "Base_T<Int>");
+            assertNotSubtype("Base_T<Int>", "Derived_T<Int>");
+            assertSubtype("Derived_T<Int>", "Base_T<Int>");
+            assertNotSubtype("Base_T<Int>", "Derived_T<Int>");
+            assertEquals(2, cache.getHitCount());
+            assertEquals(2, cache.getMissCount());
+
+            // the least recently used result is evicted
+            assertSubtype("Int", "Any");
+            assertEquals(2, cache.size());
+            assertNotSubtype("Base_T<Int>", "Derived_T<Int>");
+            assertEquals(3, cache.getHitCount());
+            assertSubtype("Derived_T<Int>", "Base_T<Int>");
+            assertEquals(3, cache.getHitCount());
+            assertEquals(4, cache.getMissCount());
+        }
+        finally {
+            JetTypeChecker.INSTANCE.setSubtypingCache(previousCache);
+        }
+    }
+
+    public void testStripedSubtypingCache() throws Exception {
+        SubtypingCache cache = new SubtypingCache(4, 2);
+        SubtypingCache previousCache = JetTypeChecker.INSTANCE.setSubtypingCache(cache);
+        try {
+            String[] types = {"Int", "Long", "Short", "Byte", "Char", "Double", "Float", "Boolean"};
+            for (int i = 0; i < 2; i++) {
+                for (String type : types) {
+                    assertSubtype(type, "Any");
+                    assertNotSubtype("Any", type);
+                }
+            }
+            assertEquals(4 * types.length, cache.getHitCount() + cache.getMissCount());
+            assertTrue(cache.toString(), cache.size() <= 4);
+        }
+        finally {
+            JetTypeChecker.INSTANCE.setSubtypingCache(previousCache);
+        }
+    }
+
 ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     private void assertSupertypes(String typeStr, String... supertypeStrs) {
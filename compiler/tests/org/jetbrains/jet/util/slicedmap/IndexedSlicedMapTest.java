@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.util.slicedmap;
+
+import com.google.common.collect.Sets;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+public class IndexedSlicedMapTest extends TestCase {
+    private static final RemovableSlice<Integer, String> FIRST = Slices.<Integer, String>sliceBuilder().build();
+    private static final RemovableSlice<Integer, String> SECOND = Slices.<Integer, String>sliceBuilder().build();
+    private static final WritableSlice<String, Boolean> COLLECTIVE = Slices.createCollectiveSetSlice();
+    private static final RemovableSlice<String, Boolean> REMOVABLE_COLLECTIVE = new Slices.SetSlice<String>(RewritePolicy.DO_NOTHING, true);
+    private static final WritableSlice<String, Integer> WITH_DEFAULT = Slices.<String, Integer>sliceBuilder().setDefaultValue(-1).build();
+    private static final RemovableSlice<String, Integer> NORMALIZED = Slices.<String, Integer>sliceBuilder()
+            .setKeyNormalizer(new Slices.KeyNormalizer<String>() {
+                @Override
+                public String normalize(String key) {
+                    return key.toLowerCase();
+                }
+            }).build();
+    private static final WritableSlice<String, Integer> OPPOSITE = Slices.createSimpleSlice();
+    private static final WritableSlice<Integer, String> WITH_OPPOSITE = Slices.<Integer, String>sliceBuilder()
+            .setOpposite((WritableSlice) OPPOSITE).build();
+
+    public void testBehavesLikeSlicedMapImpl() {
+        MutableSlicedMap expected = SlicedMapImpl.create();
+        MutableSlicedMap actual = IndexedSlicedMap.create();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(500);
+            RemovableSlice<Integer, String> slice = random.nextBoolean() ? FIRST : SECOND;
+            switch (random.nextInt(3)) {
+                case 0:
+                    expected.put(slice, key, "v" + key);
+                    actual.put(slice, key, "v" + key);
+                    break;
+                case 1:
+                    assertEquals(expected.remove(slice, key), actual.remove(slice, key));
+                    break;
+                default:
+                    assertEquals(expected.get(slice, key), actual.get(slice, key));
+            }
+        }
+
+        assertEquals(expected.getSliceContents(FIRST), actual.getSliceContents(FIRST));
+        assertEquals(expected.getSliceContents(SECOND), actual.getSliceContents(SECOND));
+        assertEquals(entries(expected), entries(actual));
+    }
+
+    public void testIterationKeepsInsertionOrderWithinSlice() {
+        MutableSlicedMap map = IndexedSlicedMap.create();
+        for (int i = 100; i > 0; i--) {
+            map.put(FIRST, i, "v" + i);
+        }
+        map.remove(FIRST, 50);
+
+        List<Object> keys = new ArrayList<Object>();
+        for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
+            assertSame(FIRST, entry.getKey().getSlice());
+            keys.add(entry.getKey().getKey());
+        }
+        assertEquals(99, keys.size());
+        assertEquals(100, keys.get(0));
+        assertEquals(1, keys.get(98));
+        assertFalse(keys.contains(50));
+    }
+
+    public void testNullKeysAndDefaultValues() {
+        MutableSlicedMap map = IndexedSlicedMap.create();
+        assertEquals(Integer.valueOf(-1), map.get(WITH_DEFAULT, null));
+        map.put(WITH_DEFAULT, null, 1);
+        assertEquals(Integer.valueOf(1), map.get(WITH_DEFAULT, null));
+        assertEquals(Integer.valueOf(-1), map.get(WITH_DEFAULT, "a"));
+    }
+
+    public void testKeyNormalizer() {
+        MutableSlicedMap map = IndexedSlicedMap.create();
+        map.put(NORMALIZED, "KEY", 1);
+        assertEquals(Integer.valueOf(1), map.get(NORMALIZED, "key"));
+        assertEquals(Integer.valueOf(1), map.get(NORMALIZED.makeRawValueVersion(), "Key"));
+        assertEquals(Integer.valueOf(1), map.remove(NORMALIZED, "kEy"));
+        assertNull(map.get(NORMALIZED, "key"));
+    }
+
+    public void testCollectiveKeysAndOpposite() {
+        MutableSlicedMap map = IndexedSlicedMap.create();
+        map.put(COLLECTIVE, "a", true);
+        map.put(COLLECTIVE, "b", true);
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(map.getKeys(COLLECTIVE)));
+
+        map.put(WITH_OPPOSITE, 1, "one");
+        assertEquals(Integer.valueOf(1), map.get(OPPOSITE, "one"));
+
+        map.clear();
+        assertTrue(map.getKeys(COLLECTIVE).isEmpty());
+        assertNull(map.get(OPPOSITE, "one"));
+    }
+
+    public void testGetKeysListsPresentKeysOnceInFirstPutOrder() {
+        MutableSlicedMap map = IndexedSlicedMap.create();
+        map.put(REMOVABLE_COLLECTIVE, "c", true);
+        map.put(REMOVABLE_COLLECTIVE, "a", true);
+        map.put(REMOVABLE_COLLECTIVE, "b", true);
+        map.put(REMOVABLE_COLLECTIVE, "c", false);
+        map.remove(REMOVABLE_COLLECTIVE, "a");
+        assertEquals(Arrays.asList("c", "b"), new ArrayList<String>(map.getKeys(REMOVABLE_COLLECTIVE)));
+
+        map.put(REMOVABLE_COLLECTIVE, "a", true);
+        assertEquals(Arrays.asList("c", "b", "a"), new ArrayList<String>(map.getKeys(REMOVABLE_COLLECTIVE)));
+    }
+
+    public void testRemovingMostEntriesKeepsOrderAndLookups() {
+        MutableSlicedMap map = IndexedSlicedMap.create();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 1000; i++) {
+                map.put(FIRST, i, "v" + i);
+            }
+            for (int i = 0; i < 1000; i++) {
+                if (i % 100 != 0) {
+                    assertEquals("v" + i, map.remove(FIRST, i));
+                }
+            }
+
+            List<Object> keys = new ArrayList<Object>();
+            for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
+                keys.add(entry.getKey().getKey());
+            }
+            assertEquals(Arrays.<Object>asList(0, 100, 200, 300, 400, 500, 600, 700, 800, 900), keys);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i % 100 == 0 ? "v" + i : null, map.get(FIRST, i));
+            }
+        }
+    }
+
+    private static Set<List<Object>> entries(MutableSlicedMap map) {
+        Set<List<Object>> result = Sets.newHashSet();
+        for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
+            result.add(Arrays.asList(entry.getKey().getSlice(), entry.getKey().getKey(), entry.getValue()));
+        }
+        return result;
+    }
+}
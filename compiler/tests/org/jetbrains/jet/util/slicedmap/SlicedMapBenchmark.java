@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.util.slicedmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the retained heap and the put/get throughput of {@link SlicedMapImpl} and {@link IndexedSlicedMap}
+ * on a trace-like load: many slices, object keys with identity hash codes, more reads than writes.
+ *
+ * Run with: java org.jetbrains.jet.util.slicedmap.SlicedMapBenchmark [entries]
+ */
+public class SlicedMapBenchmark {
+    private static final int SLICES = 64;
+    private static final int READS_PER_WRITE = 4;
+    private static final int ITERATIONS = 10;
+
+    private interface MapFactory {
+        MutableSlicedMap create();
+    }
+
+    private static final MapFactory LINKED_HASH_MAP = new MapFactory() {
+        @Override
+        public MutableSlicedMap create() {
+            return SlicedMapImpl.create();
+        }
+    };
+
+    private static final MapFactory INDEXED = new MapFactory() {
+        @Override
+        public MutableSlicedMap create() {
+            return IndexedSlicedMap.create();
+        }
+    };
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        List<WritableSlice<Object, Object>> slices = new ArrayList<WritableSlice<Object, Object>>();
+        for (int i = 0; i < SLICES; i++) {
+            slices.add(new BasicWritableSlice<Object, Object>(RewritePolicy.DO_NOTHING));
+        }
+        Object[] keys = new Object[entries / SLICES];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Object();
+        }
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            boolean report = i == ITERATIONS - 1;
+            run("SlicedMapImpl", LINKED_HASH_MAP, slices, keys, report);
+            run("IndexedSlicedMap", INDEXED, slices, keys, report);
+        }
+    }
+
+    private static void run(String name, MapFactory factory, List<WritableSlice<Object, Object>> slices, Object[] keys, boolean report) {
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+
+        MutableSlicedMap map = factory.create();
+        for (WritableSlice<Object, Object> slice : slices) {
+            for (Object key : keys) {
+                map.put(slice, key, key);
+            }
+        }
+        long afterWrites = System.nanoTime();
+
+        int found = 0;
+        for (int i = 0; i < READS_PER_WRITE; i++) {
+            for (WritableSlice<Object, Object> slice : slices) {
+                for (Object key : keys) {
+                    if (map.get(slice, key) != null) found++;
+                }
+            }
+        }
+        long afterReads = System.nanoTime();
+
+        long heap = usedHeap() - heapBefore;
+        if (found != READS_PER_WRITE * slices.size() * keys.length) {
+            throw new IllegalStateException("Lost entries in " + name);
+        }
+
+        if (report) {
+            System.out.println(name + ": puts " + (afterWrites - start) / 1000000 + "ms, gets " +
+                               (afterReads - afterWrites) / 1000000 + "ms, retained " + heap / (1024 * 1024) + "Mb");
+        }
+        // Keep the map reachable until its size has been measured
+        if (map.get(slices.get(0), keys[0]) == null) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
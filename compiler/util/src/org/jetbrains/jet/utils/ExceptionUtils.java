@@ -16,7 +16,11 @@
 
 package org.jetbrains.jet.utils;
 
+import org.jetbrains.annotations.NotNull;
+
 import java.io.Closeable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class ExceptionUtils {
 
@@ -39,6 +43,22 @@ public class ExceptionUtils {
         }
     }
 
+    /**
+     * Waits for the result of the future, rethrowing the exception the computation has failed with.
+     */
+    public static <T> T getResult(@NotNull Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + future, e);
+        }
+        catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
     public static void closeQuietly(Closeable closeable) {
         if (closeable != null) {
             try {
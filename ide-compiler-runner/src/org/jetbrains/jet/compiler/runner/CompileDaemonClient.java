@@ -0,0 +1,176 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.compiler.runner;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.SystemProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.daemon.CompileDaemonProtocol;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.utils.KotlinPaths;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs compilations in the compile daemon (see KotlinCompileDaemon in the compiler), starting it if it is not running.
+ * Enabled with -Dkotlin.compiler.daemon=true.
+ */
+public class CompileDaemonClient {
+    public static final String DAEMON_PROPERTY = "kotlin.compiler.daemon";
+
+    private static final String DAEMON_CLASS_NAME = "org.jetbrains.jet.cli.jvm.daemon.KotlinCompileDaemon";
+    private static final long STARTUP_TIMEOUT_MS = 30000;
+    private static final long STARTUP_POLL_MS = 100;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    // Compilations are run by the daemon one at a time, so this includes the wait for the other clients
+    private static final int RESPONSE_TIMEOUT_MS = 15 * 60 * 1000;
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(DAEMON_PROPERTY);
+    }
+
+    /**
+     * @return the exit code of the compiler, or null if the daemon couldn't be used and the caller should compile by itself
+     */
+    @Nullable
+    public static Integer compile(
+            @NotNull KotlinPaths paths,
+            @NotNull String[] arguments,
+            @NotNull PrintStream out,
+            @NotNull MessageCollector messageCollector
+    ) {
+        if (!CompileDaemonProtocol.canCheckFileOwners()) {
+            report(messageCollector, "The compile daemon needs Java 7 or later to check who has started it, not using it");
+            return null;
+        }
+
+        List<File> classpath = CompilerRunnerUtil.kompilerClasspath(paths, messageCollector);
+        if (classpath.isEmpty()) return null;
+
+        File daemonFile = CompileDaemonProtocol.getDaemonFile(classpath.get(0));
+        try {
+            CompileDaemonProtocol.DaemonAddress address = CompileDaemonProtocol.readDaemonFile(daemonFile);
+            Socket socket = connect(address);
+            if (socket == null) {
+                startDaemon(classpath, daemonFile, messageCollector);
+
+                long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MS;
+                while (socket == null && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(STARTUP_POLL_MS);
+                    address = CompileDaemonProtocol.readDaemonFile(daemonFile);
+                    socket = connect(address);
+                }
+            }
+            if (socket == null) {
+                report(messageCollector, "Couldn't connect to the compile daemon, see " + daemonFile + ".log");
+                return null;
+            }
+
+            CompileDaemonProtocol.Response response;
+            try {
+                // A daemon which has got stuck must not hang the build: the caller compiles by itself instead
+                socket.setSoTimeout(RESPONSE_TIMEOUT_MS);
+                CompileDaemonProtocol.writeRequest(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())),
+                                                   address.token, arguments);
+                response = CompileDaemonProtocol.readResponse(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+            }
+            finally {
+                socket.close();
+            }
+
+            if (response.exitCode == CompileDaemonProtocol.EXIT_CODE_BAD_REQUEST) {
+                report(messageCollector, "The compile daemon has rejected the request");
+                return null;
+            }
+            out.print(response.output);
+            return response.exitCode;
+        }
+        catch (SocketTimeoutException e) {
+            report(messageCollector, "The compile daemon hasn't responded in " + RESPONSE_TIMEOUT_MS / 1000 + "s, see " + daemonFile + ".log");
+            return null;
+        }
+        catch (IOException e) {
+            report(messageCollector, "Compile daemon failure: " + e);
+            return null;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Socket connect(@Nullable CompileDaemonProtocol.DaemonAddress address) {
+        if (address == null) return null;
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), address.port), CONNECT_TIMEOUT_MS);
+            return socket;
+        }
+        catch (IOException e) {
+            // The daemon has died without removing its file
+            try {
+                socket.close();
+            }
+            catch (IOException closeFailure) {
+                // Nothing to do
+            }
+            return null;
+        }
+    }
+
+    private static void startDaemon(@NotNull List<File> classpath, @NotNull File daemonFile, @NotNull MessageCollector messageCollector)
+            throws IOException {
+        // The file of a dead daemon
+        daemonFile.delete();
+
+        List<String> command = new ArrayList<String>();
+        command.add(new File(SystemProperties.getJavaHome(), "bin" + File.separator + "java").getPath());
+        command.add("-Djava.awt.headless=true");
+        command.add("-Xmx1024m");
+        command.add("-cp");
+        List<String> classpathEntries = new ArrayList<String>();
+        for (File file : classpath) {
+            classpathEntries.add(file.getAbsolutePath());
+        }
+        command.add(StringUtil.join(classpathEntries, File.pathSeparator));
+        command.add(DAEMON_CLASS_NAME);
+        command.add(daemonFile.getPath());
+
+        report(messageCollector, "Starting the compile daemon: " + StringUtil.join(command, " "));
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        // The daemon writes to its own log, and must outlive this process
+        process.getOutputStream().close();
+        process.getInputStream().close();
+    }
+
+    private static void report(@NotNull MessageCollector messageCollector, @NotNull String message) {
+        messageCollector.report(CompilerMessageSeverity.INFO, message, CompilerMessageLocation.NO_LOCATION);
+    }
+
+    private CompileDaemonClient() {}
+}
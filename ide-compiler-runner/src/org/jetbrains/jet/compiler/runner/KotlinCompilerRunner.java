@@ -44,7 +44,10 @@ public class KotlinCompilerRunner {
             OutputItemsCollector collector,
             boolean runOutOfProcess
     ) {
-        if (runOutOfProcess) {
+        if (CompileDaemonClient.isEnabled()) {
+            runInDaemon(messageCollector, collector, environment, scriptFile);
+        }
+        else if (runOutOfProcess) {
             runOutOfProcess(messageCollector, collector, environment, scriptFile);
         }
         else {
@@ -64,6 +67,21 @@ public class KotlinCompilerRunner {
         });
     }
 
+    private static void runInDaemon(final MessageCollector messageCollector,
+            OutputItemsCollector collector,
+            final CompilerEnvironment environment,
+            final File scriptFile) {
+        CompilerRunnerUtil.outputCompilerMessagesAndHandleExitCode(messageCollector, collector, new Function<PrintStream, Integer>() {
+            @Override
+            public Integer fun(PrintStream stream) {
+                String[] arguments = commandLineArguments(environment.getOutput(), scriptFile);
+                Integer exitCode = CompileDaemonClient.compile(environment.getKotlinPaths(), arguments, stream, messageCollector);
+                // Falling back to the in-process compiler if the daemon can't be used
+                return exitCode != null ? exitCode : execInProcess(environment, scriptFile, stream, messageCollector);
+            }
+        });
+    }
+
     private static int execInProcess(CompilerEnvironment environment, File scriptFile, PrintStream out, MessageCollector messageCollector) {
         try {
             String compilerClassName = "org.jetbrains.jet.cli.jvm.K2JVMCompiler";
@@ -88,7 +106,7 @@ public class KotlinCompilerRunner {
     private static String[] commandLineArguments(File outputDir, File scriptFile) {
         return new String[]{
                 "-module", scriptFile.getAbsolutePath(),
-                "-output", outputDir.getPath(),
+                "-output", outputDir.getAbsolutePath(),
                 "-tags", "-verbose", "-version",
                 "-notNullAssertions", "-notNullParamAssertions",
                 "-noStdlib", "-noJdkAnnotations", "-noJdk"};
@@ -89,7 +89,8 @@ class VariablesHighlightingVisitor extends AfterAnalysisHighlightingVisitor {
             }
 
             if (Boolean.TRUE.equals(bindingContext.get(CAPTURED_IN_CLOSURE, variableDescriptor))) {
-                String msg = ((VariableDescriptor) descriptor).isVar()
+                String msg = ((VariableDescriptor) descriptor).isVar() &&
+                             !Boolean.TRUE.equals(bindingContext.get(NOT_MODIFIED_AFTER_CAPTURE, variableDescriptor))
                              ? "Wrapped into a reference object to be modified when captured in a closure"
                              : "Value captured in a closure";
                 holder.createInfoAnnotation(elementToHighlight, msg).setTextAttributes(
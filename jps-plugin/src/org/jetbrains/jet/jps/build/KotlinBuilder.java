@@ -16,12 +16,14 @@
 
 package org.jetbrains.jet.jps.build;
 
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
 import org.jetbrains.jet.cli.common.messages.MessageCollector;
 import org.jetbrains.jet.compiler.runner.*;
+import org.jetbrains.jet.jps.incremental.IncrementalCache;
 import org.jetbrains.jet.utils.PathUtil;
 import org.jetbrains.jps.ModuleChunk;
 import org.jetbrains.jps.builders.DirtyFilesHolder;
@@ -33,7 +35,9 @@ import org.jetbrains.jps.incremental.messages.CompilerMessage;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity.ERROR;
 import static org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity.EXCEPTION;
@@ -60,7 +64,7 @@ public class KotlinBuilder extends ModuleLevelBuilder {
             OutputConsumer outputConsumer
     ) throws ProjectBuildException, IOException {
 
-        MessageCollector messageCollector = new MessageCollectorAdapter(context);
+        MessageCollectorAdapter messageCollector = new MessageCollectorAdapter(context);
 
         if (chunk.getModules().size() > 1) {
             messageCollector.report(
@@ -71,18 +75,39 @@ public class KotlinBuilder extends ModuleLevelBuilder {
 
         ModuleBuildTarget representativeTarget = chunk.representativeTarget();
 
-        // For non-incremental build: take all sources
-        if (!KotlinSourceFileCollector.hasDirtyFiles(dirtyFilesHolder)) {
+        List<String> removedFiles = KotlinSourceFileCollector.getRemovedKotlinFiles(dirtyFilesHolder, representativeTarget);
+        if (!KotlinSourceFileCollector.hasDirtyFiles(dirtyFilesHolder) && removedFiles.isEmpty()) {
             return ExitCode.NOTHING_DONE;
         }
-        List<File> sourceFiles = KotlinSourceFileCollector.getAllKotlinSourceFiles(representativeTarget);
-        //List<File> sourceFiles = KotlinSourceFileCollector.getDirtySourceFiles(dirtyFilesHolder);
+
+        IncrementalCache cache = IncrementalCache.load(getIncrementalCacheRoot(context, representativeTarget));
+        List<File> allFiles = KotlinSourceFileCollector.getAllKotlinSourceFiles(representativeTarget);
+
+        // Without the data of a previous build, or when some Java code changed, take all sources
+        boolean incremental = !context.isProjectRebuild()
+                              && !cache.isEmpty()
+                              && !KotlinSourceFileCollector.hasDirtyNonKotlinFiles(dirtyFilesHolder);
+        List<File> sourceFiles = incremental
+                                 ? cache.getFilesToRecompile(KotlinSourceFileCollector.getDirtySourceFiles(dirtyFilesHolder),
+                                                             removedFiles, allFiles)
+                                 : allFiles;
 
         if (sourceFiles.isEmpty()) {
-            return ExitCode.NOTHING_DONE;
+            if (removedFiles.isEmpty()) {
+                return ExitCode.NOTHING_DONE;
+            }
+            return updateIncrementalCache(context, cache, incremental, sourceFiles, removedFiles,
+                                          Collections.<SimpleOutputItem>emptyList());
+        }
+
+        if (incremental) {
+            // Other files of the recompiled packages may have left classes the compiler must not see
+            for (File outputFile : cache.getOutputFiles(sourceFiles)) {
+                FileUtil.delete(outputFile);
+            }
         }
 
-        File scriptFile = KotlinBuilderModuleScriptGenerator.generateModuleScript(context, representativeTarget, sourceFiles);
+        File scriptFile = KotlinBuilderModuleScriptGenerator.generateModuleScript(context, representativeTarget, sourceFiles, incremental);
 
         File outputDir = representativeTarget.getOutputDir();
 
@@ -110,7 +135,48 @@ public class KotlinBuilder extends ModuleLevelBuilder {
                     paths(outputItem.getSourceFiles()));
         }
 
-        return ExitCode.OK;
+        if (messageCollector.hasErrors()) {
+            // The files stay dirty, the cache is updated once they are compiled successfully
+            return ExitCode.OK;
+        }
+
+        return updateIncrementalCache(context, cache, incremental, sourceFiles, removedFiles, outputItemCollector.getOutputs());
+    }
+
+    @NotNull
+    private static ExitCode updateIncrementalCache(
+            @NotNull CompileContext context,
+            @NotNull IncrementalCache cache,
+            boolean incremental,
+            @NotNull List<File> compiledFiles,
+            @NotNull List<String> removedFiles,
+            @NotNull List<SimpleOutputItem> outputItems
+    ) throws IOException {
+        Map<File, Collection<File>> outputs = ContainerUtil.newHashMap();
+        for (SimpleOutputItem outputItem : outputItems) {
+            outputs.put(outputItem.getOutputFile(), outputItem.getSourceFiles());
+        }
+
+        if (!incremental) {
+            cache.clear();
+        }
+        Collection<File> affectedFiles = cache.update(compiledFiles, removedFiles, outputs);
+        cache.save();
+
+        if (affectedFiles.isEmpty()) {
+            return ExitCode.OK;
+        }
+
+        // Files using the classes whose ABI has changed are compiled in the next pass, which may find more such files
+        for (File file : affectedFiles) {
+            FSOperations.markDirty(context, file);
+        }
+        return ExitCode.ADDITIONAL_PASS_REQUIRED;
+    }
+
+    @NotNull
+    private static File getIncrementalCacheRoot(@NotNull CompileContext context, @NotNull ModuleBuildTarget target) {
+        return context.getProjectDescriptor().dataManager.getDataPaths().getTargetDataRoot(target);
     }
 
     private static Collection<String> paths(Collection<File> files) {
@@ -124,6 +190,7 @@ public class KotlinBuilder extends ModuleLevelBuilder {
     public static class MessageCollectorAdapter implements MessageCollector {
 
         private final CompileContext context;
+        private boolean hasErrors;
 
         public MessageCollectorAdapter(@NotNull CompileContext context) {
             this.context = context;
@@ -135,6 +202,9 @@ public class KotlinBuilder extends ModuleLevelBuilder {
                 @NotNull String message,
                 @NotNull CompilerMessageLocation location
         ) {
+            if (severity == ERROR || severity == EXCEPTION) {
+                hasErrors = true;
+            }
             String prefix = "";
             if (severity == EXCEPTION) {
                 prefix = CompilerRunnerConstants.INTERNAL_ERROR_PREFIX;
@@ -150,6 +220,10 @@ public class KotlinBuilder extends ModuleLevelBuilder {
             ));
         }
 
+        public boolean hasErrors() {
+            return hasErrors;
+        }
+
         @NotNull
         private static BuildMessage.Kind kind(@NotNull CompilerMessageSeverity severity) {
             switch (severity) {
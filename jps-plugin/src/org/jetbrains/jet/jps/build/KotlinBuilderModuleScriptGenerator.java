@@ -44,16 +44,19 @@ import java.util.List;
 import static org.jetbrains.jet.compiler.runner.KotlinModuleScriptGenerator.DependencyProvider;
 
 public class KotlinBuilderModuleScriptGenerator {
-    public static File generateModuleScript(CompileContext context, ModuleBuildTarget target, List<File> sourceFiles)
-            throws IOException
-    {
+    public static File generateModuleScript(
+            CompileContext context,
+            ModuleBuildTarget target,
+            List<File> sourceFiles,
+            boolean incremental
+    ) throws IOException {
         CharSequence moduleScriptText = KotlinModuleScriptGenerator.generateModuleScript(
                 target.getId(),
                 getKotlinModuleDependencies(context, target),
                 sourceFiles,
                 target.isTests(),
-                // this excludes the output directory from the class path, to be removed for true incremental compilation
-                Collections.singleton(target.getOutputDir())
+                // An incremental compilation takes the unchanged code from the output directory, a full one must not see it
+                incremental ? Collections.<File>emptySet() : Collections.singleton(target.getOutputDir())
         );
 
         File scriptFile = new File(target.getOutputDir(), "script.kts");
@@ -66,6 +66,36 @@ public class KotlinSourceFileCollector {
         return result.get();
     }
 
+    @NotNull
+    public static List<String> getRemovedKotlinFiles(
+            @NotNull DirtyFilesHolder<JavaSourceRootDescriptor, ModuleBuildTarget> dirtyFilesHolder,
+            @NotNull ModuleBuildTarget target
+    ) {
+        List<String> result = ContainerUtil.newArrayList();
+        for (String path : dirtyFilesHolder.getRemovedFiles(target)) {
+            if (isKotlinSourceFile(new File(path))) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    // Changes in non-Kotlin sources (e.g. Java ones Kotlin code depends on) can't be tracked incrementally
+    public static boolean hasDirtyNonKotlinFiles(DirtyFilesHolder<JavaSourceRootDescriptor, ModuleBuildTarget> dirtyFilesHolder)
+            throws IOException {
+        final Ref<Boolean> result = Ref.create(false);
+
+        dirtyFilesHolder.processDirtyFiles(new FileProcessor<JavaSourceRootDescriptor, ModuleBuildTarget>() {
+            @Override
+            public boolean apply(ModuleBuildTarget target, File file, JavaSourceRootDescriptor root) throws IOException {
+                if (isKotlinSourceFile(file)) return true;
+                result.set(true);
+                return false;
+            }
+        });
+        return result.get();
+    }
+
     @NotNull
     public static List<File> getAllKotlinSourceFiles(@NotNull ModuleBuildTarget target) {
         final List<File> result = ContainerUtil.newArrayList();
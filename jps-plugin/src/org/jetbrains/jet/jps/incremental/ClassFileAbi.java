@@ -0,0 +1,375 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.jps.incremental;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.asm4.*;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The parts of a class file other classes can depend on.
+ *
+ * The ABI hash covers the class header and the non-private fields and methods, with all their annotations: Kotlin
+ * types (nullability, generic arguments etc.) are only recorded in annotations, so they are a part of the ABI.
+ * Method bodies are not, except for the bodies of inline functions: they are generated in place of the calls, and the
+ * callers reference the classes declaring them (see InlineCodegenUtil.InlinedFromAttribute).
+ */
+public class ClassFileAbi {
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_CLASS = 7;
+
+    private static final String JET_METHOD_DESCRIPTOR = "Ljet/runtime/typeinfo/JetMethod;";
+    private static final String JET_FLAGS_FIELD = "flags";
+    // JvmStdlibNames.FLAG_INLINE_BIT
+    private static final int FLAG_INLINE_BIT = 1 << 9;
+
+    private static final Pattern CLASS_IN_DESCRIPTOR = Pattern.compile("L([^;<>():\\[\\s]+)[;<]");
+
+    @NotNull
+    public static String getClassName(@NotNull byte[] bytes) {
+        return new ClassReader(bytes).getClassName();
+    }
+
+    /**
+     * @return the dot-separated package of a class with the given internal name, empty for the default package
+     */
+    @NotNull
+    public static String getPackageName(@NotNull String className) {
+        int lastSlash = className.lastIndexOf('/');
+        return lastSlash < 0 ? "" : className.substring(0, lastSlash).replace('/', '.');
+    }
+
+    /**
+     * Internal names of the superclass and the interfaces of the class
+     */
+    @NotNull
+    public static List<String> getSupertypes(@NotNull byte[] bytes) {
+        ClassReader reader = new ClassReader(bytes);
+        List<String> result = new ArrayList<String>();
+        if (reader.getSuperName() != null) {
+            result.add(reader.getSuperName());
+        }
+        Collections.addAll(result, reader.getInterfaces());
+        return result;
+    }
+
+    public static long computeAbiHash(@NotNull byte[] bytes) {
+        AbiHasher hasher = new AbiHasher();
+        new ClassReader(bytes).accept(hasher, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return hasher.getHash();
+    }
+
+    /**
+     * Internal names of all the classes mentioned in the constant pool: referenced directly, or in descriptors,
+     * generic signatures and annotation values. May contain some names that are not classes at all, which is safe.
+     */
+    @NotNull
+    public static Set<String> collectReferencedClasses(@NotNull byte[] bytes) {
+        ClassReader reader = new ClassReader(bytes);
+        char[] buffer = new char[reader.getMaxStringLength()];
+        Set<String> result = new TreeSet<String>();
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            // The second slot of long and double constants
+            if (offset == 0) continue;
+
+            int tag = reader.b[offset - 1];
+            if (tag == CONSTANT_CLASS) {
+                // The content of a class constant is the index of its name
+                String name = reader.readUTF8(offset, buffer);
+                if (name.startsWith("[")) {
+                    collectFromDescriptor(name, result);
+                }
+                else {
+                    result.add(name);
+                }
+            }
+            else if (tag == CONSTANT_UTF8) {
+                collectFromDescriptor(readUtf8(reader.b, offset), result);
+            }
+        }
+        result.remove(reader.getClassName());
+        return result;
+    }
+
+    private static void collectFromDescriptor(@NotNull String descriptor, @NotNull Set<String> result) {
+        Matcher matcher = CLASS_IN_DESCRIPTOR.matcher(descriptor);
+        while (matcher.find()) {
+            result.add(matcher.group(1));
+        }
+    }
+
+    @NotNull
+    private static String readUtf8(@NotNull byte[] bytes, int offset) {
+        int length = ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+        try {
+            // Modified UTF-8 only differs from UTF-8 for characters that can't be a part of a class name
+            return new String(bytes, offset + 2, length, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class AbiHasher extends ClassVisitor {
+        private final MessageDigest digest;
+
+        private final AnnotationVisitor annotationHasher = new AnnotationVisitor(Opcodes.ASM4) {
+            @Override
+            public void visit(String name, Object value) {
+                update("value", name, String.valueOf(value));
+            }
+
+            @Override
+            public void visitEnum(String name, String desc, String value) {
+                update("enum", name, desc, value);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String name, String desc) {
+                update("annotation", name, desc);
+                return this;
+            }
+
+            @Override
+            public AnnotationVisitor visitArray(String name) {
+                update("array", name);
+                return this;
+            }
+
+            @Override
+            public void visitEnd() {
+                update("end");
+            }
+        };
+
+        private final FieldVisitor fieldHasher = new FieldVisitor(Opcodes.ASM4) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                return AbiHasher.this.visitAnnotation(desc, visible);
+            }
+        };
+
+        private AbiHasher() {
+            super(Opcodes.ASM4);
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            update("class", String.valueOf(access), name, signature, superName);
+            if (interfaces != null) {
+                update(interfaces);
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            update("annotation", desc);
+            return annotationHasher;
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+            // Anonymous classes come and go with changes in method bodies
+            if (innerName == null) return;
+            update("inner", name, outerName, innerName, String.valueOf(access));
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            if ((access & Opcodes.ACC_PRIVATE) != 0) return null;
+            update("field", String.valueOf(access), name, desc, signature, String.valueOf(value));
+            return fieldHasher;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            if ((access & Opcodes.ACC_PRIVATE) != 0) return null;
+            update("method", String.valueOf(access), name, desc, signature);
+            if (exceptions != null) {
+                update(exceptions);
+            }
+            return new MethodHasher();
+        }
+
+        /**
+         * Hashes the annotations of a method, and its code if the method turns out to be inline: the JetMethod annotation
+         * is visited before the code
+         */
+        private class MethodHasher extends MethodVisitor {
+            private final Map<Label, Integer> labels = new HashMap<Label, Integer>();
+            private boolean inline = false;
+
+            private MethodHasher() {
+                super(Opcodes.ASM4);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotationDefault() {
+                update("default");
+                return annotationHasher;
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                final AnnotationVisitor hasher = AbiHasher.this.visitAnnotation(desc, visible);
+                if (!JET_METHOD_DESCRIPTOR.equals(desc)) return hasher;
+                return new AnnotationVisitor(Opcodes.ASM4, hasher) {
+                    @Override
+                    public void visit(String name, Object value) {
+                        if (JET_FLAGS_FIELD.equals(name) && value instanceof Integer) {
+                            inline = ((Integer) value & FLAG_INLINE_BIT) != 0;
+                        }
+                        super.visit(name, value);
+                    }
+                };
+            }
+
+            @Override
+            public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+                update("parameter", String.valueOf(parameter), desc);
+                return annotationHasher;
+            }
+
+            @Override
+            public void visitInsn(int opcode) {
+                if (inline) update("insn", String.valueOf(opcode));
+            }
+
+            @Override
+            public void visitIntInsn(int opcode, int operand) {
+                if (inline) update("int", String.valueOf(opcode), String.valueOf(operand));
+            }
+
+            @Override
+            public void visitVarInsn(int opcode, int var) {
+                if (inline) update("var", String.valueOf(opcode), String.valueOf(var));
+            }
+
+            @Override
+            public void visitTypeInsn(int opcode, String type) {
+                if (inline) update("type", String.valueOf(opcode), type);
+            }
+
+            @Override
+            public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+                if (inline) update("field", String.valueOf(opcode), owner, name, desc);
+            }
+
+            @Override
+            public void visitMethodInsn(int opcode, String owner, String name, String desc) {
+                if (inline) update("invoke", String.valueOf(opcode), owner, name, desc);
+            }
+
+            @Override
+            public void visitJumpInsn(int opcode, Label label) {
+                if (inline) update("jump", String.valueOf(opcode), labelIndex(label));
+            }
+
+            @Override
+            public void visitLabel(Label label) {
+                if (inline) update("label", labelIndex(label));
+            }
+
+            @Override
+            public void visitLdcInsn(Object cst) {
+                if (inline) update("ldc", cst.getClass().getName(), String.valueOf(cst));
+            }
+
+            @Override
+            public void visitIincInsn(int var, int increment) {
+                if (inline) update("iinc", String.valueOf(var), String.valueOf(increment));
+            }
+
+            @Override
+            public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+                if (!inline) return;
+                update("tableswitch", String.valueOf(min), String.valueOf(max), labelIndex(dflt));
+                for (Label label : labels) {
+                    update(labelIndex(label));
+                }
+            }
+
+            @Override
+            public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+                if (!inline) return;
+                update("lookupswitch", labelIndex(dflt));
+                for (int i = 0; i < keys.length; i++) {
+                    update(String.valueOf(keys[i]), labelIndex(labels[i]));
+                }
+            }
+
+            @Override
+            public void visitMultiANewArrayInsn(String desc, int dims) {
+                if (inline) update("multianewarray", desc, String.valueOf(dims));
+            }
+
+            @Override
+            public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+                if (inline) update("try", labelIndex(start), labelIndex(end), labelIndex(handler), type);
+            }
+
+            // Labels are numbered in the order they are met, so that equal code is hashed equally
+            @NotNull
+            private String labelIndex(@NotNull Label label) {
+                Integer index = labels.get(label);
+                if (index == null) {
+                    index = labels.size();
+                    labels.put(label, index);
+                }
+                return String.valueOf(index);
+            }
+        }
+
+        private void update(String... strings) {
+            for (String string : strings) {
+                if (string != null) {
+                    for (int i = 0; i < string.length(); i++) {
+                        char c = string.charAt(i);
+                        digest.update((byte) (c >> 8));
+                        digest.update((byte) c);
+                    }
+                }
+                // Separates the strings, so that ("ab", "c") and ("a", "bc") are hashed differently
+                digest.update((byte) 0xFF);
+            }
+        }
+
+        private long getHash() {
+            byte[] bytes = digest.digest();
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (bytes[i] & 0xFF);
+            }
+            return hash;
+        }
+    }
+
+    private ClassFileAbi() {}
+}
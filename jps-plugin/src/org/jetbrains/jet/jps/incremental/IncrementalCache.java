@@ -0,0 +1,377 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.jps.incremental;
+
+import com.intellij.openapi.util.Comparing;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * What the previous builds of a module target produced: for every Kotlin source file its package, output classes and
+ * the classes it references, and the ABI hash and the supertypes of every output class.
+ *
+ * All the files of one package are always compiled together, because top-level declarations of a package are compiled
+ * into a single package class. The package of a file is the package of the classes the compiler produced from it,
+ * so it is only known once the file is compiled.
+ */
+public class IncrementalCache {
+    private static final int FORMAT_VERSION = 2;
+    private static final String CACHE_FILE_NAME = "kotlin-incremental-cache.bin";
+
+    private static class SourceFileData {
+        // null if no classes were compiled from the file
+        @Nullable
+        private String packageName;
+        private final List<String> outputFiles = ContainerUtil.newArrayList();
+        private final Set<String> classes = ContainerUtil.newTroveSet();
+        private final Set<String> referencedClasses = ContainerUtil.newTroveSet();
+    }
+
+    private final File cacheFile;
+    private final Map<String, SourceFileData> sourceFiles = ContainerUtil.newHashMap();
+    private final Map<String, Long> classAbiHashes = ContainerUtil.newHashMap();
+    private final Map<String, List<String>> classSupertypes = ContainerUtil.newHashMap();
+
+    private IncrementalCache(@NotNull File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    @NotNull
+    public static IncrementalCache load(@NotNull File dataRoot) {
+        IncrementalCache cache = new IncrementalCache(new File(dataRoot, CACHE_FILE_NAME));
+        if (!cache.cacheFile.exists()) return cache;
+
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cache.cacheFile)));
+            try {
+                cache.read(input);
+            }
+            finally {
+                input.close();
+            }
+        }
+        catch (IOException e) {
+            // A corrupted cache is the same as no cache: everything will be recompiled
+            cache.clear();
+        }
+        return cache;
+    }
+
+    public void save() throws IOException {
+        FileUtil.createParentDirs(cacheFile);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+        try {
+            write(output);
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    public boolean isEmpty() {
+        return sourceFiles.isEmpty();
+    }
+
+    public void clear() {
+        sourceFiles.clear();
+        classAbiHashes.clear();
+        classSupertypes.clear();
+    }
+
+    /**
+     * @return the given dirty files along with all the other files of the packages they (and the removed files) declared
+     * in the previous build. If a dirty file is now in another package, the files of that package are only found once
+     * it is compiled, see {@link #update}
+     */
+    @NotNull
+    public List<File> getFilesToRecompile(
+            @NotNull Collection<File> dirtyFiles,
+            @NotNull Collection<String> removedFiles,
+            @NotNull Collection<File> allFiles
+    ) {
+        Set<String> dirtyPackages = ContainerUtil.newHashSet();
+        for (File file : dirtyFiles) {
+            addPackageOf(normalize(file), dirtyPackages);
+        }
+        for (String path : removedFiles) {
+            addPackageOf(normalize(path), dirtyPackages);
+        }
+
+        Set<String> dirtyPaths = ContainerUtil.newHashSet();
+        for (File file : dirtyFiles) {
+            dirtyPaths.add(normalize(file));
+        }
+
+        List<File> result = ContainerUtil.newArrayList();
+        for (File file : allFiles) {
+            String path = normalize(file);
+            SourceFileData data = sourceFiles.get(path);
+            if (dirtyPaths.contains(path) || (data != null && dirtyPackages.contains(data.packageName))) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    private void addPackageOf(@NotNull String path, @NotNull Set<String> packages) {
+        SourceFileData data = sourceFiles.get(path);
+        if (data != null && data.packageName != null) {
+            packages.add(data.packageName);
+        }
+    }
+
+    /**
+     * Output files produced by the previous compilation of the given sources, which have to be deleted before
+     * the sources are recompiled so that the compiler doesn't see stale classes
+     */
+    @NotNull
+    public List<File> getOutputFiles(@NotNull Collection<File> sources) {
+        List<File> result = ContainerUtil.newArrayList();
+        for (File source : sources) {
+            SourceFileData data = sourceFiles.get(normalize(source));
+            if (data == null) continue;
+            for (String outputFile : data.outputFiles) {
+                result.add(new File(outputFile));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the data about the compiled and removed files with the results of the compilation.
+     *
+     * @param outputs output class files with the sources they were compiled from
+     * @return the files (other than the compiled ones) that reference classes whose ABI has changed, or subclasses of them,
+     * and the files of the packages that were only compiled in part, because some of the compiled files are new in them
+     */
+    @NotNull
+    public Collection<File> update(
+            @NotNull Collection<File> compiledFiles,
+            @NotNull Collection<String> removedFiles,
+            @NotNull Map<File, Collection<File>> outputs
+    ) throws IOException {
+        Set<String> oldClasses = ContainerUtil.newHashSet();
+        Set<String> compiledPaths = ContainerUtil.newHashSet();
+        for (File file : compiledFiles) {
+            compiledPaths.add(normalize(file));
+        }
+        for (String path : removedFiles) {
+            compiledPaths.add(normalize(path));
+        }
+        for (String path : compiledPaths) {
+            SourceFileData data = sourceFiles.remove(path);
+            if (data != null) {
+                oldClasses.addAll(data.classes);
+            }
+        }
+        for (File file : compiledFiles) {
+            sourceFiles.put(normalize(file), new SourceFileData());
+        }
+
+        Map<String, Long> newAbiHashes = ContainerUtil.newHashMap();
+        for (Map.Entry<File, Collection<File>> entry : outputs.entrySet()) {
+            File outputFile = entry.getKey();
+            if (!outputFile.getName().endsWith(".class")) continue;
+
+            byte[] bytes = FileUtil.loadFileBytes(outputFile);
+            String className = ClassFileAbi.getClassName(bytes);
+            newAbiHashes.put(className, ClassFileAbi.computeAbiHash(bytes));
+            classSupertypes.put(className, ClassFileAbi.getSupertypes(bytes));
+            Set<String> referencedClasses = ClassFileAbi.collectReferencedClasses(bytes);
+
+            for (File source : entry.getValue()) {
+                SourceFileData data = sourceFiles.get(normalize(source));
+                if (data == null) continue;
+                data.packageName = ClassFileAbi.getPackageName(className);
+                data.outputFiles.add(normalize(outputFile));
+                data.classes.add(className);
+                data.referencedClasses.addAll(referencedClasses);
+            }
+        }
+
+        Map<String, Long> oldAbiHashes = ContainerUtil.newHashMap();
+        for (String className : oldClasses) {
+            oldAbiHashes.put(className, classAbiHashes.remove(className));
+            if (!newAbiHashes.containsKey(className)) {
+                classSupertypes.remove(className);
+            }
+        }
+        classAbiHashes.putAll(newAbiHashes);
+
+        Set<String> changedClasses = ContainerUtil.newHashSet();
+        for (String className : ContainerUtil.union(oldAbiHashes.keySet(), newAbiHashes.keySet())) {
+            if (!Comparing.equal(oldAbiHashes.get(className), newAbiHashes.get(className))) {
+                changedClasses.add(className);
+            }
+        }
+
+        Set<File> result = new LinkedHashSet<File>();
+        result.addAll(getFilesReferencing(addSubclasses(changedClasses), compiledPaths));
+        result.addAll(getRestOfCompiledPackages(compiledFiles, compiledPaths));
+        return result;
+    }
+
+    /**
+     * A class referencing only a subclass of a changed class (as in {@code Derived().f()}) still depends on the changed
+     * members it inherits
+     */
+    @NotNull
+    private Set<String> addSubclasses(@NotNull Set<String> classes) {
+        if (classes.isEmpty()) return classes;
+
+        Map<String, List<String>> subclasses = ContainerUtil.newHashMap();
+        for (Map.Entry<String, List<String>> entry : classSupertypes.entrySet()) {
+            for (String supertype : entry.getValue()) {
+                List<String> list = subclasses.get(supertype);
+                if (list == null) {
+                    list = ContainerUtil.newArrayList();
+                    subclasses.put(supertype, list);
+                }
+                list.add(entry.getKey());
+            }
+        }
+
+        Set<String> result = new HashSet<String>(classes);
+        Deque<String> queue = new ArrayDeque<String>(classes);
+        while (!queue.isEmpty()) {
+            List<String> direct = subclasses.get(queue.poll());
+            if (direct == null) continue;
+            for (String subclass : direct) {
+                if (result.add(subclass)) {
+                    queue.add(subclass);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A file compiled into a package it was not in before (a new file, or one moved there) was compiled without
+     * the other files of that package, so the package class is incomplete until they are all compiled together
+     */
+    @NotNull
+    private Collection<File> getRestOfCompiledPackages(@NotNull Collection<File> compiledFiles, @NotNull Set<String> compiledPaths) {
+        Set<String> compiledPackages = ContainerUtil.newHashSet();
+        for (File file : compiledFiles) {
+            addPackageOf(normalize(file), compiledPackages);
+        }
+
+        List<File> result = ContainerUtil.newArrayList();
+        for (Map.Entry<String, SourceFileData> entry : sourceFiles.entrySet()) {
+            if (compiledPaths.contains(entry.getKey())) continue;
+            if (compiledPackages.contains(entry.getValue().packageName)) {
+                result.add(new File(entry.getKey()));
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    private Collection<File> getFilesReferencing(@NotNull Set<String> classes, @NotNull Set<String> excludedPaths) {
+        List<File> result = ContainerUtil.newArrayList();
+        if (classes.isEmpty()) return result;
+
+        for (Map.Entry<String, SourceFileData> entry : sourceFiles.entrySet()) {
+            if (excludedPaths.contains(entry.getKey())) continue;
+            for (String referencedClass : entry.getValue().referencedClasses) {
+                if (classes.contains(referencedClass)) {
+                    result.add(new File(entry.getKey()));
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    private static String normalize(@NotNull File file) {
+        return normalize(file.getAbsolutePath());
+    }
+
+    @NotNull
+    private static String normalize(@NotNull String path) {
+        return FileUtil.toSystemIndependentName(new File(path).getAbsolutePath());
+    }
+
+    private void read(@NotNull DataInputStream input) throws IOException {
+        if (input.readInt() != FORMAT_VERSION) return;
+
+        int fileCount = input.readInt();
+        for (int i = 0; i < fileCount; i++) {
+            String path = input.readUTF();
+            SourceFileData data = new SourceFileData();
+            data.packageName = input.readBoolean() ? input.readUTF() : null;
+            readStrings(input, data.outputFiles);
+            readStrings(input, data.classes);
+            readStrings(input, data.referencedClasses);
+            sourceFiles.put(path, data);
+        }
+
+        int classCount = input.readInt();
+        for (int i = 0; i < classCount; i++) {
+            String className = input.readUTF();
+            classAbiHashes.put(className, input.readLong());
+            List<String> supertypes = ContainerUtil.newArrayList();
+            readStrings(input, supertypes);
+            classSupertypes.put(className, supertypes);
+        }
+    }
+
+    private void write(@NotNull DataOutputStream output) throws IOException {
+        output.writeInt(FORMAT_VERSION);
+
+        output.writeInt(sourceFiles.size());
+        for (Map.Entry<String, SourceFileData> entry : sourceFiles.entrySet()) {
+            SourceFileData data = entry.getValue();
+            output.writeUTF(entry.getKey());
+            output.writeBoolean(data.packageName != null);
+            if (data.packageName != null) {
+                output.writeUTF(data.packageName);
+            }
+            writeStrings(output, data.outputFiles);
+            writeStrings(output, data.classes);
+            writeStrings(output, data.referencedClasses);
+        }
+
+        output.writeInt(classAbiHashes.size());
+        for (Map.Entry<String, Long> entry : classAbiHashes.entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeLong(entry.getValue());
+            List<String> supertypes = classSupertypes.get(entry.getKey());
+            writeStrings(output, supertypes != null ? supertypes : Collections.<String>emptyList());
+        }
+    }
+
+    private static void readStrings(@NotNull DataInputStream input, @NotNull Collection<String> result) throws IOException {
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            result.add(input.readUTF());
+        }
+    }
+
+    private static void writeStrings(@NotNull DataOutputStream output, @NotNull Collection<String> strings) throws IOException {
+        output.writeInt(strings.size());
+        for (String string : strings) {
+            output.writeUTF(string);
+        }
+    }
+}
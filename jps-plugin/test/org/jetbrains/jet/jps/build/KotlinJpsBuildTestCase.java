@@ -90,4 +90,79 @@ public class KotlinJpsBuildTestCase extends AbstractKotlinJpsBuildTestCase {
         makeAll().assertFailed();
     }
 
+    public void testIncrementalProject() throws Throwable {
+        initProject();
+        makeAll().assertSuccessful();
+
+        File bPackageClass = new File(workDir, "out/production/kotlinProject/b/BPackage.class");
+        File cPackageClass = new File(workDir, "out/production/kotlinProject/c/CPackage.class");
+        assertTrue(bPackageClass.exists());
+        assertTrue(cPackageClass.exists());
+        long bTimestamp = bPackageClass.lastModified();
+        long cTimestamp = cPackageClass.lastModified();
+
+        // Changing function bodies doesn't recompile anything else
+        change(workDir + "/src/a.kt", "package a\n\nfun a() = 2\n\nclass A {\n    fun foo() = \"B\"\n}\n");
+        makeAll().assertSuccessful();
+        assertEquals(bTimestamp, bPackageClass.lastModified());
+        assertEquals(cTimestamp, cPackageClass.lastModified());
+
+        // Removing a function recompiles its users, but not the other files
+        change(workDir + "/src/a.kt", "package a\n\nclass A\n");
+        makeAll().assertFailed();
+        assertEquals(cTimestamp, cPackageClass.lastModified());
+    }
+
+    public void testIncrementalInlineProject() throws Throwable {
+        initProject();
+        makeAll().assertSuccessful();
+
+        File userPackageClass = new File(workDir, "out/production/kotlinProject/user/UserPackage.class");
+        assertTrue(FileUtil.loadFile(userPackageClass).contains("first body"));
+
+        // The body of an inline function is a part of its ABI, so its callers are recompiled
+        change(workDir + "/src/inlined.kt", "package inlined\n\ninline fun value() = \"second body\"\n");
+        makeAll().assertSuccessful();
+        assertFalse(FileUtil.loadFile(userPackageClass).contains("first body"));
+    }
+
+    public void testIncrementalPackageMoveProject() throws Throwable {
+        initProject();
+        makeAll().assertSuccessful();
+
+        File cPackageClass = new File(workDir, "out/production/kotlinProject/c/CPackage.class");
+        File ePackageClass = new File(workDir, "out/production/kotlinProject/e/EPackage.class");
+        assertTrue(cPackageClass.exists());
+
+        // The file left behind in the old package is recompiled too, otherwise its package class would be lost
+        change(workDir + "/src/c1.kt", "package e\n\nfun c1() = 1\n");
+        makeAll().assertSuccessful();
+        assertTrue(cPackageClass.exists());
+        assertTrue(ePackageClass.exists());
+
+        // The package of a file is only known once it is compiled, then the rest of its new package is compiled with it
+        File dPackageClass = new File(workDir, "out/production/kotlinProject/d/DPackage.class");
+        change(workDir + "/src/c1.kt", "package d\n\nfun movedToD() = 1\n");
+        makeAll().assertSuccessful();
+        assertFalse(ePackageClass.exists());
+        String dPackage = FileUtil.loadFile(dPackageClass);
+        assertTrue(dPackage.contains("movedToD"));
+        assertTrue(dPackage.contains("c2"));
+    }
+
+    public void testIncrementalSubtypeProject() throws Throwable {
+        initProject();
+        makeAll().assertSuccessful();
+
+        File userPackageClass = new File(workDir, "out/production/kotlinProject/user/UserPackage.class");
+        String stringOverload = "(Ljava/lang/String;)Ljava/lang/String;";
+        assertFalse(FileUtil.loadFile(userPackageClass).contains(stringOverload));
+
+        // user.kt only references Derived, but the members Derived inherits from Base have changed
+        change(workDir + "/src/base.kt",
+               "package base\n\nopen class Base {\n    fun f(a: Any) = \"any\"\n    fun f(s: String) = \"string\"\n}\n");
+        makeAll().assertSuccessful();
+        assertTrue(FileUtil.loadFile(userPackageClass).contains(stringOverload));
+    }
+
 }
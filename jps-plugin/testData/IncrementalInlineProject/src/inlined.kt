@@ -0,0 +1,3 @@
+package inlined
+
+inline fun value() = "first body"
@@ -0,0 +1,5 @@
+package user
+
+import inlined.*
+
+fun user() = value()
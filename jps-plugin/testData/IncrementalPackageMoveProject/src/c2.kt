@@ -0,0 +1,3 @@
+package c
+
+fun c2() = 2
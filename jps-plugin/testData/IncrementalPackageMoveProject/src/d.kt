@@ -0,0 +1,5 @@
+package d
+
+import c.*
+
+fun d() = c2() + 1
@@ -0,0 +1,7 @@
+package a
+
+fun a() = 1
+
+class A {
+    fun foo() = "A"
+}
@@ -0,0 +1,5 @@
+package base
+
+open class Base {
+    fun f(a: Any) = "any"
+}
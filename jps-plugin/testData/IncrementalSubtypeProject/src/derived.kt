@@ -0,0 +1,5 @@
+package derived
+
+import base.*
+
+class Derived : Base()
@@ -0,0 +1,5 @@
+package user
+
+import derived.*
+
+fun use() = Derived().f("s")
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.generate;
+
+import com.google.dart.compiler.util.TextOutput;
+import com.google.dart.compiler.util.TextOutputImpl;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class WriterTextOutputTest extends TestCase {
+    public void testSameCodeAsTextOutputImpl() throws IOException {
+        doTest(false);
+    }
+
+    public void testSameCodeAsTextOutputImplWhenCompact() throws IOException {
+        doTest(true);
+    }
+
+    private static void doTest(boolean compact) throws IOException {
+        // Chunk sizes from a new chunk on every line to a single chunk
+        for (int chunkSize : new int[] {1, 10, 100000}) {
+            TextOutputImpl expected = new TextOutputImpl(compact);
+            StringWriter writer = new StringWriter();
+            WriterTextOutput actual = new WriterTextOutput(writer, compact, chunkSize);
+
+            print(expected);
+            print(actual);
+            assertEquals(expected.getPosition(), actual.getPosition());
+            assertEquals(expected.getLine(), actual.getLine());
+            assertEquals(expected.getColumn(), actual.getColumn());
+
+            actual.flush();
+            assertEquals(expected.toString(), writer.toString());
+        }
+    }
+
+    private static void print(@NotNull TextOutput output) {
+        output.print("function f(a)");
+        output.printOpt(' ');
+        output.print('{');
+        output.indentIn();
+        output.newlineOpt();
+        for (int i = 0; i < 20; i++) {
+            output.print("var x");
+            output.print(i);
+            output.printOpt(" = ");
+            output.print(i * 0.5);
+            output.print(';');
+            output.newline();
+            if (i % 5 == 0) {
+                output.print("if (a)".toCharArray());
+                output.printOpt("{".toCharArray());
+                output.indentIn();
+                output.newline();
+                output.print("a");
+                output.indentOut();
+                output.newlineOpt();
+                output.printOpt('}');
+                output.newline();
+            }
+        }
+        output.indentOut();
+        output.print('}');
+        output.newlineOpt();
+    }
+}
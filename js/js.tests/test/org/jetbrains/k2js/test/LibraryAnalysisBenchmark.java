@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.test;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.jvm.compiler.CompileEnvironmentUtil;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.config.CompilerConfiguration;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.k2js.analyze.AnalyzerFacadeForJS;
+import org.jetbrains.k2js.config.Config;
+import org.jetbrains.k2js.config.EcmaVersion;
+import org.jetbrains.k2js.config.LibrarySourcesConfig;
+import org.jetbrains.k2js.facade.K2JSTranslator;
+import org.jetbrains.k2js.facade.MainCallParameters;
+import org.jetbrains.k2js.utils.JetFileUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares cold translation of a small module with a fresh config when the library files are analyzed together with the sources
+ * every time, and when they are analyzed once per config (see Config.getLibraryBindingContext()).
+ *
+ * Run with: java org.jetbrains.k2js.test.LibraryAnalysisBenchmark
+ */
+public class LibraryAnalysisBenchmark {
+    private static final int RUNS = 5;
+
+    private static final String SOURCE =
+            "package sample\n" +
+            "\n" +
+            "import java.util.ArrayList\n" +
+            "\n" +
+            "fun greet(count: Int): String {\n" +
+            "    val names = ArrayList<String>()\n" +
+            "    for (i in 0..count - 1) names.add(\"user$i\")\n" +
+            "    var result = \"\"\n" +
+            "    for (name in names) result += \"Hello, $name! \"\n" +
+            "    return result\n" +
+            "}\n";
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        Disposable disposable = CompileEnvironmentUtil.createMockDisposable();
+        try {
+            JetCoreEnvironment environment = new JetCoreEnvironment(disposable, new CompilerConfiguration());
+            Project project = environment.getProject();
+            List<JetFile> sources = Collections.singletonList(JetFileUtils.createPsiFile("sample.kt", SOURCE, project));
+
+            List<String> libraryFiles = new ArrayList<String>();
+            for (String name : Config.LIB_FILE_NAMES) {
+                libraryFiles.add(Config.LIBRARIES_LOCATION + name);
+            }
+
+            for (int run = 0; run < RUNS; run++) {
+                Config reanalyzingConfig = new LibrarySourcesConfig(project, "sample", libraryFiles, EcmaVersion.defaultVersion()) {
+                    @Nullable
+                    @Override
+                    public BindingContext getLibraryBindingContext() {
+                        return null;
+                    }
+                };
+                long reanalyzing = measure(reanalyzingConfig, sources);
+
+                Config preanalyzingConfig = new LibrarySourcesConfig(project, "sample", libraryFiles, EcmaVersion.defaultVersion());
+                long preanalyzing = measure(preanalyzingConfig, sources);
+
+                System.out.println("Library analyzed with sources: " + reanalyzing + "ms, library analyzed once: " + preanalyzing + "ms");
+            }
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+
+    // Analyzes and translates the sources, as K2JSCompiler does
+    private static long measure(@NotNull Config config, @NotNull List<JetFile> sources) throws Exception {
+        long start = System.nanoTime();
+        BindingContext bindingContext = AnalyzerFacadeForJS.analyzeFiles(sources, config);
+        new K2JSTranslator(config).generateProgram(sources, MainCallParameters.noCall(), bindingContext);
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.test;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.config.CompilerConfiguration;
+import org.jetbrains.jet.lang.descriptors.NamespaceDescriptor;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.lang.resolve.scopes.JetScope;
+import org.jetbrains.k2js.analyze.AnalyzerFacadeForJS;
+import org.jetbrains.k2js.config.Config;
+import org.jetbrains.k2js.config.EcmaVersion;
+import org.jetbrains.k2js.utils.JetFileUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PreanalyzedLibraryTest extends KotlinTestWithEnvironment {
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return new JetCoreEnvironment(getTestRootDisposable(), new CompilerConfiguration());
+    }
+
+    public void testLibraryNamespacesMergedIntoSourceScope() {
+        Config config = new Config(getProject(), "test", EcmaVersion.defaultVersion()) {
+            @NotNull
+            @Override
+            protected List<JetFile> generateLibFiles() {
+                return Arrays.asList(
+                        file("lib.kt", "package lib\nfun libFun(): Int = 1\n"),
+                        file("inner.kt", "package lib.inner\nfun innerFun(): Int = 2\n"),
+                        file("shared.kt", "package shared\nfun sharedLibFun(): Int = 3\n"));
+            }
+        };
+
+        List<JetFile> sources = Arrays.asList(
+                // Source namespace with the name of a library namespace
+                file("sharedSource.kt", "package shared\nfun sharedSourceFun(): Int = sharedLibFun()\n"),
+                // Star and explicit imports of library namespaces which don't exist in the sources, and qualified names
+                file("user.kt", "package user\n" +
+                                "import lib.*\n" +
+                                "import lib.inner.innerFun\n" +
+                                "fun use(): Int = libFun() + innerFun() + lib.libFun() + shared.sharedLibFun() + shared.sharedSourceFun()\n"));
+
+        BindingContext libraryContext = config.getLibraryBindingContext();
+        assertNotNull(libraryContext);
+        BindingContext context = AnalyzerFacadeForJS.analyzeFilesAndCheckErrors(sources, config);
+        assertSame("the library must be analyzed once per config", libraryContext, config.getLibraryBindingContext());
+
+        NamespaceDescriptor shared = context.get(BindingContext.FQNAME_TO_NAMESPACE_DESCRIPTOR, new FqName("shared"));
+        assertNotNull(shared);
+        JetScope sharedScope = shared.getMemberScope();
+        assertEquals(1, sharedScope.getFunctions(Name.identifier("sharedSourceFun")).size());
+        assertEquals(1, sharedScope.getFunctions(Name.identifier("sharedLibFun")).size());
+    }
+
+    @NotNull
+    private JetFile file(@NotNull String name, @NotNull String text) {
+        return JetFileUtils.createPsiFile(name, text, getProject());
+    }
+}
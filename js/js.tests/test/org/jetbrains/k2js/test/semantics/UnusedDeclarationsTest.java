@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.test.semantics;
+
+import com.google.dart.compiler.backend.js.ast.JsProgram;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.k2js.config.EcmaVersion;
+import org.jetbrains.k2js.facade.K2JSTranslator;
+import org.jetbrains.k2js.facade.MainCallParameters;
+import org.jetbrains.k2js.generate.CodeGenerator;
+import org.jetbrains.k2js.generate.UnusedDeclarationsRemover;
+import org.jetbrains.k2js.test.SingleFileTranslationTest;
+import org.jetbrains.k2js.test.config.TestConfig;
+import org.jetbrains.k2js.test.utils.TranslationUtils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.jetbrains.k2js.utils.JetFileUtils.createPsiFileList;
+
+public final class UnusedDeclarationsTest extends SingleFileTranslationTest {
+    public UnusedDeclarationsTest() {
+        super("unusedDeclarations/");
+    }
+
+    public void testFunction() throws Exception {
+        checkOutputWithoutNames("function.kt", "unusedFunction");
+    }
+
+    public void testClass() throws Exception {
+        checkOutputWithoutNames("class.kt", "UnusedClass");
+    }
+
+    public void testProperty() throws Exception {
+        checkOutputWithoutNames("property.kt", "unusedProperty");
+    }
+
+    public void testOpenClass() throws Exception {
+        checkOutputWithoutNames("openClass.kt", "UnusedOpenClass");
+    }
+
+    public void testAllOpenClasses() throws Exception {
+        checkOutputWithoutNames("allOpenClasses.kt", "UnusedOpenClass", "UnusedDerivedClass");
+    }
+
+    @Override
+    protected void generateJavaScriptFiles(
+            @NotNull String kotlinFilename,
+            @NotNull MainCallParameters mainCallParameters,
+            @NotNull Iterable<EcmaVersion> ecmaVersions
+    ) throws Exception {
+        List<JetFile> files = createPsiFileList(Collections.singletonList(getInputFilePath(kotlinFilename)), getProject());
+        for (EcmaVersion version : ecmaVersions) {
+            K2JSTranslator translator = new K2JSTranslator(TranslationUtils.getConfig(getProject(), version, TestConfig.FACTORY));
+            JsProgram program = translator.generateProgram(files, mainCallParameters);
+            new UnusedDeclarationsRemover(program).remove();
+            CodeGenerator.generateProgramToFile(program, new File(getOutputFilePath(kotlinFilename, version)));
+        }
+    }
+
+    private void checkOutputWithoutNames(@NotNull String kotlinFilename, @NotNull String... removedNames) throws Exception {
+        checkOutput(kotlinFilename, "OK");
+        for (EcmaVersion version : DEFAULT_ECMA_VERSIONS) {
+            String output = FileUtil.loadFile(new File(getOutputFilePath(kotlinFilename, version)));
+            for (String name : removedNames) {
+                assertFalse(name + " is not removed in " + version, output.contains(name));
+            }
+        }
+    }
+}
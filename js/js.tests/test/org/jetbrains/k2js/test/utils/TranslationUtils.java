@@ -103,13 +103,7 @@ public final class TranslationUtils {
             @NotNull EcmaVersion version, TestConfigFactory configFactory) throws Exception {
         List<JetFile> psiFiles = createPsiFileList(inputFiles, project);
         JsProgram program = new K2JSTranslator(getConfig(project, version, configFactory)).generateProgram(psiFiles, mainCallParameters);
-        FileWriter writer = new FileWriter(new File(outputFile));
-        try {
-            writer.write(CodeGenerator.generateProgramToString(program));
-        }
-        finally {
-            writer.close();
-        }
+        CodeGenerator.generateProgramToFile(program, new File(outputFile));
     }
 
     @NotNull
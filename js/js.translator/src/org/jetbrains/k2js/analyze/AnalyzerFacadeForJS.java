@@ -105,6 +105,15 @@ public final class AnalyzerFacadeForJS {
         }
     }
 
+    /*
+     * Analyzes declarations of the library files of the config without any sources, see Config.getLibraryBindingContext()
+     */
+    @NotNull
+    public static BindingContext analyzeLibraryFiles(@NotNull Config config) {
+        Config librariesOnlyConfig = Config.getEmptyConfig(config.getProject(), config.getTarget());
+        return analyzeFiles(config.getLibFiles(), Predicates.<PsiFile>alwaysFalse(), librariesOnlyConfig).getBindingContext();
+    }
+
     @NotNull
     public static AnalyzeExhaust analyzeBodiesInFiles(
             @NotNull Predicate<PsiFile> filesToAnalyzeCompletely,
@@ -34,8 +34,6 @@ import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 
 import java.util.List;
 
-import static org.jetbrains.jet.lang.resolve.DescriptorUtils.isRootNamespace;
-
 public class JsConfiguration implements ModuleConfiguration {
 
     @NotNull
@@ -46,7 +44,8 @@ public class JsConfiguration implements ModuleConfiguration {
             new ImportPath("kotlin.*"));
 
     /*
-     * Adds a possibility to inject some preanalyzed files to speed up tests.
+     * The context of preanalyzed library files (see Config.getLibraryBindingContext()), which are not analyzed again
+     * together with the sources.
      */
     @Nullable
     private final BindingContext preanalyzedContext;
@@ -71,35 +70,23 @@ public class JsConfiguration implements ModuleConfiguration {
             namespaceMemberScope.importScope(KotlinBuiltIns.getInstance().getBuiltInsScope());
         }
 
-        if (hasPreanalyzedContextForTests()) {
-            extendScopeWithPreAnalyzedContextForTests(namespaceDescriptor, namespaceMemberScope);
+        if (preanalyzedContext != null) {
+            extendScopeWithPreanalyzedContext(namespaceDescriptor, namespaceMemberScope);
         }
     }
 
-    private boolean hasPreanalyzedContextForTests() {
-        return preanalyzedContext != null;
-    }
-
-    /*NOTE: this code is wrong. Check it if you have tests failing for frontend reasons*/
+    // Library namespaces are merged into the namespaces of the sources with the same names. Library namespaces which
+    // don't exist in the sources are found through the root namespace, which includes all the top level library namespaces
     @SuppressWarnings("ConstantConditions")
-    private void extendScopeWithPreAnalyzedContextForTests(@NotNull NamespaceDescriptor namespaceDescriptor,
+    private void extendScopeWithPreanalyzedContext(@NotNull NamespaceDescriptor namespaceDescriptor,
             @NotNull WritableScope namespaceMemberScope) {
-        if (isNamespaceImportedByDefault(namespaceDescriptor) || isRootNamespace(namespaceDescriptor)) {
-            FqName descriptorName = DescriptorUtils.getFQName(namespaceDescriptor).toSafe();
-            NamespaceDescriptor alreadyAnalyzedNamespace = preanalyzedContext.get(BindingContext.FQNAME_TO_NAMESPACE_DESCRIPTOR, descriptorName);
+        FqName descriptorName = DescriptorUtils.getFQName(namespaceDescriptor).toSafe();
+        NamespaceDescriptor alreadyAnalyzedNamespace = preanalyzedContext.get(BindingContext.FQNAME_TO_NAMESPACE_DESCRIPTOR, descriptorName);
+        if (alreadyAnalyzedNamespace != null) {
             namespaceMemberScope.importScope(alreadyAnalyzedNamespace.getMemberScope());
         }
     }
 
-    private static boolean isNamespaceImportedByDefault(@NotNull NamespaceDescriptor namespaceDescriptor) {
-        for (ImportPath path : DEFAULT_IMPORT_PATHS) {
-            if (path.fqnPart().equals(DescriptorUtils.getFQName(namespaceDescriptor).toSafe())) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     @NotNull
     @Override
     public PlatformToKotlinClassMap getPlatformToKotlinClassMap() {
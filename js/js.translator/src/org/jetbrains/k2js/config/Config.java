@@ -22,6 +22,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.k2js.analyze.AnalyzerFacadeForJS;
 import org.jetbrains.k2js.translate.test.JSTester;
 import org.jetbrains.k2js.translate.test.QUnitTester;
 
@@ -143,6 +144,8 @@ public abstract class Config {
     private final Project project;
     @Nullable
     private List<JetFile> libFiles = null;
+    @Nullable
+    private BindingContext libraryBindingContext = null;
     @NotNull
     private final EcmaVersion target;
 
@@ -181,9 +184,18 @@ public abstract class Config {
         return libFiles;
     }
 
+    /**
+     * Returns the context of the library files analyzed on their own, or null if there are no library files. The library is
+     * analyzed lazily, once per config, and all analyses of sources with this config reuse the result instead of analyzing
+     * the library files again. The result is only kept in memory: every new config, and so every compiler run, analyzes
+     * the library sources again.
+     */
     @Nullable
     public BindingContext getLibraryBindingContext() {
-        return null;
+        if (libraryBindingContext == null && !getLibFiles().isEmpty()) {
+            libraryBindingContext = AnalyzerFacadeForJS.analyzeLibraryFiles(this);
+        }
+        return libraryBindingContext;
     }
 
     @NotNull
@@ -18,14 +18,15 @@ package org.jetbrains.k2js.facade;
 
 import com.google.dart.compiler.backend.js.ast.JsProgram;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.io.FileUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.resolve.BindingContext;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 import org.jetbrains.k2js.analyze.AnalyzerFacadeForJS;
 import org.jetbrains.k2js.config.Config;
 import org.jetbrains.k2js.facade.exceptions.TranslationException;
+import org.jetbrains.k2js.generate.UnusedDeclarationsRemover;
 import org.jetbrains.k2js.translate.general.Translation;
 import org.jetbrains.k2js.utils.JetFileUtils;
 
@@ -35,6 +36,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.jetbrains.k2js.facade.FacadeUtils.parseString;
+import static org.jetbrains.k2js.generate.CodeGenerator.generateProgramToFile;
 import static org.jetbrains.k2js.generate.CodeGenerator.generateProgramToString;
 
 /**
@@ -45,13 +47,29 @@ public final class K2JSTranslator {
     public static final String FLUSH_SYSTEM_OUT = "Kotlin.System.flush();\n";
     public static final String GET_SYSTEM_OUT = "Kotlin.System.output();\n";
 
-    public static void translateWithMainCallParametersAndSaveToFile(@NotNull MainCallParameters mainCall,
+    /**
+     * Translates the files which are already analyzed with the config and have no errors, bindingContext is the result of
+     * this analysis. If removeUnusedDeclarations is true, the declarations which are not reachable from the call to main
+     * and the tests are not saved.
+     *
+     * @return the remover of the unused declarations, null if they are not removed
+     */
+    @Nullable
+    public static UnusedDeclarationsRemover translateWithMainCallParametersAndSaveToFile(@NotNull MainCallParameters mainCall,
             @NotNull List<JetFile> files,
+            @NotNull BindingContext bindingContext,
             @NotNull String outputPath,
-            @NotNull Config config) throws TranslationException, IOException {
+            @NotNull Config config,
+            boolean removeUnusedDeclarations) throws TranslationException, IOException {
         K2JSTranslator translator = new K2JSTranslator(config);
-        String programCode = translator.generateProgramCode(files, mainCall);
-        FileUtil.writeToFile(new File(outputPath), programCode);
+        JsProgram program = translator.generateProgram(files, mainCall, bindingContext);
+        UnusedDeclarationsRemover remover = null;
+        if (removeUnusedDeclarations) {
+            remover = new UnusedDeclarationsRemover(program);
+            remover.remove();
+        }
+        generateProgramToFile(program, new File(outputPath));
+        return remover;
     }
 
     @NotNull
@@ -90,6 +108,19 @@ public final class K2JSTranslator {
             throws TranslationException {
         KotlinBuiltIns.initialize(config.getProject());
         BindingContext bindingContext = AnalyzerFacadeForJS.analyzeFilesAndCheckErrors(filesToTranslate, config);
+        return generateProgram(filesToTranslate, mainCallParameters, bindingContext);
+    }
+
+    /**
+     * Translates the files without analyzing them again: bindingContext must be the result of their analysis with the config
+     * of this translator, which reported no errors.
+     */
+    @NotNull
+    public JsProgram generateProgram(@NotNull List<JetFile> filesToTranslate,
+            @NotNull MainCallParameters mainCallParameters,
+            @NotNull BindingContext bindingContext)
+            throws TranslationException {
+        KotlinBuiltIns.initialize(config.getProject());
         return Translation.generateAst(bindingContext, filesToTranslate, mainCallParameters, config);
     }
 
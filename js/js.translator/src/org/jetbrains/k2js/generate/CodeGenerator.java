@@ -19,9 +19,15 @@ package org.jetbrains.k2js.generate;
 import com.google.dart.compiler.backend.js.JsSourceGenerationVisitor;
 import com.google.dart.compiler.backend.js.ast.JsProgram;
 import com.google.dart.compiler.util.TextOutputImpl;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.*;
+
 public final class CodeGenerator {
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
     private CodeGenerator() {
     }
 
@@ -32,4 +38,26 @@ public final class CodeGenerator {
         program.traverse(sourceGenerator, null);
         return output.toString();
     }
+
+    /**
+     * Prints the program to the writer as it is generated, without keeping the whole code in memory.
+     */
+    public static void generateProgramToWriter(@NotNull JsProgram program, @NotNull Writer writer) throws IOException {
+        WriterTextOutput output = new WriterTextOutput(writer);
+        JsSourceGenerationVisitor sourceGenerator = new JsSourceGenerationVisitor(output);
+        program.traverse(sourceGenerator, null);
+        output.flush();
+    }
+
+    public static void generateProgramToFile(@NotNull JsProgram program, @NotNull File file) throws IOException {
+        FileUtil.createParentDirs(file);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), CharsetToolkit.UTF8_CHARSET),
+                                           OUTPUT_BUFFER_SIZE);
+        try {
+            generateProgramToWriter(program, writer);
+        }
+        finally {
+            writer.close();
+        }
+    }
 }
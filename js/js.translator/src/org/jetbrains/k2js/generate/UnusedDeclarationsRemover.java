@@ -0,0 +1,314 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.generate;
+
+import com.google.dart.compiler.backend.js.ast.*;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.k2js.translate.utils.JsAstUtils;
+
+import java.util.*;
+
+import static com.google.dart.compiler.backend.js.ast.JsVars.JsVar;
+
+/**
+ * Removes the declarations which can't be reached from the statements of the translated module: the call to main,
+ * the test calls and the namespace initializers. The members of the module are exported by Kotlin.defineModule only as
+ * a whole, so this export doesn't keep any of them: a module without a call to main, such as a library, loses all its
+ * declarations, which is why K2JSCompiler doesn't remove anything from such a module.
+ *
+ * The removable declarations are the members of namespaces (functions, classes, objects and properties), the open classes
+ * and the function literals which are declared aside of the namespaces. Members of classes are never removed, since they
+ * may be called by the Kotlin runtime. As the translated code calls methods by name on receivers of unknown types,
+ * a declaration is considered reachable if its name is referenced by any reachable code, wherever it is qualified.
+ */
+public final class UnusedDeclarationsRemover {
+    private static final String PACKAGE_DEFINITION_METHOD = "definePackage";
+
+    @NotNull
+    private final JsProgram program;
+
+    private final Map<String, List<Declaration>> nameToDeclarations = new THashMap<String, List<Declaration>>();
+    private final Set<String> referencedNames = new THashSet<String>();
+    private final LinkedList<JsNode> codeToScan = new LinkedList<JsNode>();
+
+    private int removedCount;
+    private int removedSize;
+
+    public UnusedDeclarationsRemover(@NotNull JsProgram program) {
+        this.program = program;
+    }
+
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    /**
+     * The total length of the source of the removed declarations, in characters.
+     */
+    public int getRemovedSize() {
+        return removedSize;
+    }
+
+    public void remove() {
+        JsFunction moduleFunction = findModuleFunction();
+        if (moduleFunction == null) {
+            return;
+        }
+
+        for (JsStatement statement : moduleFunction.getBody().getStatements()) {
+            if (statement instanceof JsVars) {
+                for (JsVar var : (JsVars) statement) {
+                    collectDeclarations(var.getInitExpression());
+                }
+            }
+            else {
+                codeToScan.add(statement);
+            }
+        }
+
+        ReferenceCollector collector = new ReferenceCollector();
+        while (!codeToScan.isEmpty()) {
+            collector.accept(codeToScan.removeFirst());
+        }
+
+        for (List<Declaration> declarations : nameToDeclarations.values()) {
+            for (Declaration declaration : declarations) {
+                if (!referencedNames.contains(declaration.name)) {
+                    declaration.remove();
+                    removedCount++;
+                    removedSize += declaration.node.toString().length();
+                }
+            }
+        }
+    }
+
+    // the module is translated to (function () { ... }()), see JsAstUtils.createPackage()
+    @Nullable
+    private JsFunction findModuleFunction() {
+        for (JsStatement statement : program.getGlobalBlock().getStatements()) {
+            if (!(statement instanceof JsExprStmt)) {
+                continue;
+            }
+            JsExpression expression = ((JsExprStmt) statement).getExpression();
+            if (!(expression instanceof JsInvocation) || ((JsInvocation) expression).getArguments().size() != 1) {
+                continue;
+            }
+            JsExpression argument = ((JsInvocation) expression).getArguments().get(0);
+            if (argument instanceof JsInvocation && ((JsInvocation) argument).getQualifier() instanceof JsFunction) {
+                return (JsFunction) ((JsInvocation) argument).getQualifier();
+            }
+        }
+        return null;
+    }
+
+    private void collectDeclarations(@Nullable JsExpression expression) {
+        if (expression instanceof JsObjectLiteral) {
+            collectMembers(((JsObjectLiteral) expression).getPropertyInitializers());
+        }
+        else if (expression instanceof JsInvocation) {
+            JsInvocation invocation = (JsInvocation) expression;
+            if (invocation.getQualifier() instanceof JsFunction && invocation.getArguments().isEmpty()) {
+                // the open classes are created by a function which declares them as local variables, see ClassDeclarationTranslator
+                collectLocalDeclarations(((JsFunction) invocation.getQualifier()).getBody());
+            }
+            else if (isPackageDefinition(invocation)) {
+                for (JsExpression argument : invocation.getArguments()) {
+                    collectDeclarations(argument);
+                }
+            }
+            else {
+                codeToScan.add(invocation);
+            }
+        }
+        else if (expression != null) {
+            codeToScan.add(expression);
+        }
+    }
+
+    private void collectMembers(@NotNull List<JsPropertyInitializer> members) {
+        for (JsPropertyInitializer member : members) {
+            JsExpression value = member.getValueExpr();
+            if (value instanceof JsInvocation && isPackageDefinition((JsInvocation) value)) {
+                collectDeclarations(value);
+                continue;
+            }
+
+            String name = getLabelName(member.getLabelExpr());
+            if (name == null) {
+                codeToScan.add(member);
+            }
+            else {
+                addDeclaration(new MemberDeclaration(name, member, members));
+            }
+        }
+    }
+
+    private void collectLocalDeclarations(@NotNull JsBlock body) {
+        for (JsStatement statement : body.getStatements()) {
+            if (statement instanceof JsVars) {
+                for (JsVar var : (JsVars) statement) {
+                    addDeclaration(new VarDeclaration(var, (JsVars) statement, body.getStatements()));
+                }
+            }
+            else if (statement instanceof JsReturn && ((JsReturn) statement).getExpr() instanceof JsObjectLiteral) {
+                collectMembers(((JsObjectLiteral) ((JsReturn) statement).getExpr()).getPropertyInitializers());
+            }
+            else {
+                codeToScan.add(statement);
+            }
+        }
+    }
+
+    private void addDeclaration(@NotNull Declaration declaration) {
+        List<Declaration> declarations = nameToDeclarations.get(declaration.name);
+        if (declarations == null) {
+            declarations = new ArrayList<Declaration>(1);
+            nameToDeclarations.put(declaration.name, declarations);
+        }
+        declarations.add(declaration);
+    }
+
+    private void markReferenced(@NotNull String name) {
+        if (!referencedNames.add(name)) {
+            return;
+        }
+        List<Declaration> declarations = nameToDeclarations.get(name);
+        if (declarations != null) {
+            for (Declaration declaration : declarations) {
+                JsNode code = declaration.getCode();
+                if (code != null) {
+                    codeToScan.add(code);
+                }
+            }
+        }
+    }
+
+    // Kotlin.definePackage(...) or Object.create(...) for the root namespace in ECMA 5
+    private static boolean isPackageDefinition(@NotNull JsInvocation invocation) {
+        if (!(invocation.getQualifier() instanceof JsNameRef)) {
+            return false;
+        }
+        String name = ((JsNameRef) invocation.getQualifier()).getIdent();
+        return PACKAGE_DEFINITION_METHOD.equals(name) || invocation.getQualifier() == JsAstUtils.CREATE_OBJECT;
+    }
+
+    @Nullable
+    private static String getLabelName(@NotNull JsExpression label) {
+        if (label instanceof JsNameRef) {
+            return ((JsNameRef) label).getIdent();
+        }
+        if (label instanceof JsStringLiteral) {
+            return ((JsStringLiteral) label).getValue();
+        }
+        return null;
+    }
+
+    private abstract static class Declaration {
+        @NotNull
+        protected final String name;
+        @NotNull
+        protected final JsNode node;
+
+        protected Declaration(@NotNull String name, @NotNull JsNode node) {
+            this.name = name;
+            this.node = node;
+        }
+
+        @Nullable
+        protected abstract JsNode getCode();
+
+        protected abstract void remove();
+    }
+
+    private static final class MemberDeclaration extends Declaration {
+        @NotNull
+        private final List<JsPropertyInitializer> members;
+
+        private MemberDeclaration(@NotNull String name, @NotNull JsPropertyInitializer member, @NotNull List<JsPropertyInitializer> members) {
+            super(name, member);
+            this.members = members;
+        }
+
+        @Nullable
+        @Override
+        protected JsNode getCode() {
+            return ((JsPropertyInitializer) node).getValueExpr();
+        }
+
+        @Override
+        protected void remove() {
+            members.remove(node);
+        }
+    }
+
+    private static final class VarDeclaration extends Declaration {
+        @NotNull
+        private final JsVars vars;
+        @NotNull
+        private final List<JsStatement> statements;
+
+        private VarDeclaration(@NotNull JsVar var, @NotNull JsVars vars, @NotNull List<JsStatement> statements) {
+            super(var.getName().getIdent(), var);
+            this.vars = vars;
+            this.statements = statements;
+        }
+
+        @Nullable
+        @Override
+        protected JsNode getCode() {
+            return ((JsVar) node).getInitExpression();
+        }
+
+        @Override
+        protected void remove() {
+            for (Iterator<JsVar> iterator = vars.iterator(); iterator.hasNext(); ) {
+                if (iterator.next() == node) {
+                    iterator.remove();
+                }
+            }
+            // "var ;" is not valid JavaScript
+            if (vars.isEmpty()) {
+                statements.remove(vars);
+            }
+        }
+    }
+
+    private final class ReferenceCollector extends JsVisitor {
+        @Override
+        public boolean visit(JsNameRef x, JsContext ctx) {
+            markReferenced(x.getIdent());
+            return true;
+        }
+
+        @Override
+        public boolean visit(JsStringLiteral x, JsContext ctx) {
+            // properties may be defined and accessed by name, e.g. Object.defineProperty(this, "name", ...)
+            markReferenced(x.getValue());
+            return true;
+        }
+
+        @Override
+        public boolean visit(JsPropertyInitializer x, JsContext ctx) {
+            // labels of object literals declare names, they don't reference them
+            accept(x.getValueExpr());
+            return false;
+        }
+    }
+}
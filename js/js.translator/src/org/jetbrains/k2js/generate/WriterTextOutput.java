@@ -0,0 +1,182 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.generate;
+
+import com.google.dart.compiler.util.TextOutput;
+import com.google.dart.compiler.util.TextOutputImpl;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Prints the generated code to a writer. The code is formatted by a TextOutputImpl, which only keeps the code in memory,
+ * so the lines printed to it are moved to the writer and it is replaced with a new one once it holds enough of them.
+ *
+ * TextOutput methods can't throw IOException, so the first exception thrown by the writer is saved, the rest of output
+ * is ignored, and the exception is rethrown by flush().
+ */
+final class WriterTextOutput implements TextOutput {
+    private static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+    @NotNull
+    private final Writer out;
+    private final boolean compact;
+    private final int chunkSize;
+    private IOException error;
+
+    @NotNull
+    private TextOutputImpl chunk;
+    private int indentLevel = 0;
+    // Position and line of the start of the current chunk in the whole code
+    private int chunkPosition = 0;
+    private int chunkLine = 0;
+
+    WriterTextOutput(@NotNull Writer out) {
+        this(out, false, DEFAULT_CHUNK_SIZE);
+    }
+
+    WriterTextOutput(@NotNull Writer out, boolean compact, int chunkSize) {
+        this.out = out;
+        this.compact = compact;
+        this.chunkSize = chunkSize;
+        this.chunk = new TextOutputImpl(compact);
+    }
+
+    /**
+     * Writes the code which is not written yet and rethrows the exception thrown by the writer, if any
+     */
+    public void flush() throws IOException {
+        write(chunk.toString());
+        chunkPosition += chunk.getPosition();
+        chunkLine += chunk.getLine();
+        chunk = new TextOutputImpl(compact);
+        for (int i = 0; i < indentLevel; i++) {
+            chunk.indentIn();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public int getPosition() {
+        return chunkPosition + chunk.getPosition();
+    }
+
+    @Override
+    public int getLine() {
+        return chunkLine + chunk.getLine();
+    }
+
+    @Override
+    public int getColumn() {
+        return chunk.getColumn();
+    }
+
+    @Override
+    public void indentIn() {
+        indentLevel++;
+        chunk.indentIn();
+    }
+
+    @Override
+    public void indentOut() {
+        indentLevel--;
+        chunk.indentOut();
+    }
+
+    @Override
+    public void newline() {
+        chunk.newline();
+        if (chunk.getPosition() >= chunkSize) {
+            startNewChunk();
+        }
+    }
+
+    @Override
+    public void newlineOpt() {
+        if (!compact) {
+            newline();
+        }
+    }
+
+    @Override
+    public void print(char c) {
+        chunk.print(c);
+    }
+
+    @Override
+    public void print(int v) {
+        chunk.print(v);
+    }
+
+    @Override
+    public void print(double v) {
+        chunk.print(v);
+    }
+
+    @Override
+    public void print(char[] s) {
+        chunk.print(s);
+    }
+
+    @Override
+    public void print(CharSequence s) {
+        chunk.print(s);
+    }
+
+    @Override
+    public void printOpt(char c) {
+        chunk.printOpt(c);
+    }
+
+    @Override
+    public void printOpt(char[] s) {
+        chunk.printOpt(s);
+    }
+
+    @Override
+    public void printOpt(String s) {
+        chunk.printOpt(s);
+    }
+
+    // The chunk ends with a newline. It is left to the new chunk, since only a newline makes TextOutputImpl indent the next line
+    private void startNewChunk() {
+        String code = chunk.toString();
+        write(code.substring(0, code.length() - 1));
+        chunkPosition += chunk.getPosition() - 1;
+        chunkLine += chunk.getLine() - 1;
+
+        chunk = new TextOutputImpl(compact);
+        for (int i = 0; i < indentLevel; i++) {
+            chunk.indentIn();
+        }
+        chunk.newline();
+    }
+
+    private void write(@NotNull String code) {
+        if (error == null) {
+            try {
+                out.write(code);
+            }
+            catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+}
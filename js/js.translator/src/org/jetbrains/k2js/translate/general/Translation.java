@@ -148,6 +148,8 @@ public final class Translation {
         }
     }
 
+    // The files are translated one after another: StaticContext declares names in the shared scopes when they are first
+    // requested, and fresh names and function literals are numbered in this order, so the code only stays the same if it does
     @NotNull
     private static JsProgram doGenerateAst(@NotNull BindingContext bindingContext, @NotNull Collection<JetFile> files,
             @NotNull MainCallParameters mainCallParameters,
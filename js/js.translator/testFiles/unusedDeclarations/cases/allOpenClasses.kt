@@ -0,0 +1,13 @@
+package foo
+
+open class UnusedOpenClass {
+    open fun value() = "fail"
+}
+
+class UnusedDerivedClass : UnusedOpenClass() {
+    override fun value() = "fail"
+}
+
+fun main(args: Array<String>) {
+    print("OK")
+}
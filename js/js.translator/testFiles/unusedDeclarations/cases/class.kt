@@ -0,0 +1,13 @@
+package foo
+
+class UsedClass {
+    fun value() = "OK"
+}
+
+class UnusedClass {
+    fun value() = "fail"
+}
+
+fun main(args: Array<String>) {
+    print(UsedClass().value())
+}
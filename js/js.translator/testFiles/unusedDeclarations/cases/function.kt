@@ -0,0 +1,9 @@
+package foo
+
+fun used() = "OK"
+
+fun unusedFunction() = "fail"
+
+fun main(args: Array<String>) {
+    print(used())
+}
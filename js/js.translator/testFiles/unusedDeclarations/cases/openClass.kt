@@ -0,0 +1,13 @@
+package foo
+
+open class UsedOpenClass {
+    fun value() = "OK"
+}
+
+open class UnusedOpenClass {
+    fun value() = "fail"
+}
+
+fun main(args: Array<String>) {
+    print(UsedOpenClass().value())
+}
@@ -0,0 +1,11 @@
+package foo
+
+val usedProperty: String
+    get() = "OK"
+
+val unusedProperty: String
+    get() = "fail"
+
+fun main(args: Array<String>) {
+    print(usedProperty)
+}